@@ -0,0 +1,153 @@
+package de.test.antennapod.feed;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.danoeh.antennapod.core.feed.EventDistributor;
+
+/**
+ * Test class for EventDistributor
+ */
+public class EventDistributorTest extends InstrumentationTestCase {
+
+    /**
+     * Time that the test waits for further notifications after the first one has arrived.
+     */
+    private static final long EXTRA_WAIT = 5 * EventDistributor.COALESCING_WINDOW;
+
+    private static final long TIMEOUT = 5000;
+
+    private EventDistributor eventDistributor;
+    private RecordingListener listener;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        eventDistributor = EventDistributor.getInstance();
+        listener = new RecordingListener();
+        eventDistributor.register(listener);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        eventDistributor.unregister(listener);
+    }
+
+    private void awaitUpdates() throws InterruptedException {
+        assertTrue("Listener was not notified", listener.firstUpdate.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Thread.sleep(EXTRA_WAIT);
+    }
+
+    public void testEventsAreCoalesced() throws Exception {
+        eventDistributor.sendFeedUpdateBroadcast(1);
+        eventDistributor.sendUnreadItemsUpdateBroadcast(new long[]{1}, new long[]{10});
+        eventDistributor.sendDownloadLogUpdateBroadcast();
+        awaitUpdates();
+        assertEquals(1, listener.args.size());
+        int arg = listener.args.get(0);
+        assertTrue((arg & EventDistributor.FEED_LIST_UPDATE) != 0);
+        assertTrue((arg & EventDistributor.UNREAD_ITEMS_UPDATE) != 0);
+        assertTrue((arg & EventDistributor.DOWNLOADLOG_UPDATE) != 0);
+    }
+
+    public void testEventsAfterDeliveryAreDeliveredAgain() throws Exception {
+        eventDistributor.sendFeedUpdateBroadcast(1);
+        awaitUpdates();
+        listener.reset();
+        eventDistributor.sendFeedUpdateBroadcast(2);
+        awaitUpdates();
+        assertEquals(1, listener.args.size());
+        EventDistributor.ChangeSet changes = listener.changes.get(0);
+        assertFalse(changes.affectsFeed(1));
+        assertTrue(changes.affectsFeed(2));
+    }
+
+    public void testChangeSetMergesFeedIds() throws Exception {
+        eventDistributor.sendFeedUpdateBroadcast(3, 1);
+        eventDistributor.sendFeedUpdateBroadcast(2);
+        awaitUpdates();
+        assertEquals(1, listener.changes.size());
+        EventDistributor.ChangeSet changes = listener.changes.get(0);
+        assertTrue(changes.isSpecific());
+        assertTrue(changes.affectsFeed(1));
+        assertTrue(changes.affectsFeed(2));
+        assertTrue(changes.affectsFeed(3));
+        assertFalse(changes.affectsFeed(4));
+        // no item IDs were given, so all items of the feeds are affected
+        assertTrue(changes.affectsItem(1, 100));
+        assertFalse(changes.affectsItem(4, 100));
+    }
+
+    public void testChangeSetMergesItemIds() throws Exception {
+        eventDistributor.sendUnreadItemsUpdateBroadcast(new long[]{1}, new long[]{10, 11});
+        eventDistributor.sendUnreadItemsUpdateBroadcast(new long[]{2}, new long[]{20});
+        awaitUpdates();
+        assertEquals(1, listener.changes.size());
+        EventDistributor.ChangeSet changes = listener.changes.get(0);
+        assertTrue(changes.isSpecific());
+        assertTrue(changes.affectsItem(1, 10));
+        assertTrue(changes.affectsItem(1, 11));
+        assertTrue(changes.affectsItem(2, 20));
+        assertFalse(changes.affectsItem(1, 12));
+        assertFalse(changes.affectsItem(3, 10));
+    }
+
+    public void testChangeSetWithAllItemsOfFeed() throws Exception {
+        eventDistributor.sendUnreadItemsUpdateBroadcast(new long[]{1}, new long[]{10});
+        eventDistributor.sendUnreadItemsUpdateBroadcast(new long[]{2}, null);
+        awaitUpdates();
+        assertEquals(1, listener.changes.size());
+        EventDistributor.ChangeSet changes = listener.changes.get(0);
+        assertTrue(changes.isSpecific());
+        assertTrue(changes.affectsItem(1, 12));
+        assertTrue(changes.affectsItem(2, 20));
+        assertFalse(changes.affectsFeed(3));
+    }
+
+    public void testUnspecificEventMakesChangeSetUnspecific() throws Exception {
+        eventDistributor.sendFeedUpdateBroadcast(1);
+        eventDistributor.sendFeedUpdateBroadcast();
+        eventDistributor.sendFeedUpdateBroadcast(2);
+        awaitUpdates();
+        assertEquals(1, listener.changes.size());
+        EventDistributor.ChangeSet changes = listener.changes.get(0);
+        assertFalse(changes.isSpecific());
+        assertTrue(changes.affectsFeed(3));
+        assertTrue(changes.affectsItem(3, 30));
+    }
+
+    public void testListenerWithoutUpdateMethodFails() {
+        EventDistributor.EventListener el = new EventDistributor.EventListener() {
+        };
+        try {
+            el.update(eventDistributor, EventDistributor.FEED_LIST_UPDATE);
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    private static class RecordingListener extends EventDistributor.EventListener {
+        final List<Integer> args = new CopyOnWriteArrayList<Integer>();
+        final List<EventDistributor.ChangeSet> changes = new CopyOnWriteArrayList<EventDistributor.ChangeSet>();
+        volatile CountDownLatch firstUpdate = new CountDownLatch(1);
+
+        @Override
+        public void update(EventDistributor eventDistributor, Integer arg, EventDistributor.ChangeSet changes) {
+            this.args.add(arg);
+            this.changes.add(changes);
+            firstUpdate.countDown();
+        }
+
+        void reset() {
+            args.clear();
+            changes.clear();
+            firstUpdate = new CountDownLatch(1);
+        }
+    }
+}
@@ -12,8 +12,10 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Date;
@@ -150,6 +152,44 @@ public class FeedHandlerTest extends InstrumentationTestCase {
         feedValid(f1, f2, Feed.TYPE_ATOM1);
     }
 
+    private void itemListenerTest(final Feed feed, FeedGenerator g, long flags) throws IOException, UnsupportedFeedtypeException, SAXException, ParserConfigurationException {
+        g.writeFeed(feed, outputStream, "UTF-8", flags);
+        final List<Integer> notifiedSizes = new ArrayList<Integer>();
+        Feed parsedFeed = new Feed(feed.getDownload_url(), feed.getLastUpdate());
+        InputStream in = new FileInputStream(file);
+        try {
+            new FeedHandler().parseFeed(parsedFeed, in, new FeedHandler.ItemListener() {
+                @Override
+                public void onItemParsed(Feed parsed, List<FeedItem> items) {
+                    notifiedSizes.add(items.size());
+                    // every item passed to the listener has been parsed completely
+                    for (int i = 0; i < items.size(); i++) {
+                        FeedItem item = feed.getItems().get(i);
+                        FeedItem parsedItem = items.get(i);
+                        assertEquals(item.getTitle(), parsedItem.getTitle());
+                        assertEquals(item.getPubDate().getTime(), parsedItem.getPubDate().getTime());
+                        assertTrue(parsedItem.hasMedia());
+                        assertEquals(item.getMedia().getDownload_url(), parsedItem.getMedia().getDownload_url());
+                    }
+                }
+            });
+        } finally {
+            in.close();
+        }
+        assertEquals(feed.getItems().size(), notifiedSizes.size());
+        for (int i = 0; i < notifiedSizes.size(); i++) {
+            assertEquals(i + 1, notifiedSizes.get(i).intValue());
+        }
+    }
+
+    public void testRSS2ItemListener() throws IOException, UnsupportedFeedtypeException, SAXException, ParserConfigurationException {
+        itemListenerTest(createTestFeed(10, false, true, false), new RSS2Generator(), RSS2Generator.FEATURE_WRITE_GUID);
+    }
+
+    public void testAtomItemListener() throws IOException, UnsupportedFeedtypeException, SAXException, ParserConfigurationException {
+        itemListenerTest(createTestFeed(10, false, true, false), new AtomGenerator(), 0);
+    }
+
     private Feed createTestFeed(int numItems, boolean withImage, boolean withFeedMedia, boolean withChapters) {
         FeedImage image = null;
         if (withImage) {
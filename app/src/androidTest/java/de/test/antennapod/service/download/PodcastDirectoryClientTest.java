@@ -0,0 +1,144 @@
+package de.test.antennapod.service.download;
+
+import android.test.InstrumentationTestCase;
+
+import com.squareup.okhttp.Request;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.danoeh.antennapod.core.preferences.UserPreferences;
+import de.danoeh.antennapod.core.service.download.PodcastDirectoryClient;
+import de.test.antennapod.util.service.download.HTTPBin;
+
+/**
+ * Test class for PodcastDirectoryClient
+ */
+public class PodcastDirectoryClientTest extends InstrumentationTestCase {
+
+    private static final long MAX_AGE = 60 * 1000;
+
+    /**
+     * Time that the test waits until a request that has been started in another thread has reached the client.
+     */
+    private static final long START_DELAY = 500;
+
+    private HTTPBin httpServer;
+    private ExecutorService executor;
+    private PodcastDirectoryClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        UserPreferences.createInstance(getInstrumentation().getTargetContext());
+        httpServer = new HTTPBin();
+        httpServer.start();
+        executor = Executors.newCachedThreadPool();
+        client = PodcastDirectoryClient.getInstance();
+        client.clearCache();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        executor.shutdownNow();
+        httpServer.stop();
+        client.clearCache();
+    }
+
+    private Request request(String path) {
+        return new Request.Builder().url(HTTPBin.BASE_URL + path).build();
+    }
+
+    private Future<String> getAsync(final String path, final Object tag) {
+        return executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return client.get(request(path), MAX_AGE, tag);
+            }
+        });
+    }
+
+    public void testGetUsesCachedResponse() throws Exception {
+        assertNotNull(client.get(request("/status/200"), MAX_AGE, null));
+        assertEquals(1, httpServer.getRequestCount());
+        assertNotNull(client.get(request("/status/200"), MAX_AGE, null));
+        assertEquals(1, httpServer.getRequestCount());
+    }
+
+    public void testGetIgnoresExpiredResponse() throws Exception {
+        assertNotNull(client.get(request("/status/200"), MAX_AGE, null));
+        assertNotNull(client.get(request("/status/200"), 0, null));
+        assertEquals(2, httpServer.getRequestCount());
+    }
+
+    public void testGetBadStatusCode() throws Exception {
+        try {
+            client.get(request("/status/404"), MAX_AGE, null);
+            fail("StatusCodeException expected");
+        } catch (PodcastDirectoryClient.StatusCodeException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+        // failed requests are not cached
+        try {
+            client.get(request("/status/404"), MAX_AGE, null);
+            fail("StatusCodeException expected");
+        } catch (PodcastDirectoryClient.StatusCodeException e) {
+            assertEquals(2, httpServer.getRequestCount());
+        }
+    }
+
+    public void testConcurrentRequestsAreDeduplicated() throws Exception {
+        Future<String> first = getAsync("/delay/2", null);
+        Thread.sleep(START_DELAY);
+        Future<String> second = getAsync("/delay/2", null);
+        assertEquals(first.get(), second.get());
+        assertEquals(1, httpServer.getRequestCount());
+    }
+
+    public void testSupersededRequestIsCancelled() throws Exception {
+        final Object tag = new Object();
+        Future<String> superseded = getAsync("/delay/2", tag);
+        Thread.sleep(START_DELAY);
+        assertNotNull(client.get(request("/status/200"), MAX_AGE, tag));
+        try {
+            superseded.get();
+            fail("Superseded request was not cancelled");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    public void testRequestAfterCancelledRequestIsExecuted() throws Exception {
+        final Object tag = new Object();
+        Future<String> superseded = getAsync("/delay/2", tag);
+        Thread.sleep(START_DELAY);
+        assertNotNull(client.get(request("/status/200"), MAX_AGE, tag));
+        // must not wait for the cancelled call
+        assertNotNull(client.get(request("/delay/2"), MAX_AGE, new Object()));
+        try {
+            superseded.get();
+            fail("Superseded request was not cancelled");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(3, httpServer.getRequestCount());
+    }
+
+    public void testSharedRequestIsNotCancelled() throws Exception {
+        final Object tag = new Object();
+        Future<String> superseded = getAsync("/delay/2", tag);
+        Thread.sleep(START_DELAY);
+        // waits for the request that has been started with the other tag
+        Future<String> shared = getAsync("/delay/2", new Object());
+        Thread.sleep(START_DELAY);
+        assertNotNull(client.get(request("/status/200"), MAX_AGE, tag));
+        assertNotNull(shared.get());
+        assertNotNull(superseded.get());
+        assertEquals(2, httpServer.getRequestCount());
+    }
+}
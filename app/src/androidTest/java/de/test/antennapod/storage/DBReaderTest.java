@@ -3,6 +3,8 @@ package de.test.antennapod.storage;
 import android.content.Context;
 import android.test.InstrumentationTestCase;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -11,9 +13,13 @@ import java.util.Random;
 import de.danoeh.antennapod.core.feed.Feed;
 import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.feed.FeedMedia;
+import de.danoeh.antennapod.core.opml.OpmlWriter;
+import de.danoeh.antennapod.core.service.download.DownloadStatus;
 import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.storage.FeedItemStatistics;
 import de.danoeh.antennapod.core.storage.PodDBAdapter;
+import de.danoeh.antennapod.core.util.DownloadError;
 import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.core.util.flattr.FlattrStatus;
 
@@ -74,6 +80,39 @@ public class DBReaderTest extends InstrumentationTestCase {
     }
 
 
+    public void testGetFeedsDueForUpdate() {
+        final Context context = getInstrumentation().getTargetContext();
+        final long updateInterval = 1000 * 60 * 60; // 1 hour
+        Feed feed = new Feed(0, new Date(System.currentTimeMillis() - 2 * updateInterval), "feed", "link", "descr", null,
+                null, null, null, "feed", null, null, "url", false, new FlattrStatus(), false, null, null, false);
+        feed.setItems(new ArrayList<FeedItem>());
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        List<Feed> dueFeeds = DBReader.getFeedsDueForUpdate(context, updateInterval);
+        assertEquals(1, dueFeeds.size());
+        assertEquals(feed.getId(), dueFeeds.get(0).getId());
+    }
+
+    public void testGetFeedsDueForUpdateAfterNotModified() throws Exception {
+        final Context context = getInstrumentation().getTargetContext();
+        final long updateInterval = 1000 * 60 * 60; // 1 hour
+        Feed feed = new Feed(0, new Date(System.currentTimeMillis() - 2 * updateInterval), "feed", "link", "descr", null,
+                null, null, null, "feed", null, null, "url", false, new FlattrStatus(), false, null, null, false);
+        feed.setItems(new ArrayList<FeedItem>());
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        // the server answers 'not modified', the last update of the feed stays the same
+        DBWriter.setFeedLastUpdateFailed(context, feed.getId(), false).get();
+        assertTrue(DBReader.getFeedsDueForUpdate(context, updateInterval).isEmpty());
+        assertEquals(feed.getLastUpdate(), DBReader.getFeed(context, feed.getId()).getLastUpdate());
+    }
+
     public void testGetFeedList() {
         final Context context = getInstrumentation().getTargetContext();
         List<Feed> feeds = saveFeedlist(context, 10, 0, false);
@@ -85,6 +124,23 @@ public class DBReaderTest extends InstrumentationTestCase {
         }
     }
 
+    public void testWriteSubscriptionsOpml() throws IOException {
+        final Context context = getInstrumentation().getTargetContext();
+        saveFeedlist(context, 10, 0, false);
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        Feed feed = new Feed("url & more", new Date(), "Feed with <special> characters");
+        feed.setItems(new ArrayList<FeedItem>());
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        StringWriter expected = new StringWriter();
+        new OpmlWriter().writeDocument(DBReader.getFeedList(context), expected);
+        StringWriter streamed = new StringWriter();
+        DBReader.writeSubscriptionsOpml(context, streamed);
+        assertEquals(expected.toString(), streamed.toString());
+    }
+
     public void testGetFeedListSortOrder() {
         final Context context = getInstrumentation().getTargetContext();
         PodDBAdapter adapter = new PodDBAdapter(context);
@@ -150,6 +206,58 @@ public class DBReaderTest extends InstrumentationTestCase {
         }
     }
 
+    public void testLoadFeedDataOfFeedItemlistAfterFeedUpdate() {
+        final Context context = getInstrumentation().getTargetContext();
+        Feed feed = saveFeedlist(context, 1, 1, false).get(0);
+        FeedItem item = feed.getItems().get(0);
+        item.setFeed(null);
+        item.setFeedId(feed.getId());
+        List<FeedItem> items = new ArrayList<FeedItem>();
+        items.add(item);
+        DBReader.loadFeedDataOfFeedItemlist(context, items);
+        assertEquals(feed.getTitle(), item.getFeed().getTitle());
+
+        feed.setTitle("changed title");
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setFeed(feed);
+        adapter.close();
+
+        item.setFeed(null);
+        DBReader.loadFeedDataOfFeedItemlist(context, items);
+        assertNotNull(item.getFeed());
+        assertEquals("changed title", item.getFeed().getTitle());
+    }
+
+    public void testGetFeedItemReturnsCachedObject() {
+        final Context context = getInstrumentation().getTargetContext();
+        Feed feed = saveFeedlist(context, 1, 1, true).get(0);
+        final long itemId = feed.getItems().get(0).getId();
+        FeedItem item = DBReader.getFeedItem(context, itemId);
+        assertNotNull(item);
+        assertSame(item, DBReader.getFeedItem(context, itemId));
+        assertSame(item.getMedia(), DBReader.getFeedMedia(context, item.getMedia().getId()));
+
+        // changed state is applied to the cached object
+        final boolean read = !item.isRead();
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setFeedItemRead(read, itemId);
+        adapter.close();
+        assertSame(item, DBReader.getFeedItem(context, itemId));
+        assertEquals(read, item.isRead());
+
+        // cached object is evicted if another object has been saved
+        FeedItem otherItem = feed.getItems().get(0);
+        otherItem.setTitle("changed title");
+        adapter.open();
+        adapter.setSingleFeedItem(otherItem);
+        adapter.close();
+        FeedItem reloadedItem = DBReader.getFeedItem(context, itemId);
+        assertNotSame(item, reloadedItem);
+        assertEquals("changed title", reloadedItem.getTitle());
+    }
+
     public void testGetFeedItemList() {
         final Context context = getInstrumentation().getTargetContext();
         final int numFeeds = 1;
@@ -217,6 +325,28 @@ public class DBReaderTest extends InstrumentationTestCase {
         }
     }
 
+    public void testGetQueueLargerThanCache() {
+        final Context context = getInstrumentation().getTargetContext();
+        // larger than FeedItemCache.MAX_SIZE
+        final int numItems = 700;
+        final int numCachedItems = 300;
+        List<FeedItem> queue = saveFeedlist(context, 1, numItems, false).get(0).getItems();
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setQueue(queue);
+        adapter.close();
+        // loading the rest of the queue evicts some of these items from the cache
+        for (int i = 0; i < numCachedItems; i++) {
+            assertNotNull(DBReader.getFeedItem(context, queue.get(i).getId()));
+        }
+
+        List<FeedItem> savedQueue = DBReader.getQueue(context);
+        assertEquals(numItems, savedQueue.size());
+        for (int i = 0; i < numItems; i++) {
+            assertEquals(queue.get(i).getId(), savedQueue.get(i).getId());
+        }
+    }
+
     private List<FeedItem> saveDownloadedItems(int numItems) {
         if (numItems <= 0) {
             throw new IllegalArgumentException("numItems<=0");
@@ -326,6 +456,33 @@ public class DBReaderTest extends InstrumentationTestCase {
         }
     }
 
+    public void testGetAutoDownloadCandidateIds() {
+        final Context context = getInstrumentation().getTargetContext();
+        List<Feed> feeds = saveFeedlist(context, 1, 5, true);
+        List<FeedItem> items = feeds.get(0).getItems();
+        List<FeedItem> queue = new ArrayList<FeedItem>();
+        queue.add(items.get(1));
+        queue.add(items.get(0));
+        items.get(2).setRead(false);
+        items.get(3).setRead(false);
+        items.get(3).getMedia().setDownloaded(true);
+        items.get(3).getMedia().setFile_url("file3");
+        items.get(4).setRead(false);
+        items.get(4).setAutoDownload(false);
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setFeedItemlist(items);
+        adapter.setQueue(queue);
+        adapter.close();
+
+        LongList ids = DBReader.getAutoDownloadCandidateIds(context, items.get(0).getMedia().getId());
+        assertNotNull(ids);
+        assertEquals(2, ids.size());
+        assertEquals(items.get(1).getId(), ids.get(0));
+        assertEquals(items.get(2).getId(), ids.get(1));
+    }
+
     public void testGetPlaybackHistory() {
         final Context context = getInstrumentation().getTargetContext();
         final int numItems = (DBReader.PLAYBACK_HISTORY_SIZE + 1) * 2;
@@ -356,6 +513,96 @@ public class DBReaderTest extends InstrumentationTestCase {
         }
     }
 
+    public void testGetPlaybackHistoryPaged() {
+        final Context context = getInstrumentation().getTargetContext();
+        final int numItems = 25;
+        final int pageSize = 10;
+        Feed feed = DBTestUtils.saveFeedlist(context, 1, numItems, true).get(0);
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        for (int i = 0; i < numItems; i++) {
+            FeedMedia m = feed.getItems().get(i).getMedia();
+            // pairs of items with the same completion date
+            m.setPlaybackCompletionDate(new Date(i / 2 + 1));
+            adapter.setFeedMediaPlaybackCompletionDate(m);
+        }
+        adapter.close();
+
+        List<FeedItem> history = new ArrayList<FeedItem>();
+        List<FeedItem> page = DBReader.getPlaybackHistory(context, null, pageSize);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= pageSize);
+            history.addAll(page);
+            page = DBReader.getPlaybackHistory(context, page.get(page.size() - 1), pageSize);
+        }
+        assertEquals(numItems, history.size());
+        for (int i = 1; i < history.size(); i++) {
+            FeedMedia previous = history.get(i - 1).getMedia();
+            FeedMedia current = history.get(i).getMedia();
+            int cmp = previous.getPlaybackCompletionDate().compareTo(current.getPlaybackCompletionDate());
+            assertTrue(cmp > 0 || (cmp == 0 && previous.getId() > current.getId()));
+        }
+    }
+
+    public void testGetPlaybackHistoryAfterUnplayedItem() {
+        final Context context = getInstrumentation().getTargetContext();
+        Feed feed = DBTestUtils.saveFeedlist(context, 1, 1, true).get(0);
+        try {
+            DBReader.getPlaybackHistory(context, feed.getItems().get(0), 10);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private List<DownloadStatus> saveDownloadLog(Context context, long feedId, int numEntries) {
+        List<DownloadStatus> log = new ArrayList<DownloadStatus>();
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        for (int i = 0; i < numEntries; i++) {
+            // pairs of entries with the same completion date
+            DownloadStatus status = new DownloadStatus(0, "title " + i, feedId, Feed.FEEDFILETYPE_FEED,
+                    i % 3 != 0, DownloadError.SUCCESS, new Date(i / 2 + 1), null);
+            adapter.setDownloadStatus(status);
+            log.add(status);
+        }
+        adapter.close();
+        return log;
+    }
+
+    public void testGetDownloadLogPaged() {
+        final Context context = getInstrumentation().getTargetContext();
+        final int numEntries = 25;
+        final int pageSize = 10;
+        saveDownloadLog(context, 1, numEntries);
+
+        List<DownloadStatus> log = new ArrayList<DownloadStatus>();
+        List<DownloadStatus> page = DBReader.getDownloadLog(context, null, pageSize);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= pageSize);
+            log.addAll(page);
+            page = DBReader.getDownloadLog(context, page.get(page.size() - 1), pageSize);
+        }
+        assertEquals(numEntries, log.size());
+        for (int i = 1; i < log.size(); i++) {
+            DownloadStatus previous = log.get(i - 1);
+            DownloadStatus current = log.get(i);
+            int cmp = previous.getCompletionDate().compareTo(current.getCompletionDate());
+            assertTrue(cmp > 0 || (cmp == 0 && previous.getId() > current.getId()));
+        }
+    }
+
+    public void testGetLatestFeedDownloadStatus() {
+        final Context context = getInstrumentation().getTargetContext();
+        Feed feed = DBTestUtils.saveFeedlist(context, 2, 0, false).get(0);
+        assertNull(DBReader.getLatestFeedDownloadStatus(context, feed));
+        List<DownloadStatus> log = saveDownloadLog(context, feed.getId(), 5);
+        DownloadStatus latest = DBReader.getLatestFeedDownloadStatus(context, feed);
+        assertNotNull(latest);
+        assertEquals(log.get(log.size() - 1).getId(), latest.getId());
+    }
+
     public void testGetFeedStatisticsCheckOrder() {
         final Context context = getInstrumentation().getTargetContext();
         final int NUM_FEEDS = 10;
@@ -8,6 +8,7 @@ import android.test.InstrumentationTestCase;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -17,6 +18,7 @@ import de.danoeh.antennapod.core.feed.Feed;
 import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.feed.FeedMedia;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
+import de.danoeh.antennapod.core.storage.APDownloadAlgorithm;
 import de.danoeh.antennapod.core.storage.DBReader;
 import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.PodDBAdapter;
@@ -65,6 +67,7 @@ public class DBTasksTest extends InstrumentationTestCase {
 
         SharedPreferences.Editor prefEdit = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext()).edit();
         prefEdit.putString(UserPreferences.PREF_EPISODE_CACHE_SIZE, Integer.toString(EPISODE_CACHE_SIZE));
+        prefEdit.putString(UserPreferences.PREF_EPISODE_CACHE_MAX_SIZE, "0");
         prefEdit.commit();
     }
 
@@ -106,6 +109,93 @@ public class DBTasksTest extends InstrumentationTestCase {
         }
     }
 
+    @FlakyTest(tolerance = 3)
+    public void testPerformAutoCleanupShouldDeleteBecauseOfCacheSize() throws IOException {
+        final int NUM_ITEMS = EPISODE_CACHE_SIZE - 1;
+        final long FILE_SIZE = 512 * 1024;
+        // two of the files fit into the cache
+        SharedPreferences.Editor prefEdit = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext()).edit();
+        prefEdit.putString(UserPreferences.PREF_EPISODE_CACHE_MAX_SIZE, "1");
+        prefEdit.commit();
+
+        Feed feed = new Feed("url", new Date(), "title");
+        List<FeedItem> items = new ArrayList<FeedItem>();
+        feed.setItems(items);
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            FeedItem item = new FeedItem(0, "title", "id", "link", new Date(), true, feed);
+
+            File f = new File(destFolder, "file " + i);
+            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            raf.setLength(FILE_SIZE);
+            raf.close();
+            files.add(f);
+            item.setMedia(new FeedMedia(0, item, 1, 0, FILE_SIZE, "m", f.getAbsolutePath(), "url", true, new Date(NUM_ITEMS - i), 0));
+            items.add(item);
+        }
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        DBTasks.performAutoCleanup(context);
+        for (int i = 0; i < files.size(); i++) {
+            if (i < 2) {
+                assertTrue(files.get(i).exists());
+                assertTrue(DBReader.getFeedMedia(context, items.get(i).getMedia().getId()).isDownloaded());
+            } else {
+                assertFalse(files.get(i).exists());
+                assertFalse(DBReader.getFeedMedia(context, items.get(i).getMedia().getId()).isDownloaded());
+            }
+        }
+    }
+
+    @FlakyTest(tolerance = 3)
+    public void testAutoDownloadDeletesPlayedEpisodesIfCacheIsFullBySize() throws IOException {
+        final int NUM_PLAYED_ITEMS = 2;
+        final int NUM_NEW_ITEMS = 2;
+        final long FILE_SIZE = 512 * 1024;
+        // the played episodes fill the cache
+        SharedPreferences.Editor prefEdit = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext()).edit();
+        prefEdit.putString(UserPreferences.PREF_EPISODE_CACHE_MAX_SIZE, "1");
+        prefEdit.commit();
+
+        Feed feed = new Feed("url", new Date(), "title");
+        List<FeedItem> items = new ArrayList<FeedItem>();
+        feed.setItems(items);
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < NUM_PLAYED_ITEMS; i++) {
+            FeedItem item = new FeedItem(0, "played " + i, "played id " + i, "link", new Date(), true, feed);
+
+            File f = new File(destFolder, "file " + i);
+            RandomAccessFile raf = new RandomAccessFile(f, "rw");
+            raf.setLength(FILE_SIZE);
+            raf.close();
+            files.add(f);
+            item.setMedia(new FeedMedia(0, item, 1, 0, FILE_SIZE, "m", f.getAbsolutePath(), "url", true, new Date(i + 1), 0));
+            items.add(item);
+        }
+        for (int i = 0; i < NUM_NEW_ITEMS; i++) {
+            FeedItem item = new FeedItem(0, "new " + i, "new id " + i, "link", new Date(), false, feed);
+            item.setMedia(new FeedMedia(0, item, 1, 0, FILE_SIZE / 2, "m", null, "url " + i, false, null, 0));
+            items.add(item);
+        }
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        FeedItem[] itemsToDownload = new APDownloadAlgorithm().getItemsToDownload(context);
+        assertEquals(NUM_NEW_ITEMS, itemsToDownload.length);
+        // one played episode makes room for both new episodes
+        assertFalse(files.get(0).exists());
+        assertFalse(DBReader.getFeedMedia(context, items.get(0).getMedia().getId()).isDownloaded());
+        assertTrue(files.get(1).exists());
+        assertTrue(DBReader.getFeedMedia(context, items.get(1).getMedia().getId()).isDownloaded());
+    }
+
     @FlakyTest(tolerance = 3)
     public void testPerformAutoCleanupShouldNotDeleteBecauseUnread() throws IOException {
         final int NUM_ITEMS = EPISODE_CACHE_SIZE * 2;
@@ -331,4 +421,39 @@ public class DBTasksTest extends InstrumentationTestCase {
         final long expirationTime = 1000 * 60 * 60;
         expiredFeedListTestHelper(System.currentTimeMillis() - expirationTime / 2, expirationTime, false);
     }
+
+    private void weeklyFeedTestHelper(long lastEpisodeAge, boolean shouldReturn) {
+        final long hour = 1000 * 60 * 60;
+        final long week = 7 * 24 * hour;
+        final long now = System.currentTimeMillis();
+        UserPreferences.setUpdateInterval(context, hour);
+        Feed feed = new Feed(0, new Date(now - 2 * hour), "feed", "link", "descr", null,
+                null, null, null, "feed", null, null, "url", false, new FlattrStatus(), false, null, null, false);
+        feed.setItems(new ArrayList<FeedItem>());
+        for (int i = 0; i < 5; i++) {
+            Date pubDate = new Date(now - lastEpisodeAge - i * week);
+            feed.getItems().add(new FeedItem(0, "item " + i, "id " + i, "link", pubDate, true, feed));
+        }
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        List<Feed> expiredFeeds = DBTasks.getExpiredFeeds(context);
+        assertNotNull(expiredFeeds);
+        if (shouldReturn) {
+            assertEquals(1, expiredFeeds.size());
+            assertEquals(feed.getId(), expiredFeeds.get(0).getId());
+        } else {
+            assertTrue(expiredFeeds.isEmpty());
+        }
+    }
+
+    public void testGetExpiredFeedsWeeklyFeedBetweenEpisodes() {
+        weeklyFeedTestHelper(24 * 60 * 60 * 1000, false);
+    }
+
+    public void testGetExpiredFeedsWeeklyFeedEpisodeDue() {
+        weeklyFeedTestHelper(6 * 24 * 60 * 60 * 1000, true);
+    }
 }
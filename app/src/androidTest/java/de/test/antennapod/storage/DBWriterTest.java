@@ -9,7 +9,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -21,9 +23,14 @@ import de.danoeh.antennapod.core.feed.FeedImage;
 import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.feed.FeedMedia;
 import de.danoeh.antennapod.core.feed.SimpleChapter;
+import de.danoeh.antennapod.core.service.download.DownloadStatus;
 import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.storage.PodDBAdapter;
+import de.danoeh.antennapod.core.util.DownloadError;
+import de.danoeh.antennapod.core.util.flattr.FlattrStatus;
+import de.danoeh.antennapod.core.util.flattr.FlattrThing;
 
 /**
  * Test class for DBWriter
@@ -434,6 +441,25 @@ public class DBWriterTest extends InstrumentationTestCase {
         adapter.close();
     }
 
+    public void testDeleteFeedKeepsOtherFeeds() throws ExecutionException, InterruptedException, TimeoutException {
+        final Context context = getInstrumentation().getTargetContext();
+        List<Feed> feeds = DBTestUtils.saveFeedlist(context, 2, 10, true, true, 2);
+        Feed deleted = feeds.get(0);
+        Feed kept = feeds.get(1);
+
+        DBWriter.deleteFeed(context, deleted.getId()).get(TIMEOUT, TimeUnit.SECONDS);
+
+        Feed result = DBReader.getFeed(context, kept.getId());
+        assertNotNull(result);
+        assertEquals(kept.getItems().size(), result.getItems().size());
+        for (FeedItem item : result.getItems()) {
+            assertNotNull(item.getMedia());
+            DBReader.loadChaptersOfFeedItem(context, item);
+            assertEquals(2, item.getChapters().size());
+        }
+        assertNull(DBReader.getFeed(context, deleted.getId()));
+    }
+
     public void testDeleteFeedNoDownloadedFiles() throws ExecutionException, InterruptedException, TimeoutException {
         File destFolder = getInstrumentation().getTargetContext().getExternalFilesDir(TEST_FOLDER);
         assertNotNull(destFolder);
@@ -538,6 +564,115 @@ public class DBWriterTest extends InstrumentationTestCase {
         assertFalse(OLD_DATE == media.getPlaybackCompletionDate().getTime());
     }
 
+    public void testSetFeedMediaChapterScanState() throws ExecutionException, InterruptedException, TimeoutException {
+        final Context context = getInstrumentation().getTargetContext();
+
+        FeedMedia media = playbackHistorySetup(null);
+        assertEquals(FeedMedia.CHAPTER_SCAN_NOT_SCANNED, media.getChapterScanState());
+        assertFalse(media.isChapterScanUpToDate());
+
+        // the media has not been downloaded, so the stream has been searched
+        media.setChapterScanResult(true);
+        assertEquals(FeedMedia.CHAPTER_SCAN_NONE, media.getChapterScanState());
+        assertTrue(media.isChapterScanUpToDate());
+        DBWriter.setFeedMediaChapterScanState(context, media).get(TIMEOUT, TimeUnit.SECONDS);
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        Cursor cursor = adapter.getSingleFeedMediaCursor(media.getId());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(FeedMedia.CHAPTER_SCAN_NONE,
+                cursor.getInt(cursor.getColumnIndex(PodDBAdapter.KEY_CHAPTER_SCAN_STATE)));
+        cursor.close();
+        adapter.close();
+
+        // failed searches of a stream are repeated
+        media.setChapterScanResult(false);
+        assertEquals(FeedMedia.CHAPTER_SCAN_FAILED, media.getChapterScanState());
+        assertFalse(media.isChapterScanUpToDate());
+    }
+
+    public void testCompactDownloadLog() throws ExecutionException, InterruptedException, TimeoutException {
+        final Context context = getInstrumentation().getTargetContext();
+        final long now = System.currentTimeMillis();
+        final long yearAgo = now - 365L * 24 * 60 * 60 * 1000;
+        DownloadStatus[] log = new DownloadStatus[]{
+                new DownloadStatus(0, "old 1", 1, Feed.FEEDFILETYPE_FEED, true, DownloadError.SUCCESS,
+                        new Date(yearAgo), null),
+                new DownloadStatus(0, "latest old 1", 1, Feed.FEEDFILETYPE_FEED, false, DownloadError.SUCCESS,
+                        new Date(yearAgo + 1), null),
+                new DownloadStatus(0, "old 2", 2, Feed.FEEDFILETYPE_FEED, true, DownloadError.SUCCESS,
+                        new Date(yearAgo), null),
+                new DownloadStatus(0, "new 2", 2, Feed.FEEDFILETYPE_FEED, true, DownloadError.SUCCESS,
+                        new Date(now), null)};
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        for (DownloadStatus status : log) {
+            adapter.setDownloadStatus(status);
+        }
+        adapter.close();
+
+        DBWriter.compactDownloadLog(context).get(TIMEOUT, TimeUnit.SECONDS);
+
+        // the newest entry of every feed is kept
+        List<DownloadStatus> compacted = DBReader.getDownloadLog(context);
+        assertEquals(2, compacted.size());
+        assertEquals(log[3].getId(), compacted.get(0).getId());
+        assertEquals(log[1].getId(), compacted.get(1).getId());
+
+        adapter = new PodDBAdapter(context);
+        adapter.open();
+        assertEquals(1, adapter.compactDownloadLog(0, 1));
+        assertEquals(1, adapter.getDownloadLogSize());
+        adapter.close();
+    }
+
+    public void testSetFlattrStatusByUrl() throws ExecutionException, InterruptedException, TimeoutException {
+        final Context context = getInstrumentation().getTargetContext();
+        final String paymentLink = "https://flattr.com/submit/auto?user_id=test&url=";
+        Feed feed = new Feed("url", new Date(), "title");
+        feed.setPaymentLink(paymentLink + "http%3A%2F%2Fexample.com%2F");
+        feed.setItems(new ArrayList<FeedItem>());
+        String[] itemUrls = new String[]{"http%3A%2F%2Fexample.com%2Fepisode1&language=en",
+                "http%3A%2F%2Fexample.com%2Fepisode10", "http%3A%2F%2Fexample.com"};
+        for (int i = 0; i < itemUrls.length; i++) {
+            FeedItem item = new FeedItem(0, "title " + i, "id " + i, "link " + i, new Date(), true, feed);
+            item.setPaymentLink(paymentLink + itemUrls[i]);
+            item.getFlattrStatus().setFlattrQueue();
+            feed.getItems().add(item);
+        }
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+
+        Map<String, FlattrStatus> statusByUrl = new HashMap<String, FlattrStatus>();
+        statusByUrl.put("http%3A%2F%2Fexample.com", new FlattrStatus(1000000L));
+        statusByUrl.put("http%3A%2F%2Fexample.com%2Fepisode1", new FlattrStatus(2000000L));
+        adapter.setFlattrStatusByUrl(statusByUrl);
+        adapter.close();
+
+        assertEquals(1000000L, DBReader.getFeed(context, feed.getId()).getFlattrStatus().toLong());
+        assertEquals(2000000L, DBReader.getFeedItem(context, feed.getItems().get(0).getId()).getFlattrStatus().toLong());
+        // other items are reset, a URL that matches a feed isn't applied to items
+        assertEquals(FlattrStatus.STATUS_UNFLATTERED,
+                DBReader.getFeedItem(context, feed.getItems().get(1).getId()).getFlattrStatus().toLong());
+        assertEquals(FlattrStatus.STATUS_UNFLATTERED,
+                DBReader.getFeedItem(context, feed.getItems().get(2).getId()).getFlattrStatus().toLong());
+
+        // the status of several things is saved at once
+        List<FlattrThing> things = new ArrayList<FlattrThing>();
+        things.add(feed);
+        things.addAll(feed.getItems());
+        for (FlattrThing thing : things) {
+            thing.getFlattrStatus().setFlattrQueue();
+        }
+        DBWriter.setFlattrThingsStatus(context, things).get(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(DBReader.getFeed(context, feed.getId()).getFlattrStatus().getFlattrQueue());
+        for (FeedItem item : feed.getItems()) {
+            assertTrue(DBReader.getFeedItem(context, item.getId()).getFlattrStatus().getFlattrQueue());
+        }
+    }
+
     private Feed queueTestSetupMultipleItems(final int NUM_ITEMS) throws InterruptedException, ExecutionException, TimeoutException {
         final Context context = getInstrumentation().getTargetContext();
         Feed feed = new Feed("url", new Date(), "title");
@@ -802,4 +937,31 @@ public class DBWriterTest extends InstrumentationTestCase {
         }
     }
 
+    public void testSubscriptionChangeCount() throws InterruptedException, ExecutionException, TimeoutException {
+        final Context context = getInstrumentation().getTargetContext();
+        long changeCount = DBReader.getSubscriptionChangeCount(context);
+
+        Feed feed = new Feed("url", new Date(), "title");
+        feed.setItems(new ArrayList<FeedItem>());
+        Feed savedFeed = DBTasks.updateFeed(context, feed)[0];
+        assertTrue(savedFeed.getId() != 0);
+        assertTrue(DBReader.getSubscriptionChangeCount(context) != changeCount);
+        changeCount = DBReader.getSubscriptionChangeCount(context);
+
+        // refresh without changes to the outline
+        Feed refreshed = new Feed("url", new Date(), "title");
+        refreshed.setItems(new ArrayList<FeedItem>());
+        refreshed.getItems().add(new FeedItem(0, "item", "id", "link", new Date(), false, refreshed));
+        DBTasks.updateFeed(context, refreshed);
+        assertEquals(changeCount, DBReader.getSubscriptionChangeCount(context));
+
+        Map<String, String> urls = new HashMap<String, String>();
+        urls.put("url", "new url");
+        DBWriter.updateFeedDownloadURLs(context, urls).get(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(DBReader.getSubscriptionChangeCount(context) != changeCount);
+        changeCount = DBReader.getSubscriptionChangeCount(context);
+
+        DBWriter.deleteFeed(context, savedFeed.getId()).get(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(DBReader.getSubscriptionChangeCount(context) != changeCount);
+    }
 }
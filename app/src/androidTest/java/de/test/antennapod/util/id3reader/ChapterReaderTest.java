@@ -0,0 +1,312 @@
+package de.test.antennapod.util.id3reader;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import de.danoeh.antennapod.core.feed.Chapter;
+import de.danoeh.antennapod.core.util.id3reader.ChapterReader;
+import de.danoeh.antennapod.core.util.id3reader.ID3ReaderException;
+
+/**
+ * Test class for ChapterReader. The tags of the corpus are generated, so that every
+ * combination of version, encoding and unsynchronisation is covered.
+ */
+public class ChapterReaderTest extends AndroidTestCase {
+    private static final String TAG = "ChapterReaderTest";
+
+    private static final int ENCODING_ISO = 0;
+    private static final int ENCODING_UTF16_WITH_BOM = 1;
+    private static final int ENCODING_UTF16_WITHOUT_BOM = 2;
+    private static final int ENCODING_UTF8 = 3;
+
+    /**
+     * Creates ID3 tags.
+     */
+    private static class TagBuilder {
+        private final int version;
+        private final boolean unsynchronisation;
+        private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+
+        TagBuilder(int version, boolean unsynchronisation) {
+            this.version = version;
+            this.unsynchronisation = unsynchronisation;
+        }
+
+        TagBuilder chapter(String id, int start, String title, String link, int encoding) throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            data.write(id.getBytes("ISO-8859-1"));
+            data.write(0);
+            writeInt(data, start, false);
+            writeInt(data, start + 1000, false);
+            writeInt(data, -1, false);
+            writeInt(data, -1, false);
+            if (title != null) {
+                data.write(frame("TIT2", text(encoding, title)));
+            }
+            if (link != null) {
+                ByteArrayOutputStream wxxx = new ByteArrayOutputStream();
+                wxxx.write(text(encoding, "description"));
+                wxxx.write(link.getBytes("ISO-8859-1"));
+                data.write(frame("WXXX", wxxx.toByteArray()));
+            }
+            frames.write(frame("CHAP", data.toByteArray()));
+            return this;
+        }
+
+        TagBuilder frame(String id, int size) throws IOException {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                // contains false synchronisations
+                data[i] = (byte) ((i % 2 == 0) ? 0xFF : i);
+            }
+            frames.write(frame(id, data));
+            return this;
+        }
+
+        byte[] build(int padding) throws IOException {
+            byte[] body = frames.toByteArray();
+            boolean tagUnsynchronised = unsynchronisation && version == 3;
+            if (tagUnsynchronised) {
+                body = unsynchronise(body);
+            }
+            ByteArrayOutputStream tag = new ByteArrayOutputStream();
+            tag.write(new byte[]{'I', 'D', '3', (byte) version, 0});
+            tag.write(unsynchronisation ? 0x80 : 0);
+            writeInt(tag, body.length + padding, true);
+            tag.write(body);
+            tag.write(new byte[padding]);
+            return tag.toByteArray();
+        }
+
+        private byte[] frame(String id, byte[] data) throws IOException {
+            int flags = 0;
+            if (unsynchronisation && version == 4) {
+                data = unsynchronise(data);
+                flags = 0x0002;
+            }
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            frame.write(id.getBytes("ISO-8859-1"));
+            writeInt(frame, data.length, version == 4);
+            frame.write(flags >> 8);
+            frame.write(flags);
+            frame.write(data);
+            return frame.toByteArray();
+        }
+
+        private static byte[] text(int encoding, String s) throws UnsupportedEncodingException {
+            String charset;
+            int terminatorLength = 1;
+            switch (encoding) {
+                case ENCODING_UTF16_WITH_BOM:
+                    charset = "UTF-16";
+                    terminatorLength = 2;
+                    break;
+                case ENCODING_UTF16_WITHOUT_BOM:
+                    charset = "UTF-16BE";
+                    terminatorLength = 2;
+                    break;
+                case ENCODING_UTF8:
+                    charset = "UTF-8";
+                    break;
+                default:
+                    charset = "ISO-8859-1";
+            }
+            byte[] string = s.getBytes(charset);
+            byte[] result = new byte[1 + string.length + terminatorLength];
+            result[0] = (byte) encoding;
+            System.arraycopy(string, 0, result, 1, string.length);
+            return result;
+        }
+
+        private static byte[] unsynchronise(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < data.length; i++) {
+                out.write(data[i]);
+                if (data[i] == (byte) 0xFF && (i + 1 == data.length || (data[i + 1] & 0xE0) == 0xE0
+                        || data[i + 1] == 0)) {
+                    out.write(0);
+                }
+            }
+            return out.toByteArray();
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int value, boolean syncSafe) {
+            if (syncSafe) {
+                value = ((value & 0x0FE00000) << 3) | ((value & 0x001FC000) << 2)
+                        | ((value & 0x00003F80) << 1) | (value & 0x0000007F);
+            }
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+    }
+
+    /**
+     * Counts the calls of the read methods.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        int reads;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            reads++;
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            reads++;
+            return super.read(buffer, offset, count);
+        }
+    }
+
+    private List<Chapter> readChapters(byte[] tag) throws IOException, ID3ReaderException {
+        ChapterReader reader = new ChapterReader();
+        reader.readInputStream(new ByteArrayInputStream(tag));
+        return reader.getChapters();
+    }
+
+    private void checkChapters(int version, boolean unsynchronisation, int encoding) throws Exception {
+        final String title = "Chapter äöü";
+        byte[] tag = new TagBuilder(version, unsynchronisation)
+                .frame("TIT2", 20)
+                .frame("APIC", 3000)
+                .chapter("ch1", 0, title + 1, "http://example.com/1", encoding)
+                .chapter("ch2", 0x0FFFFFFF, title + 2, null, encoding)
+                .chapter("ch3", 0x7FFFFFFF, null, "http://example.com/a%20b", encoding)
+                .build(100);
+        String message = "version " + version + ", unsynchronisation " + unsynchronisation
+                + ", encoding " + encoding;
+        List<Chapter> chapters = readChapters(tag);
+        assertNotNull(message, chapters);
+        assertEquals(message, 3, chapters.size());
+        assertEquals(message, 0, chapters.get(0).getStart());
+        assertEquals(message, title + 1, chapters.get(0).getTitle());
+        assertEquals(message, "http://example.com/1", chapters.get(0).getLink());
+        assertEquals(message, 0x0FFFFFFF, chapters.get(1).getStart());
+        assertEquals(message, title + 2, chapters.get(1).getTitle());
+        assertNull(message, chapters.get(1).getLink());
+        assertEquals(message, 0x7FFFFFFF, chapters.get(2).getStart());
+        assertNull(message, chapters.get(2).getTitle());
+        assertEquals(message, "http://example.com/a b", chapters.get(2).getLink());
+    }
+
+    public void testReadChapters() throws Exception {
+        for (int version = 3; version <= 4; version++) {
+            for (int encoding = ENCODING_ISO; encoding <= ENCODING_UTF8; encoding++) {
+                checkChapters(version, false, encoding);
+                checkChapters(version, true, encoding);
+            }
+        }
+    }
+
+    public void testDuplicateChapterIds() throws Exception {
+        byte[] tag = new TagBuilder(3, false)
+                .chapter("ch1", 0, "first", null, ENCODING_ISO)
+                .chapter("ch1", 1000, "second", null, ENCODING_ISO)
+                .build(0);
+        List<Chapter> chapters = readChapters(tag);
+        assertEquals(1, chapters.size());
+        assertEquals("first", chapters.get(0).getTitle());
+    }
+
+    public void testNoTag() throws Exception {
+        byte[] data = new byte[100];
+        ChapterReader reader = new ChapterReader();
+        reader.readInputStream(new ByteArrayInputStream(data));
+        assertNull(reader.getChapters());
+    }
+
+    public void testTruncatedTag() throws Exception {
+        byte[] tag = new TagBuilder(4, false)
+                .chapter("ch1", 0, "title", null, ENCODING_UTF8)
+                .build(0);
+        byte[] truncated = new byte[tag.length - 5];
+        System.arraycopy(tag, 0, truncated, 0, truncated.length);
+        try {
+            readChapters(truncated);
+            fail("Expected ID3ReaderException");
+        } catch (ID3ReaderException e) {
+            // expected
+        }
+    }
+
+    public void testTagSizeExceedsStream() throws Exception {
+        byte[] tag = new TagBuilder(4, false)
+                .chapter("ch1", 0, "title", null, ENCODING_UTF8)
+                .build(0);
+        // the header claims a size of 10 MB
+        tag[6] = 0x05;
+        tag[7] = 0x00;
+        tag[8] = 0x00;
+        tag[9] = 0x00;
+        try {
+            readChapters(tag);
+            fail("Expected ID3ReaderException");
+        } catch (ID3ReaderException e) {
+            // expected
+        }
+    }
+
+    public void testTagLargerThanMaximumIsSkipped() throws Exception {
+        byte[] tag = new TagBuilder(4, false)
+                .chapter("ch1", 0, "title", null, ENCODING_UTF8)
+                .build(0);
+        // the header claims the maximum size of 256 MB
+        tag[6] = 0x7F;
+        tag[7] = 0x7F;
+        tag[8] = 0x7F;
+        tag[9] = 0x7F;
+        assertTrue(readChapters(tag).isEmpty());
+    }
+
+    public void testInvalidFrameSize() throws Exception {
+        byte[] tag = new TagBuilder(3, false)
+                .chapter("ch1", 0, "title", null, ENCODING_ISO)
+                .frame("APIC", 100)
+                .build(0);
+        // the size of the last frame exceeds the tag
+        tag[tag.length - 100 - 10 + 4] = 0x7F;
+        List<Chapter> chapters = readChapters(tag);
+        assertEquals(1, chapters.size());
+    }
+
+    /**
+     * Reads the chapters of a large tag with many chapters and a large picture, as they are
+     * found in long episodes, from an unbuffered stream.
+     */
+    public void testReadLargeTag() throws Exception {
+        final int numChapters = 500;
+        final int runs = 10;
+        TagBuilder builder = new TagBuilder(4, true)
+                .frame("APIC", 2 * 1024 * 1024);
+        for (int i = 0; i < numChapters; i++) {
+            builder.chapter("chp" + i, i * 60000, "Chapter " + i, "http://example.com/" + i, ENCODING_UTF8);
+        }
+        byte[] tag = builder.build(4096);
+
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(tag));
+            ChapterReader reader = new ChapterReader();
+            reader.readInputStream(in);
+            assertEquals(numChapters, reader.getChapters().size());
+            assertTrue("Tag was read with " + in.reads + " calls", in.reads <= 4);
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+        Log.i(TAG, "Reading " + tag.length + " bytes took " + millis + " ms");
+    }
+}
@@ -0,0 +1,159 @@
+package de.test.antennapod.util.playback;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import de.danoeh.antennapod.core.util.playback.Sonic;
+
+/**
+ * Test class for Sonic
+ */
+public class SonicTest extends AndroidTestCase {
+    private static final String TAG = "SonicTest";
+
+    private static final int SAMPLE_RATE = 44100;
+
+    /**
+     * Number of frames that are written at once, the size of a decoded MP3 frame.
+     */
+    private static final int CHUNK_FRAMES = 1152;
+
+    /**
+     * Returns numFrames frames of a signal with a fundamental frequency of frequency Hz and two
+     * overtones, in every channel.
+     */
+    private short[] createSignal(int numFrames, int numChannels, double frequency) {
+        short[] samples = new short[numFrames * numChannels];
+        for (int i = 0; i < numFrames; i++) {
+            double t = 2 * Math.PI * frequency * i / SAMPLE_RATE;
+            short value = (short) (8000 * Math.sin(t) + 4000 * Math.sin(2 * t) + 2000 * Math.sin(3 * t));
+            for (int c = 0; c < numChannels; c++) {
+                samples[i * numChannels + c] = value;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Processes the given signal in chunks and returns the output.
+     */
+    private short[] process(Sonic sonic, short[] input, int numChannels) {
+        int numFrames = input.length / numChannels;
+        short[] chunk = new short[CHUNK_FRAMES * numChannels];
+        short[] output = new short[(int) (numFrames / sonic.getSpeed() * 1.1 + SAMPLE_RATE) * numChannels];
+        int outputFrames = 0;
+        for (int position = 0; position < numFrames; position += CHUNK_FRAMES) {
+            int frames = Math.min(CHUNK_FRAMES, numFrames - position);
+            System.arraycopy(input, position * numChannels, chunk, 0, frames * numChannels);
+            sonic.writeShortToStream(chunk, frames);
+            outputFrames = read(sonic, output, outputFrames, numChannels);
+        }
+        sonic.flushStream();
+        outputFrames = read(sonic, output, outputFrames, numChannels);
+        short[] result = new short[outputFrames * numChannels];
+        System.arraycopy(output, 0, result, 0, result.length);
+        return result;
+    }
+
+    private int read(Sonic sonic, short[] output, int outputFrames, int numChannels) {
+        short[] buffer = new short[CHUNK_FRAMES * numChannels];
+        int frames;
+        while ((frames = sonic.readShortFromStream(buffer, CHUNK_FRAMES)) > 0) {
+            System.arraycopy(buffer, 0, output, outputFrames * numChannels, frames * numChannels);
+            outputFrames += frames;
+        }
+        return outputFrames;
+    }
+
+    private void checkOutputLength(float speed, int numChannels) {
+        final int numFrames = 10 * SAMPLE_RATE;
+        Sonic sonic = new Sonic(SAMPLE_RATE, numChannels);
+        sonic.setSpeed(speed);
+        short[] output = process(sonic, createSignal(numFrames, numChannels, 150), numChannels);
+        int expected = (int) (numFrames / speed);
+        int actual = output.length / numChannels;
+        assertTrue("Expected about " + expected + " frames at speed " + speed + ", got " + actual,
+                Math.abs(expected - actual) < expected * 0.02);
+    }
+
+    public void testSpeedOneIsIdentity() {
+        short[] input = createSignal(SAMPLE_RATE, 2, 150);
+        short[] output = process(new Sonic(SAMPLE_RATE, 2), input, 2);
+        assertEquals(input.length, output.length);
+        for (int i = 0; i < input.length; i++) {
+            assertEquals(input[i], output[i]);
+        }
+    }
+
+    public void testOutputLengthMono() {
+        checkOutputLength(0.5f, 1);
+        checkOutputLength(0.75f, 1);
+        checkOutputLength(1.5f, 1);
+        checkOutputLength(2.0f, 1);
+        checkOutputLength(3.0f, 1);
+    }
+
+    public void testOutputLengthStereo() {
+        checkOutputLength(0.5f, 2);
+        checkOutputLength(0.75f, 2);
+        checkOutputLength(1.5f, 2);
+        checkOutputLength(2.0f, 2);
+        checkOutputLength(3.0f, 2);
+    }
+
+    public void testPitchIsPreserved() {
+        final double frequency = 200;
+        Sonic sonic = new Sonic(SAMPLE_RATE, 1);
+        sonic.setSpeed(2.0f);
+        short[] output = process(sonic, createSignal(10 * SAMPLE_RATE, 1, frequency), 1);
+
+        // the fundamental frequency has one rising zero crossing per period
+        int crossings = 0;
+        for (int i = 1; i < output.length; i++) {
+            if (output[i - 1] < 0 && output[i] >= 0) {
+                crossings++;
+            }
+        }
+        double measured = crossings * (double) SAMPLE_RATE / output.length;
+        assertTrue("Expected a frequency of about " + frequency + " Hz, got " + measured,
+                Math.abs(measured - frequency) < frequency * 0.05);
+    }
+
+    public void testClear() {
+        Sonic sonic = new Sonic(SAMPLE_RATE, 2);
+        sonic.setSpeed(1.5f);
+        short[] input = createSignal(SAMPLE_RATE, 2, 150);
+        sonic.writeShortToStream(input, SAMPLE_RATE);
+        assertTrue(sonic.samplesAvailable() > 0);
+        sonic.clear();
+        assertEquals(0, sonic.samplesAvailable());
+        assertEquals(0, sonic.getBufferedInputFrames());
+    }
+
+    /**
+     * Processing must be considerably faster than real time on a single core, the player
+     * time-stretches while it decodes.
+     */
+    public void testRealTimeFactor() {
+        final int seconds = 60;
+        final int numChannels = 2;
+        short[] input = createSignal(seconds * SAMPLE_RATE, numChannels, 120);
+        short[] chunk = new short[CHUNK_FRAMES * numChannels];
+        short[] output = new short[CHUNK_FRAMES * numChannels];
+
+        for (float speed : new float[]{0.75f, 1.5f, 2.5f}) {
+            Sonic sonic = new Sonic(SAMPLE_RATE, numChannels);
+            sonic.setSpeed(speed);
+            long start = System.nanoTime();
+            for (int position = 0; position + CHUNK_FRAMES <= seconds * SAMPLE_RATE; position += CHUNK_FRAMES) {
+                System.arraycopy(input, position * numChannels, chunk, 0, chunk.length);
+                sonic.writeShortToStream(chunk, CHUNK_FRAMES);
+                while (sonic.readShortFromStream(output, CHUNK_FRAMES) > 0) ;
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            double realTimeFactor = elapsed / seconds;
+            Log.i(TAG, "Real-time factor at speed " + speed + ": " + realTimeFactor);
+            assertTrue("Real-time factor at speed " + speed + " was " + realTimeFactor, realTimeFactor < 0.5);
+        }
+    }
+}
@@ -90,6 +90,24 @@ public class TimelineTest extends InstrumentationTestCase {
         checkLinkCorrect(res, new long[]{time}, new String[]{timeStr});
     }
 
+    public void testProcessShownotesCached() throws Exception {
+        final String timeStr = "10:11";
+        final long time = 3600 * 1000 * 10 + 60 * 1000 * 11;
+        final String shownotes = "<p> Some test text with a timecode " + timeStr + " here.</p>";
+
+        Timeline t = new Timeline(context, newTestPlayable(null, shownotes));
+        String first = t.processShownotes(true);
+        t = new Timeline(context, newTestPlayable(null, shownotes));
+        String second = t.processShownotes(true);
+        assertEquals(first, second);
+        checkLinkCorrect(second, new long[]{time}, new String[]{timeStr});
+
+        // without timecodes, the cached result must not be used
+        String withoutTimecodes = t.processShownotes(false);
+        assertNotNull(withoutTimecodes);
+        assertTrue(Jsoup.parse(withoutTimecodes).body().getElementsByTag("a").isEmpty());
+    }
+
     private void checkLinkCorrect(String res, long[] timecodes, String[] timecodeStr) {
         assertNotNull(res);
         Document d = Jsoup.parse(res);
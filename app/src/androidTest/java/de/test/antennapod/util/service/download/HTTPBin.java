@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import de.danoeh.antennapod.BuildConfig;
@@ -46,6 +47,7 @@ public class HTTPBin extends NanoHTTPD {
     private static final String MIME_PLAIN = "text/plain";
 
     private List<File> servedFiles;
+    private final AtomicInteger requestCount = new AtomicInteger();
 
     public HTTPBin() {
         super(PORT);
@@ -71,6 +73,13 @@ public class HTTPBin extends NanoHTTPD {
         return servedFiles.size() - 1;
     }
 
+    /**
+     * Returns the number of requests that the server has received so far.
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
     /**
      * Removes the file with the given ID from the server.
      *
@@ -95,6 +104,7 @@ public class HTTPBin extends NanoHTTPD {
 
     @Override
     public Response serve(IHTTPSession session) {
+        requestCount.incrementAndGet();
 
         if (BuildConfig.DEBUG) Log.d(TAG, "Requested url: " + session.getUri());
 
@@ -7,6 +7,7 @@ import de.danoeh.antennapod.core.asynctask.PicassoProvider;
 import de.danoeh.antennapod.core.feed.EventDistributor;
 import de.danoeh.antennapod.core.preferences.PlaybackPreferences;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
+import de.danoeh.antennapod.core.storage.MediaMetadataIndexer;
 import de.danoeh.antennapod.spa.SPAUtil;
 
 /** Main application class. */
@@ -41,6 +42,7 @@ public class PodcastApp extends Application {
 		UserPreferences.createInstance(this);
 		PlaybackPreferences.createInstance(this);
 		EventDistributor.getInstance();
+		MediaMetadataIndexer.indexAsync(this);
 
         SPAUtil.sendSPAppsQueryFeedsIntent(this);
 	}
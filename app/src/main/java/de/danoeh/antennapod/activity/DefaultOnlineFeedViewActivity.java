@@ -25,7 +25,9 @@ import org.jsoup.examples.HtmlToPlainText;
 import org.jsoup.nodes.Document;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,13 @@ public class DefaultOnlineFeedViewActivity extends OnlineFeedViewActivity {
     private Feed feed;
     private String selectedDownloadUrl;
 
+    /**
+     * Descriptions of the shown items without HTML. The items themselves are not modified because
+     * the parsed feed might be saved when the user subscribes to it.
+     */
+    private final Map<FeedItem, String> plainDescriptions =
+            Collections.synchronizedMap(new IdentityHashMap<FeedItem, String>());
+
     private Button subscribeButton;
 
     @Override
@@ -91,9 +100,9 @@ public class DefaultOnlineFeedViewActivity extends OnlineFeedViewActivity {
         if (feed.getItems() != null) {
             HtmlToPlainText formatter = new HtmlToPlainText();
             for (FeedItem item : feed.getItems()) {
-                if (item.getDescription() != null) {
+                if (item.getDescription() != null && !plainDescriptions.containsKey(item)) {
                     Document description = Jsoup.parse(item.getDescription());
-                    item.setDescription(StringUtils.trim(formatter.getPlainText(description)));
+                    plainDescriptions.put(item, StringUtils.trim(formatter.getPlainText(description)));
                 }
             }
         }
@@ -102,6 +111,14 @@ public class DefaultOnlineFeedViewActivity extends OnlineFeedViewActivity {
     @Override
     protected void showFeedInformation(final Feed feed, final Map<String, String> alternateFeedUrls) {
         super.showFeedInformation(feed, alternateFeedUrls);
+        // keep the scroll position if a preview is replaced by the complete feed
+        ListView oldListView = (ListView) findViewById(R.id.listview);
+        int firstVisiblePosition = 0;
+        int firstVisibleTop = 0;
+        if (oldListView != null && oldListView.getChildCount() > 0) {
+            firstVisiblePosition = oldListView.getFirstVisiblePosition();
+            firstVisibleTop = oldListView.getChildAt(0).getTop();
+        }
         setContentView(R.layout.listview_activity);
 
         this.feed = feed;
@@ -113,7 +130,8 @@ public class DefaultOnlineFeedViewActivity extends OnlineFeedViewActivity {
         View header = inflater.inflate(R.layout.onlinefeedview_header, listView, false);
         listView.addHeaderView(header);
 
-        listView.setAdapter(new FeedItemlistDescriptionAdapter(this, 0, feed.getItems()));
+        listView.setAdapter(new FeedItemlistDescriptionAdapter(this, 0, feed.getItems(), plainDescriptions));
+        listView.setSelectionFromTop(firstVisiblePosition, firstVisibleTop);
 
         ImageView cover = (ImageView) header.findViewById(R.id.imgvCover);
         TextView title = (TextView) header.findViewById(R.id.txtvTitle);
@@ -137,6 +155,11 @@ public class DefaultOnlineFeedViewActivity extends OnlineFeedViewActivity {
         subscribeButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                if (subscribeToParsedFeed(selectedDownloadUrl)) {
+                    subscribeButton.setEnabled(false);
+                    subscribeButton.setText(R.string.subscribed_label);
+                    return;
+                }
                 try {
                     Feed f = new Feed(selectedDownloadUrl, new Date(0), feed.getTitle());
                     f.setPreferences(feed.getPreferences());
@@ -14,13 +14,16 @@ import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.RelativeLayout;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,12 +31,15 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.core.feed.Feed;
+import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.feed.FeedPreferences;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
 import de.danoeh.antennapod.core.service.download.DownloadRequest;
 import de.danoeh.antennapod.core.service.download.DownloadStatus;
 import de.danoeh.antennapod.core.service.download.Downloader;
+import de.danoeh.antennapod.core.service.download.DownloadingFileInputStream;
 import de.danoeh.antennapod.core.service.download.HttpDownloader;
+import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.syndication.handler.FeedHandler;
 import de.danoeh.antennapod.core.syndication.handler.FeedHandlerResult;
 import de.danoeh.antennapod.core.syndication.handler.UnsupportedFeedtypeException;
@@ -49,6 +55,11 @@ import de.danoeh.antennapod.dialog.AuthenticationDialog;
  * feed object that was parsed. This activity MUST be started with a given URL
  * or an Exception will be thrown.
  * <p/>
+ * The feed is parsed while it is being downloaded. As soon as the first items
+ * have been parsed, a preview is shown which is replaced by the complete feed
+ * once the download has finished. The parsed feed is kept, so subscribing to it
+ * doesn't require downloading it again, see {@link #subscribeToParsedFeed(String)}.
+ * <p/>
  * If the feed cannot be downloaded or parsed, an error dialog will be displayed
  * and the activity will finish as soon as the error dialog is closed.
  */
@@ -63,10 +74,21 @@ public abstract class OnlineFeedViewActivity extends ActionBarActivity {
 
     public static final int RESULT_ERROR = 2;
 
+    /**
+     * Number of parsed items after which a preview of the feed is shown.
+     */
+    private static final int PREVIEW_ITEM_COUNT = 15;
+
     private Feed feed;
     private Map<String, String> alternateFeedUrls;
     private Downloader downloader;
 
+    /**
+     * Result of parsing the feed while it was downloaded or null if parsing failed or hasn't finished yet.
+     */
+    private volatile FeedHandlerResult parsedFeed;
+    private volatile boolean previewShown;
+
     private boolean isPaused;
 
     @Override
@@ -149,7 +171,11 @@ public abstract class OnlineFeedViewActivity extends ActionBarActivity {
                 if (status != null) {
                     if (!status.isCancelled()) {
                         if (status.isSuccessful()) {
-                            parseFeed();
+                            if (parsedFeed != null) {
+                                showParsedFeed();
+                            } else {
+                                parseFeed();
+                            }
                         } else if (status.getReason() == DownloadError.ERROR_UNAUTHORIZED) {
                             if (!isFinishing() && !isPaused) {
                                 Dialog dialog = new FeedViewAuthenticationDialog(OnlineFeedViewActivity.this,
@@ -185,19 +211,146 @@ public abstract class OnlineFeedViewActivity extends ActionBarActivity {
         String fileUrl = new File(getExternalCacheDir(),
                 FileNameGenerator.generateFileName(feed.getDownload_url())).toString();
         feed.setFile_url(fileUrl);
+        // the parser must not read a file that is left over from a previous download
+        new File(fileUrl).delete();
         final DownloadRequest request = new DownloadRequest(feed.getFile_url(),
                 feed.getDownload_url(), "OnlineFeed", 0, Feed.FEEDFILETYPE_FEED, username, password, true, null);
         downloader = new HttpDownloader(request);
+        parsedFeed = null;
+        previewShown = false;
+        final Feed streamedFeed = feed;
         new Thread() {
             @Override
             public void run() {
                 loadData();
+                Thread parserThread = startStreamingParser(downloader, streamedFeed);
                 downloader.call();
+                try {
+                    parserThread.join();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
                 onDownloadCompleted(downloader);
             }
         }.start();
+    }
 
+    /**
+     * Starts a thread that parses the feed while the downloader is writing it. If parsing fails, the
+     * feed is parsed again from the downloaded file, which also detects HTML pages.
+     */
+    private Thread startStreamingParser(final Downloader downloader, final Feed feed) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                InputStream in = new DownloadingFileInputStream(downloader);
+                try {
+                    FeedHandlerResult result = new FeedHandler().parseFeed(feed, in, new FeedHandler.ItemListener() {
+                        @Override
+                        public void onItemParsed(Feed feed, List<FeedItem> items) {
+                            if (!previewShown && items.size() >= PREVIEW_ITEM_COUNT) {
+                                previewShown = true;
+                                showPreview(feed, items);
+                            }
+                        }
+                    });
+                    if (downloader.getResult() != null && downloader.getResult().isSuccessful()) {
+                        parsedFeed = result;
+                    }
+                } catch (SAXException e) {
+                    Log.d(TAG, "Could not parse feed while downloading: " + e.getMessage());
+                } catch (IOException e) {
+                    Log.d(TAG, "Could not parse feed while downloading: " + e.getMessage());
+                } catch (ParserConfigurationException e) {
+                    e.printStackTrace();
+                } catch (UnsupportedFeedtypeException e) {
+                    Log.d(TAG, "Could not parse feed while downloading: " + e.getMessage());
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
 
+    /**
+     * Shows the first items of a feed that is still being parsed. Called on the parser thread.
+     */
+    private void showPreview(Feed feed, List<FeedItem> items) {
+        Log.d(TAG, "Showing preview with " + items.size() + " items");
+        final Feed preview = new Feed(feed.getDownload_url(), feed.getLastUpdate(), feed.getTitle());
+        preview.setAuthor(feed.getAuthor());
+        preview.setDescription(feed.getDescription());
+        preview.setImage(feed.getImage());
+        preview.setPreferences(feed.getPreferences());
+        preview.setItems(new ArrayList<FeedItem>(items));
+        final Map<String, String> noAlternateUrls = new HashMap<String, String>();
+        beforeShowFeedInformation(preview, noAlternateUrls);
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinishing()) {
+                    showFeedInformation(preview, noAlternateUrls);
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows the feed that has been parsed while it was downloaded.
+     */
+    private void showParsedFeed() {
+        final FeedHandlerResult result = parsedFeed;
+        feed = result.feed;
+        alternateFeedUrls = result.alternateFeedUrls;
+        boolean rc = new File(feed.getFile_url()).delete();
+        Log.d(TAG, "Deleted feed source file. Result: " + rc);
+        new Thread() {
+            @Override
+            public void run() {
+                beforeShowFeedInformation(result.feed, result.alternateFeedUrls);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showFeedInformation(result.feed, result.alternateFeedUrls);
+                    }
+                });
+            }
+        }.start();
+    }
+
+    /**
+     * Subscribes to the feed that has been parsed for showing it, if it has been downloaded from the
+     * given URL. This method must be called on the GUI thread.
+     *
+     * @return false if the feed has not been parsed completely or has been downloaded from another URL.
+     * In this case, the feed has to be downloaded again.
+     */
+    protected boolean subscribeToParsedFeed(String downloadUrl) {
+        final FeedHandlerResult result = parsedFeed;
+        if (result == null || !StringUtils.equals(downloadUrl, result.feed.getDownload_url())) {
+            return false;
+        }
+        parsedFeed = null;
+        final Feed feed = result.feed;
+        FeedPreferences prefs = feed.getPreferences();
+        if (prefs != null) {
+            feed.setPreferences(new FeedPreferences(0, true, prefs.getUsername(), prefs.getPassword()));
+        } else {
+            feed.setPreferences(new FeedPreferences(0, true, null, null));
+        }
+        feed.setFile_url(null);
+        feed.setDownloaded(true);
+        feed.setLastUpdate(new Date());
+        final Context context = getApplicationContext();
+        new Thread() {
+            @Override
+            public void run() {
+                DBTasks.addParsedFeed(context, feed);
+            }
+        }.start();
+        return true;
     }
 
     /**
@@ -2,12 +2,21 @@ package de.danoeh.antennapod.adapter;
 
 import android.content.res.Resources;
 import android.view.View;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import java.util.List;
+
 import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.feed.FeedMedia;
+import de.danoeh.antennapod.core.service.download.DownloadRequest;
+import de.danoeh.antennapod.core.service.download.Downloader;
 import de.danoeh.antennapod.core.util.Converter;
+import de.danoeh.antennapod.core.util.FeedItemListDiff;
+import de.danoeh.antennapod.core.util.IntList;
+import de.danoeh.antennapod.core.util.LongList;
 
 /**
  * Utility methods for adapters
@@ -50,4 +59,80 @@ public class AdapterUtils {
                     .getDuration()));
         }
     }
+
+    /**
+     * Applies the result of a FeedItemListDiff to a ListView. If only the content of some items has changed,
+     * only the visible rows of these items are bound again. Otherwise, the whole list is updated.
+     *
+     * @param listView The ListView that displays the items of the adapter.
+     * @param adapter  An adapter that returns the item at the given position in getItem() and binds
+     *                 the item to the given convertView in getView().
+     * @param diff     The result of the comparison. If null, the whole list is updated.
+     * @param displayed The snapshot of the list that is currently displayed by the ListView.
+     *                  If the diff was not calculated against this snapshot, the whole list is updated.
+     */
+    public static void applyDiff(ListView listView, BaseAdapter adapter, FeedItemListDiff diff,
+                                 FeedItemListDiff.Snapshot displayed) {
+        if (diff == null || diff.isStructureChanged() || !diff.isBasedOn(displayed)) {
+            adapter.notifyDataSetChanged();
+            return;
+        }
+        IntList positions = diff.getChangedPositions();
+        for (int i = 0; i < positions.size(); i++) {
+            rebindRow(listView, adapter, positions.get(i));
+        }
+    }
+
+    /**
+     * Binds the visible rows of all items whose media is downloaded by one of the given downloaders again.
+     *
+     * @param downloaders         The current downloads. Might be null.
+     * @param previousDownloaders The downloads at the time of the last update. Rows of downloads that are not
+     *                            running anymore are also updated. Might be null.
+     */
+    public static void updateDownloadingRows(ListView listView, BaseAdapter adapter,
+                                             List<Downloader> downloaders,
+                                             List<Downloader> previousDownloaders) {
+        LongList mediaIds = new LongList();
+        addMediaIds(mediaIds, downloaders);
+        addMediaIds(mediaIds, previousDownloaders);
+        if (mediaIds.size() == 0) {
+            return;
+        }
+        final int first = listView.getFirstVisiblePosition() - listView.getHeaderViewsCount();
+        final int last = listView.getLastVisiblePosition() - listView.getHeaderViewsCount();
+        for (int position = Math.max(0, first); position <= last && position < adapter.getCount(); position++) {
+            Object item = adapter.getItem(position);
+            if (item instanceof FeedItem && ((FeedItem) item).hasMedia()
+                    && mediaIds.contains(((FeedItem) item).getMedia().getId())) {
+                rebindRow(listView, adapter, position);
+            }
+        }
+    }
+
+    private static void addMediaIds(LongList mediaIds, List<Downloader> downloaders) {
+        if (downloaders == null) {
+            return;
+        }
+        for (Downloader downloader : downloaders) {
+            DownloadRequest request = downloader.getDownloadRequest();
+            if (request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA) {
+                mediaIds.add(request.getFeedfileId());
+            }
+        }
+    }
+
+    /**
+     * Binds the row of the given adapter position again if it is visible.
+     */
+    private static void rebindRow(ListView listView, BaseAdapter adapter, int position) {
+        final int listPosition = position + listView.getHeaderViewsCount();
+        final int index = listPosition - listView.getFirstVisiblePosition();
+        if (index < 0 || index >= listView.getChildCount() || position >= adapter.getCount()) {
+            return;
+        }
+        View row = listView.getChildAt(index);
+        // use the adapter of the ListView, it might wrap the rows (header views, DragSortListView)
+        listView.getAdapter().getView(listPosition, row, listView);
+    }
 }
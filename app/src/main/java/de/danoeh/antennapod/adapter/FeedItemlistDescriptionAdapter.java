@@ -10,14 +10,26 @@ import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.core.feed.FeedItem;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * List adapter for showing a list of FeedItems with their title and description.
  */
 public class FeedItemlistDescriptionAdapter extends ArrayAdapter<FeedItem> {
 
+    private final Map<FeedItem, String> descriptions;
+
     public FeedItemlistDescriptionAdapter(Context context, int resource, List<FeedItem> objects) {
+        this(context, resource, objects, null);
+    }
+
+    /**
+     * @param descriptions Descriptions that are shown instead of the descriptions of the items, may be null.
+     */
+    public FeedItemlistDescriptionAdapter(Context context, int resource, List<FeedItem> objects,
+                                          Map<FeedItem, String> descriptions) {
         super(context, resource, objects);
+        this.descriptions = descriptions;
     }
 
     @Override
@@ -41,8 +53,10 @@ public class FeedItemlistDescriptionAdapter extends ArrayAdapter<FeedItem> {
         }
 
         holder.title.setText(item.getTitle());
-        if (item.getDescription() != null) {
-            holder.description.setText(item.getDescription());
+        String description = (descriptions != null && descriptions.containsKey(item))
+                ? descriptions.get(item) : item.getDescription();
+        if (description != null) {
+            holder.description.setText(description);
         }
 
         return convertView;
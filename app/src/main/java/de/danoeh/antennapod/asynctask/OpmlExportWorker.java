@@ -8,13 +8,14 @@ import android.content.DialogInterface;
 import android.os.AsyncTask;
 import android.util.Log;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 import de.danoeh.antennapod.core.R;
-import de.danoeh.antennapod.core.opml.OpmlWriter;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
 import de.danoeh.antennapod.core.storage.DBReader;
 import de.danoeh.antennapod.core.util.LangUtils;
@@ -44,7 +45,6 @@ public class OpmlExportWorker extends AsyncTask<Void, Void, Void> {
 
     @Override
     protected Void doInBackground(Void... params) {
-        OpmlWriter opmlWriter = new OpmlWriter();
         if (output == null) {
             output = new File(
                     UserPreferences.getDataFolder(context, EXPORT_DIR),
@@ -54,10 +54,10 @@ public class OpmlExportWorker extends AsyncTask<Void, Void, Void> {
                 output.delete();
             }
         }
-        OutputStreamWriter writer = null;
+        Writer writer = null;
         try {
-            writer = new OutputStreamWriter(new FileOutputStream(output), LangUtils.UTF_8);
-            opmlWriter.writeDocument(DBReader.getFeedList(context), writer);
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), LangUtils.UTF_8));
+            DBReader.writeSubscriptionsOpml(context, writer);
         } catch (IOException e) {
             e.printStackTrace();
             exception = e;
@@ -16,7 +16,7 @@ import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
 
 /** Queues items for download in the background. */
-public class OpmlFeedQueuer extends AsyncTask<Void, Void, Void> {
+public class OpmlFeedQueuer extends AsyncTask<Void, Integer, Void> {
 	private Context context;
 	private ProgressDialog progDialog;
 	private int[] selection;
@@ -37,10 +37,17 @@ public class OpmlFeedQueuer extends AsyncTask<Void, Void, Void> {
 		progDialog = new ProgressDialog(context);
 		progDialog.setMessage(context.getString(R.string.processing_label));
 		progDialog.setCancelable(false);
-		progDialog.setIndeterminate(true);
+		progDialog.setIndeterminate(false);
+		progDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+		progDialog.setMax(selection.length);
 		progDialog.show();
 	}
 
+	@Override
+	protected void onProgressUpdate(Integer... values) {
+		progDialog.setProgress(values[0]);
+	}
+
 	@Override
 	protected Void doInBackground(Void... params) {
 		DownloadRequester requester = DownloadRequester.getInstance();
@@ -54,6 +61,7 @@ public class OpmlFeedQueuer extends AsyncTask<Void, Void, Void> {
 			} catch (DownloadRequestException e) {
 				e.printStackTrace();
 			}
+			publishProgress(idx + 1);
 		}
 		return null;
 	}
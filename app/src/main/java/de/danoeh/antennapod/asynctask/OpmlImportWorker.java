@@ -12,11 +12,14 @@ import de.danoeh.antennapod.core.BuildConfig;
 import de.danoeh.antennapod.core.R;
 import de.danoeh.antennapod.core.opml.OpmlElement;
 import de.danoeh.antennapod.core.opml.OpmlReader;
+import de.danoeh.antennapod.core.storage.DBReader;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 public class OpmlImportWorker extends
 		AsyncTask<Void, Void, ArrayList<OpmlElement>> {
@@ -44,9 +47,21 @@ public class OpmlImportWorker extends
             return null;
         }
 
+		// download urls of the subscribed feeds and of the elements that have already been read
+		final Set<String> downloadUrls = new HashSet<String>(DBReader.getFeedListDownloadUrls(context));
+		final ArrayList<OpmlElement> result = new ArrayList<OpmlElement>();
 		OpmlReader opmlReader = new OpmlReader();
 		try {
-            ArrayList<OpmlElement> result = opmlReader.readDocument(mReader);
+			opmlReader.readDocument(mReader, new OpmlReader.Callback() {
+				@Override
+				public void onElementRead(OpmlElement element) {
+					if (downloadUrls.add(element.getXmlUrl())) {
+						result.add(element);
+					} else {
+						Log.d(TAG, "Skipping " + element.getXmlUrl() + ": already subscribed or listed twice");
+					}
+				}
+			});
 			mReader.close();
 			return result;
 		} catch (XmlPullParserException e) {
@@ -14,7 +14,7 @@ public class StorageCallbacksImpl implements StorageCallbacks {
 
     @Override
     public int getDatabaseVersion() {
-        return 16;
+        return 21;
     }
 
     @Override
@@ -181,5 +181,31 @@ public class StorageCallbacksImpl implements StorageCallbacks {
             }
             c.close();
         }
+        if(oldVersion <= 16) {
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER);
+        }
+        if(oldVersion <= 17) {
+            // embedded pictures have not been stored so far, re-index downloaded files
+            db.execSQL("UPDATE " + PodDBAdapter.TABLE_NAME_FEED_MEDIA
+                    + " SET " + PodDBAdapter.KEY_HAS_EMBEDDED_PICTURE + "=-1"
+                    + " WHERE " + PodDBAdapter.KEY_DOWNLOADED + "=1");
+        }
+        if(oldVersion <= 18) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEED_MEDIA
+                    + " ADD COLUMN " + PodDBAdapter.KEY_CHAPTER_SCAN_STATE + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEED_MEDIA
+                    + " ADD COLUMN " + PodDBAdapter.KEY_CHAPTER_SCAN_SIZE + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEED_MEDIA
+                    + " ADD COLUMN " + PodDBAdapter.KEY_CHAPTER_SCAN_MODIFIED + " INTEGER DEFAULT 0");
+        }
+        if(oldVersion <= 19) {
+            db.execSQL(PodDBAdapter.CREATE_INDEX_DOWNLOAD_LOG_FEEDFILE);
+            db.execSQL(PodDBAdapter.CREATE_INDEX_DOWNLOAD_LOG_COMPLETION_DATE);
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDMEDIA_PLAYBACK_COMPLETION_DATE);
+        }
+        if(oldVersion <= 20) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_LAST_CHECK + " INTEGER DEFAULT 0");
+        }
     }
 }
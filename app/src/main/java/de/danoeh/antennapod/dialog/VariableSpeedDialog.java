@@ -8,6 +8,7 @@ import android.content.Intent;
 import android.net.Uri;
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
+import de.danoeh.antennapod.core.util.playback.SonicAudioPlayer;
 
 import java.util.Arrays;
 import java.util.List;
@@ -17,7 +18,8 @@ public class VariableSpeedDialog {
 	}
 
 	public static void showDialog(final Context context) {
-		if (com.aocate.media.MediaPlayer.isPrestoLibraryInstalled(context)) {
+		if (SonicAudioPlayer.isSupported()
+				|| com.aocate.media.MediaPlayer.isPrestoLibraryInstalled(context)) {
 			showSpeedSelectorDialog(context);
 		} else {
 			showGetPluginDialog(context);
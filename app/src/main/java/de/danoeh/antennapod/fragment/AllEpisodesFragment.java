@@ -30,6 +30,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.MainActivity;
+import de.danoeh.antennapod.adapter.AdapterUtils;
 import de.danoeh.antennapod.adapter.AllEpisodesListAdapter;
 import de.danoeh.antennapod.adapter.DefaultActionButtonCallback;
 import de.danoeh.antennapod.core.asynctask.DownloadObserver;
@@ -45,6 +46,7 @@ import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
+import de.danoeh.antennapod.core.util.FeedItemListDiff;
 import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.menuhandler.FeedItemMenuHandler;
 import de.danoeh.antennapod.menuhandler.MenuItemUtils;
@@ -79,6 +81,9 @@ public class AllEpisodesFragment extends Fragment {
     private LongList newItemsIds;
     private List<Downloader> downloaderList;
 
+    private FeedItemListDiff episodesDiff;
+    private FeedItemListDiff.Snapshot displayedSnapshot;
+
     private boolean itemsLoaded = false;
     private boolean viewsCreated = false;
     private final boolean showOnlyNewEpisodes;
@@ -376,8 +381,10 @@ public class AllEpisodesFragment extends Fragment {
             listView.setEmptyView(txtvEmpty);
             downloadObserver = new DownloadObserver(activity.get(), new Handler(), downloadObserverCallback);
             downloadObserver.onResume();
+            displayedSnapshot = null;
         }
-        listAdapter.notifyDataSetChanged();
+        AdapterUtils.applyDiff(listView, listAdapter, episodesDiff, displayedSnapshot);
+        displayedSnapshot = episodesDiff.getSnapshot();
         restoreScrollPosition();
         getActivity().supportInvalidateOptionsMenu();
         updateShowOnlyEpisodesListViewState();
@@ -393,9 +400,10 @@ public class AllEpisodesFragment extends Fragment {
 
         @Override
         public void onDownloadDataAvailable(List<Downloader> downloaderList) {
+            List<Downloader> previousDownloaderList = AllEpisodesFragment.this.downloaderList;
             AllEpisodesFragment.this.downloaderList = downloaderList;
             if (listAdapter != null) {
-                listAdapter.notifyDataSetChanged();
+                AdapterUtils.updateDownloadingRows(listView, listAdapter, downloaderList, previousDownloaderList);
             }
         }
     };
@@ -492,6 +500,8 @@ public class AllEpisodesFragment extends Fragment {
 
     private class ItemLoader extends AsyncTask<Void, Void, Object[]> {
 
+        private final FeedItemListDiff.Snapshot previousSnapshot = displayedSnapshot;
+
         @Override
         protected void onPreExecute() {
             super.onPreExecute();
@@ -506,19 +516,19 @@ public class AllEpisodesFragment extends Fragment {
         protected Object[] doInBackground(Void... params) {
             Context context = activity.get();
             if (context != null) {
+                List<FeedItem> items;
+                LongList queuedIds = DBReader.getQueueIDList(context);
+                LongList newIds;
                 if(showOnlyNewEpisodes) {
-                    return new Object[] {
-                            DBReader.getNewItemsList(context),
-                            DBReader.getQueueIDList(context),
-                            null // see ItemAccess.isNew
-                    };
+                    items = DBReader.getNewItemsList(context);
+                    newIds = null; // see ItemAccess.isNew
                 } else {
-                    return new Object[]{
-                            DBReader.getRecentlyPublishedEpisodes(context, RECENT_EPISODES_LIMIT),
-                            DBReader.getQueueIDList(context),
-                            DBReader.getNewItemIds(context)
-                    };
+                    items = DBReader.getRecentlyPublishedEpisodes(context, RECENT_EPISODES_LIMIT);
+                    newIds = DBReader.getNewItemIds(context);
                 }
+                // compare with the displayed list here so that only changed rows have to be updated
+                FeedItemListDiff diff = FeedItemListDiff.calculate(previousSnapshot, items, queuedIds, newIds);
+                return new Object[]{ items, queuedIds, newIds, diff };
             } else {
                 return null;
             }
@@ -534,6 +544,7 @@ public class AllEpisodesFragment extends Fragment {
                 episodes = (List<FeedItem>) lists[0];
                 queuedItemsIds = (LongList) lists[1];
                 newItemsIds = (LongList) lists[2];
+                episodesDiff = (FeedItemListDiff) lists[3];
                 itemsLoaded = true;
                 if (viewsCreated && activity.get() != null) {
                     onFragmentLoaded();
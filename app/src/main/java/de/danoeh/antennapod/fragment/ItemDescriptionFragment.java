@@ -28,7 +28,6 @@ import android.widget.Toast;
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
-import de.danoeh.antennapod.core.storage.DBReader;
 import de.danoeh.antennapod.core.util.Converter;
 import de.danoeh.antennapod.core.util.IntentUtils;
 import de.danoeh.antennapod.core.util.ShareUtils;
@@ -206,28 +205,12 @@ public class ItemDescriptionFragment extends Fragment {
             shownotesProvider = media;
             startLoader();
         } else if (args.containsKey(ARG_FEEDITEM_ID)) {
-            AsyncTask<Void, Void, FeedItem> itemLoadTask = new AsyncTask<Void, Void, FeedItem>() {
-
-                @Override
-                protected FeedItem doInBackground(Void... voids) {
-                    return DBReader.getFeedItem(getActivity(), getArguments().getLong(ARG_FEEDITEM_ID));
-                }
-
-                @Override
-                protected void onPostExecute(FeedItem feedItem) {
-                    super.onPostExecute(feedItem);
-                    shownotesProvider = feedItem;
-                    startLoader();
-                }
-            };
-            if (android.os.Build.VERSION.SDK_INT > android.os.Build.VERSION_CODES.GINGERBREAD_MR1) {
-                itemLoadTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-            } else {
-                itemLoadTask.execute();
-            }
+            // Only the shownotes of the item are needed, they are loaded by the webViewLoader
+            FeedItem item = new FeedItem();
+            item.setId(args.getLong(ARG_FEEDITEM_ID));
+            shownotesProvider = item;
+            startLoader();
         }
-
-
     }
 
     @Override
@@ -521,9 +521,12 @@ public class ItemFragment extends Fragment implements LoaderManager.LoaderCallba
 
     private EventDistributor.EventListener contentUpdate = new EventDistributor.EventListener() {
         @Override
-        public void update(EventDistributor eventDistributor, Integer arg) {
+        public void update(EventDistributor eventDistributor, Integer arg,
+                           EventDistributor.ChangeSet changes) {
             if ((arg & EVENTS) != 0) {
-                getLoaderManager().restartLoader(0, null, ItemFragment.this);
+                if (item == null || changes.affectsItem(item.getFeedId(), item.getId())) {
+                    getLoaderManager().restartLoader(0, null, ItemFragment.this);
+                }
             }
         }
     };
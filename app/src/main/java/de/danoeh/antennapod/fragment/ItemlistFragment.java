@@ -39,6 +39,7 @@ import java.util.List;
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.FeedInfoActivity;
 import de.danoeh.antennapod.activity.MainActivity;
+import de.danoeh.antennapod.adapter.AdapterUtils;
 import de.danoeh.antennapod.adapter.DefaultActionButtonCallback;
 import de.danoeh.antennapod.adapter.FeedItemlistAdapter;
 import de.danoeh.antennapod.core.asynctask.DownloadObserver;
@@ -59,6 +60,7 @@ import de.danoeh.antennapod.core.storage.DBReader;
 import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
+import de.danoeh.antennapod.core.util.FeedItemListDiff;
 import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.core.util.gui.MoreContentListFooterUtil;
 import de.danoeh.antennapod.menuhandler.FeedItemMenuHandler;
@@ -97,6 +99,9 @@ public class ItemlistFragment extends ListFragment {
     private DownloadObserver downloadObserver;
     private List<Downloader> downloaderList;
 
+    private FeedItemListDiff itemsDiff;
+    private FeedItemListDiff.Snapshot displayedSnapshot;
+
     private MoreContentListFooterUtil listFooter;
 
     private boolean isUpdatingFeed;
@@ -380,13 +385,16 @@ public class ItemlistFragment extends ListFragment {
     private EventDistributor.EventListener contentUpdate = new EventDistributor.EventListener() {
 
         @Override
-        public void update(EventDistributor eventDistributor, Integer arg) {
+        public void update(EventDistributor eventDistributor, Integer arg,
+                           EventDistributor.ChangeSet changes) {
             if ((EVENTS & arg) != 0) {
                 Log.d(TAG, "Received contentUpdate Intent. arg " + arg);
                 if ((EventDistributor.DOWNLOAD_QUEUED & arg) != 0) {
                     updateProgressBarVisibility();
                 } else {
-                    startItemLoader();
+                    if (changes.affectsFeed(feedID)) {
+                        startItemLoader();
+                    }
                     updateProgressBarVisibility();
                 }
             }
@@ -415,10 +423,12 @@ public class ItemlistFragment extends ListFragment {
             setListAdapter(adapter);
             downloadObserver = new DownloadObserver(getActivity(), new Handler(), downloadObserverCallback);
             downloadObserver.onResume();
+            displayedSnapshot = null;
         }
         refreshHeaderView();
         setListShown(true);
-        adapter.notifyDataSetChanged();
+        AdapterUtils.applyDiff(getListView(), adapter, itemsDiff, displayedSnapshot);
+        displayedSnapshot = itemsDiff.getSnapshot();
 
         getActivity().supportInvalidateOptionsMenu();
 
@@ -466,9 +476,10 @@ public class ItemlistFragment extends ListFragment {
 
         @Override
         public void onDownloadDataAvailable(List<Downloader> downloaderList) {
+            List<Downloader> previousDownloaderList = ItemlistFragment.this.downloaderList;
             ItemlistFragment.this.downloaderList = downloaderList;
             if (adapter != null) {
-                adapter.notifyDataSetChanged();
+                AdapterUtils.updateDownloadingRows(getListView(), adapter, downloaderList, previousDownloaderList);
             }
         }
     };
@@ -603,6 +614,9 @@ public class ItemlistFragment extends ListFragment {
     }
 
     private class ItemLoader extends AsyncTask<Long, Void, Object[]> {
+
+        private final FeedItemListDiff.Snapshot previousSnapshot = displayedSnapshot;
+
         @Override
         protected Object[] doInBackground(Long... params) {
             long feedID = params[0];
@@ -615,7 +629,10 @@ public class ItemlistFragment extends ListFragment {
                 }
                 LongList queuedItemsIds = DBReader.getQueueIDList(context);
                 LongList newItemsIds = DBReader.getNewItemIds(context);
-                return new Object[] { feed, queuedItemsIds, newItemsIds };
+                // compare with the displayed list here so that only changed rows have to be updated
+                FeedItemListDiff diff = FeedItemListDiff.calculate(previousSnapshot, feed.getItems(),
+                        queuedItemsIds, newItemsIds);
+                return new Object[] { feed, queuedItemsIds, newItemsIds, diff };
             } else {
                 return null;
             }
@@ -628,6 +645,7 @@ public class ItemlistFragment extends ListFragment {
                 feed = (Feed) res[0];
                 queuedItemsIds = (LongList) res[1];
                 newItemsIds = res[2] == null ? null : (LongList) res[2];
+                itemsDiff = (FeedItemListDiff) res[3];
                 itemsLoaded = true;
                 if (viewsCreated) {
                     onFragmentLoaded();
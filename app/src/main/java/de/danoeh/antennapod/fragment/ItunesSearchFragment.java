@@ -12,16 +12,14 @@ import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.GridView;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.util.EntityUtils;
+import com.squareup.okhttp.Request;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,13 +27,20 @@ import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.DefaultOnlineFeedViewActivity;
 import de.danoeh.antennapod.activity.OnlineFeedViewActivity;
 import de.danoeh.antennapod.adapter.itunes.ItunesAdapter;
+import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
+import de.danoeh.antennapod.core.service.download.PodcastDirectoryClient;
 
 import static de.danoeh.antennapod.adapter.itunes.ItunesAdapter.*;
 
 //Searches iTunes store for given string and displays results in a list
 public class ItunesSearchFragment extends Fragment {
     final String TAG = "ItunesSearchFragment";
+
+    /**
+     * Search requests with this tag supersede each other.
+     */
+    private static final String SEARCH_TAG = "itunes-search";
     /**
      *  Search input field
      */
@@ -51,6 +56,11 @@ public class ItunesSearchFragment extends Fragment {
      */
     private List<Podcast> searchResults;
 
+    /**
+     * Task of the most recent search
+     */
+    private SearchTask searchTask;
+
     /**
      * Replace adapter data with provided search results from SearchTask.
      * @param result List of Podcast objects containing search results
@@ -116,7 +126,11 @@ public class ItunesSearchFragment extends Fragment {
                 //This prevents onQueryTextSubmit() from being called twice when keyboard is used
                 //to submit the query.
                 searchView.clearFocus();
-                new SearchTask(s).execute();
+                if (searchTask != null) {
+                    searchTask.cancel(false);
+                }
+                searchTask = new SearchTask(s);
+                searchTask.execute();
                 return false;
             }
 
@@ -168,15 +182,14 @@ public class ItunesSearchFragment extends Fragment {
         @Override
         protected Void doInBackground(Void... params) {
 
-            //Spaces in the query need to be replaced with '+' character.
-            String formattedUrl = String.format(apiUrl, query).replace(' ', '+');
-
-            HttpClient client = new DefaultHttpClient();
-            HttpGet get = new HttpGet(formattedUrl);
-
             try {
-                HttpResponse response = client.execute(get);
-                String resultString = EntityUtils.toString(response.getEntity());
+                String formattedUrl = String.format(apiUrl, URLEncoder.encode(query, "UTF-8"));
+                Request request = new Request.Builder()
+                        .url(formattedUrl)
+                        .header("User-Agent", ClientConfig.USER_AGENT)
+                        .build();
+                String resultString = PodcastDirectoryClient.getInstance()
+                        .get(request, PodcastDirectoryClient.SEARCH_MAX_AGE, SEARCH_TAG);
                 JSONObject result = new JSONObject(resultString);
                 JSONArray j = result.getJSONArray("results");
 
@@ -196,6 +209,9 @@ public class ItunesSearchFragment extends Fragment {
         @Override
         protected void onPostExecute(Void aVoid) {
             super.onPostExecute(aVoid);
+            if (searchTask == this) {
+                searchTask = null;
+            }
             updateData(taskData);
         }
     }
@@ -30,6 +30,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.MainActivity;
+import de.danoeh.antennapod.adapter.AdapterUtils;
 import de.danoeh.antennapod.adapter.DefaultActionButtonCallback;
 import de.danoeh.antennapod.adapter.QueueListAdapter;
 import de.danoeh.antennapod.core.asynctask.DownloadObserver;
@@ -47,6 +48,7 @@ import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
+import de.danoeh.antennapod.core.util.FeedItemListDiff;
 import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.core.util.QueueSorter;
 import de.danoeh.antennapod.core.util.gui.FeedItemUndoToken;
@@ -79,6 +81,9 @@ public class QueueFragment extends Fragment {
     private List<FeedItem> queue;
     private List<Downloader> downloaderList;
 
+    private FeedItemListDiff queueDiff;
+    private FeedItemListDiff.Snapshot displayedSnapshot;
+
     private boolean itemsLoaded = false;
     private boolean viewsCreated = false;
     private boolean isUpdatingFeeds = false;
@@ -398,6 +403,7 @@ public class QueueFragment extends Fragment {
                 stopItemLoader();
                 final FeedItem item = queue.remove(from);
                 queue.add(to, item);
+                displayedSnapshot = null;
                 listAdapter.notifyDataSetChanged();
                 DBWriter.moveQueueItem(getActivity(), from, to, true);
             }
@@ -461,8 +467,10 @@ public class QueueFragment extends Fragment {
             listView.setAdapter(listAdapter);
             downloadObserver = new DownloadObserver(activity.get(), new Handler(), downloadObserverCallback);
             downloadObserver.onResume();
+            displayedSnapshot = null;
         }
-        listAdapter.notifyDataSetChanged();
+        AdapterUtils.applyDiff(listView, listAdapter, queueDiff, displayedSnapshot);
+        displayedSnapshot = queueDiff.getSnapshot();
 
         restoreScrollPosition();
 
@@ -481,9 +489,10 @@ public class QueueFragment extends Fragment {
 
         @Override
         public void onDownloadDataAvailable(List<Downloader> downloaderList) {
+            List<Downloader> previousDownloaderList = QueueFragment.this.downloaderList;
             QueueFragment.this.downloaderList = downloaderList;
             if (listAdapter != null && !blockDownloadObserverUpdate) {
-                listAdapter.notifyDataSetChanged();
+                AdapterUtils.updateDownloadingRows(listView, listAdapter, downloaderList, previousDownloaderList);
             }
         }
     };
@@ -568,7 +577,12 @@ public class QueueFragment extends Fragment {
         }
     }
 
-    private class ItemLoader extends AsyncTask<Void, Void, List<FeedItem>> {
+    private class ItemLoader extends AsyncTask<Void, Void, FeedItemListDiff> {
+
+        private final FeedItemListDiff.Snapshot previousSnapshot = displayedSnapshot;
+
+        private List<FeedItem> feedItems;
+
         @Override
         protected void onPreExecute() {
             super.onPreExecute();
@@ -580,13 +594,14 @@ public class QueueFragment extends Fragment {
         }
 
         @Override
-        protected void onPostExecute(List<FeedItem> feedItems) {
-            super.onPostExecute(feedItems);
+        protected void onPostExecute(FeedItemListDiff diff) {
+            super.onPostExecute(diff);
             listView.setVisibility(View.VISIBLE);
             progLoading.setVisibility(View.GONE);
 
-            if (feedItems != null) {
+            if (diff != null) {
                 queue = feedItems;
+                queueDiff = diff;
                 itemsLoaded = true;
                 if (viewsCreated && activity.get() != null) {
                     onFragmentLoaded();
@@ -595,10 +610,12 @@ public class QueueFragment extends Fragment {
         }
 
         @Override
-        protected List<FeedItem> doInBackground(Void... params) {
+        protected FeedItemListDiff doInBackground(Void... params) {
             Context context = activity.get();
             if (context != null) {
-                return DBReader.getQueue(context);
+                feedItems = DBReader.getQueue(context);
+                // compare with the displayed list here so that only changed rows have to be updated
+                return FeedItemListDiff.calculate(previousSnapshot, feedItems);
             }
             return null;
         }
@@ -18,6 +18,7 @@ import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.feed.FeedMedia;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
 import de.danoeh.antennapod.core.receiver.MediaButtonReceiver;
+import de.danoeh.antennapod.core.service.playback.PlaybackPositionClock;
 import de.danoeh.antennapod.core.service.playback.PlaybackService;
 import de.danoeh.antennapod.core.service.playback.PlayerStatus;
 import de.danoeh.antennapod.core.storage.DBWriter;
@@ -159,7 +160,10 @@ public class PlayerWidgetService extends Service {
 	}
 
 	private String getProgressString(Playable media) {
-		int position = media.getPosition();
+		int position = PlaybackPositionClock.getInstance().getPosition();
+		if (position == PlaybackPositionClock.INVALID_TIME) {
+			position = media.getPosition();
+		}
 		int duration = media.getDuration();
 		if (position > 0 && duration > 0) {
 			return Converter.getDurationStringLong(position) + " / "
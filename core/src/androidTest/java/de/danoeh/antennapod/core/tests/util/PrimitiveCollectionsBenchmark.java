@@ -0,0 +1,157 @@
+package de.danoeh.antennapod.core.tests.util;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.danoeh.antennapod.core.util.LongList;
+import de.danoeh.antennapod.core.util.LongLongMap;
+import de.danoeh.antennapod.core.util.LongObjectMap;
+import de.danoeh.antennapod.core.util.LongSet;
+
+/**
+ * Compares the primitive collections with the boxed collections they replace in the storage
+ * layer. The keys are sequential, like the IDs of database rows. The timings are logged, the
+ * tests only fail if a primitive collection is much slower than its boxed counterpart.
+ */
+public class PrimitiveCollectionsBenchmark extends AndroidTestCase {
+    private static final String TAG = "PrimitiveCollectionsBenchmark";
+
+    private static final int SIZE = 10000;
+    private static final int RUNS = 20;
+
+    /**
+     * Allowed factor between the primitive and the boxed timings, leaves room for
+     * noise caused by the garbage collector and JIT.
+     */
+    private static final double TOLERANCE = 3.0;
+
+    private static final Object VALUE = new Object();
+
+    private long sink;
+
+    public void testLongLongMap() {
+        long boxed = Long.MAX_VALUE;
+        long primitive = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Map<Long, Long> map = new HashMap<Long, Long>();
+            for (long i = 1; i <= SIZE; i++) {
+                map.put(i, i * 2);
+            }
+            for (long i = 1; i <= 2 * SIZE; i++) {
+                Long value = map.get(i);
+                sink += (value != null) ? value : 0;
+            }
+            boxed = Math.min(boxed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            LongLongMap primitiveMap = new LongLongMap();
+            for (long i = 1; i <= SIZE; i++) {
+                primitiveMap.put(i, i * 2);
+            }
+            for (long i = 1; i <= 2 * SIZE; i++) {
+                sink += primitiveMap.get(i);
+            }
+            primitive = Math.min(primitive, System.nanoTime() - start);
+        }
+        report("LongLongMap", "HashMap<Long, Long>", primitive, boxed);
+    }
+
+    public void testLongObjectMap() {
+        long boxed = Long.MAX_VALUE;
+        long primitive = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Map<Long, Object> map = new HashMap<Long, Object>();
+            for (long i = 1; i <= SIZE; i++) {
+                map.put(i, VALUE);
+            }
+            for (long i = 1; i <= 2 * SIZE; i++) {
+                sink += (map.get(i) != null) ? 1 : 0;
+            }
+            boxed = Math.min(boxed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            LongObjectMap<Object> primitiveMap = new LongObjectMap<Object>();
+            for (long i = 1; i <= SIZE; i++) {
+                primitiveMap.put(i, VALUE);
+            }
+            for (long i = 1; i <= 2 * SIZE; i++) {
+                sink += (primitiveMap.get(i) != null) ? 1 : 0;
+            }
+            primitive = Math.min(primitive, System.nanoTime() - start);
+        }
+        report("LongObjectMap", "HashMap<Long, Object>", primitive, boxed);
+    }
+
+    public void testLongSet() {
+        long boxed = Long.MAX_VALUE;
+        long primitive = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Set<Long> set = new HashSet<Long>();
+            for (long i = 1; i <= SIZE; i++) {
+                set.add(i % 100);
+            }
+            for (long i = 1; i <= SIZE; i++) {
+                sink += set.contains(i) ? 1 : 0;
+            }
+            boxed = Math.min(boxed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            LongSet primitiveSet = new LongSet();
+            for (long i = 1; i <= SIZE; i++) {
+                primitiveSet.add(i % 100);
+            }
+            for (long i = 1; i <= SIZE; i++) {
+                sink += primitiveSet.contains(i) ? 1 : 0;
+            }
+            primitive = Math.min(primitive, System.nanoTime() - start);
+        }
+        report("LongSet", "HashSet<Long>", primitive, boxed);
+    }
+
+    public void testSortedLongList() {
+        long boxed = Long.MAX_VALUE;
+        long primitive = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            List<Long> list = new ArrayList<Long>();
+            for (long i = SIZE; i > 0; i--) {
+                list.add(i * 3);
+            }
+            Collections.sort(list);
+            for (long i = 1; i <= SIZE; i++) {
+                sink += Collections.binarySearch(list, i);
+            }
+            boxed = Math.min(boxed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            LongList primitiveList = new LongList();
+            for (long i = SIZE; i > 0; i--) {
+                primitiveList.add(i * 3);
+            }
+            primitiveList.sort();
+            for (long i = 1; i <= SIZE; i++) {
+                sink += primitiveList.binarySearch(i);
+            }
+            primitive = Math.min(primitive, System.nanoTime() - start);
+        }
+        report("LongList", "ArrayList<Long>", primitive, boxed);
+    }
+
+    private void report(String primitiveName, String boxedName, long primitiveNanos, long boxedNanos) {
+        Log.i(TAG, primitiveName + ": " + primitiveNanos / 1000 + " us, "
+                + boxedName + ": " + boxedNanos / 1000 + " us (" + sink + ")");
+        assertTrue(primitiveName + " took " + primitiveNanos + " ns, " + boxedName + " took " + boxedNanos + " ns",
+                primitiveNanos < boxedNanos * TOLERANCE);
+    }
+}
@@ -0,0 +1,172 @@
+package de.danoeh.antennapod.core.tests.util;
+
+import android.test.AndroidTestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import de.danoeh.antennapod.core.util.LongIntMap;
+import de.danoeh.antennapod.core.util.LongList;
+import de.danoeh.antennapod.core.util.LongLongMap;
+import de.danoeh.antennapod.core.util.LongObjectMap;
+import de.danoeh.antennapod.core.util.LongSet;
+
+/**
+ * Test class for LongLongMap, LongObjectMap, LongSet and the sorted operations of LongList
+ * and LongIntMap. Random operations are compared with the boxed collections of java.util.
+ */
+public class PrimitiveCollectionsTest extends AndroidTestCase {
+
+    private static final int NUM_OPERATIONS = 20000;
+
+    public void testLongLongMapEmpty() {
+        LongLongMap map = new LongLongMap();
+        assertEquals(0, map.size());
+        assertEquals("LongLongMap{}", map.toString());
+        assertEquals(0, map.get(42));
+        assertEquals(-1, map.get(42, -1));
+        assertFalse(map.containsKey(42));
+        assertFalse(map.remove(42));
+        assertEquals(0, map.keys().length);
+    }
+
+    public void testLongLongMapZeroKey() {
+        LongLongMap map = new LongLongMap();
+        map.put(0, 17);
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey(0));
+        assertEquals(17, map.get(0, -1));
+        assertEquals("LongLongMap{0=17}", map.toString());
+        assertTrue(map.remove(0));
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(0, -1));
+    }
+
+    public void testLongLongMapRandomOperations() {
+        Random random = new Random(42);
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (int i = 0; i < NUM_OPERATIONS; i++) {
+            // a small key range so that keys are overwritten and removed
+            long key = random.nextInt(2000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                long value = random.nextLong();
+                expected.put(key, value);
+                map.put(key, value);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = -100; key < 1900; key++) {
+            Long value = expected.get(key);
+            assertEquals(value != null, map.containsKey(key));
+            assertEquals(value != null ? value : -1, map.get(key, -1));
+        }
+        long[] keys = map.keys();
+        assertEquals(expected.size(), keys.length);
+        for (long key : keys) {
+            assertTrue(expected.containsKey(key));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(keys[0]));
+    }
+
+    public void testLongObjectMapRandomOperations() {
+        Random random = new Random(23);
+        LongObjectMap<String> map = new LongObjectMap<String>(0);
+        Map<Long, String> expected = new HashMap<Long, String>();
+        for (int i = 0; i < NUM_OPERATIONS; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = Integer.toString(random.nextInt());
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        List<String> values = map.values();
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+    }
+
+    public void testLongSetRandomOperations() {
+        Random random = new Random(17);
+        LongSet set = new LongSet();
+        Set<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < NUM_OPERATIONS; i++) {
+            long value = random.nextInt(2000) - 1000;
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (long value = -1000; value < 1000; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        long[] elements = set.toArray();
+        assertEquals(expected.size(), elements.length);
+        for (long value : elements) {
+            assertTrue(expected.contains(value));
+        }
+    }
+
+    public void testLongSetOf() {
+        LongSet set = LongSet.of(3, 1, 3, 2);
+        assertEquals(3, set.size());
+        assertTrue(set.contains(1));
+        assertTrue(set.contains(2));
+        assertTrue(set.contains(3));
+        assertFalse(set.contains(4));
+    }
+
+    public void testLongListBinarySearch() {
+        LongList list = new LongList();
+        for (long value : new long[]{42, -5, 17, 1000, 0}) {
+            list.add(value);
+        }
+        list.sort();
+        assertEquals("LongList{-5, 0, 17, 42, 1000}", list.toString());
+        assertEquals(0, list.binarySearch(-5));
+        assertEquals(3, list.binarySearch(42));
+        assertEquals(-3, list.binarySearch(1));
+        assertEquals(-6, list.binarySearch(1001));
+        list.insert(2, 5L);
+        assertEquals(2, list.binarySearch(5));
+    }
+
+    public void testLongIntMapKeepsKeysSorted() {
+        Random random = new Random(5);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 2000; i++) {
+            long key = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key) != null, map.delete(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int i = 1; i < map.size(); i++) {
+            assertTrue(map.keyAt(i - 1) < map.keyAt(i));
+        }
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey(), -1));
+        }
+        assertTrue(map.indexOfKey(1000) < 0);
+    }
+}
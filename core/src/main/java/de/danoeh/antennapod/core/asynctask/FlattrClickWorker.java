@@ -6,17 +6,24 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 import android.widget.Toast;
 
 import org.apache.commons.lang3.Validate;
+import org.shredzone.flattr4j.exception.ConnectionException;
 import org.shredzone.flattr4j.exception.FlattrException;
+import org.shredzone.flattr4j.exception.RateLimitExceededException;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.danoeh.antennapod.core.BuildConfig;
 import de.danoeh.antennapod.core.ClientConfig;
@@ -46,8 +53,23 @@ public class FlattrClickWorker extends AsyncTask<Void, Integer, FlattrClickWorke
 
     public static enum ExitCode {EXIT_NORMAL, NO_TOKEN, NO_NETWORK, NO_THINGS}
 
-    private volatile int countFailed = 0;
-    private volatile int countSuccess = 0;
+    /**
+     * Maximum number of things that are flattrd at the same time
+     */
+    private static final int MAX_PARALLEL_CLICKS = 4;
+
+    /**
+     * Maximum number of attempts to flattr a thing if the click fails because of a temporary error
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Delay before the first retry of a click, doubled for every further retry
+     */
+    private static final long RETRY_DELAY_MILLIS = 2000;
+
+    private final AtomicInteger countFailed = new AtomicInteger();
+    private final AtomicInteger countSuccess = new AtomicInteger();
 
     private volatile FlattrThing extraFlattrThing;
 
@@ -106,42 +128,84 @@ public class FlattrClickWorker extends AsyncTask<Void, Integer, FlattrClickWorke
             return ExitCode.NO_THINGS;
         }
 
-        List<Future> dbFutures = new LinkedList<Future>();
-        for (FlattrThing thing : flattrQueue) {
-            if (BuildConfig.DEBUG) Log.d(TAG, "Processing " + thing.getTitle());
+        // the clicks are network bound, so several of them are performed at the same time
+        ExecutorService clickExec = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_CLICKS, flattrQueue.size()),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setPriority(Thread.MIN_PRIORITY);
+                        return t;
+                    }
+                });
+        List<Future<?>> clicks = new ArrayList<Future<?>>(flattrQueue.size());
+        for (final FlattrThing thing : flattrQueue) {
+            clicks.add(clickExec.submit(new Runnable() {
+                @Override
+                public void run() {
+                    flattr(thing);
+                }
+            }));
+        }
+        clickExec.shutdown();
+        for (Future<?> click : clicks) {
+            waitFor(click);
+        }
+
+        // the new status of all things is saved in a single transaction
+        waitFor(DBWriter.setFlattrThingsStatus(context, flattrQueue));
+
+        return ExitCode.EXIT_NORMAL;
+    }
+
+    /**
+     * Flattrs a single thing. Clicks that fail because of a temporary error are retried with an
+     * increasing delay.
+     */
+    private void flattr(FlattrThing thing) {
+        if (BuildConfig.DEBUG) Log.d(TAG, "Processing " + thing.getTitle());
 
+        thing.getFlattrStatus().setUnflattred();  // pop from queue to prevent unflattrable things from getting stuck in flattr queue infinitely
+        long retryDelay = RETRY_DELAY_MILLIS;
+        for (int attempt = 1; ; attempt++) {
             try {
-                thing.getFlattrStatus().setUnflattred();  // pop from queue to prevent unflattrable things from getting stuck in flattr queue infinitely
                 FlattrUtils.clickUrl(context, thing.getPaymentLink());
                 thing.getFlattrStatus().setFlattred();
                 publishProgress(R.string.flattr_click_success);
-                countSuccess++;
-
+                countSuccess.incrementAndGet();
+                return;
             } catch (FlattrException e) {
+                if (attempt < MAX_ATTEMPTS && isTemporary(e)) {
+                    Log.d(TAG, "Flattring " + thing.getTitle() + " failed, retrying in " + retryDelay + " ms: " + e.getMessage());
+                    SystemClock.sleep(retryDelay);
+                    retryDelay *= 2;
+                    continue;
+                }
                 e.printStackTrace();
-                countFailed++;
-                if (countFailed == 1) {
+                if (countFailed.incrementAndGet() == 1) {
                     exception = e;
                 }
-            }
-
-            Future<?> f = DBWriter.setFlattredStatus(context, thing, false);
-            if (f != null) {
-                dbFutures.add(f);
+                return;
             }
         }
+    }
 
-        for (Future f : dbFutures) {
-            try {
-                f.get();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * Returns true if a click that failed with the given exception might succeed later. flattr4j
+     * throws a ConnectionException if the Flattr server could not be reached.
+     */
+    private static boolean isTemporary(FlattrException e) {
+        return e instanceof RateLimitExceededException || e instanceof ConnectionException;
+    }
 
-        return ExitCode.EXIT_NORMAL;
+    private static void waitFor(Future<?> f) {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -149,7 +213,7 @@ public class FlattrClickWorker extends AsyncTask<Void, Integer, FlattrClickWorke
         super.onPostExecute(exitCode);
         switch (exitCode) {
             case EXIT_NORMAL:
-                if (countFailed > 0) {
+                if (countFailed.get() > 0) {
                     postFlattrFailedNotification();
                 }
                 break;
@@ -191,7 +255,7 @@ public class FlattrClickWorker extends AsyncTask<Void, Integer, FlattrClickWorke
     }
 
     private void postFlattrFailedNotification() {
-        if (countFailed == 0) {
+        if (countFailed.get() == 0) {
             return;
         }
 
@@ -199,15 +263,15 @@ public class FlattrClickWorker extends AsyncTask<Void, Integer, FlattrClickWorke
         String title;
         String subtext;
 
-        if (countFailed == 1) {
+        if (countFailed.get() == 1) {
             title = context.getString(R.string.flattrd_failed_label);
             String exceptionMsg = (exception.getMessage() != null) ? exception.getMessage() : "";
             subtext = context.getString(R.string.flattr_click_failure, extraFlattrThing.getTitle())
                     + "\n" + exceptionMsg;
         } else {
             title = context.getString(R.string.flattrd_label);
-            subtext = context.getString(R.string.flattr_click_success_count, countSuccess) + "\n"
-                    + context.getString(R.string.flattr_click_failure_count, countFailed);
+            subtext = context.getString(R.string.flattr_click_success_count, countSuccess.get()) + "\n"
+                    + context.getString(R.string.flattr_click_failure_count, countFailed.get());
         }
 
         Notification notification = new NotificationCompat.Builder(context)
@@ -4,7 +4,6 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.text.TextUtils;
 import android.util.Log;
@@ -23,7 +22,7 @@ import com.squareup.picasso.Transformation;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
@@ -42,6 +41,12 @@ public class PicassoProvider {
 
     private static final boolean DEBUG = false;
 
+    /**
+     * Size of the HTTP cache for images that have not been downloaded by the DownloadService.
+     */
+    private static final long HTTP_CACHE_SIZE = 20 * 1024 * 1024;
+    private static final String HTTP_CACHE_DIRECTORY = "picasso-http";
+
     private static ExecutorService executorService;
     private static Cache memoryCache;
 
@@ -52,6 +57,9 @@ public class PicassoProvider {
         return executorService;
     }
 
+    /**
+     * Returns the memory cache. Its size is limited by the number of bytes of the cached bitmaps.
+     */
     private static synchronized Cache getMemoryCache(Context context) {
         if (memoryCache == null) {
             memoryCache = new LruCache(context);
@@ -67,10 +75,13 @@ public class PicassoProvider {
         }
         OkHttpClient client = new OkHttpClient();
         client.interceptors().add(new BasicAuthenticationInterceptor(appContext));
+        client.setCache(new com.squareup.okhttp.Cache(
+                new File(appContext.getCacheDir(), HTTP_CACHE_DIRECTORY), HTTP_CACHE_SIZE));
         Picasso picasso = new Picasso.Builder(appContext)
                 .indicatorsEnabled(DEBUG)
                 .loggingEnabled(DEBUG)
                 .downloader(new OkHttpDownloader(client))
+                .addRequestHandler(new ThumbnailRequestHandler(appContext))
                 .addRequestHandler(new MediaRequestHandler(appContext))
                 .executor(getExecutorService())
                 .memoryCache(getMemoryCache(appContext))
@@ -128,6 +139,35 @@ public class PicassoProvider {
         }
     }
 
+    /**
+     * Loads small versions of local image files from the {@link ThumbnailCache}. Requests for
+     * larger sizes are handled by Picasso's default file handler.
+     */
+    private static class ThumbnailRequestHandler extends RequestHandler {
+
+        final Context context;
+
+        public ThumbnailRequestHandler(Context context) {
+            super();
+            this.context = context;
+        }
+
+        @Override
+        public boolean canHandleRequest(Request data) {
+            return StringUtils.equals(data.uri.getScheme(), ContentResolver.SCHEME_FILE)
+                    && ThumbnailCache.isThumbnailSize(data.targetWidth, data.targetHeight);
+        }
+
+        @Override
+        public Result load(Request data, int networkPolicy) throws IOException {
+            File image = new File(data.uri.getPath());
+            File thumbnail = ThumbnailCache.getThumbnail(context, image);
+            Bitmap bitmap = MediaRequestHandler.decodeStreamFromFile(context, data,
+                    Uri.fromFile(thumbnail != null ? thumbnail : image));
+            return new Result(bitmap, Picasso.LoadedFrom.DISK);
+        }
+    }
+
     private static class MediaRequestHandler extends RequestHandler {
 
         final Context context;
@@ -145,20 +185,16 @@ public class PicassoProvider {
         @Override
         public Result load(Request data, int networkPolicy) throws IOException {
             Bitmap bitmap = null;
-            MediaMetadataRetriever mmr = null;
-            try {
-                mmr = new MediaMetadataRetriever();
-                mmr.setDataSource(data.uri.getPath());
-                byte[] image = mmr.getEmbeddedPicture();
-                if (image != null) {
-                    bitmap = decodeStreamFromByteArray(data, image);
-                }
-            } catch (RuntimeException e) {
-                Log.e(TAG, "Failed to decode image in media file", e);
-            } finally {
-                if (mmr != null) {
-                    mmr.release();
-                }
+            File media = new File(data.uri.getPath());
+            // the embedded picture is extracted only once and then loaded from the cache
+            File picture;
+            if (ThumbnailCache.isThumbnailSize(data.targetWidth, data.targetHeight)) {
+                picture = ThumbnailCache.getEmbeddedPictureThumbnail(context, media);
+            } else {
+                picture = ThumbnailCache.getEmbeddedPicture(context, media);
+            }
+            if (picture != null) {
+                bitmap = decodeStreamFromFile(context, data, Uri.fromFile(picture));
             }
 
             if (bitmap == null) {
@@ -167,7 +203,7 @@ public class PicassoProvider {
                 String fallbackParam = data.uri.getQueryParameter(PicassoImageResource.PARAM_FALLBACK);
                 if (fallbackParam != null) {
                     Uri fallback = Uri.parse(fallbackParam);
-                    bitmap = decodeStreamFromFile(data, fallback);
+                    bitmap = decodeStreamFromFile(context, data, fallback);
                 }
             }
             return new Result(bitmap, Picasso.LoadedFrom.DISK);
@@ -176,27 +212,7 @@ public class PicassoProvider {
 
         /* Copied/Adapted from Picasso RequestHandler classes  */
 
-        private Bitmap decodeStreamFromByteArray(Request data, byte[] bytes) throws IOException {
-
-            final BitmapFactory.Options options = createBitmapOptions(data);
-            final ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-            in.mark(0);
-            if (requiresInSampleSize(options)) {
-                try {
-                    BitmapFactory.decodeStream(in, null, options);
-                } finally {
-                    in.reset();
-                }
-                calculateInSampleSize(data.targetWidth, data.targetHeight, options, data);
-            }
-            try {
-                return BitmapFactory.decodeStream(in, null, options);
-            } finally {
-                IOUtils.closeQuietly(in);
-            }
-        }
-
-        private Bitmap decodeStreamFromFile(Request data, Uri uri) throws IOException {
+        static Bitmap decodeStreamFromFile(Context context, Request data, Uri uri) throws IOException {
             ContentResolver contentResolver = context.getContentResolver();
             final BitmapFactory.Options options = createBitmapOptions(data);
             if (requiresInSampleSize(options)) {
@@ -217,7 +233,7 @@ public class PicassoProvider {
             }
         }
 
-        private BitmapFactory.Options createBitmapOptions(Request data) {
+        private static BitmapFactory.Options createBitmapOptions(Request data) {
             final boolean justBounds = data.hasSize();
             final boolean hasConfig = data.config != null;
             BitmapFactory.Options options = null;
@@ -0,0 +1,336 @@
+package de.danoeh.antennapod.core.asynctask;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.util.Log;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Stores downsampled versions of downloaded images and the embedded pictures of media files
+ * in the cache directory, so that list views don't have to decode full-size cover images.
+ * <p/>
+ * Cache files are named after the path, the modification date and the size of the original file.
+ * If the original file changes, a new cache file is created and the old one is evicted eventually.
+ * All methods access the disk and must not be called on the GUI thread.
+ */
+public class ThumbnailCache {
+    private static final String TAG = "ThumbnailCache";
+
+    /**
+     * Maximum width and height of a thumbnail in pixels.
+     */
+    public static final int THUMBNAIL_SIZE = 256;
+
+    private static final int JPEG_QUALITY = 90;
+
+    private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+    private static final String ARTWORK_DIRECTORY = "artwork";
+
+    /**
+     * Maximum size of the thumbnail directory in bytes.
+     */
+    private static final long MAX_THUMBNAIL_CACHE_SIZE = 20 * 1024 * 1024;
+
+    /**
+     * Maximum size of the directory for embedded pictures in bytes.
+     */
+    private static final long MAX_ARTWORK_CACHE_SIZE = 20 * 1024 * 1024;
+
+    /**
+     * Number of locks that the cache files are distributed over. A cache file is only created by one
+     * thread at a time, while different files can be created in parallel.
+     */
+    private static final int NUM_LOCKS = 16;
+
+    private static final Object[] locks = new Object[NUM_LOCKS];
+
+    static {
+        for (int i = 0; i < NUM_LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private ThumbnailCache() {
+    }
+
+    /**
+     * Returns true if a request with the given target size can be served with a thumbnail.
+     */
+    public static boolean isThumbnailSize(int targetWidth, int targetHeight) {
+        return targetWidth > 0 && targetHeight > 0
+                && targetWidth <= THUMBNAIL_SIZE && targetHeight <= THUMBNAIL_SIZE;
+    }
+
+    /**
+     * Returns the thumbnail of a downloaded image file. If no thumbnail exists yet, it is created.
+     *
+     * @return The thumbnail file or null if the image could not be decoded.
+     */
+    public static File getThumbnail(Context context, File image) {
+        File thumbnail = getCacheFile(context, THUMBNAIL_DIRECTORY, image, ".thumb");
+        if (thumbnail == null) {
+            return null;
+        }
+        if (thumbnail.exists()) {
+            thumbnail.setLastModified(System.currentTimeMillis());
+            return thumbnail;
+        }
+        synchronized (getLock(thumbnail)) {
+            if (thumbnail.exists()) {
+                return thumbnail;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(image.getAbsolutePath(), options);
+            setSampleSize(options);
+            Bitmap bitmap = BitmapFactory.decodeFile(image.getAbsolutePath(), options);
+            return writeThumbnail(bitmap, thumbnail);
+        }
+    }
+
+    /**
+     * Creates the thumbnail of a downloaded image file if it doesn't exist yet.
+     */
+    public static void createThumbnail(Context context, File image) {
+        if (getThumbnail(context, image) == null) {
+            Log.w(TAG, "Could not create thumbnail of " + image);
+        }
+    }
+
+    /**
+     * Returns the thumbnail of the picture that is embedded in a media file. If no thumbnail exists yet,
+     * it is created.
+     *
+     * @return The thumbnail file or null if the media file has no embedded picture.
+     */
+    public static File getEmbeddedPictureThumbnail(Context context, File media) {
+        File thumbnail = getCacheFile(context, THUMBNAIL_DIRECTORY, media, ".thumb");
+        if (thumbnail == null) {
+            return null;
+        }
+        if (thumbnail.exists()) {
+            thumbnail.setLastModified(System.currentTimeMillis());
+            return thumbnail;
+        }
+        // extracted before the lock of the thumbnail is taken, a thread never holds two locks
+        File picture = getEmbeddedPicture(context, media);
+        if (picture == null) {
+            return null;
+        }
+        synchronized (getLock(thumbnail)) {
+            if (thumbnail.exists()) {
+                return thumbnail;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(picture.getAbsolutePath(), options);
+            setSampleSize(options);
+            Bitmap bitmap = BitmapFactory.decodeFile(picture.getAbsolutePath(), options);
+            return writeThumbnail(bitmap, thumbnail);
+        }
+    }
+
+    /**
+     * Creates the thumbnail of the picture that is embedded in a media file from the given picture data,
+     * which the caller has already read from the media file.
+     *
+     * @return The thumbnail file or null if the picture could not be decoded.
+     */
+    public static File createEmbeddedPictureThumbnail(Context context, File media, byte[] picture) {
+        File thumbnail = getCacheFile(context, THUMBNAIL_DIRECTORY, media, ".thumb");
+        if (thumbnail == null) {
+            return null;
+        }
+        synchronized (getLock(thumbnail)) {
+            if (thumbnail.exists()) {
+                return thumbnail;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(picture, 0, picture.length, options);
+            setSampleSize(options);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(picture, 0, picture.length, options);
+            return writeThumbnail(bitmap, thumbnail);
+        }
+    }
+
+    /**
+     * Returns a file that contains the unmodified picture that is embedded in a media file. The picture
+     * is extracted from the media file only once.
+     *
+     * @return The file or null if the media file has no embedded picture.
+     */
+    public static File getEmbeddedPicture(Context context, File media) {
+        File picture = getCacheFile(context, ARTWORK_DIRECTORY, media, ".art");
+        if (picture == null) {
+            return null;
+        }
+        if (picture.exists()) {
+            picture.setLastModified(System.currentTimeMillis());
+            return picture;
+        }
+        synchronized (getLock(picture)) {
+            if (picture.exists()) {
+                return picture;
+            }
+            return extractEmbeddedPicture(media, picture);
+        }
+    }
+
+    private static File extractEmbeddedPicture(File media, File picture) {
+        byte[] data = null;
+        MediaMetadataRetriever mmr = null;
+        try {
+            mmr = new MediaMetadataRetriever();
+            mmr.setDataSource(media.getAbsolutePath());
+            data = mmr.getEmbeddedPicture();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to extract image of media file", e);
+        } finally {
+            if (mmr != null) {
+                mmr.release();
+            }
+        }
+        if (data == null) {
+            return null;
+        }
+        File tmp = new File(picture.getParentFile(), picture.getName() + ".tmp");
+        try {
+            FileUtils.writeByteArrayToFile(tmp, data);
+            if (!tmp.renameTo(picture)) {
+                FileUtils.deleteQuietly(tmp);
+                return null;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not store embedded picture", e);
+            FileUtils.deleteQuietly(tmp);
+            return null;
+        }
+        trimToSize(picture.getParentFile(), MAX_ARTWORK_CACHE_SIZE);
+        return picture;
+    }
+
+    /**
+     * Returns the lock that must be held while the given cache file is created.
+     */
+    private static Object getLock(File cacheFile) {
+        return locks[(cacheFile.getPath().hashCode() & Integer.MAX_VALUE) % NUM_LOCKS];
+    }
+
+    private static File getCacheFile(Context context, String directory, File source, String extension) {
+        if (source == null || !source.exists()) {
+            return null;
+        }
+        String path = source.getAbsolutePath();
+        String name = Integer.toHexString(path.hashCode()) + "_" + source.lastModified()
+                + "_" + source.length() + extension;
+        return new File(new File(context.getCacheDir(), directory), name);
+    }
+
+    /**
+     * Sets the largest sample size that still results in an image that is at least as large
+     * as a thumbnail.
+     */
+    private static void setSampleSize(BitmapFactory.Options options) {
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= THUMBNAIL_SIZE
+                && options.outHeight / (sampleSize * 2) >= THUMBNAIL_SIZE) {
+            sampleSize *= 2;
+        }
+        options.inSampleSize = sampleSize;
+        options.inJustDecodeBounds = false;
+    }
+
+    private static File writeThumbnail(Bitmap bitmap, File thumbnail) {
+        if (bitmap == null) {
+            return null;
+        }
+        Bitmap scaled = bitmap;
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width > THUMBNAIL_SIZE || height > THUMBNAIL_SIZE) {
+            float factor = Math.min((float) THUMBNAIL_SIZE / width, (float) THUMBNAIL_SIZE / height);
+            scaled = Bitmap.createScaledBitmap(bitmap,
+                    Math.max(1, Math.round(width * factor)),
+                    Math.max(1, Math.round(height * factor)), true);
+            bitmap.recycle();
+        }
+        File directory = thumbnail.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create directory " + directory);
+            scaled.recycle();
+            return null;
+        }
+        File tmp = new File(directory, thumbnail.getName() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            Bitmap.CompressFormat format = scaled.hasAlpha()
+                    ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+            if (!scaled.compress(format, JPEG_QUALITY, out)) {
+                throw new IOException("Could not compress thumbnail");
+            }
+            out.close();
+            out = null;
+            if (!tmp.renameTo(thumbnail)) {
+                throw new IOException("Could not rename " + tmp);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write thumbnail", e);
+            IOUtils.closeQuietly(out);
+            FileUtils.deleteQuietly(tmp);
+            return null;
+        } finally {
+            scaled.recycle();
+        }
+        trimToSize(directory, MAX_THUMBNAIL_CACHE_SIZE);
+        return thumbnail;
+    }
+
+    /**
+     * Deletes the least recently used files until the size of the directory is within the limit.
+     * Temporary files of cache files that are being created by other threads are left alone.
+     */
+    private static synchronized void trimToSize(File directory, long maxSize) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String filename) {
+                return !filename.endsWith(".tmp");
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return (l < r) ? -1 : ((l == r) ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            size -= files[i].length();
+            FileUtils.deleteQuietly(files[i]);
+        }
+    }
+}
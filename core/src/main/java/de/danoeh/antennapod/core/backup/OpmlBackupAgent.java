@@ -11,11 +11,16 @@ import android.util.Log;
 import de.danoeh.antennapod.core.BuildConfig;
 import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
@@ -31,7 +36,6 @@ import java.util.Date;
 import de.danoeh.antennapod.core.feed.Feed;
 import de.danoeh.antennapod.core.opml.OpmlElement;
 import de.danoeh.antennapod.core.opml.OpmlReader;
-import de.danoeh.antennapod.core.opml.OpmlWriter;
 import de.danoeh.antennapod.core.storage.DBReader;
 import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
@@ -63,6 +67,16 @@ public class OpmlBackupAgent extends BackupAgentHelper {
 
         private static final String OPML_ENTITY_KEY = "antennapod-feeds.opml";
 
+        /**
+         * First byte of a state description that contains the subscription change count. Older versions
+         * started with the length of the checksum, which is never 0.
+         */
+        private static final int STATE_VERSION = 0;
+
+        private static final long UNKNOWN_CHANGE_COUNT = -1;
+
+        private static final int BUFFER_SIZE = 8192;
+
         private final Context mContext;
 
         /** Checksum of restored OPML file */
@@ -75,59 +89,68 @@ public class OpmlBackupAgent extends BackupAgentHelper {
         @Override
         public void performBackup(ParcelFileDescriptor oldState, BackupDataOutput data, ParcelFileDescriptor newState) {
             Log.d(TAG, "Performing backup");
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            MessageDigest digester = null;
-            Writer writer;
+            // read before the OPML is written, so changes that happen in the meantime trigger another backup
+            final long changeCount = DBReader.getSubscriptionChangeCount(mContext);
+            final BackupState state = readState(oldState);
 
-            try {
-                digester = MessageDigest.getInstance("MD5");
-                writer = new OutputStreamWriter(new DigestOutputStream(byteStream, digester),
-                        LangUtils.UTF_8);
-            } catch (NoSuchAlgorithmException e) {
-                writer = new OutputStreamWriter(byteStream, LangUtils.UTF_8);
+            if (state != null && state.changeCount == changeCount) {
+                LOGD(TAG, "Subscriptions haven't changed; won't backup");
+                writeNewStateDescription(newState, changeCount, state.checksum);
+                return;
             }
 
+            File opmlFile = null;
             try {
-                // Write OPML
-                new OpmlWriter().writeDocument(DBReader.getFeedList(mContext), writer);
+                // Write OPML into a temporary file, the size of the entity has to be known before its data
+                opmlFile = File.createTempFile("backup", ".opml", mContext.getCacheDir());
+                MessageDigest digester = null;
+                OutputStream out = new FileOutputStream(opmlFile);
+                try {
+                    digester = MessageDigest.getInstance("MD5");
+                    out = new DigestOutputStream(out, digester);
+                } catch (NoSuchAlgorithmException e) {
+                }
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, LangUtils.UTF_8));
+                try {
+                    DBReader.writeSubscriptionsOpml(mContext, writer);
+                } finally {
+                    writer.close();
+                }
 
                 // Compare checksum of new and old file to see if we need to perform a backup at all
+                byte[] newChecksum = null;
                 if (digester != null) {
-                    byte[] newChecksum = digester.digest();
+                    newChecksum = digester.digest();
                     LOGD(TAG, "New checksum: " + new BigInteger(1, newChecksum).toString(16));
 
-                    // Get the old checksum
-                    if (oldState != null) {
-                        FileInputStream inState = new FileInputStream(oldState.getFileDescriptor());
-                        int len = inState.read();
-
-                        if (len != -1) {
-                            byte[] oldChecksum = new byte[len];
-                            inState.read(oldChecksum);
-                            LOGD(TAG, "Old checksum: " + new BigInteger(1, oldChecksum).toString(16));
-
-                            if (Arrays.equals(oldChecksum, newChecksum)) {
-                                LOGD(TAG, "Checksums are the same; won't backup");
-                                return;
-                            }
+                    if (state != null && state.checksum != null) {
+                        LOGD(TAG, "Old checksum: " + new BigInteger(1, state.checksum).toString(16));
+                        if (Arrays.equals(state.checksum, newChecksum)) {
+                            LOGD(TAG, "Checksums are the same; won't backup");
+                            writeNewStateDescription(newState, changeCount, newChecksum);
+                            return;
                         }
                     }
-
-                    writeNewStateDescription(newState, newChecksum);
                 }
 
                 LOGD(TAG, "Backing up OPML");
-                byte[] bytes = byteStream.toByteArray();
-                data.writeEntityHeader(OPML_ENTITY_KEY, bytes.length);
-                data.writeEntityData(bytes, bytes.length);
+                data.writeEntityHeader(OPML_ENTITY_KEY, (int) opmlFile.length());
+                InputStream in = new FileInputStream(opmlFile);
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        data.writeEntityData(buffer, read);
+                    }
+                } finally {
+                    in.close();
+                }
+                writeNewStateDescription(newState, changeCount, newChecksum);
             } catch (IOException e) {
                 Log.e(TAG, "Error during backup", e);
             } finally {
-                if (writer != null) {
-                    try {
-                        writer.close();
-                    } catch (IOException e) {
-                    }
+                if (opmlFile != null) {
+                    opmlFile.delete();
                 }
             }
         }
@@ -183,24 +206,65 @@ public class OpmlBackupAgent extends BackupAgentHelper {
 
         @Override
         public void writeNewStateDescription(ParcelFileDescriptor newState) {
-            writeNewStateDescription(newState, mChecksum);
+            writeNewStateDescription(newState, DBReader.getSubscriptionChangeCount(mContext), mChecksum);
         }
 
         /**
-         * Writes the new state description, which is the checksum of the OPML file.
+         * Reads the state description of the last backup.
          *
-         * @param newState
-         * @param checksum
+         * @return The state or null if there is none or it can't be read
          */
-        private void writeNewStateDescription(ParcelFileDescriptor newState, byte[] checksum) {
-            if (checksum == null) {
-                return;
+        private BackupState readState(ParcelFileDescriptor oldState) {
+            if (oldState == null) {
+                return null;
             }
 
+            DataInputStream inState = new DataInputStream(new FileInputStream(oldState.getFileDescriptor()));
             try {
-                FileOutputStream outState = new FileOutputStream(newState.getFileDescriptor());
-                outState.write(checksum.length);
-                outState.write(checksum);
+                int first = inState.read();
+                if (first == -1) {
+                    return null;
+                }
+                BackupState state = new BackupState();
+                int len;
+                if (first == STATE_VERSION) {
+                    state.changeCount = inState.readLong();
+                    len = inState.readUnsignedByte();
+                } else {
+                    // written by an older version, which only stored the checksum
+                    state.changeCount = UNKNOWN_CHANGE_COUNT;
+                    len = first;
+                }
+                if (len > 0) {
+                    state.checksum = new byte[len];
+                    inState.readFully(state.checksum);
+                }
+                return state;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read old state description", e);
+                return null;
+            }
+        }
+
+        /**
+         * Writes the new state description, which is the subscription change count and the checksum of
+         * the OPML file.
+         *
+         * @param newState
+         * @param changeCount
+         * @param checksum The checksum or null if it isn't known
+         */
+        private void writeNewStateDescription(ParcelFileDescriptor newState, long changeCount, byte[] checksum) {
+            try {
+                DataOutputStream outState = new DataOutputStream(new FileOutputStream(newState.getFileDescriptor()));
+                outState.write(STATE_VERSION);
+                outState.writeLong(changeCount);
+                if (checksum != null) {
+                    outState.write(checksum.length);
+                    outState.write(checksum);
+                } else {
+                    outState.write(0);
+                }
                 outState.flush();
                 outState.close();
             } catch (IOException e) {
@@ -208,4 +272,10 @@ public class OpmlBackupAgent extends BackupAgentHelper {
             }
         }
     }
+
+    /** State description of a backup. */
+    private static class BackupState {
+        long changeCount;
+        byte[] checksum;
+    }
 }
@@ -1,25 +1,26 @@
 package de.danoeh.antennapod.core.feed;
 
 import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
-import org.apache.commons.lang3.Validate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import java.util.AbstractQueue;
-import java.util.Observable;
-import java.util.Observer;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import de.danoeh.antennapod.core.util.LongList;
 
 /**
- * Notifies its observers about changes in the feed database. Observers can
+ * Notifies its listeners about changes in the feed database. Listeners can
  * register by retrieving an instance of this class and registering an
- * EventListener. When new events arrive, the EventDistributor will process the
- * event queue in a handler that runs on the main thread. The observers will only
- * be notified once if the event queue contains multiple elements.
- * 
- * Events can be sent with the send* methods.
+ * EventListener. Events that arrive within the coalescing window are merged
+ * and delivered together, so listeners are only notified once for a burst of
+ * events. Listeners are notified on the main thread.
+ *
+ * Events can be sent with the send* methods. Events may carry the IDs of the
+ * feeds and items they affect, see {@link ChangeSet}.
  */
-public class EventDistributor extends Observable {
+public class EventDistributor {
 	private static final String TAG = "EventDistributor";
 
 	public static final int FEED_LIST_UPDATE = 1;
@@ -30,14 +31,30 @@ public class EventDistributor extends Observable {
 	public static final int DOWNLOAD_HANDLED = 64;
     public static final int PLAYER_STATUS_UPDATE = 128;
 
-	private Handler handler;
-	private AbstractQueue<Integer> events;
+	/**
+	 * Time in milliseconds in which events are collected before they are delivered.
+	 */
+	public static final long COALESCING_WINDOW = 100;
+
+	private final Handler handler;
+
+	private final List<EventListener> listeners;
+
+	// pending events, guarded by this
+	private int pendingEvents;
+	private boolean pendingUnspecific;
+	private boolean pendingAllItems;
+	private final LongList pendingFeedIds;
+	private final LongList pendingItemIds;
+	private boolean deliveryScheduled;
 
 	private static EventDistributor instance;
 
 	private EventDistributor() {
-		this.handler = new Handler();
-		events = new ConcurrentLinkedQueue<Integer>();
+		this.handler = new Handler(Looper.getMainLooper());
+		listeners = new CopyOnWriteArrayList<EventListener>();
+		pendingFeedIds = new LongList();
+		pendingItemIds = new LongList();
 	}
 
 	public static synchronized EventDistributor getInstance() {
@@ -48,44 +65,84 @@ public class EventDistributor extends Observable {
 	}
 
 	public void register(EventListener el) {
-		addObserver(el);
+		if (!listeners.contains(el)) {
+			listeners.add(el);
+		}
 	}
 
 	public void unregister(EventListener el) {
-		deleteObserver(el);
+		listeners.remove(el);
 	}
 
 	public void addEvent(Integer i) {
-		events.offer(i);
-		handler.post(new Runnable() {
+		addEvent(i, null, null);
+	}
 
-			@Override
-			public void run() {
-				processEventQueue();
+	/**
+	 * Adds an event to the event queue.
+	 *
+	 * @param event   The type of the event.
+	 * @param feedIds IDs of the affected feeds or null if it is unknown which feeds are affected.
+	 * @param itemIds IDs of the affected items or null if all items of the given feeds might be affected.
+	 */
+	public void addEvent(int event, long[] feedIds, long[] itemIds) {
+		final boolean schedule;
+		synchronized (this) {
+			pendingEvents |= event;
+			if (feedIds == null) {
+				pendingUnspecific = true;
+			} else if (!pendingUnspecific) {
+				for (long feedId : feedIds) {
+					pendingFeedIds.add(feedId);
+				}
+				if (itemIds == null) {
+					pendingAllItems = true;
+				} else if (!pendingAllItems) {
+					for (long itemId : itemIds) {
+						pendingItemIds.add(itemId);
+					}
+				}
 			}
-		});
+			schedule = !deliveryScheduled;
+			deliveryScheduled = true;
+		}
+		if (schedule) {
+			handler.postDelayed(new Runnable() {
+
+				@Override
+				public void run() {
+					processEventQueue();
+				}
+			}, COALESCING_WINDOW);
+		}
 	}
 
 	private void processEventQueue() {
-		Integer result = 0;
-		Log.d(TAG, "Processing event queue. Number of events: " + events.size());
-		for (Integer current = events.poll(); current != null; current = events
-				.poll()) {
-			result |= current;
+		final int events;
+		final ChangeSet changes;
+		synchronized (this) {
+			events = pendingEvents;
+			if (pendingUnspecific) {
+				changes = new ChangeSet(null, null);
+			} else {
+				changes = new ChangeSet(pendingFeedIds.toArray(),
+						pendingAllItems ? null : pendingItemIds.toArray());
+			}
+			pendingEvents = 0;
+			pendingUnspecific = false;
+			pendingAllItems = false;
+			pendingFeedIds.clear();
+			pendingItemIds.clear();
+			deliveryScheduled = false;
 		}
-		if (result != 0) {
-			Log.d(TAG, "Notifying observers. Data: " + result);
-			setChanged();
-			notifyObservers(result);
-		} else {
-			Log.d(TAG, "Event queue didn't contain any new events. Observers will not be notified.");
+		if (events == 0) {
+			Log.d(TAG, "Event queue didn't contain any new events. Listeners will not be notified.");
+			return;
+		}
+		Log.d(TAG, "Notifying listeners. Data: " + events + ", " + changes);
+		for (EventListener listener : listeners) {
+			listener.update(this, events, changes);
 		}
-	}
-
-	@Override
-	public void addObserver(Observer observer) {
-		super.addObserver(observer);
-        Validate.isInstanceOf(EventListener.class, observer);
 	}
 
 	public void sendDownloadQueuedBroadcast() {
@@ -96,10 +153,27 @@ public class EventDistributor extends Observable {
 		addEvent(UNREAD_ITEMS_UPDATE);
 	}
 
+	/**
+	 * Notifies listeners that the state of some items has changed.
+	 *
+	 * @param feedIds IDs of the feeds of the items.
+	 * @param itemIds IDs of the items or null if all items of the feeds might have changed.
+	 */
+	public void sendUnreadItemsUpdateBroadcast(long[] feedIds, long[] itemIds) {
+		addEvent(UNREAD_ITEMS_UPDATE, feedIds, itemIds);
+	}
+
 	public void sendFeedUpdateBroadcast() {
 		addEvent(FEED_LIST_UPDATE);
 	}
 
+	/**
+	 * Notifies listeners that the given feeds have changed.
+	 */
+	public void sendFeedUpdateBroadcast(long... feedIds) {
+		addEvent(FEED_LIST_UPDATE, feedIds, null);
+	}
+
 	public void sendPlaybackHistoryUpdateBroadcast() {
 		addEvent(PLAYBACK_HISTORY_UPDATE);
 	}
@@ -116,17 +190,76 @@ public class EventDistributor extends Observable {
         addEvent(PLAYER_STATUS_UPDATE);
     }
 
-	public static abstract class EventListener implements Observer {
+	/**
+	 * Describes which feeds and items are affected by a group of events. If one of the events
+	 * didn't specify what it affects, the change set is unspecific and every feed and item is
+	 * considered affected.
+	 */
+	public static final class ChangeSet {
+		private final long[] feedIds;
+		private final long[] itemIds;
+
+		private ChangeSet(long[] feedIds, long[] itemIds) {
+			if (feedIds != null) {
+				Arrays.sort(feedIds);
+			}
+			if (itemIds != null) {
+				Arrays.sort(itemIds);
+			}
+			this.feedIds = feedIds;
+			this.itemIds = itemIds;
+		}
+
+		/**
+		 * Returns false if every feed and item might have changed.
+		 */
+		public boolean isSpecific() {
+			return feedIds != null;
+		}
+
+		public boolean affectsFeed(long feedId) {
+			return feedIds == null || Arrays.binarySearch(feedIds, feedId) >= 0;
+		}
+
+		public boolean affectsItem(long feedId, long itemId) {
+			return affectsFeed(feedId)
+					&& (feedIds == null || itemIds == null || Arrays.binarySearch(itemIds, itemId) >= 0);
+		}
 
 		@Override
-		public void update(Observable observable, Object data) {
-			if (observable instanceof EventDistributor
-					&& data instanceof Integer) {
-				update((EventDistributor) observable, (Integer) data);
+		public String toString() {
+			if (feedIds == null) {
+				return "all feeds";
 			}
+			return "feeds " + Arrays.toString(feedIds)
+					+ ((itemIds != null) ? ", items " + Arrays.toString(itemIds) : "");
 		}
+	}
+
+	/**
+	 * Receives events. Subclasses must override one of the update methods.
+	 */
+	public static abstract class EventListener {
 
-		public abstract void update(EventDistributor eventDistributor,
-				Integer arg);
+		/**
+		 * Called when events have been sent.
+		 *
+		 * @param arg The OR-ed event types.
+		 * @throws UnsupportedOperationException if neither this method nor
+		 *                                       {@link #update(EventDistributor, Integer, ChangeSet)} has been overridden.
+		 */
+		public void update(EventDistributor eventDistributor, Integer arg) {
+			throw new UnsupportedOperationException(getClass().getName() + " does not override an update method");
+		}
+
+		/**
+		 * Called when events have been sent. Calls {@link #update(EventDistributor, Integer)} by default.
+		 *
+		 * @param arg     The OR-ed event types.
+		 * @param changes The feeds and items that are affected by the events.
+		 */
+		public void update(EventDistributor eventDistributor, Integer arg, ChangeSet changes) {
+			update(eventDistributor, arg);
+		}
 	}
 }
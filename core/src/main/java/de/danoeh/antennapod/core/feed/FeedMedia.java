@@ -2,11 +2,11 @@ package de.danoeh.antennapod.core.feed;
 
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.io.File;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -28,6 +28,15 @@ public class FeedMedia extends FeedFile implements Playable {
     public static final String PREF_MEDIA_ID = "FeedMedia.PrefMediaId";
     public static final String PREF_FEED_ID = "FeedMedia.PrefFeedId";
 
+    /** The media file or stream hasn't been searched for chapters yet. */
+    public static final int CHAPTER_SCAN_NOT_SCANNED = 0;
+    /** Chapters have been found in the media file or stream. */
+    public static final int CHAPTER_SCAN_FOUND = 1;
+    /** The media file or stream doesn't contain any chapters. */
+    public static final int CHAPTER_SCAN_NONE = 2;
+    /** The media file or stream could not be read. */
+    public static final int CHAPTER_SCAN_FAILED = 3;
+
     private int duration;
     private int position; // Current position in file
     private int played_duration; // How many ms of this file have been played (for autoflattring)
@@ -39,6 +48,11 @@ public class FeedMedia extends FeedFile implements Playable {
     // if null: unknown, will be checked
     private Boolean hasEmbeddedPicture;
 
+    // result of the last search for chapters and size and modification date of the file at that time
+    private int chapterScanState;
+    private long chapterScanFileSize;
+    private long chapterScanFileModified;
+
     /* Used for loading item when restoring from parcel. */
     private long itemID;
 
@@ -239,13 +253,86 @@ public class FeedMedia extends FeedFile implements Playable {
         return 0;
     }
 
+    /**
+     * Returns true if the media file contains a picture. The value is determined when the file is
+     * downloaded or by the {@link de.danoeh.antennapod.core.storage.MediaMetadataIndexer}, false is
+     * returned until then.
+     */
     public boolean hasEmbeddedPicture() {
-        return false;
-        // TODO: reenable!
-        //if(hasEmbeddedPicture == null) {
-        //    checkEmbeddedPicture();
-        //}
-        //return hasEmbeddedPicture;
+        return hasEmbeddedPicture != null && hasEmbeddedPicture;
+    }
+
+    /**
+     * Returns true if the metadata of the media file has been read, i.e. if it is known whether
+     * it contains a picture.
+     */
+    public boolean isMetadataIndexed() {
+        return hasEmbeddedPicture != null;
+    }
+
+    public int getChapterScanState() {
+        return chapterScanState;
+    }
+
+    public long getChapterScanFileSize() {
+        return chapterScanFileSize;
+    }
+
+    public long getChapterScanFileModified() {
+        return chapterScanFileModified;
+    }
+
+    /**
+     * Sets the result of the last search for chapters.
+     *
+     * @param fileSize     Size of the media file at the time of the search, 0 if the stream was searched.
+     * @param fileModified Modification date of the media file at the time of the search, 0 if the
+     *                     stream was searched.
+     */
+    public void setChapterScanState(int state, long fileSize, long fileModified) {
+        this.chapterScanState = state;
+        this.chapterScanFileSize = fileSize;
+        this.chapterScanFileModified = fileModified;
+    }
+
+    /**
+     * Records the result of a search for chapters in the media file, if it is available, or in the stream.
+     *
+     * @param success false if the media file or stream could not be read.
+     */
+    public void setChapterScanResult(boolean success) {
+        int state;
+        if (!success) {
+            state = CHAPTER_SCAN_FAILED;
+        } else if (getChapters() != null) {
+            state = CHAPTER_SCAN_FOUND;
+        } else {
+            state = CHAPTER_SCAN_NONE;
+        }
+        if (localFileAvailable()) {
+            File file = new File(file_url);
+            setChapterScanState(state, file.length(), file.lastModified());
+        } else {
+            setChapterScanState(state, 0, 0);
+        }
+    }
+
+    /**
+     * Returns true if the media file, if it is available, or the stream has already been searched for
+     * chapters and searching it again would not lead to a different result. A media file has to be searched
+     * again if it has changed since the last search, a stream if it could not be read.
+     */
+    public boolean isChapterScanUpToDate() {
+        if (chapterScanState == CHAPTER_SCAN_NOT_SCANNED) {
+            return false;
+        }
+        if (localFileAvailable()) {
+            File file = new File(file_url);
+            return chapterScanFileSize == file.length() && chapterScanFileModified == file.lastModified();
+        } else {
+            return chapterScanState != CHAPTER_SCAN_FAILED
+                    && chapterScanFileSize == 0 && chapterScanFileModified == 0;
+        }
     }
 
     @Override
@@ -262,6 +349,9 @@ public class FeedMedia extends FeedFile implements Playable {
         dest.writeByte((byte) ((downloaded) ? 1 : 0));
         dest.writeLong((playbackCompletionDate != null) ? playbackCompletionDate.getTime() : 0);
         dest.writeInt(played_duration);
+        dest.writeInt(chapterScanState);
+        dest.writeLong(chapterScanFileSize);
+        dest.writeLong(chapterScanFileModified);
     }
 
     @Override
@@ -285,12 +375,17 @@ public class FeedMedia extends FeedFile implements Playable {
         // check if chapters are stored in db and not loaded yet.
         if (item != null && item.hasChapters() && item.getChapters() == null) {
             DBReader.loadChaptersOfFeedItem(ClientConfig.applicationCallbacks.getApplicationInstance(), item);
-        } else if (item != null && item.getChapters() == null && !localFileAvailable()) {
-            ChapterUtils.loadChaptersFromStreamUrl(this);
-            if (getChapters() != null && item != null) {
+        } else if (item != null && item.getChapters() == null && !localFileAvailable()
+                && !isChapterScanUpToDate()) {
+            // downloaded files are searched by the DownloadService and the MediaMetadataIndexer
+            boolean success = ChapterUtils.loadChaptersFromStreamUrl(this);
+            setChapterScanResult(success);
+            if (getChapters() != null) {
                 DBWriter.setFeedItem(ClientConfig.applicationCallbacks.getApplicationInstance(),
                         item);
             }
+            DBWriter.setFeedMediaChapterScanState(ClientConfig.applicationCallbacks.getApplicationInstance(),
+                    this);
         }
     }
 
@@ -414,6 +509,7 @@ public class FeedMedia extends FeedFile implements Playable {
             FeedMedia result = new FeedMedia(id, null, in.readInt(), in.readInt(), in.readLong(), in.readString(), in.readString(),
                     in.readString(), in.readByte() != 0, new Date(in.readLong()), in.readInt());
             result.itemID = itemID;
+            result.setChapterScanState(in.readInt(), in.readLong(), in.readLong());
             return result;
         }
 
@@ -453,24 +549,4 @@ public class FeedMedia extends FeedFile implements Playable {
     public void setFile_url(String file_url) {
         super.setFile_url(file_url);
     }
-
-    private void checkEmbeddedPicture() {
-        if (!localFileAvailable()) {
-            hasEmbeddedPicture = Boolean.FALSE;
-            return;
-        }
-        MediaMetadataRetriever mmr = new MediaMetadataRetriever();
-        try {
-            mmr.setDataSource(getLocalMediaUrl());
-            byte[] image = mmr.getEmbeddedPicture();
-            if(image != null) {
-                hasEmbeddedPicture = Boolean.TRUE;
-            } else {
-                hasEmbeddedPicture = Boolean.FALSE;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            hasEmbeddedPicture = Boolean.FALSE;
-        }
-    }
 }
@@ -54,6 +54,7 @@ import de.danoeh.antennapod.core.gpoddernet.model.GpodnetTag;
 import de.danoeh.antennapod.core.gpoddernet.model.GpodnetUploadChangesResponse;
 import de.danoeh.antennapod.core.preferences.GpodnetPreferences;
 import de.danoeh.antennapod.core.service.download.AntennapodHttpClient;
+import de.danoeh.antennapod.core.service.download.PodcastDirectoryClient;
 
 /**
  * Communicates with the gpodder.net service.
@@ -70,6 +71,11 @@ public class GpodnetService {
     private static final MediaType TEXT = MediaType.parse("plain/text; charset=utf-8");
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
+    /**
+     * Search requests with this tag supersede each other.
+     */
+    private static final String SEARCH_TAG = "gpodnet-search";
+
     private final OkHttpClient httpClient;
 
 
@@ -93,7 +99,7 @@ public class GpodnetService {
         }
 
         Request.Builder request = new Request.Builder().url(url);
-        String response = executeRequest(request);
+        String response = executeDirectoryRequest(request, PodcastDirectoryClient.TOPLIST_MAX_AGE, null);
         try {
             JSONArray jsonTagList = new JSONArray(response);
             List<GpodnetTag> tagList = new ArrayList<GpodnetTag>(
@@ -125,7 +131,7 @@ public class GpodnetService {
             URL url = new URI(BASE_SCHEME, BASE_HOST, String.format(
                     "/api/2/tag/%s/%d.json", tag.getTag(), count), null).toURL();
             Request.Builder request = new Request.Builder().url(url);
-            String response = executeRequest(request);
+            String response = executeDirectoryRequest(request, PodcastDirectoryClient.TOPLIST_MAX_AGE, null);
 
             JSONArray jsonArray = new JSONArray(response);
             return readPodcastListFromJSONArray(jsonArray);
@@ -150,7 +156,7 @@ public class GpodnetService {
             URL url = new URI(BASE_SCHEME, BASE_HOST, String.format(
                     "/toplist/%d.json", count), null).toURL();
             Request.Builder request = new Request.Builder().url(url);
-            String response = executeRequest(request);
+            String response = executeDirectoryRequest(request, PodcastDirectoryClient.TOPLIST_MAX_AGE, null);
 
             JSONArray jsonArray = new JSONArray(response);
             return readPodcastListFromJSONArray(jsonArray);
@@ -191,7 +197,8 @@ public class GpodnetService {
     }
 
     /**
-     * Searches the podcast directory for a given string.
+     * Searches the podcast directory for a given string. A running search is cancelled
+     * when another search is started.
      *
      * @param query          The search query
      * @param scaledLogoSize The size of the logos that are returned by the search query.
@@ -207,7 +214,7 @@ public class GpodnetService {
             URL url = new URI(BASE_SCHEME, null, BASE_HOST, -1, "/search.json",
                     parameters, null).toURL();
             Request.Builder request = new Request.Builder().url(url);
-            String response = executeRequest(request);
+            String response = executeDirectoryRequest(request, PodcastDirectoryClient.SEARCH_MAX_AGE, SEARCH_TAG);
 
             JSONArray jsonArray = new JSONArray(response);
             return readPodcastListFromJSONArray(jsonArray);
@@ -610,6 +617,29 @@ public class GpodnetService {
         return responseString;
     }
 
+    /**
+     * Executes a request for public directory data through the PodcastDirectoryClient, which
+     * caches the responses.
+     */
+    private String executeDirectoryRequest(Request.Builder requestB, long maxAge, Object tag)
+            throws GpodnetServiceException {
+        Validate.notNull(requestB);
+
+        Request request = requestB.header("User-Agent", ClientConfig.USER_AGENT).build();
+        try {
+            return PodcastDirectoryClient.getInstance().get(request, maxAge, tag);
+        } catch (PodcastDirectoryClient.StatusCodeException e) {
+            if (e.getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+                throw new GpodnetServiceAuthenticationException("Wrong username or password");
+            } else {
+                throw new GpodnetServiceBadStatusCodeException(e.getMessage(), e.getStatusCode());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new GpodnetServiceException(e);
+        }
+    }
+
     private String executeRequestWithAuthentication(Request.Builder requestB,
                                                     String username, String password) throws GpodnetServiceException {
         if (requestB == null || username == null || password == null) {
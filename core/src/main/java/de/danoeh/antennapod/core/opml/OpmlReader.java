@@ -16,7 +16,16 @@ public class OpmlReader {
 	
 	// ATTRIBUTES
 	private boolean isInOpml = false;
-	private ArrayList<OpmlElement> elementList;
+
+	/**
+	 * Receives the OPML elements while the document is being read.
+	 */
+	public interface Callback {
+		/**
+		 * Called for every element that has an xml url.
+		 */
+		void onElementRead(OpmlElement element);
+	}
 
 	/**
 	 * Reads an Opml document and returns a list of all OPML elements it can
@@ -27,7 +36,26 @@ public class OpmlReader {
 	 */
 	public ArrayList<OpmlElement> readDocument(Reader reader)
 			throws XmlPullParserException, IOException {
-		elementList = new ArrayList<OpmlElement>();
+		final ArrayList<OpmlElement> elementList = new ArrayList<OpmlElement>();
+		readDocument(reader, new Callback() {
+			@Override
+			public void onElementRead(OpmlElement element) {
+				elementList.add(element);
+			}
+		});
+		return elementList;
+	}
+
+	/**
+	 * Reads an Opml document and passes every OPML element to the callback as
+	 * soon as it has been read, so that the elements don't have to be kept in
+	 * memory.
+	 *
+	 * @throws IOException
+	 * @throws XmlPullParserException
+	 */
+	public void readDocument(Reader reader, Callback callback)
+			throws XmlPullParserException, IOException {
 		XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
 		factory.setNamespaceAware(true);
 		XmlPullParser xpp = factory.newPullParser();
@@ -52,10 +80,8 @@ public class OpmlReader {
 					
 					final String title = xpp.getAttributeValue(null, OpmlSymbols.TITLE);
 					if (title != null) {
-						Log.i(TAG, "Using title: " + title);
 						element.setText(title);
 					} else {
-						Log.i(TAG, "Title not found, using text");
 						element.setText(xpp.getAttributeValue(null, OpmlSymbols.TEXT));			
 					}
 					element.setXmlUrl(xpp.getAttributeValue(null, OpmlSymbols.XMLURL));
@@ -66,7 +92,7 @@ public class OpmlReader {
 							Log.i(TAG, "Opml element has no text attribute.");
 							element.setText(element.getXmlUrl());
 						}
-						elementList.add(element);
+						callback.onElementRead(element);
 					} else {
 						if (BuildConfig.DEBUG)
 							Log.d(TAG,
@@ -80,8 +106,6 @@ public class OpmlReader {
 
 		if (BuildConfig.DEBUG)
 			Log.d(TAG, "Parsing finished.");
-
-		return elementList;
 	}
 
 }
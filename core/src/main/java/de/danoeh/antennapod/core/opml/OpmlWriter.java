@@ -10,13 +10,20 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.List;
 
-/** Writes OPML documents. */
+/**
+ * Writes OPML documents. Documents can either be written from a list of feeds
+ * or outline by outline with {@link #startDocument(Writer)},
+ * {@link #writeOutline(String, String, String, String)} and
+ * {@link #endDocument()}, which writes each outline directly to the writer.
+ */
 public class OpmlWriter {
 	private static final String TAG = "OpmlWriter";
 	private static final String ENCODING = "UTF-8";
 	private static final String OPML_VERSION = "2.0";
 	private static final String OPML_TITLE = "AntennaPod Subscriptions";
 
+	private XmlSerializer xs;
+
 	/**
 	 * Takes a list of feeds and a writer and writes those into an OPML
 	 * document.
@@ -27,9 +34,26 @@ public class OpmlWriter {
 	 */
 	public void writeDocument(List<Feed> feeds, Writer writer)
 			throws IllegalArgumentException, IllegalStateException, IOException {
+		startDocument(writer);
+		for (Feed feed : feeds) {
+			writeOutline(feed.getTitle(), feed.getType(),
+					feed.getDownload_url(), feed.getLink());
+		}
+		endDocument();
+	}
+
+	/**
+	 * Writes the head of an OPML document and opens its body.
+	 * 
+	 * @throws IOException
+	 * @throws IllegalStateException
+	 * @throws IllegalArgumentException
+	 */
+	public void startDocument(Writer writer)
+			throws IllegalArgumentException, IllegalStateException, IOException {
 		if (BuildConfig.DEBUG)
 			Log.d(TAG, "Starting to write document");
-		XmlSerializer xs = Xml.newSerializer();
+		xs = Xml.newSerializer();
 		xs.setOutput(writer);
 
 		xs.startDocument(ENCODING, false);
@@ -43,22 +67,49 @@ public class OpmlWriter {
 		xs.endTag(null, OpmlSymbols.HEAD);
 
 		xs.startTag(null, OpmlSymbols.BODY);
-		for (Feed feed : feeds) {
-			xs.startTag(null, OpmlSymbols.OUTLINE);
-			xs.attribute(null, OpmlSymbols.TEXT, feed.getTitle());
-			xs.attribute(null, OpmlSymbols.TITLE, feed.getTitle());
-			if (feed.getType() != null) {
-				xs.attribute(null, OpmlSymbols.TYPE, feed.getType());
-			}
-			xs.attribute(null, OpmlSymbols.XMLURL, feed.getDownload_url());
-			if (feed.getLink() != null) {
-				xs.attribute(null, OpmlSymbols.HTMLURL, feed.getLink());
-			}
-			xs.endTag(null, OpmlSymbols.OUTLINE);
+	}
+
+	/**
+	 * Writes the outline of a single feed. Must be called between
+	 * {@link #startDocument(Writer)} and {@link #endDocument()}.
+	 * 
+	 * @param type
+	 *            The type of the feed or null
+	 * @param link
+	 *            The link of the feed's website or null
+	 * @throws IOException
+	 * @throws IllegalStateException
+	 * @throws IllegalArgumentException
+	 */
+	public void writeOutline(String title, String type, String downloadUrl,
+			String link) throws IllegalArgumentException,
+			IllegalStateException, IOException {
+		xs.startTag(null, OpmlSymbols.OUTLINE);
+		xs.attribute(null, OpmlSymbols.TEXT, title);
+		xs.attribute(null, OpmlSymbols.TITLE, title);
+		if (type != null) {
+			xs.attribute(null, OpmlSymbols.TYPE, type);
 		}
+		xs.attribute(null, OpmlSymbols.XMLURL, downloadUrl);
+		if (link != null) {
+			xs.attribute(null, OpmlSymbols.HTMLURL, link);
+		}
+		xs.endTag(null, OpmlSymbols.OUTLINE);
+	}
+
+	/**
+	 * Closes the body of the document and flushes the writer.
+	 * 
+	 * @throws IOException
+	 * @throws IllegalStateException
+	 * @throws IllegalArgumentException
+	 */
+	public void endDocument() throws IllegalArgumentException,
+			IllegalStateException, IOException {
 		xs.endTag(null, OpmlSymbols.BODY);
 		xs.endTag(null, OpmlSymbols.OPML);
 		xs.endDocument();
+		xs = null;
 		if (BuildConfig.DEBUG)
 			Log.d(TAG, "Finished writing document");
 	}
@@ -0,0 +1,206 @@
+package de.danoeh.antennapod.core.preferences;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import de.danoeh.antennapod.core.gpoddernet.model.GpodnetEpisodeAction;
+
+/**
+ * Stores the episode actions that have not been uploaded to gpodder.net yet.
+ * <p/>
+ * Actions are appended to a journal file, one action per line, so enqueueing an action doesn't
+ * rewrite the actions that are already stored. The file is flushed after every action, so actions
+ * survive a process death, but only synced to the storage device every {@link #SYNC_INTERVAL}
+ * milliseconds. After actions have been uploaded, the journal is compacted, i.e. rewritten with
+ * the remaining actions.
+ * <p/>
+ * This class is not thread-safe, callers have to synchronize access.
+ */
+class EpisodeActionJournal {
+    private static final String TAG = "EpisodeActionJournal";
+
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Minimum time in milliseconds between two syncs of the journal file.
+     */
+    private static final long SYNC_INTERVAL = 10000;
+
+    private final File file;
+    private final List<GpodnetEpisodeAction> actions;
+
+    private FileOutputStream out;
+    private Writer writer;
+    private long lastSync;
+
+    /**
+     * Reads the actions that are stored in the given journal file.
+     */
+    EpisodeActionJournal(File file) {
+        this.file = file;
+        this.actions = new ArrayList<GpodnetEpisodeAction>();
+        if (file.exists()) {
+            try {
+                for (String line : FileUtils.readLines(file, ENCODING)) {
+                    if (StringUtils.isNotBlank(line)) {
+                        GpodnetEpisodeAction action = GpodnetEpisodeAction.readFromString(line);
+                        if (action != null) {
+                            actions.add(action);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read journal", e);
+            }
+        }
+    }
+
+    /**
+     * Appends an action to the journal.
+     */
+    void append(GpodnetEpisodeAction action) {
+        actions.add(action);
+        try {
+            openWriter();
+            writer.write(action.writeToString());
+            writer.write('\n');
+            writer.flush();
+            if (SystemClock.elapsedRealtime() - lastSync >= SYNC_INTERVAL) {
+                out.getFD().sync();
+                lastSync = SystemClock.elapsedRealtime();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not append action to journal", e);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Appends several actions to the journal and syncs the file once.
+     */
+    void appendAll(Collection<GpodnetEpisodeAction> newActions) {
+        actions.addAll(newActions);
+        try {
+            openWriter();
+            for (GpodnetEpisodeAction action : newActions) {
+                writer.write(action.writeToString());
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+            lastSync = SystemClock.elapsedRealtime();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not append actions to journal", e);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Returns a copy of the stored actions in the order in which they have been appended.
+     */
+    List<GpodnetEpisodeAction> getActions() {
+        return new ArrayList<GpodnetEpisodeAction>(actions);
+    }
+
+    int size() {
+        return actions.size();
+    }
+
+    /**
+     * Removes actions, e.g. after they have been uploaded, and compacts the journal.
+     *
+     * @param removed Actions that have been returned by getActions.
+     */
+    void remove(Collection<GpodnetEpisodeAction> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        if (isPrefix(removed)) {
+            // common case: a snapshot has been uploaded while new actions might have been appended
+            actions.subList(0, removed.size()).clear();
+        } else {
+            actions.removeAll(removed);
+        }
+        compact();
+    }
+
+    /**
+     * Removes all actions and deletes the journal file.
+     */
+    void clear() {
+        actions.clear();
+        closeWriter();
+        FileUtils.deleteQuietly(file);
+    }
+
+    private boolean isPrefix(Collection<GpodnetEpisodeAction> removed) {
+        if (removed.size() > actions.size()) {
+            return false;
+        }
+        int i = 0;
+        for (GpodnetEpisodeAction action : removed) {
+            if (actions.get(i++) != action) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites the journal file with the remaining actions.
+     */
+    private void compact() {
+        closeWriter();
+        if (actions.isEmpty()) {
+            FileUtils.deleteQuietly(file);
+            return;
+        }
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream tmpOut = null;
+        try {
+            tmpOut = new FileOutputStream(tmp);
+            Writer tmpWriter = new OutputStreamWriter(tmpOut, ENCODING);
+            for (GpodnetEpisodeAction action : actions) {
+                tmpWriter.write(action.writeToString());
+                tmpWriter.write('\n');
+            }
+            tmpWriter.flush();
+            tmpOut.getFD().sync();
+            tmpWriter.close();
+            tmpOut = null;
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Could not rename " + tmp);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not compact journal", e);
+            IOUtils.closeQuietly(tmpOut);
+            FileUtils.deleteQuietly(tmp);
+        }
+    }
+
+    private void openWriter() throws IOException {
+        if (writer == null) {
+            out = new FileOutputStream(file, true);
+            writer = new OutputStreamWriter(out, ENCODING);
+        }
+    }
+
+    private void closeWriter() {
+        IOUtils.closeQuietly(writer);
+        writer = null;
+        out = null;
+    }
+}
@@ -6,9 +6,9 @@ import android.util.Log;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -38,8 +38,13 @@ public class GpodnetPreferences {
     public static final String PREF_LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP = "de.danoeh.antennapod.preferences.gpoddernet.last_episode_actions_sync_timestamp";
     public static final String PREF_SYNC_ADDED = "de.danoeh.antennapod.preferences.gpoddernet.sync_added";
     public static final String PREF_SYNC_REMOVED = "de.danoeh.antennapod.preferences.gpoddernet.sync_removed";
+    /**
+     * Episode actions used to be stored in this preference, they are now stored in the EpisodeActionJournal.
+     */
     public static final String PREF_SYNC_EPISODE_ACTIONS = "de.danoeh.antennapod.preferences.gpoddernet.sync_queued_episode_actions";
 
+    private static final String EPISODE_ACTIONS_JOURNAL = "gpodnet_episode_actions";
+
     private static String username;
     private static String password;
     private static String deviceID;
@@ -49,7 +54,7 @@ public class GpodnetPreferences {
     private static Set<String> addedFeeds;
     private static Set<String> removedFeeds;
 
-    private static List<GpodnetEpisodeAction> queuedEpisodeActions;
+    private static EpisodeActionJournal queuedEpisodeActions;
 
     /**
      * Last value returned by getSubscriptionChanges call. Will be used for all subsequent calls of getSubscriptionChanges.
@@ -74,7 +79,13 @@ public class GpodnetPreferences {
             lastEpisodeActionsSyncTimeStamp = prefs.getLong(PREF_LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP, 0);
             addedFeeds = readListFromString(prefs.getString(PREF_SYNC_ADDED, ""));
             removedFeeds = readListFromString(prefs.getString(PREF_SYNC_REMOVED, ""));
-            queuedEpisodeActions = readEpisodeActionsFromString(prefs.getString(PREF_SYNC_EPISODE_ACTIONS, ""));
+            queuedEpisodeActions = new EpisodeActionJournal(new File(
+                    ClientConfig.applicationCallbacks.getApplicationInstance().getFilesDir(), EPISODE_ACTIONS_JOURNAL));
+            String legacyEpisodeActions = prefs.getString(PREF_SYNC_EPISODE_ACTIONS, "");
+            if (StringUtils.isNotBlank(legacyEpisodeActions)) {
+                queuedEpisodeActions.appendAll(readEpisodeActionsFromString(legacyEpisodeActions));
+                prefs.edit().remove(PREF_SYNC_EPISODE_ACTIONS).commit();
+            }
             hostname = checkGpodnetHostname(prefs.getString(PREF_GPODNET_HOSTNAME, GpodnetService.DEFAULT_BASE_HOST));
 
             preferencesLoaded = true;
@@ -223,20 +234,26 @@ public class GpodnetPreferences {
 
     public static synchronized void enqueueEpisodeAction(GpodnetEpisodeAction action) {
         ensurePreferencesLoaded();
-        queuedEpisodeActions.add(action);
-        writePreference(PREF_SYNC_EPISODE_ACTIONS, writeEpisodeActionsToString(queuedEpisodeActions));
+        queuedEpisodeActions.append(action);
         GpodnetSyncService.sendSyncActionsIntent(ClientConfig.applicationCallbacks.getApplicationInstance());
     }
 
-    public static List<GpodnetEpisodeAction> getQueuedEpisodeActions() {
+    /**
+     * Returns a copy of the episode actions that have not been uploaded yet.
+     */
+    public static synchronized List<GpodnetEpisodeAction> getQueuedEpisodeActions() {
         ensurePreferencesLoaded();
-        return Collections.unmodifiableList(queuedEpisodeActions);
+        return queuedEpisodeActions.getActions();
     }
 
+    /**
+     * Removes uploaded episode actions.
+     *
+     * @param queued Actions that have been returned by getQueuedEpisodeActions.
+     */
     public static synchronized void removeQueuedEpisodeActions(Collection<GpodnetEpisodeAction> queued) {
         ensurePreferencesLoaded();
-        queuedEpisodeActions.removeAll(queued);
-        writePreference(PREF_SYNC_EPISODE_ACTIONS, writeEpisodeActionsToString(queuedEpisodeActions));
+        queuedEpisodeActions.remove(queued);
     }
 
     /**
@@ -257,7 +274,6 @@ public class GpodnetPreferences {
         removedFeeds.clear();
         writePreference(PREF_SYNC_REMOVED, removedFeeds);
         queuedEpisodeActions.clear();
-        writePreference(PREF_SYNC_EPISODE_ACTIONS, writeEpisodeActionsToString(queuedEpisodeActions));
         setLastSubscriptionSyncTimestamp(0);
     }
 
@@ -292,15 +308,6 @@ public class GpodnetPreferences {
         return result;
     }
 
-    private static String writeEpisodeActionsToString(Collection<GpodnetEpisodeAction> c) {
-        StringBuilder result = new StringBuilder();
-        for(GpodnetEpisodeAction item : c) {
-            result.append(item.writeToString());
-            result.append("\n");
-        }
-        return result.toString();
-    }
-
     private static String checkGpodnetHostname(String value) {
         int startIndex = 0;
         if (value.startsWith("http://")) {
@@ -64,6 +64,9 @@ public class UserPreferences implements
     public static final String PREF_MOBILE_UPDATE = "prefMobileUpdate";
     public static final String PREF_PARALLEL_DOWNLOADS = "prefParallelDownloads";
     public static final String PREF_EPISODE_CACHE_SIZE = "prefEpisodeCacheSize";
+    public static final String PREF_EPISODE_CACHE_MAX_SIZE = "prefEpisodeCacheMaxSize";
+    public static final String PREF_EPISODE_CACHE_MIN_FREE_SPACE = "prefEpisodeCacheMinFreeSpace";
+    public static final String PREF_DOWNLOAD_LOG_RETENTION = "prefDownloadLogRetention";
     public static final String PREF_ENABLE_AUTODL = "prefEnableAutoDl";
     public static final String PREF_ENABLE_AUTODL_ON_BATTERY = "prefEnableAutoDownloadOnBattery";
     public static final String PREF_ENABLE_AUTODL_WIFI_FILTER = "prefEnableAutoDownloadWifiFilter";
@@ -115,6 +118,9 @@ public class UserPreferences implements
     private boolean allowMobileUpdate;
     private int parallelDownloads;
     private int episodeCacheSize;
+    private long episodeCacheMaxSize;
+    private long episodeCacheMinFreeSpace;
+    private long downloadLogRetention;
     private boolean enableAutodownload;
     private boolean enableAutodownloadOnBattery;
     private boolean enableAutodownloadWifiFilter;
@@ -188,6 +194,9 @@ public class UserPreferences implements
         EPISODE_CACHE_SIZE_UNLIMITED = context.getResources().getInteger(
                 R.integer.episode_cache_size_unlimited);
         episodeCacheSize = readEpisodeCacheSizeInternal(sp.getString(PREF_EPISODE_CACHE_SIZE, "20"));
+        episodeCacheMaxSize = readMegabytes(sp.getString(PREF_EPISODE_CACHE_MAX_SIZE, "0"));
+        episodeCacheMinFreeSpace = readMegabytes(sp.getString(PREF_EPISODE_CACHE_MIN_FREE_SPACE, "0"));
+        downloadLogRetention = readDays(sp.getString(PREF_DOWNLOAD_LOG_RETENTION, "90"));
         enableAutodownload = sp.getBoolean(PREF_ENABLE_AUTODL, false);
         enableAutodownloadOnBattery = sp.getBoolean(PREF_ENABLE_AUTODL_ON_BATTERY, true);
         enableAutodownloadWifiFilter = sp.getBoolean(PREF_ENABLE_AUTODL_WIFI_FILTER, false);
@@ -231,6 +240,14 @@ public class UserPreferences implements
         }
     }
 
+    private long readMegabytes(String valueFromPrefs) {
+        return Long.parseLong(valueFromPrefs) * 1024 * 1024;
+    }
+
+    private long readDays(String valueFromPrefs) {
+        return Long.parseLong(valueFromPrefs) * AlarmManager.INTERVAL_DAY;
+    }
+
     private String[] readPlaybackSpeedArray(String valueFromPrefs) {
         String[] selectedSpeeds = null;
         // If this preference hasn't been set yet, return the default options
@@ -405,6 +422,33 @@ public class UserPreferences implements
         return instance.episodeCacheSize;
     }
 
+    /**
+     * Returns the maximum number of bytes that downloaded episodes may occupy or 0 if
+     * the size of the episode cache is not limited.
+     */
+    public static long getEpisodeCacheMaxSize() {
+        instanceAvailable();
+        return instance.episodeCacheMaxSize;
+    }
+
+    /**
+     * Returns the number of bytes that the episode cache cleanup tries to keep free on the
+     * storage device or 0 if the free space should not be considered.
+     */
+    public static long getEpisodeCacheMinFreeSpace() {
+        instanceAvailable();
+        return instance.episodeCacheMinFreeSpace;
+    }
+
+    /**
+     * Returns the number of milliseconds for which download log entries are kept or 0 if
+     * they are only removed when the log becomes too large.
+     */
+    public static long getDownloadLogRetention() {
+        instanceAvailable();
+        return instance.downloadLogRetention;
+    }
+
     public static boolean isEnableAutodownload() {
         instanceAvailable();
         return instance.enableAutodownload;
@@ -522,6 +566,15 @@ public class UserPreferences implements
             case PREF_EPISODE_CACHE_SIZE:
                 episodeCacheSize = readEpisodeCacheSizeInternal(sp.getString(PREF_EPISODE_CACHE_SIZE, "20"));
                 break;
+            case PREF_EPISODE_CACHE_MAX_SIZE:
+                episodeCacheMaxSize = readMegabytes(sp.getString(PREF_EPISODE_CACHE_MAX_SIZE, "0"));
+                break;
+            case PREF_EPISODE_CACHE_MIN_FREE_SPACE:
+                episodeCacheMinFreeSpace = readMegabytes(sp.getString(PREF_EPISODE_CACHE_MIN_FREE_SPACE, "0"));
+                break;
+            case PREF_DOWNLOAD_LOG_RETENTION:
+                downloadLogRetention = readDays(sp.getString(PREF_DOWNLOAD_LOG_RETENTION, "90"));
+                break;
             case PREF_ENABLE_AUTODL:
                 enableAutodownload = sp.getBoolean(PREF_ENABLE_AUTODL, false);
                 break;
@@ -769,7 +822,9 @@ public class UserPreferences implements
                 instance.context, 0, new Intent(ClientConfig.applicationCallbacks.getApplicationInstance(), FeedUpdateReceiver.class), 0);
         alarmManager.cancel(updateIntent);
         if (intervalMillis != 0) {
-            alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, triggerAtMillis, intervalMillis,
+            // due feeds are refreshed together, so the exact time of the wakeup doesn't matter
+            // and the system may deliver it together with other alarms
+            alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, triggerAtMillis, intervalMillis,
                     updateIntent);
             Log.d(TAG, "Changed alarm to new interval");
         } else {
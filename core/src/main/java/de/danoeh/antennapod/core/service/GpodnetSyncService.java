@@ -14,8 +14,10 @@ import android.util.Pair;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.core.R;
@@ -36,6 +38,8 @@ import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
+import de.danoeh.antennapod.core.util.LongIntMap;
+import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.core.util.NetworkUtils;
 
 /**
@@ -47,6 +51,11 @@ public class GpodnetSyncService extends Service {
 
     private static final long WAIT_INTERVAL = 5000L;
 
+    /**
+     * Maximum number of episode actions that are uploaded in one request.
+     */
+    private static final int UPLOAD_PAGE_SIZE = 1000;
+
     public static final String ARG_ACTION = "action";
 
     public static final String ACTION_SYNC = "de.danoeh.antennapod.intent.action.sync";
@@ -196,33 +205,33 @@ public class GpodnetSyncService extends Service {
             // download episode actions
             GpodnetEpisodeActionGetResponse getResponse = service.getEpisodeChanges(timestamp);
             long lastUpdate = getResponse.getTimestamp();
-            Log.d(TAG, "Downloaded episode actions: " + getResponse);
             List<GpodnetEpisodeAction> remoteActions = getResponse.getEpisodeActions();
+            Log.d(TAG, "Downloaded " + remoteActions.size() + " episode actions");
 
             List<GpodnetEpisodeAction> localActions = GpodnetPreferences.getQueuedEpisodeActions();
             processEpisodeActions(localActions, remoteActions);
 
-            // upload local actions
-            if(localActions.size() > 0) {
-                Log.d(TAG, "Uploading episode actions: " + localActions);
-                GpodnetEpisodeActionPostResponse postResponse = service.uploadEpisodeActions(localActions);
+            // upload local actions, every uploaded page is removed from the queue right away
+            for (int start = 0; start < localActions.size(); start += UPLOAD_PAGE_SIZE) {
+                List<GpodnetEpisodeAction> page = localActions.subList(start,
+                        Math.min(localActions.size(), start + UPLOAD_PAGE_SIZE));
+                Log.d(TAG, "Uploading " + page.size() + " episode actions");
+                GpodnetEpisodeActionPostResponse postResponse = service.uploadEpisodeActions(page);
                 lastUpdate = postResponse.timestamp;
                 Log.d(TAG, "Upload episode response: " + postResponse);
-                GpodnetPreferences.removeQueuedEpisodeActions(localActions);
+                GpodnetPreferences.removeQueuedEpisodeActions(page);
             }
             GpodnetPreferences.setLastEpisodeActionsSyncTimestamp(lastUpdate);
             clearErrorNotifications();
         } catch (GpodnetServiceException e) {
             e.printStackTrace();
             updateErrorNotification(e);
-        } catch (DownloadRequestException e) {
-            e.printStackTrace();
         }
     }
 
 
     private synchronized void processEpisodeActions(List<GpodnetEpisodeAction> localActions,
-                                                    List<GpodnetEpisodeAction> remoteActions) throws DownloadRequestException {
+                                                    List<GpodnetEpisodeAction> remoteActions) {
         if(remoteActions.size() == 0) {
             return;
         }
@@ -238,16 +247,12 @@ public class GpodnetSyncService extends Service {
         }
 
         // make sure more recent local actions are not overwritten by older remote actions
+        Set<Pair<String, String>> newEpisodes = new HashSet<Pair<String, String>>();
         Map<Pair<String, String>, GpodnetEpisodeAction> mostRecentPlayAction = new HashMap<Pair<String, String>, GpodnetEpisodeAction>();
         for (GpodnetEpisodeAction action : remoteActions) {
             switch (action.getAction()) {
                 case NEW:
-                    FeedItem newItem = DBReader.getFeedItem(this, action.getPodcast(), action.getEpisode());
-                    if(newItem != null) {
-                        DBWriter.markItemRead(this, newItem, false, true);
-                    } else {
-                        Log.i(TAG, "Unknown feed item: " + action);
-                    }
+                    newEpisodes.add(new Pair<String, String>(action.getPodcast(), action.getEpisode()));
                     break;
                 case DOWNLOAD:
                     break;
@@ -269,18 +274,42 @@ public class GpodnetSyncService extends Service {
                     break;
             }
         }
-        for (GpodnetEpisodeAction action : mostRecentPlayAction.values()) {
-            FeedItem playItem = DBReader.getFeedItem(this, action.getPodcast(), action.getEpisode());
+
+        // look up all referenced episodes at once instead of querying the database for every action
+        Set<Pair<String, String>> episodes = new HashSet<Pair<String, String>>(newEpisodes);
+        episodes.addAll(mostRecentPlayAction.keySet());
+        Map<Pair<String, String>, FeedItem> items = DBReader.getFeedItemsByUrls(this, episodes);
+
+        LongList unplayedItemIds = new LongList();
+        LongList playedItemIds = new LongList();
+        LongIntMap positions = new LongIntMap();
+        LongList completedMediaIds = new LongList();
+        for (Pair<String, String> key : newEpisodes) {
+            FeedItem newItem = items.get(key);
+            if(newItem != null) {
+                unplayedItemIds.add(newItem.getId());
+                positions.put(newItem.getMedia().getId(), 0);
+            } else {
+                Log.i(TAG, "Unknown feed item: " + key.first + ", " + key.second);
+            }
+        }
+        for (Map.Entry<Pair<String, String>, GpodnetEpisodeAction> entry : mostRecentPlayAction.entrySet()) {
+            FeedItem playItem = items.get(entry.getKey());
             if (playItem != null) {
                 FeedMedia media = playItem.getMedia();
-                media.setPosition(action.getPosition() * 1000);
-                DBWriter.setFeedMedia(this, media);
-                if(playItem.getMedia().hasAlmostEnded()) {
-                    DBWriter.markItemRead(this, playItem, true, true);
-                    DBWriter.addItemToPlaybackHistory(this, playItem.getMedia());
+                media.setPosition(entry.getValue().getPosition() * 1000);
+                if(media.hasAlmostEnded()) {
+                    playedItemIds.add(playItem.getId());
+                    completedMediaIds.add(media.getId());
+                    positions.put(media.getId(), 0);
+                } else {
+                    positions.put(media.getId(), media.getPosition());
                 }
             }
         }
+        if (unplayedItemIds.size() > 0 || playedItemIds.size() > 0 || positions.size() > 0) {
+            DBWriter.setEpisodeStates(this, unplayedItemIds, playedItemIds, positions, completedMediaIds);
+        }
     }
 
     private void clearErrorNotifications() {
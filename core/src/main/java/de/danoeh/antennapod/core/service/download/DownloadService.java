@@ -10,7 +10,6 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.media.MediaMetadataRetriever;
 import android.os.Binder;
 import android.os.Handler;
 import android.os.IBinder;
@@ -20,7 +19,6 @@ import android.util.Log;
 import android.webkit.URLUtil;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.http.HttpStatus;
@@ -42,6 +40,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -54,6 +53,7 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.core.R;
+import de.danoeh.antennapod.core.asynctask.ThumbnailCache;
 import de.danoeh.antennapod.core.feed.EventDistributor;
 import de.danoeh.antennapod.core.feed.Feed;
 import de.danoeh.antennapod.core.feed.FeedImage;
@@ -69,12 +69,14 @@ import de.danoeh.antennapod.core.storage.DBTasks;
 import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.storage.DownloadRequestException;
 import de.danoeh.antennapod.core.storage.DownloadRequester;
+import de.danoeh.antennapod.core.storage.MediaMetadataIndexer;
 import de.danoeh.antennapod.core.syndication.handler.FeedHandler;
 import de.danoeh.antennapod.core.syndication.handler.FeedHandlerResult;
 import de.danoeh.antennapod.core.syndication.handler.UnsupportedFeedtypeException;
 import de.danoeh.antennapod.core.util.ChapterUtils;
 import de.danoeh.antennapod.core.util.DownloadError;
 import de.danoeh.antennapod.core.util.InvalidFeedException;
+import de.danoeh.antennapod.core.util.LongList;
 
 /**
  * Manages the download of feedfiles in the app. Downloads can be enqueued viathe startService intent.
@@ -115,8 +117,9 @@ public class DownloadService extends Service {
 
     /**
      * Stores new media files that will be queued for auto-download if possible.
+     * Access must be synchronized on the list.
      */
-    private List<Long> newMediaFiles;
+    private LongList newMediaFiles;
 
     /**
      * Contains all completed downloads that have not been included in the report yet.
@@ -196,7 +199,10 @@ public class DownloadService extends Service {
                         }
                     } else {
                         numberOfDownloads.decrementAndGet();
-                        if (!status.isCancelled()) {
+                        if (status.isNotModified() && type == Feed.FEEDFILETYPE_FEED) {
+                            // the feed has been checked, even if nothing needs to be parsed
+                            DBWriter.setFeedLastUpdateFailed(DownloadService.this, status.getFeedfileId(), false);
+                        } else if (!status.isCancelled()) {
                             if (status.getReason() == DownloadError.ERROR_UNAUTHORIZED) {
                                 postAuthenticationNotification(downloader.getDownloadRequest());
                             } else if (status.getReason() == DownloadError.ERROR_HTTP_DATA_ERROR
@@ -241,7 +247,7 @@ public class DownloadService extends Service {
         Log.d(TAG, "Service started");
         isRunning = true;
         handler = new Handler();
-        newMediaFiles = Collections.synchronizedList(new ArrayList<Long>());
+        newMediaFiles = new LongList();
         reportQueue = Collections.synchronizedList(new ArrayList<DownloadStatus>());
         downloads = new ArrayList<Downloader>();
         numberOfDownloads = new AtomicInteger(0);
@@ -325,9 +331,12 @@ public class DownloadService extends Service {
         cancelNotificationUpdater();
         unregisterReceiver(cancelDownloadReceiver);
 
-        if (!newMediaFiles.isEmpty()) {
-            DBTasks.autodownloadUndownloadedItems(getApplicationContext(),
-                    ArrayUtils.toPrimitive(newMediaFiles.toArray(new Long[newMediaFiles.size()])));
+        long[] mediaIds;
+        synchronized (newMediaFiles) {
+            mediaIds = newMediaFiles.toArray();
+        }
+        if (mediaIds.length > 0) {
+            DBTasks.autodownloadUndownloadedItems(getApplicationContext(), mediaIds);
         }
     }
 
@@ -662,7 +671,13 @@ public class DownloadService extends Service {
         private static final String TAG = "FeedSyncThread";
 
         private BlockingQueue<DownloadRequest> completedRequests = new LinkedBlockingDeque<DownloadRequest>();
-        private CompletionService<Pair<DownloadRequest, FeedHandlerResult>> parserService = new ExecutorCompletionService<Pair<DownloadRequest, FeedHandlerResult>>(Executors.newSingleThreadExecutor());
+        /**
+         * Maximum number of feeds that are parsed at the same time.
+         */
+        private final int numParserThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+        private ExecutorService parserExecutor = Executors.newFixedThreadPool(numParserThreads);
+        private CompletionService<Pair<DownloadRequest, FeedHandlerResult>> parserService = new ExecutorCompletionService<Pair<DownloadRequest, FeedHandlerResult>>(parserExecutor);
         private ExecutorService dbService = Executors.newSingleThreadExecutor();
         private Future<?> dbUpdateFuture;
         private volatile boolean isActive = true;
@@ -684,8 +699,9 @@ public class DownloadService extends Service {
 
             try {
                 DownloadRequest request = completedRequests.take();
-                parserService.submit(new FeedParserTask(request));
-                tasks++;
+                if (submitParserTask(request)) {
+                    tasks++;
+                }
             } catch (InterruptedException e) {
                 return null;
             }
@@ -735,13 +751,30 @@ public class DownloadService extends Service {
 
         private int pollCompletedDownloads() {
             int tasks = 0;
-            for (int i = 0; i < completedRequests.size(); i++) {
-                parserService.submit(new FeedParserTask(completedRequests.poll()));
-                tasks++;
+            DownloadRequest request;
+            while ((request = completedRequests.poll()) != null) {
+                if (submitParserTask(request)) {
+                    tasks++;
+                }
             }
             return tasks;
         }
 
+        /**
+         * Submits a FeedParserTask for the given request.
+         *
+         * @return false if the request has been ignored because the parser threads have already been shut down.
+         */
+        private boolean submitParserTask(DownloadRequest request) {
+            try {
+                parserService.submit(new FeedParserTask(request));
+                return true;
+            } catch (RejectedExecutionException e) {
+                Log.d(TAG, "FeedSyncThread has been shut down, ignoring " + request.getSource());
+                return false;
+            }
+        }
+
         @Override
         public void run() {
             while (isActive) {
@@ -815,7 +848,9 @@ public class DownloadService extends Service {
                                     }
                                 }
                                 if (!item.isRead() && item.hasMedia() && !item.getMedia().isDownloaded()) {
-                                    newMediaFiles.add(item.getMedia().getId());
+                                    synchronized (newMediaFiles) {
+                                        newMediaFiles.add(item.getMedia().getId());
+                                    }
                                 }
                             }
 
@@ -939,8 +974,8 @@ public class DownloadService extends Service {
 
             if (successful) {
                 // we create a 'successful' download log if the feed's last refresh failed
-                List<DownloadStatus> log = DBReader.getFeedDownloadLog(DownloadService.this, feed);
-                if(log.size() > 0 && log.get(0).isSuccessful() == false) {
+                DownloadStatus lastStatus = DBReader.getLatestFeedDownloadStatus(DownloadService.this, feed);
+                if (lastStatus != null && !lastStatus.isSuccessful()) {
                     saveDownloadStatus(new DownloadStatus(feed,
                             feed.getHumanReadableIdentifier(), DownloadError.SUCCESS, successful,
                             reasonDetailed));
@@ -1027,6 +1062,8 @@ public class DownloadService extends Service {
 
         public void shutdown() {
             isActive = false;
+            // feeds that have already been submitted are still parsed
+            parserExecutor.shutdown();
             if (isCollectingRequests) {
                 interrupt();
             }
@@ -1108,6 +1145,8 @@ public class DownloadService extends Service {
 
             image.setFile_url(request.getDestination());
             image.setDownloaded(true);
+            // list views only need a small version of the image
+            ThumbnailCache.createThumbnail(DownloadService.this, new File(request.getDestination()));
 
             saveDownloadStatus(status);
             sendDownloadHandledIntent();
@@ -1144,28 +1183,18 @@ public class DownloadService extends Service {
             boolean chaptersRead = false;
             media.setDownloaded(true);
             media.setFile_url(request.getDestination());
-            media.setHasEmbeddedPicture(null);
-
-            // Get duration
-            MediaMetadataRetriever mmr = null;
-            try {
-                mmr = new MediaMetadataRetriever();
-                mmr.setDataSource(media.getFile_url());
-                String durationStr = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-                media.setDuration(Integer.parseInt(durationStr));
-                Log.d(TAG, "Duration of file is " + media.getDuration());
-            } catch (NumberFormatException e) {
-                e.printStackTrace();
-            } catch (RuntimeException e) {
-                e.printStackTrace();
-            } finally {
-                if (mmr != null) {
-                    mmr.release();
-                }
+            // the episode cache is limited by the size of the downloaded files
+            long fileSize = new File(request.getDestination()).length();
+            if (fileSize > 0) {
+                media.setSize(fileSize);
             }
 
+            // Get duration and embedded picture
+            MediaMetadataIndexer.readMetadata(DownloadService.this, media);
+
             if (media.getItem().getChapters() == null) {
-                ChapterUtils.loadChaptersFromFileUrl(media);
+                boolean success = ChapterUtils.loadChaptersFromFileUrl(media);
+                media.setChapterScanResult(success);
                 if (media.getItem().getChapters() != null) {
                     chaptersRead = true;
                 }
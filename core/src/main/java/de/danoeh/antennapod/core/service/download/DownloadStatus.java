@@ -43,6 +43,8 @@ public class DownloadStatus {
 	// ------------------------------------ NOT STORED IN DB
 	protected boolean done;
 	protected boolean cancelled;
+	/** True if the server has answered that the requested file was not modified. */
+	protected boolean notModified;
 
 	/** Constructor for restoring Download status entries from DB. */
 	public DownloadStatus(long id, String title, long feedfileId,
@@ -151,6 +153,10 @@ public class DownloadStatus {
         return cancelled;
     }
 
+    public boolean isNotModified() {
+        return notModified;
+    }
+
     public void setSuccessful() {
         this.successful = true;
         this.reason = DownloadError.SUCCESS;
@@ -171,6 +177,15 @@ public class DownloadStatus {
         this.cancelled = true;
     }
 
+    /**
+     * Marks the download as cancelled because the file hasn't changed since the time given in the
+     * If-Modified-Since header of the request.
+     */
+    public void setNotModified() {
+        setCancelled();
+        this.notModified = true;
+    }
+
     public void setCompletionDate(Date completionDate) {
         this.completionDate = (Date) completionDate.clone();
     }
@@ -0,0 +1,80 @@
+package de.danoeh.antennapod.core.service.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reads the destination file of a Downloader while the download is still running.
+ * <p/>
+ * Only the bytes that the downloader has already written are returned. If the reader
+ * is faster than the download, read() blocks until more data has arrived or the
+ * download has finished. The stream ends when the download has finished, regardless
+ * of whether it was successful, so the result of the Downloader has to be checked
+ * separately.
+ */
+public class DownloadingFileInputStream extends InputStream {
+
+    /**
+     * Time in milliseconds to wait before checking again whether new data has arrived.
+     */
+    private static final long POLL_INTERVAL = 50;
+
+    private final Downloader downloader;
+    private final File file;
+    private RandomAccessFile in;
+    private long position;
+
+    public DownloadingFileInputStream(Downloader downloader) {
+        this.downloader = downloader;
+        this.file = new File(downloader.getDownloadRequest().getDestination());
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] buffer = new byte[1];
+        int count = read(buffer, 0, 1);
+        return (count == -1) ? -1 : (buffer[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            // isFinished has to be checked first, the downloader might write more data in between
+            final boolean finished = downloader.isFinished();
+            final long available = downloader.getDownloadRequest().getSoFar() - position;
+            if (available > 0) {
+                if (in == null) {
+                    in = new RandomAccessFile(file, "r");
+                    in.seek(position);
+                }
+                int count = in.read(buffer, offset, (int) Math.min(length, available));
+                if (count > 0) {
+                    position += count;
+                    return count;
+                }
+            }
+            if (finished) {
+                return -1;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+}
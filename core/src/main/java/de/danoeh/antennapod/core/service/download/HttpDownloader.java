@@ -126,7 +126,8 @@ public class HttpDownloader extends Downloader {
 
             if(!response.isSuccessful() && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
                 Log.d(TAG, "Feed '" + request.getSource() + "' not modified since last update, Download canceled");
-                onCancelled();
+                result.setNotModified();
+                cleanup();
                 return;
             }
 
@@ -0,0 +1,349 @@
+package de.danoeh.antennapod.core.service.download;
+
+import android.content.Context;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import de.danoeh.antennapod.core.ClientConfig;
+
+/**
+ * Executes requests to podcast directories like gpodder.net or the iTunes store.
+ * <p/>
+ * Responses are cached in memory and on disk. A cached response is used as long as it is not
+ * older than the maximum age that the caller passes with the request. If the same URL is
+ * requested again while a request for it is still running, the second caller waits for the
+ * result of the first request instead of starting a new one.
+ * <p/>
+ * Requests can be given a tag. A running request is cancelled if another URL is requested
+ * with the same tag, e.g. when the user submits a new search query before the results
+ * of the previous one have arrived. Requests that other callers are still waiting for are
+ * not cancelled.
+ */
+public class PodcastDirectoryClient {
+    private static final String TAG = "PodcastDirectoryClient";
+
+    /**
+     * Maximum age of cached search results in milliseconds.
+     */
+    public static final long SEARCH_MAX_AGE = 60L * 60 * 1000;
+
+    /**
+     * Maximum age of cached toplists in milliseconds.
+     */
+    public static final long TOPLIST_MAX_AGE = 6L * 60 * 60 * 1000;
+
+    private static final String DIRECTORY = "directory";
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Maximum number of responses that are kept in memory.
+     */
+    private static final int MEMORY_CACHE_SIZE = 32;
+
+    /**
+     * Maximum number of responses that are kept on disk.
+     */
+    private static final int DISK_CACHE_SIZE = 100;
+
+    private static PodcastDirectoryClient instance;
+
+    public static synchronized PodcastDirectoryClient getInstance() {
+        if (instance == null) {
+            instance = new PodcastDirectoryClient(ClientConfig.applicationCallbacks.getApplicationInstance());
+        }
+        return instance;
+    }
+
+    private final OkHttpClient httpClient;
+    private final LruCache<String, CachedResponse> memoryCache;
+    private final File directory;
+
+    // guarded by this
+    private final Map<String, PendingRequest> pendingRequests;
+    private final Map<Object, String> urlsByTag;
+
+    private PodcastDirectoryClient(Context context) {
+        httpClient = AntennapodHttpClient.getHttpClient();
+        memoryCache = new LruCache<String, CachedResponse>(MEMORY_CACHE_SIZE);
+        directory = new File(context.getCacheDir(), DIRECTORY);
+        pendingRequests = new HashMap<String, PendingRequest>();
+        urlsByTag = new HashMap<Object, String>();
+    }
+
+    /**
+     * Returns the body of the response to a GET request. This method blocks and must not be called
+     * on the GUI thread.
+     *
+     * @param request The request. Its URL identifies the response in the cache.
+     * @param maxAge  Maximum age of a cached response in milliseconds.
+     * @param tag     Requests with the same tag supersede each other. May be null.
+     * @throws StatusCodeException if the server didn't respond with status code 200.
+     * @throws IOException         if the request has failed or has been cancelled.
+     */
+    public String get(Request request, long maxAge, Object tag) throws IOException {
+        final String url = request.urlString();
+        String body = getCachedResponse(url, maxAge);
+        if (body != null) {
+            Log.d(TAG, "Using cached response for " + url);
+            return body;
+        }
+
+        PendingRequest pending;
+        boolean execute = false;
+        synchronized (this) {
+            if (tag != null) {
+                String previousUrl = urlsByTag.put(tag, url);
+                if (previousUrl != null && !previousUrl.equals(url)) {
+                    PendingRequest previous = pendingRequests.get(previousUrl);
+                    if (previous != null && previous.detach(tag)) {
+                        Log.d(TAG, "Cancelling superseded request for " + previousUrl);
+                        previous.call.cancel();
+                        // later requests for this URL must not wait for the cancelled call
+                        pendingRequests.remove(previousUrl);
+                    }
+                }
+            }
+            pending = pendingRequests.get(url);
+            if (pending == null) {
+                pending = new PendingRequest(httpClient.newCall(request));
+                pendingRequests.put(url, pending);
+                execute = true;
+            }
+            pending.attach(tag);
+        }
+        if (!execute) {
+            Log.d(TAG, "Waiting for running request for " + url);
+            return pending.await();
+        }
+
+        try {
+            Response response = pending.call.execute();
+            if (response.code() != 200) {
+                response.body().close();
+                throw new StatusCodeException(response.code());
+            }
+            body = response.body().string();
+            putCachedResponse(url, body);
+            pending.finish(body, null);
+            return body;
+        } catch (IOException e) {
+            pending.finish(null, e);
+            throw e;
+        } catch (RuntimeException e) {
+            // callers that are waiting for this request must not block forever
+            pending.finish(null, new IOException(e));
+            throw e;
+        } finally {
+            synchronized (this) {
+                // a newer request for the same URL may have replaced this one if it was cancelled
+                PendingRequest current = pendingRequests.get(url);
+                if (current == pending) {
+                    pendingRequests.remove(url);
+                    current = null;
+                }
+                for (Object pendingTag : pending.tags) {
+                    if (url.equals(urlsByTag.get(pendingTag))
+                            && (current == null || !current.tags.contains(pendingTag))) {
+                        urlsByTag.remove(pendingTag);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached responses.
+     */
+    public synchronized void clearCache() {
+        memoryCache.evictAll();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private String getCachedResponse(String url, long maxAge) {
+        CachedResponse cached = memoryCache.get(url);
+        if (cached == null) {
+            cached = readCachedResponse(url);
+            if (cached != null) {
+                memoryCache.put(url, cached);
+            }
+        }
+        if (cached != null && System.currentTimeMillis() - cached.time < maxAge) {
+            return cached.body;
+        }
+        return null;
+    }
+
+    private void putCachedResponse(String url, String body) {
+        CachedResponse cached = new CachedResponse(System.currentTimeMillis(), body);
+        memoryCache.put(url, cached);
+        synchronized (this) {
+            File file = getFile(url);
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                FileUtils.writeStringToFile(tmp, cached.time + "\n" + body, ENCODING);
+                if (!tmp.renameTo(file)) {
+                    FileUtils.deleteQuietly(tmp);
+                    return;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not write cached response for " + url, e);
+                FileUtils.deleteQuietly(tmp);
+                return;
+            }
+            trimToSize();
+        }
+    }
+
+    private synchronized CachedResponse readCachedResponse(String url) {
+        File file = getFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            String content = FileUtils.readFileToString(file, ENCODING);
+            int separator = content.indexOf('\n');
+            return new CachedResponse(Long.parseLong(content.substring(0, separator)),
+                    content.substring(separator + 1));
+        } catch (IOException | NumberFormatException | IndexOutOfBoundsException e) {
+            Log.e(TAG, "Could not read cached response for " + url, e);
+            FileUtils.deleteQuietly(file);
+            return null;
+        }
+    }
+
+    private File getFile(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes(ENCODING));
+            StringBuilder name = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                name.append(String.format("%02x", b & 0xff));
+            }
+            return new File(directory, name.toString());
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes the oldest files until the number of files in the disk cache is within its limit.
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= DISK_CACHE_SIZE) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return (l < r) ? -1 : ((l == r) ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - DISK_CACHE_SIZE; i++) {
+            FileUtils.deleteQuietly(files[i]);
+        }
+    }
+
+    /**
+     * Thrown if a podcast directory responds with an unexpected status code.
+     */
+    public static class StatusCodeException extends IOException {
+        private final int statusCode;
+
+        public StatusCodeException(int statusCode) {
+            super("Bad response code: " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    private static class CachedResponse {
+        final long time;
+        final String body;
+
+        CachedResponse(long time, String body) {
+            this.time = time;
+            this.body = body;
+        }
+    }
+
+    private static class PendingRequest {
+        final Call call;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private String body;
+        private IOException exception;
+
+        // guarded by the PodcastDirectoryClient
+        private final Set<Object> tags = new HashSet<Object>();
+        private int untaggedCallers;
+
+        PendingRequest(Call call) {
+            this.call = call;
+        }
+
+        /**
+         * Registers a caller that waits for the result of this request.
+         */
+        void attach(Object tag) {
+            if (tag != null) {
+                tags.add(tag);
+            } else {
+                untaggedCallers++;
+            }
+        }
+
+        /**
+         * Unregisters the callers with the given tag because they have been superseded.
+         *
+         * @return true if no other callers are waiting for the result of this request.
+         */
+        boolean detach(Object tag) {
+            tags.remove(tag);
+            return tags.isEmpty() && untaggedCallers == 0;
+        }
+
+        void finish(String body, IOException exception) {
+            this.body = body;
+            this.exception = exception;
+            done.countDown();
+        }
+
+        String await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            return body;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package de.danoeh.antennapod.core.service.playback;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single source of the playback position for the GUI (player activities, widget).
+ * <p/>
+ * The PlaybackService publishes the last known (position, timestamp, speed) triple whenever the
+ * player state changes. Between these updates, the position is extrapolated, so that observers
+ * neither have to call into the PlaybackService nor query the media player.
+ * <p/>
+ * Listeners are notified on the main thread whenever the position crosses a multiple of their
+ * update interval. Updates are scheduled relative to the extrapolated position, so they don't
+ * drift, and are only posted while media is playing, at least one listener is registered and
+ * the screen is on.
+ */
+public class PlaybackPositionClock {
+    private static final String TAG = "PlaybackPositionClock";
+
+    /**
+     * Returned by getPosition() if no position is known.
+     */
+    public static final int INVALID_TIME = PlaybackService.INVALID_TIME;
+
+    /**
+     * Default interval for listener updates in milliseconds.
+     */
+    public static final int DEFAULT_UPDATE_INTERVAL = 1000;
+
+    /**
+     * Lower bound for the delay between two updates in milliseconds.
+     */
+    private static final long MIN_UPDATE_DELAY = 50;
+
+    private static PlaybackPositionClock instance;
+
+    public static synchronized PlaybackPositionClock getInstance() {
+        if (instance == null) {
+            instance = new PlaybackPositionClock();
+        }
+        return instance;
+    }
+
+    /**
+     * Receives position updates from the PlaybackPositionClock. All methods are called on the main thread.
+     */
+    public interface Listener {
+        void onPositionUpdate(int position);
+    }
+
+    private static class ListenerEntry {
+        final Listener listener;
+        final int interval;
+
+        ListenerEntry(Listener listener, int interval) {
+            this.listener = listener;
+            this.interval = interval;
+        }
+    }
+
+    private final Handler handler;
+    private final List<ListenerEntry> listeners;
+
+    private int position = INVALID_TIME;
+    private long timestamp;
+    private float speed = 1.0f;
+    private boolean playing;
+    private boolean screenOn = true;
+
+    private PlaybackPositionClock() {
+        handler = new Handler(Looper.getMainLooper());
+        listeners = new ArrayList<ListenerEntry>();
+    }
+
+    /**
+     * Publishes a new reference point. Should be called by the PlaybackService whenever the
+     * position, the playback speed or the player status changes.
+     *
+     * @param position The current position in milliseconds or INVALID_TIME if no media is loaded.
+     * @param speed    The current playback speed.
+     * @param playing  true if the position is currently advancing.
+     */
+    public synchronized void update(int position, float speed, boolean playing) {
+        this.position = position;
+        this.timestamp = SystemClock.elapsedRealtime();
+        this.speed = (speed > 0) ? speed : 1.0f;
+        this.playing = playing && position != INVALID_TIME;
+        reschedule(true);
+    }
+
+    /**
+     * Forgets the current reference point, e.g. because the PlaybackService is shutting down.
+     */
+    public synchronized void reset() {
+        update(INVALID_TIME, 1.0f, false);
+    }
+
+    /**
+     * Returns the extrapolated position in milliseconds or INVALID_TIME if no position is known.
+     */
+    public synchronized int getPosition() {
+        if (position == INVALID_TIME) {
+            return INVALID_TIME;
+        }
+        if (!playing) {
+            return position;
+        }
+        return position + (int) ((SystemClock.elapsedRealtime() - timestamp) * speed);
+    }
+
+    /**
+     * Returns true if the position is currently advancing.
+     */
+    public synchronized boolean isRunning() {
+        return playing;
+    }
+
+    /**
+     * Suspends or resumes listener updates. While the screen is off, no updates are posted.
+     */
+    public synchronized void setScreenOn(boolean screenOn) {
+        if (this.screenOn != screenOn) {
+            Log.d(TAG, "Screen on: " + screenOn);
+            this.screenOn = screenOn;
+            reschedule(screenOn);
+        }
+    }
+
+    /**
+     * Registers a listener with the default update interval.
+     */
+    public void addListener(Listener listener) {
+        addListener(listener, DEFAULT_UPDATE_INTERVAL);
+    }
+
+    /**
+     * Registers a listener. If the listener is already registered, its update interval is changed.
+     *
+     * @param listener The listener. Must not be null.
+     * @param interval The update interval in milliseconds of media time. Must be > 0.
+     */
+    public synchronized void addListener(Listener listener, int interval) {
+        Validate.notNull(listener);
+        Validate.isTrue(interval > 0, "Interval must be > 0");
+        removeListenerEntry(listener);
+        listeners.add(new ListenerEntry(listener, interval));
+        reschedule(false);
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        removeListenerEntry(listener);
+        if (listeners.isEmpty()) {
+            handler.removeCallbacks(tick);
+        }
+    }
+
+    public synchronized boolean hasListener(Listener listener) {
+        for (ListenerEntry entry : listeners) {
+            if (entry.listener == listener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeListenerEntry(Listener listener) {
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i).listener == listener) {
+                listeners.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes pending updates and schedules the next one.
+     *
+     * @param notifyNow true if all listeners should be notified immediately
+     */
+    private void reschedule(boolean notifyNow) {
+        handler.removeCallbacks(tick);
+        if (listeners.isEmpty() || !screenOn || position == INVALID_TIME) {
+            return;
+        }
+        if (notifyNow) {
+            handler.removeCallbacks(notifyListeners);
+            handler.post(notifyListeners);
+        }
+        if (playing) {
+            handler.postDelayed(tick, getDelayUntilNextUpdate());
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds until the position crosses the next multiple of
+     * the update interval of any listener.
+     */
+    private long getDelayUntilNextUpdate() {
+        final int current = getPosition();
+        long minDelay = Long.MAX_VALUE;
+        for (ListenerEntry entry : listeners) {
+            final long nextBoundary = (current / entry.interval + 1) * (long) entry.interval;
+            final long delay = (long) Math.ceil((nextBoundary - current) / speed);
+            minDelay = Math.min(minDelay, delay);
+        }
+        return Math.max(minDelay, MIN_UPDATE_DELAY);
+    }
+
+    /**
+     * Notifies all listeners whose interval boundary was crossed since the last update.
+     */
+    private final Runnable tick = new Runnable() {
+        private int lastPosition = INVALID_TIME;
+
+        @Override
+        public void run() {
+            final List<Listener> due = new ArrayList<Listener>();
+            final int current;
+            synchronized (PlaybackPositionClock.this) {
+                current = getPosition();
+                for (ListenerEntry entry : listeners) {
+                    if (lastPosition == INVALID_TIME
+                            || current / entry.interval != lastPosition / entry.interval) {
+                        due.add(entry.listener);
+                    }
+                }
+                lastPosition = current;
+                if (playing && screenOn && !listeners.isEmpty()) {
+                    handler.postDelayed(this, getDelayUntilNextUpdate());
+                }
+            }
+            for (Listener listener : due) {
+                listener.onPositionUpdate(current);
+            }
+        }
+    };
+
+    private final Runnable notifyListeners = new Runnable() {
+        @Override
+        public void run() {
+            final List<Listener> all = new ArrayList<Listener>();
+            final int current;
+            synchronized (PlaybackPositionClock.this) {
+                current = getPosition();
+                for (ListenerEntry entry : listeners) {
+                    all.add(entry.listener);
+                }
+            }
+            if (current != INVALID_TIME) {
+                for (Listener listener : all) {
+                    listener.onPositionUpdate(current);
+                }
+            }
+        }
+    };
+}
@@ -0,0 +1,119 @@
+package de.danoeh.antennapod.core.service.playback;
+
+import android.util.Log;
+
+import de.danoeh.antennapod.core.util.playback.Playable;
+
+/**
+ * Coalesces the position updates of the currently playing media in memory and decides
+ * when they actually have to be written to the database.
+ * <p/>
+ * The position saver task of the PlaybackServiceTaskManager reports the current position
+ * every few seconds. Instead of persisting every report, a write only happens if
+ * <ul>
+ * <li>the position has moved by at least {@link #MIN_POSITION_DELTA} since the last write,</li>
+ * <li>the position has jumped (e.g. after a seek) instead of advancing at playback speed,</li>
+ * <li>more than {@link #MAX_PERSIST_INTERVAL} have passed since the last write or</li>
+ * <li>the caller forces a write because of a state transition (pause, stop, shutdown).</li>
+ * </ul>
+ * An unchanged position is never written twice. The intervals scale with the playback speed
+ * so that the amount of lost progress after a process death is bounded by wall-clock time.
+ */
+public class PlaybackPositionSaver {
+    private static final String TAG = "PlaybackPositionSaver";
+
+    /**
+     * Minimum change of the position in milliseconds (at normal playback speed) before the
+     * new position is written to the database.
+     */
+    public static final int MIN_POSITION_DELTA = 60000;
+
+    /**
+     * Maximum time in milliseconds a changed position is kept in memory only.
+     */
+    public static final long MAX_PERSIST_INTERVAL = 60000;
+
+    /**
+     * Tolerance in milliseconds before a position change that doesn't match the elapsed time
+     * is considered a jump.
+     */
+    private static final int JUMP_TOLERANCE = 3000;
+
+    private static final int NO_POSITION = -1;
+
+    private Object persistedIdentifier;
+    private int persistedPosition = NO_POSITION;
+    private long persistedTimestamp;
+
+    private int lastPosition = NO_POSITION;
+    private long lastTimestamp;
+
+    /**
+     * Records a new position of the given media and returns true if it should be persisted now.
+     * If this method returns true, the caller has to call {@link #onPersisted(Playable, int)}
+     * after writing the position.
+     *
+     * @param playable The media that is currently playing.
+     * @param position The current position in milliseconds.
+     * @param speed    The current playback speed.
+     * @param force    true if the position should be persisted regardless of the interval,
+     *                 e.g. because the player state changes.
+     */
+    public synchronized boolean update(Playable playable, int position, float speed, boolean force) {
+        final long now = System.currentTimeMillis();
+        final Object identifier = playable.getIdentifier();
+        final boolean sameMedia = identifier != null && identifier.equals(persistedIdentifier);
+
+        boolean persist;
+        if (!sameMedia) {
+            persist = true;
+        } else if (position == persistedPosition) {
+            // nothing has changed since the last write
+            persist = false;
+        } else if (force) {
+            persist = true;
+        } else {
+            final float factor = Math.max(speed, 1.0f);
+            persist = Math.abs(position - persistedPosition) >= MIN_POSITION_DELTA * factor
+                    || now - persistedTimestamp >= MAX_PERSIST_INTERVAL
+                    || hasJumped(position, speed, now);
+        }
+        lastPosition = position;
+        lastTimestamp = now;
+        if (!persist) {
+            Log.d(TAG, "Keeping position " + position + " in memory");
+        }
+        return persist;
+    }
+
+    /**
+     * Returns true if the position doesn't match the time that has elapsed since the last update.
+     */
+    private boolean hasJumped(int position, float speed, long now) {
+        if (lastPosition == NO_POSITION) {
+            return false;
+        }
+        final long expected = lastPosition + (long) ((now - lastTimestamp) * speed);
+        return Math.abs(position - expected) > JUMP_TOLERANCE;
+    }
+
+    /**
+     * Must be called after the given position has been written.
+     */
+    public synchronized void onPersisted(Playable playable, int position) {
+        persistedIdentifier = playable.getIdentifier();
+        persistedPosition = position;
+        persistedTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Forgets about the last persisted state, e.g. after playback of a media has ended.
+     */
+    public synchronized void reset() {
+        persistedIdentifier = null;
+        persistedPosition = NO_POSITION;
+        persistedTimestamp = 0;
+        lastPosition = NO_POSITION;
+        lastTimestamp = 0;
+    }
+}
@@ -21,6 +21,7 @@ import android.os.AsyncTask;
 import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.PowerManager;
 import android.preference.PreferenceManager;
 import android.support.v4.app.NotificationCompat;
 import android.util.Log;
@@ -168,6 +169,7 @@ public class PlaybackService extends Service {
     private RemoteControlClient remoteControlClient;
     private PlaybackServiceMediaPlayer mediaPlayer;
     private PlaybackServiceTaskManager taskManager;
+    private PlaybackPositionSaver positionSaver;
 
     private int startPosition;
 
@@ -234,8 +236,14 @@ public class PlaybackService extends Service {
                 ACTION_PAUSE_PLAY_CURRENT_EPISODE));
         registerReceiver(pauseResumeCurrentEpisodeReceiver, new IntentFilter(
                 ACTION_RESUME_PLAY_CURRENT_EPISODE));
+        IntentFilter screenStateFilter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        screenStateFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenStateChanged, screenStateFilter);
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        PlaybackPositionClock.getInstance().setScreenOn(powerManager.isScreenOn());
         remoteControlClient = setupRemoteControlClient();
         taskManager = new PlaybackServiceTaskManager(this, taskManagerCallback);
+        positionSaver = new PlaybackPositionSaver();
         mediaPlayer = new PlaybackServiceMediaPlayer(this, mediaPlayerCallback);
 
     }
@@ -256,8 +264,12 @@ public class PlaybackService extends Service {
         unregisterReceiver(skipCurrentEpisodeReceiver);
         unregisterReceiver(pausePlayCurrentEpisodeReceiver);
         unregisterReceiver(pauseResumeCurrentEpisodeReceiver);
+        unregisterReceiver(screenStateChanged);
+        // make sure that the position that was only kept in memory is not lost
+        saveCurrentPosition(false, 0, true);
         mediaPlayer.shutdown();
         taskManager.shutdown();
+        PlaybackPositionClock.getInstance().reset();
     }
 
     @Override
@@ -383,6 +395,7 @@ public class PlaybackService extends Service {
      */
     private void resetVideoSurface() {
         taskManager.cancelPositionSaver();
+        saveCurrentPosition(false, 0, true);
         mediaPlayer.resetVideoSurface();
     }
 
@@ -394,7 +407,9 @@ public class PlaybackService extends Service {
     private final PlaybackServiceTaskManager.PSTMCallback taskManagerCallback = new PlaybackServiceTaskManager.PSTMCallback() {
         @Override
         public void positionSaverTick() {
-            saveCurrentPosition(true, PlaybackServiceTaskManager.POSITION_SAVER_WAITING_INTERVAL);
+            saveCurrentPosition(true, PlaybackServiceTaskManager.POSITION_SAVER_WAITING_INTERVAL, false);
+            // correct the extrapolated position of the clock
+            updatePositionClock(mediaPlayer.getPlayerStatus());
         }
 
         @Override
@@ -419,6 +434,7 @@ public class PlaybackService extends Service {
         @Override
         public void statusChanged(PlaybackServiceMediaPlayer.PSMPInfo newInfo) {
             currentMediaType = mediaPlayer.getCurrentMediaType();
+            updatePositionClock(newInfo.playerStatus);
             switch (newInfo.playerStatus) {
                 case INITIALIZED:
                     writePlaybackPreferences();
@@ -430,7 +446,7 @@ public class PlaybackService extends Service {
 
                 case PAUSED:
                     taskManager.cancelPositionSaver();
-                    saveCurrentPosition(false, 0);
+                    saveCurrentPosition(false, 0, true);
                     taskManager.cancelWidgetUpdater();
                     if (UserPreferences.isPersistNotify() && android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
                         // do not remove notification on pause based on user pref and whether android version supports expanded notifications
@@ -498,6 +514,7 @@ public class PlaybackService extends Service {
 
         @Override
         public void playbackSpeedChanged(float s) {
+            updatePositionClock(mediaPlayer.getPlayerStatus());
             sendNotificationBroadcast(
                     NOTIFICATION_TYPE_PLAYBACK_SPEED_CHANGE, 0);
         }
@@ -556,6 +573,7 @@ public class PlaybackService extends Service {
         }
 
         taskManager.cancelPositionSaver();
+        positionSaver.reset();
 
         boolean isInQueue = false;
         FeedItem nextItem = null;
@@ -914,18 +932,21 @@ public class PlaybackService extends Service {
     }
 
     /**
-     * Saves the current position of the media file to the DB
+     * Saves the current position of the media file. The position is always updated in memory, but only written
+     * to the DB if the PlaybackPositionSaver decides that it has changed significantly or if forcePersist is true.
      *
      * @param updatePlayedDuration true if played_duration should be updated. This applies only to FeedMedia objects
      * @param deltaPlayedDuration  value by which played_duration should be increased.
+     * @param forcePersist         true if the position should be written to the DB regardless of the save interval,
+     *                             e.g. because playback is paused or the service is shutting down.
      */
-    private synchronized void saveCurrentPosition(boolean updatePlayedDuration, int deltaPlayedDuration) {
+    private synchronized void saveCurrentPosition(boolean updatePlayedDuration, int deltaPlayedDuration,
+                                                  boolean forcePersist) {
         int position = getCurrentPosition();
         int duration = getDuration();
         float playbackSpeed = getCurrentPlaybackSpeed();
         final Playable playable = mediaPlayer.getPSMPInfo().playable;
         if (position != INVALID_TIME && duration != INVALID_TIME && playable != null) {
-            Log.d(TAG, "Saving current position to " + position);
             if (updatePlayedDuration && playable instanceof FeedMedia) {
                 FeedMedia media = (FeedMedia) playable;
                 FeedItem item = media.getItem();
@@ -938,13 +959,27 @@ public class PlaybackService extends Service {
                     DBTasks.flattrItemIfLoggedIn(this, item);
                 }
             }
-            playable.saveCurrentPosition(PreferenceManager
-                            .getDefaultSharedPreferences(getApplicationContext()),
-                    position
-            );
+            if (positionSaver.update(playable, position, playbackSpeed, forcePersist)) {
+                Log.d(TAG, "Saving current position to " + position);
+                playable.saveCurrentPosition(PreferenceManager
+                                .getDefaultSharedPreferences(getApplicationContext()),
+                        position
+                );
+                positionSaver.onPersisted(playable, position);
+            } else {
+                playable.setPosition(position);
+            }
         }
     }
 
+    /**
+     * Publishes the current position, playback speed and player status to the PlaybackPositionClock.
+     */
+    private void updatePositionClock(PlayerStatus status) {
+        PlaybackPositionClock.getInstance().update(getCurrentPosition(), getCurrentPlaybackSpeed(),
+                status == PlayerStatus.PLAYING);
+    }
+
     private void stopWidgetUpdater() {
         taskManager.cancelWidgetUpdater();
         sendBroadcast(new Intent(STOP_WIDGET_UPDATE));
@@ -1098,6 +1133,17 @@ public class PlaybackService extends Service {
         }
     };
 
+    /**
+     * Suspends GUI position updates while the screen is off.
+     */
+    private BroadcastReceiver screenStateChanged = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            PlaybackPositionClock.getInstance().setScreenOn(
+                    StringUtils.equals(intent.getAction(), Intent.ACTION_SCREEN_ON));
+        }
+    };
+
     private BroadcastReceiver audioBecomingNoisy = new BroadcastReceiver() {
 
         @Override
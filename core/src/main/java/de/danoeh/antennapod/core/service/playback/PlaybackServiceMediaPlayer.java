@@ -34,6 +34,7 @@ import de.danoeh.antennapod.core.storage.DBWriter;
 import de.danoeh.antennapod.core.util.playback.AudioPlayer;
 import de.danoeh.antennapod.core.util.playback.IPlayer;
 import de.danoeh.antennapod.core.util.playback.Playable;
+import de.danoeh.antennapod.core.util.playback.SonicAudioPlayer;
 import de.danoeh.antennapod.core.util.playback.VideoPlayer;
 
 /**
@@ -64,6 +65,11 @@ public class PlaybackServiceMediaPlayer {
     private volatile boolean pausedBecauseOfTransientAudiofocusLoss;
     private volatile Pair<Integer, Integer> videoSize;
 
+    /**
+     * Identifier of the last media that SonicAudioPlayer could not prepare. This media is played with AudioPlayer.
+     */
+    private volatile Object sonicUnsupportedMedia;
+
     /**
      * Some asynchronous calls might change the state of the MediaPlayer object. Therefore calls in other threads
      * have to wait until these operations have finished.
@@ -217,11 +223,7 @@ public class PlaybackServiceMediaPlayer {
         try {
             media.loadMetadata();
             mediaSession.setMetadata(getMediaSessionMetadata(media));
-            if (stream) {
-                mediaPlayer.setDataSource(media.getStreamUrl());
-            } else {
-                mediaPlayer.setDataSource(media.getLocalMediaUrl());
-            }
+            setDataSource();
             setPlayerStatus(PlayerStatus.INITIALIZED, media);
 
             if (mediaType == MediaType.VIDEO) {
@@ -231,7 +233,7 @@ public class PlaybackServiceMediaPlayer {
 
             if (prepareImmediately) {
                 setPlayerStatus(PlayerStatus.PREPARING, media);
-                mediaPlayer.prepare();
+                prepareMediaPlayer();
                 onPrepared(startWhenPrepared);
             }
 
@@ -361,7 +363,7 @@ public class PlaybackServiceMediaPlayer {
                     Log.d(TAG, "Preparing media player");
                     setPlayerStatus(PlayerStatus.PREPARING, media);
                     try {
-                        mediaPlayer.prepare();
+                        prepareMediaPlayer();
                         onPrepared(startWhenPrepared.get());
                     } catch (IOException e) {
                         e.printStackTrace();
@@ -567,7 +569,7 @@ public class PlaybackServiceMediaPlayer {
     public boolean canSetSpeed() {
         boolean retVal = false;
         if (mediaPlayer != null && media != null && media.getMediaType() == MediaType.AUDIO) {
-            retVal = (mediaPlayer).canSetSpeed();
+            retVal = (mediaPlayer).canSetSpeed() || canUseSonicAudioPlayer();
         }
         return retVal;
     }
@@ -583,6 +585,10 @@ public class PlaybackServiceMediaPlayer {
                 mediaPlayer.setPlaybackSpeed((float) speed);
                 Log.d(TAG, "Playback speed was set to " + speed);
                 callback.playbackSpeedChanged(speed);
+            } else if (speed != 1.0f && canUseSonicAudioPlayer()) {
+                // the new player applies the speed from the preferences when it is resumed
+                switchToSonicAudioPlayer();
+                callback.playbackSpeedChanged(speed);
             }
         }
         playerLock.unlock();
@@ -775,12 +781,69 @@ public class PlaybackServiceMediaPlayer {
         callback.statusChanged(new PSMPInfo(playerStatus, media));
     }
 
+    /**
+     * Returns true if the current media can be played with SonicAudioPlayer. AudioPlayer is
+     * used for media that SonicAudioPlayer has failed to prepare.
+     */
+    private boolean canUseSonicAudioPlayer() {
+        return SonicAudioPlayer.isSupported() && media != null && media.getMediaType() == MediaType.AUDIO
+                && !media.getIdentifier().equals(sonicUnsupportedMedia);
+    }
+
+    /**
+     * Prepares the media player. If SonicAudioPlayer can't prepare the media, e.g. because
+     * MediaExtractor doesn't support its format, the media is prepared with AudioPlayer instead.
+     * <p/>
+     * This method requires the playerLock and is executed on the caller's thread.
+     */
+    private void prepareMediaPlayer() throws IOException {
+        try {
+            mediaPlayer.prepare();
+        } catch (IOException e) {
+            if (!(mediaPlayer instanceof SonicAudioPlayer)) {
+                throw e;
+            }
+            Log.w(TAG, "SonicAudioPlayer could not prepare media, using AudioPlayer instead", e);
+            sonicUnsupportedMedia = media.getIdentifier();
+            createMediaPlayer();
+            setDataSource();
+            mediaPlayer.prepare();
+        }
+    }
+
+    private void setDataSource() throws IOException {
+        if (stream) {
+            mediaPlayer.setDataSource(media.getStreamUrl());
+        } else {
+            mediaPlayer.setDataSource(media.getLocalMediaUrl());
+        }
+    }
+
+    /**
+     * Replaces the media player with a SonicAudioPlayer and continues playback at the current
+     * position, so that the playback speed can be changed.
+     * <p/>
+     * This method requires the playerLock and is executed on the caller's thread.
+     */
+    private void switchToSonicAudioPlayer() {
+        Log.d(TAG, "Switching to SonicAudioPlayer");
+        boolean wasPlaying = playerStatus == PlayerStatus.PLAYING;
+        if (wasPlaying || playerStatus == PlayerStatus.PAUSED || playerStatus == PlayerStatus.PREPARED) {
+            media.setPosition(mediaPlayer.getCurrentPosition());
+        }
+        playMediaObject(media, true, stream, wasPlaying, true);
+    }
+
     private IPlayer createMediaPlayer() {
         if (mediaPlayer != null) {
             mediaPlayer.release();
         }
         if (media == null || media.getMediaType() == MediaType.VIDEO) {
             mediaPlayer = new VideoPlayer();
+        } else if (canUseSonicAudioPlayer() && (Float.parseFloat(UserPreferences.getPlaybackSpeed()) != 1.0f
+                || !com.aocate.media.MediaPlayer.isPrestoLibraryInstalled(context))) {
+            // only time-stretching needs SonicAudioPlayer, AudioPlayer can do it with the Presto plugin
+            mediaPlayer = new SonicAudioPlayer();
         } else {
             mediaPlayer = new AudioPlayer(context);
         }
@@ -939,7 +1002,15 @@ public class PlaybackServiceMediaPlayer {
 
     private IPlayer setMediaPlayerListeners(IPlayer mp) {
         if (mp != null && media != null) {
-            if (media.getMediaType() == MediaType.AUDIO) {
+            if (mp instanceof SonicAudioPlayer) {
+                ((SonicAudioPlayer) mp)
+                        .setOnCompletionListener(sonicCompletionListener);
+                ((SonicAudioPlayer) mp)
+                        .setOnSeekCompleteListener(sonicSeekCompleteListener);
+                ((SonicAudioPlayer) mp).setOnErrorListener(sonicErrorListener);
+                ((SonicAudioPlayer) mp)
+                        .setOnBufferingUpdateListener(sonicBufferingUpdateListener);
+            } else if (media.getMediaType() == MediaType.AUDIO) {
                 ((AudioPlayer) mp)
                         .setOnCompletionListener(audioCompletionListener);
                 ((AudioPlayer) mp)
@@ -976,6 +1047,13 @@ public class PlaybackServiceMediaPlayer {
         }
     };
 
+    private final SonicAudioPlayer.OnCompletionListener sonicCompletionListener = new SonicAudioPlayer.OnCompletionListener() {
+        @Override
+        public void onCompletion(SonicAudioPlayer mp) {
+            genericOnCompletion();
+        }
+    };
+
     private void genericOnCompletion() {
         endPlayback();
     }
@@ -995,6 +1073,13 @@ public class PlaybackServiceMediaPlayer {
         }
     };
 
+    private final SonicAudioPlayer.OnBufferingUpdateListener sonicBufferingUpdateListener = new SonicAudioPlayer.OnBufferingUpdateListener() {
+        @Override
+        public void onBufferingUpdate(SonicAudioPlayer mp, int percent) {
+            genericOnBufferingUpdate(percent);
+        }
+    };
+
     private void genericOnBufferingUpdate(int percent) {
         callback.onBufferingUpdate(percent);
     }
@@ -1033,6 +1118,28 @@ public class PlaybackServiceMediaPlayer {
         }
     };
 
+    private final SonicAudioPlayer.OnErrorListener sonicErrorListener = new SonicAudioPlayer.OnErrorListener() {
+        @Override
+        public boolean onError(SonicAudioPlayer mp, int what, int extra) {
+            if (playerStatus == PlayerStatus.PREPARING && media != null) {
+                Log.w(TAG, "SonicAudioPlayer could not prepare media, using AudioPlayer instead");
+                sonicUnsupportedMedia = media.getIdentifier();
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        playerLock.lock();
+                        if (media != null) {
+                            playMediaObject(media, true, stream, startWhenPrepared.get(), true);
+                        }
+                        playerLock.unlock();
+                    }
+                });
+                return true;
+            }
+            return genericOnError(mp, what, extra);
+        }
+    };
+
     private boolean genericOnError(Object inObj, int what, int extra) {
         return callback.onMediaPlayerError(inObj, what, extra);
     }
@@ -1051,6 +1158,13 @@ public class PlaybackServiceMediaPlayer {
         }
     };
 
+    private final SonicAudioPlayer.OnSeekCompleteListener sonicSeekCompleteListener = new SonicAudioPlayer.OnSeekCompleteListener() {
+        @Override
+        public void onSeekComplete(SonicAudioPlayer mp) {
+            genericSeekCompleteListener();
+        }
+    };
+
     private final void genericSeekCompleteListener() {
         executor.submit(new Runnable() {
             @Override
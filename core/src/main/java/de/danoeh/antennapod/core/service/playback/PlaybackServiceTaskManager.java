@@ -39,7 +39,7 @@ public class PlaybackServiceTaskManager {
      */
     public static final int POSITION_SAVER_WAITING_INTERVAL = 5000;
     /**
-     * Notification interval of widget updater in milliseconds.
+     * Notification interval of widget updater in milliseconds of media time.
      */
     public static final int WIDGET_UPDATER_NOTIFICATION_INTERVAL = 1500;
 
@@ -47,7 +47,7 @@ public class PlaybackServiceTaskManager {
     private final ScheduledThreadPoolExecutor schedExecutor;
 
     private ScheduledFuture positionSaverFuture;
-    private ScheduledFuture widgetUpdaterFuture;
+    private PlaybackPositionClock.Listener widgetUpdater;
     private ScheduledFuture sleepTimerFuture;
     private volatile Future<List<FeedItem>> queueFuture;
     private volatile Future chapterLoaderFuture;
@@ -174,17 +174,19 @@ public class PlaybackServiceTaskManager {
 
     /**
      * Starts the widget updater task. If the widget updater is already active, nothing will happen.
+     * The widget updater is driven by the {@link PlaybackPositionClock}, so it will not cause any
+     * wakeups while playback is paused or the screen is off.
      */
     public synchronized void startWidgetUpdater() {
         if (!isWidgetUpdaterActive()) {
-            Runnable widgetUpdater = new Runnable() {
+            widgetUpdater = new PlaybackPositionClock.Listener() {
                 @Override
-                public void run() {
+                public void onPositionUpdate(int position) {
                     callback.onWidgetUpdaterTick();
                 }
             };
-            widgetUpdaterFuture = schedExecutor.scheduleWithFixedDelay(widgetUpdater, WIDGET_UPDATER_NOTIFICATION_INTERVAL,
-                    WIDGET_UPDATER_NOTIFICATION_INTERVAL, TimeUnit.MILLISECONDS);
+            PlaybackPositionClock.getInstance().addListener(widgetUpdater,
+                    WIDGET_UPDATER_NOTIFICATION_INTERVAL);
 
             if (BuildConfig.DEBUG) Log.d(TAG, "Started WidgetUpdater");
         } else {
@@ -246,7 +248,7 @@ public class PlaybackServiceTaskManager {
      * Returns true if the widget updater is currently running.
      */
     public synchronized boolean isWidgetUpdaterActive() {
-        return widgetUpdaterFuture != null && !widgetUpdaterFuture.isCancelled() && !widgetUpdaterFuture.isDone();
+        return widgetUpdater != null && PlaybackPositionClock.getInstance().hasListener(widgetUpdater);
     }
 
     /**
@@ -254,7 +256,8 @@ public class PlaybackServiceTaskManager {
      */
     public synchronized void cancelWidgetUpdater() {
         if (isWidgetUpdaterActive()) {
-            widgetUpdaterFuture.cancel(false);
+            PlaybackPositionClock.getInstance().removeListener(widgetUpdater);
+            widgetUpdater = null;
             if (BuildConfig.DEBUG) Log.d(TAG, "Cancelled WidgetUpdater");
         }
     }
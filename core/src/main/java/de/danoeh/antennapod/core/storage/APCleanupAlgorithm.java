@@ -1,87 +1,116 @@
 package de.danoeh.antennapod.core.storage;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
+import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import de.danoeh.antennapod.core.feed.FeedItem;
+import de.danoeh.antennapod.core.feed.FeedMedia;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
-import de.danoeh.antennapod.core.util.LongList;
+import de.danoeh.antennapod.core.util.StorageUtils;
 
 /**
  * Implementation of the EpisodeCleanupAlgorithm interface used by AntennaPod.
+ * <p/>
+ * The episode cache is limited by the number of downloaded episodes and optionally by the number
+ * of bytes that downloaded episodes occupy and the amount of free space that should be left on the
+ * storage device. Played episodes outside of the queue are deleted in the order in which they have
+ * been completed, larger episodes first if they have been completed at the same time.
  */
-public class APCleanupAlgorithm implements EpisodeCleanupAlgorithm<Integer> {
+public class APCleanupAlgorithm implements EpisodeCleanupAlgorithm<APCleanupAlgorithm.CleanupParameter> {
     private static final String TAG = "APCleanupAlgorithm";
 
-    @Override
-    public int performCleanup(Context context, Integer episodeNumber) {
-        List<FeedItem> candidates = new ArrayList<FeedItem>();
-        List<FeedItem> downloadedItems = DBReader.getDownloadedItems(context);
-        LongList queue = DBReader.getQueueIDList(context);
-        List<FeedItem> delete;
-        for (FeedItem item : downloadedItems) {
-            if (item.hasMedia() && item.getMedia().isDownloaded()
-                    && !queue.contains(item.getId()) && item.isRead()) {
-                candidates.add(item);
-            }
-
+    /**
+     * Describes how much space performCleanup should free.
+     */
+    public static class CleanupParameter {
+        /**
+         * Number of episodes that have to be deleted to satisfy the episode count limit.
+         */
+        public final int episodes;
+        /**
+         * Number of bytes that are about to be downloaded and have to fit into the episode cache.
+         */
+        public final long pendingBytes;
+
+        public CleanupParameter(int episodes, long pendingBytes) {
+            this.episodes = episodes;
+            this.pendingBytes = pendingBytes;
         }
+    }
 
-        Collections.sort(candidates, new Comparator<FeedItem>() {
-            @Override
-            public int compare(FeedItem lhs, FeedItem rhs) {
-                Date l = lhs.getMedia().getPlaybackCompletionDate();
-                Date r = rhs.getMedia().getPlaybackCompletionDate();
-
-                if (l == null) {
-                    l = new Date();
-                }
-                if (r == null) {
-                    r = new Date();
+    @Override
+    public int performCleanup(Context context, CleanupParameter parameter) {
+        final long bytesToFree = getBytesToFree(context, parameter.pendingBytes);
+        if (parameter.episodes <= 0 && bytesToFree <= 0) {
+            return 0;
+        }
+        final long startTime = System.currentTimeMillis();
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        Cursor cursor = adapter.getEpisodeCleanupCandidatesCursor(APDownloadAlgorithm.getCurrentlyPlayingMediaId());
+        long[] mediaIds = new long[cursor.getCount()];
+        long[] itemIds = new long[cursor.getCount()];
+        int counter = 0;
+        long freedBytes = 0;
+        while ((counter < parameter.episodes || freedBytes < bytesToFree) && cursor.moveToNext()) {
+            String fileUrl = cursor.getString(2);
+            long size = cursor.getLong(3);
+            if (fileUrl != null) {
+                File mediaFile = new File(fileUrl);
+                if (mediaFile.exists()) {
+                    size = mediaFile.length();
+                    if (!mediaFile.delete()) {
+                        Log.w(TAG, "Could not delete " + fileUrl);
+                    }
                 }
-                return l.compareTo(r);
             }
-        });
-
-        if (candidates.size() > episodeNumber) {
-            delete = candidates.subList(0, episodeNumber);
-        } else {
-            delete = candidates;
+            mediaIds[counter] = cursor.getLong(0);
+            itemIds[counter] = cursor.getLong(1);
+            counter++;
+            freedBytes += size;
         }
+        cursor.close();
+        adapter.close();
 
-        for (FeedItem item : delete) {
+        if (counter > 0) {
             try {
-                DBWriter.deleteFeedMediaOfItem(context, item.getMedia().getId()).get();
+                DBWriter.setFeedMediaDeleted(context, Arrays.copyOf(mediaIds, counter),
+                        Arrays.copyOf(itemIds, counter)).get();
             } catch (InterruptedException | ExecutionException e) {
                 e.printStackTrace();
             }
         }
 
-        int counter = delete.size();
-
-
         Log.i(TAG, String.format(
-                "Auto-delete deleted %d episodes (%d requested)", counter,
-                episodeNumber));
+                "Auto-delete deleted %d episodes (%d requested) and freed %d bytes (%d requested) in %d ms",
+                counter, parameter.episodes, freedBytes, bytesToFree,
+                System.currentTimeMillis() - startTime));
 
         return counter;
     }
 
     @Override
-    public Integer getDefaultCleanupParameter(Context context) {
-        return getPerformAutoCleanupArgs(context, 0);
+    public CleanupParameter getDefaultCleanupParameter(Context context) {
+        return new CleanupParameter(getPerformAutoCleanupArgs(context, 0), 0);
     }
 
     @Override
-    public Integer getPerformCleanupParameter(Context context, List<FeedItem> items) {
-        return getPerformAutoCleanupArgs(context, items.size());
+    public CleanupParameter getPerformCleanupParameter(Context context, List<FeedItem> items) {
+        long pendingBytes = 0;
+        for (FeedItem item : items) {
+            FeedMedia media = item.getMedia();
+            if (media != null && !media.isDownloaded() && media.getSize() > 0) {
+                pendingBytes += media.getSize();
+            }
+        }
+        return new CleanupParameter(getPerformAutoCleanupArgs(context, items.size()), pendingBytes);
     }
 
     static int getPerformAutoCleanupArgs(Context context,
@@ -100,4 +129,39 @@ public class APCleanupAlgorithm implements EpisodeCleanupAlgorithm<Integer> {
         }
         return 0;
     }
+
+    /**
+     * Returns the number of bytes that have to be freed so that the given number of bytes can be
+     * downloaded without exceeding the size limit of the episode cache or the minimum free space.
+     */
+    static long getBytesToFree(Context context, long pendingBytes) {
+        return Math.max(0, pendingBytes - getAvailableCacheSpace(context));
+    }
+
+    /**
+     * Returns the number of bytes that can be downloaded before the size limit of the episode cache
+     * or the minimum free space is reached. The result is negative if one of the limits has already
+     * been exceeded and Long.MAX_VALUE if neither limit is set.
+     */
+    static long getAvailableCacheSpace(Context context) {
+        long available = Long.MAX_VALUE;
+        final long maxSize = UserPreferences.getEpisodeCacheMaxSize();
+        if (maxSize > 0) {
+            PodDBAdapter adapter = new PodDBAdapter(context);
+            adapter.open();
+            final long cacheSize = adapter.getDownloadedEpisodesSize();
+            adapter.close();
+            available = maxSize - cacheSize;
+        }
+        final long minFreeSpace = UserPreferences.getEpisodeCacheMinFreeSpace();
+        if (minFreeSpace > 0) {
+            try {
+                available = Math.min(available, StorageUtils.getFreeSpaceAvailable() - minFreeSpace);
+            } catch (RuntimeException e) {
+                // data folder is not available
+                Log.e(TAG, "Could not determine free space", e);
+            }
+        }
+        return available;
+    }
 }
@@ -4,11 +4,16 @@ import android.content.Context;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 import de.danoeh.antennapod.core.feed.FeedItem;
+import de.danoeh.antennapod.core.feed.FeedMedia;
+import de.danoeh.antennapod.core.preferences.PlaybackPreferences;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
+import de.danoeh.antennapod.core.util.LongList;
+import de.danoeh.antennapod.core.util.LongObjectMap;
 import de.danoeh.antennapod.core.util.NetworkUtils;
 import de.danoeh.antennapod.core.util.PowerUtils;
 
@@ -52,49 +57,7 @@ public class APDownloadAlgorithm implements AutomaticDownloadAlgorithm {
 
                     Log.d(TAG, "Performing auto-dl of undownloaded episodes");
 
-                    List<FeedItem> candidates;
-                    if(mediaIds.length > 0) {
-                        candidates = DBReader.getFeedItems(context, mediaIds);
-                    } else {
-                        final List<FeedItem> queue = DBReader.getQueue(context);
-                        final List<FeedItem> unreadItems = DBReader.getUnreadItemsList(context);
-                        candidates = new ArrayList<FeedItem>(queue.size() + unreadItems.size());
-                        candidates.addAll(queue);
-                        for(FeedItem unreadItem : unreadItems) {
-                            if(candidates.contains(unreadItem) == false) {
-                                candidates.add(unreadItem);
-                            }
-                        }
-                    }
-
-                    // filter items that are not auto downloadable
-                    Iterator<FeedItem> it = candidates.iterator();
-                    while(it.hasNext()) {
-                        FeedItem item = it.next();
-                        if(item.isAutoDownloadable() == false) {
-                            it.remove();
-                        }
-                    }
-
-                    int autoDownloadableEpisodes = candidates.size();
-                    int downloadedEpisodes = DBReader.getNumberOfDownloadedEpisodes(context);
-                    int deletedEpisodes = cleanupAlgorithm.performCleanup(context,
-                            APCleanupAlgorithm.getPerformAutoCleanupArgs(context, autoDownloadableEpisodes));
-                    boolean cacheIsUnlimited = UserPreferences.getEpisodeCacheSize() == UserPreferences
-                            .getEpisodeCacheSizeUnlimited();
-                    int episodeCacheSize = UserPreferences.getEpisodeCacheSize();
-
-                    int episodeSpaceLeft;
-                    if (cacheIsUnlimited ||
-                            episodeCacheSize >= downloadedEpisodes + autoDownloadableEpisodes) {
-                        episodeSpaceLeft = autoDownloadableEpisodes;
-                    } else {
-                        episodeSpaceLeft = episodeCacheSize - (downloadedEpisodes - deletedEpisodes);
-                    }
-
-                    FeedItem[] itemsToDownload = candidates.subList(0, episodeSpaceLeft)
-                            .toArray(new FeedItem[episodeSpaceLeft]);
-
+                    FeedItem[] itemsToDownload = getItemsToDownload(context, mediaIds);
                     Log.d(TAG, "Enqueueing " + itemsToDownload.length + " items for download");
 
                     try {
@@ -108,4 +71,130 @@ public class APDownloadAlgorithm implements AutomaticDownloadAlgorithm {
         };
     }
 
+    /**
+     * Decides which undownloaded episodes should be downloaded automatically and deletes played episodes
+     * to make room for them. Network and power status are not checked.
+     *
+     * @param context  Used for accessing the DB.
+     * @param mediaIds If this list is not empty, only candidates whose media ID is in the list are returned.
+     * @return The items to download, in the order in which they should be downloaded.
+     */
+    public FeedItem[] getItemsToDownload(Context context, long... mediaIds) {
+        final long startTime = System.currentTimeMillis();
+        List<FeedItem> candidates = null;
+        LongList candidateIds = null;
+        int autoDownloadableEpisodes;
+        if(mediaIds.length > 0) {
+            candidates = DBReader.getFeedItems(context, mediaIds);
+            // filter items that are not auto downloadable
+            Iterator<FeedItem> it = candidates.iterator();
+            while(it.hasNext()) {
+                FeedItem item = it.next();
+                if(item.isAutoDownloadable() == false) {
+                    it.remove();
+                }
+            }
+            autoDownloadableEpisodes = candidates.size();
+        } else {
+            // only the IDs are loaded, items are loaded once we know how many can be downloaded
+            candidateIds = DBReader.getAutoDownloadCandidateIds(context, getCurrentlyPlayingMediaId());
+            autoDownloadableEpisodes = candidateIds.size();
+        }
+
+        boolean cacheIsUnlimited = UserPreferences.getEpisodeCacheSize() == UserPreferences
+                .getEpisodeCacheSizeUnlimited();
+        int episodeCacheSize = UserPreferences.getEpisodeCacheSize();
+
+        // no more episodes than the cache can hold are considered
+        int maxEpisodes = cacheIsUnlimited ? autoDownloadableEpisodes
+                : Math.min(autoDownloadableEpisodes, episodeCacheSize);
+        FeedItem[] itemsToDownload;
+        if (candidates != null) {
+            itemsToDownload = candidates.subList(0, maxEpisodes).toArray(new FeedItem[maxEpisodes]);
+        } else {
+            itemsToDownload = loadItems(context, candidateIds, maxEpisodes);
+        }
+
+        // the size of the chosen items lets the cleanup delete played episodes if the cache is full by bytes,
+        // the same parameter is used when episodes are downloaded manually
+        int downloadedEpisodes = DBReader.getNumberOfDownloadedEpisodes(context);
+        int deletedEpisodes = cleanupAlgorithm.performCleanup(context,
+                cleanupAlgorithm.getPerformCleanupParameter(context, Arrays.asList(itemsToDownload)));
+
+        int episodeSpaceLeft;
+        if (cacheIsUnlimited ||
+                episodeCacheSize >= downloadedEpisodes + itemsToDownload.length) {
+            episodeSpaceLeft = itemsToDownload.length;
+        } else {
+            episodeSpaceLeft = episodeCacheSize - (downloadedEpisodes - deletedEpisodes);
+        }
+        episodeSpaceLeft = Math.max(0, Math.min(episodeSpaceLeft, itemsToDownload.length));
+        if (episodeSpaceLeft < itemsToDownload.length) {
+            itemsToDownload = Arrays.copyOf(itemsToDownload, episodeSpaceLeft);
+        }
+        itemsToDownload = limitToAvailableSpace(itemsToDownload,
+                APCleanupAlgorithm.getAvailableCacheSpace(context));
+
+        Log.d(TAG, "Auto download decision for " + autoDownloadableEpisodes + " candidates took "
+                + (System.currentTimeMillis() - startTime) + " ms");
+        return itemsToDownload;
+    }
+
+    static long getCurrentlyPlayingMediaId() {
+        if (PlaybackPreferences.getCurrentlyPlayingMedia() == FeedMedia.PLAYABLE_TYPE_FEEDMEDIA) {
+            return PlaybackPreferences.getCurrentlyPlayingFeedMediaId();
+        }
+        return PlaybackPreferences.NO_MEDIA_PLAYING;
+    }
+
+    /**
+     * Returns the first items of the given array whose media fit into the given number of bytes.
+     * Media of unknown size count as zero bytes. They are excluded like all other media if the
+     * available space is negative, i.e. a limit has already been exceeded, or if an earlier item
+     * didn't fit.
+     */
+    private static FeedItem[] limitToAvailableSpace(FeedItem[] items, long availableBytes) {
+        int count = 0;
+        long requiredBytes = 0;
+        for (FeedItem item : items) {
+            requiredBytes += Math.max(0, item.getMedia().getSize());
+            if (requiredBytes > availableBytes) {
+                break;
+            }
+            count++;
+        }
+        if (count < items.length) {
+            Log.d(TAG, "Only " + count + " of " + items.length + " items fit into the episode cache");
+            return Arrays.copyOf(items, count);
+        }
+        return items;
+    }
+
+    /**
+     * Loads the first FeedItems of the given list of IDs.
+     *
+     * @return An array with the loaded items in the same order as the list of IDs.
+     */
+    private static FeedItem[] loadItems(Context context, LongList itemIds, int count) {
+        List<FeedItem> result = new ArrayList<FeedItem>(count);
+        for (int start = 0; start < count; start += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            final int end = Math.min(count, start + PodDBAdapter.IN_OPERATOR_MAXIMUM);
+            long[] ids = new long[end - start];
+            for (int i = start; i < end; i++) {
+                ids[i - start] = itemIds.get(i);
+            }
+            // the database does not preserve the order of the IDs
+            LongObjectMap<FeedItem> items = new LongObjectMap<FeedItem>(ids.length);
+            for (FeedItem item : DBReader.getFeedItems(context, ids)) {
+                items.put(item.getId(), item);
+            }
+            for (long id : ids) {
+                FeedItem item = items.get(id);
+                if (item != null) {
+                    result.add(item);
+                }
+            }
+        }
+        return result.toArray(new FeedItem[result.size()]);
+    }
 }
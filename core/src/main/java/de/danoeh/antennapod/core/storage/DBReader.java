@@ -3,14 +3,23 @@ package de.danoeh.antennapod.core.storage;
 import android.content.Context;
 import android.database.Cursor;
 import android.util.Log;
+import android.util.Pair;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import de.danoeh.antennapod.core.BuildConfig;
 import de.danoeh.antennapod.core.feed.Chapter;
@@ -22,13 +31,15 @@ import de.danoeh.antennapod.core.feed.FeedPreferences;
 import de.danoeh.antennapod.core.feed.ID3Chapter;
 import de.danoeh.antennapod.core.feed.SimpleChapter;
 import de.danoeh.antennapod.core.feed.VorbisCommentChapter;
+import de.danoeh.antennapod.core.opml.OpmlWriter;
 import de.danoeh.antennapod.core.service.download.DownloadStatus;
 import de.danoeh.antennapod.core.util.DownloadError;
 import de.danoeh.antennapod.core.util.LongIntMap;
 import de.danoeh.antennapod.core.util.LongList;
+import de.danoeh.antennapod.core.util.LongObjectMap;
+import de.danoeh.antennapod.core.util.LongSet;
 import de.danoeh.antennapod.core.util.comparator.DownloadStatusComparator;
 import de.danoeh.antennapod.core.util.comparator.FeedItemPubdateComparator;
-import de.danoeh.antennapod.core.util.comparator.PlaybackCompletionDateComparator;
 import de.danoeh.antennapod.core.util.flattr.FlattrStatus;
 import de.danoeh.antennapod.core.util.flattr.FlattrThing;
 
@@ -51,6 +62,12 @@ public final class DBReader {
      */
     public static final int DOWNLOAD_LOG_SIZE = 200;
 
+    /**
+     * Maximum number of entries that are kept in the download log, see
+     * {@link DBWriter#compactDownloadLog(android.content.Context)}.
+     */
+    public static final int DOWNLOAD_LOG_MAX_SIZE = 5000;
+
 
     private DBReader() {
     }
@@ -74,6 +91,44 @@ public final class DBReader {
         return result;
     }
 
+    /**
+     * Writes an OPML document with all subscriptions. Only the attributes of the outlines are loaded from the
+     * database and every outline is written as soon as it has been read, so neither the Feed objects nor the
+     * document are kept in memory.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param writer  The destination of the document. It is flushed, but not closed.
+     */
+    public static void writeSubscriptionsOpml(final Context context, Writer writer) throws IOException {
+        Log.d(TAG, "writeSubscriptionsOpml() called");
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        Cursor cursor = adapter.getSubscriptionOutlinesCursor();
+        try {
+            OpmlWriter opmlWriter = new OpmlWriter();
+            opmlWriter.startDocument(writer);
+            while (cursor.moveToNext()) {
+                opmlWriter.writeOutline(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), cursor.getString(3));
+            }
+            opmlWriter.endDocument();
+        } finally {
+            cursor.close();
+            adapter.close();
+        }
+    }
+
+    /**
+     * Returns a number that changes whenever the subscriptions change in a way that is visible in an OPML export.
+     * It can be compared with a previously returned value to skip work like backups if nothing has changed.
+     *
+     * @param context A context that is used for reading the preferences.
+     */
+    public static long getSubscriptionChangeCount(final Context context) {
+        return PodDBAdapter.getSubscriptionChangeCount(context);
+    }
+
     private static List<Feed> getFeedList(PodDBAdapter adapter) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Extracting Feedlist");
@@ -144,26 +199,94 @@ public final class DBReader {
     }
 
     /**
-     * Takes a list of FeedItems and loads their corresponding Feed-objects from the database.
-     * The feedID-attribute of a FeedItem must be set to the ID of its feed or the method will
-     * not find the correct feed of an item.
+     * Loads the feeds that should be checked for new episodes now. When a feed is due is decided by
+     * {@link FeedUpdateScheduler} based on the time of its last update and on how often it publishes new episodes.
+     *
+     * @param context        A context that is used for opening a database connection.
+     * @param updateInterval The update interval selected by the user.
+     * @return A list of Feeds. A Feed-object of the returned list does NOT have its list of FeedItems yet.
+     */
+    public static List<Feed> getFeedsDueForUpdate(final Context context, final long updateInterval) {
+        final long now = System.currentTimeMillis();
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+
+        Cursor cursor = adapter.getFeedUpdateStatisticsCursor(now - FeedUpdateScheduler.CADENCE_WINDOW);
+        List<Feed> feeds = new ArrayList<Feed>();
+        final int indexLastUpdateFailed = cursor.getColumnIndex(PodDBAdapter.KEY_LAST_UPDATE_FAILED);
+        while (cursor.moveToNext()) {
+            // a refresh that didn't change the feed doesn't move its last update
+            long lastCheck = Math.max(cursor.getLong(PodDBAdapter.IDX_FEED_SEL_STD_LASTUPDATE),
+                    cursor.getLong(PodDBAdapter.IDX_FEED_UPDATE_LAST_CHECK));
+            long nextUpdate = FeedUpdateScheduler.getNextUpdate(
+                    cursor.getLong(PodDBAdapter.IDX_FEED_SEL_STD_ID),
+                    lastCheck,
+                    updateInterval,
+                    cursor.getInt(PodDBAdapter.IDX_FEED_UPDATE_RECENT_ITEMS),
+                    cursor.getLong(PodDBAdapter.IDX_FEED_UPDATE_FIRST_RECENT_PUBDATE),
+                    cursor.getLong(PodDBAdapter.IDX_FEED_UPDATE_LAST_PUBDATE),
+                    cursor.getInt(indexLastUpdateFailed) > 0);
+            if (FeedUpdateScheduler.isDue(nextUpdate, updateInterval, now)) {
+                feeds.add(extractFeedFromCursorRow(adapter, cursor));
+            }
+        }
+        Log.d(TAG, String.format("%d of %d feeds are due for an update", feeds.size(), cursor.getCount()));
+        cursor.close();
+        adapter.close();
+        return feeds;
+    }
+
+    /**
+     * Takes a list of FeedItems and loads their corresponding Feed-objects. The feedID-attribute of a FeedItem
+     * must be set to the ID of its feed or the method will not find the correct feed of an item.
+     * <p/>
+     * Feeds are looked up in the {@link FeedRegistry} first, only feeds that are not in the registry are read
+     * from the database. The Feed-objects are shared with other FeedItems and must therefore not be modified.
      *
      * @param context A context that is used for opening a database connection.
      * @param items   The FeedItems whose Feed-objects should be loaded.
      */
     public static void loadFeedDataOfFeedItemlist(Context context,
                                                   List<FeedItem> items) {
-        List<Feed> feeds = getFeedList(context);
+        LongSet missingFeedIds = new LongSet();
+        for (FeedItem item : items) {
+            Feed feed = FeedRegistry.get(item.getFeedId());
+            if (feed != null) {
+                item.setFeed(feed);
+            } else {
+                missingFeedIds.add(item.getFeedId());
+            }
+        }
+        if (missingFeedIds.size() == 0) {
+            return;
+        }
+
+        LongObjectMap<Feed> loadedFeeds = new LongObjectMap<Feed>(missingFeedIds.size());
+        final long generation = FeedRegistry.getGeneration();
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        long[] ids = missingFeedIds.toArray();
+        for (int start = 0; start < ids.length; start += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            int end = Math.min(ids.length, start + PodDBAdapter.IN_OPERATOR_MAXIMUM);
+            Cursor feedCursor = adapter.getFeedsCursor(Arrays.copyOfRange(ids, start, end));
+            while (feedCursor.moveToNext()) {
+                Feed feed = extractFeedFromCursorRow(adapter, feedCursor);
+                loadedFeeds.put(feed.getId(), feed);
+            }
+            feedCursor.close();
+        }
+        adapter.close();
+        FeedRegistry.putAll(loadedFeeds.values(), generation);
+
         for (FeedItem item : items) {
-            for (Feed feed : feeds) {
-                if (feed.getId() == item.getFeedId()) {
+            if (missingFeedIds.contains(item.getFeedId())) {
+                Feed feed = loadedFeeds.get(item.getFeedId());
+                if (feed != null) {
                     item.setFeed(feed);
-                    break;
+                } else {
+                    Log.w(TAG, "No match found for item with ID " + item.getId() + ". Feed ID was " + item.getFeedId());
                 }
             }
-            if (item.getFeed() == null) {
-                Log.w(TAG, "No match found for item with ID " + item.getId() + ". Feed ID was " + item.getFeedId());
-            }
         }
     }
 
@@ -209,12 +332,33 @@ public final class DBReader {
 
     private static List<FeedItem> extractItemlistFromCursor(
             PodDBAdapter adapter, Cursor itemlistCursor) {
-        ArrayList<String> itemIds = new ArrayList<String>();
+        return extractItemlistFromCursor(adapter, itemlistCursor, true);
+    }
+
+    /**
+     * Creates FeedItems with their FeedMedia from the rows of a cursor. The FeedItems are added to the
+     * {@link FeedItemCache}.
+     *
+     * @param lookUpCachedItems If true, the cached FeedItem objects are returned for items that are in the
+     *                          FeedItemCache. Should be false if the caller has already looked up the items.
+     */
+    private static List<FeedItem> extractItemlistFromCursor(
+            PodDBAdapter adapter, Cursor itemlistCursor, boolean lookUpCachedItems) {
+        // the cursor doesn't read any rows before getCount is called
+        final long generation = FeedItemCache.getGeneration();
         List<FeedItem> items = new ArrayList<FeedItem>(
                 itemlistCursor.getCount());
+        LongObjectMap<FeedItem> loadedItems = new LongObjectMap<FeedItem>(itemlistCursor.getCount());
 
         if (itemlistCursor.moveToFirst()) {
             do {
+                if (lookUpCachedItems) {
+                    FeedItem cachedItem = FeedItemCache.get(itemlistCursor.getLong(PodDBAdapter.IDX_FI_SMALL_ID));
+                    if (cachedItem != null) {
+                        items.add(cachedItem);
+                        continue;
+                    }
+                }
                 long imageIndex = itemlistCursor.getLong(PodDBAdapter.IDX_FI_SMALL_IMAGE);
                 FeedImage image = null;
                 if (imageIndex != 0) {
@@ -235,27 +379,32 @@ public final class DBReader {
                         itemlistCursor.getInt(itemlistCursor.getColumnIndex(PodDBAdapter.KEY_AUTO_DOWNLOAD)) > 0
                         );
 
-                itemIds.add(String.valueOf(item.getId()));
-
                 items.add(item);
+                loadedItems.put(item.getId(), item);
             } while (itemlistCursor.moveToNext());
         }
 
-        extractMediafromItemlist(adapter, items, itemIds);
+        if (!loadedItems.isEmpty()) {
+            extractMediafromItemlist(adapter, loadedItems);
+            FeedItemCache.putAll(loadedItems.values(), generation);
+        }
         return items;
     }
 
     private static void extractMediafromItemlist(PodDBAdapter adapter,
-                                                 List<FeedItem> items, ArrayList<String> itemIds) {
+                                                 LongObjectMap<FeedItem> items) {
 
-        List<FeedItem> itemsCopy = new ArrayList<FeedItem>(items);
-        Cursor cursor = adapter.getFeedMediaCursorByItemID(itemIds
-                .toArray(new String[itemIds.size()]));
+        long[] itemIds = items.keys();
+        String[] ids = new String[itemIds.length];
+        for (int i = 0; i < itemIds.length; i++) {
+            ids[i] = Long.toString(itemIds[i]);
+        }
+        Cursor cursor = adapter.getFeedMediaCursorByItemID(ids);
         if (cursor.moveToFirst()) {
             do {
                 long itemId = cursor.getLong(PodDBAdapter.KEY_MEDIA_FEEDITEM_INDEX);
                 // find matching feed item
-                FeedItem item = getMatchingItemForMedia(itemId, itemsCopy);
+                FeedItem item = items.get(itemId);
                 if (item != null) {
                     item.setMedia(extractFeedMediaFromCursorRow(cursor));
                     item.getMedia().setItem(item);
@@ -287,7 +436,7 @@ public final class DBReader {
                 break;
         }
 
-        return new FeedMedia(
+        FeedMedia media = new FeedMedia(
                 mediaId,
                 null,
                 cursor.getInt(PodDBAdapter.KEY_DURATION_INDEX),
@@ -300,6 +449,11 @@ public final class DBReader {
                 playbackCompletionDate,
                 cursor.getInt(PodDBAdapter.KEY_PLAYED_DURATION_INDEX),
                 hasEmbeddedPicture);
+        media.setChapterScanState(
+                cursor.getInt(cursor.getColumnIndex(PodDBAdapter.KEY_CHAPTER_SCAN_STATE)),
+                cursor.getLong(cursor.getColumnIndex(PodDBAdapter.KEY_CHAPTER_SCAN_SIZE)),
+                cursor.getLong(cursor.getColumnIndex(PodDBAdapter.KEY_CHAPTER_SCAN_MODIFIED)));
+        return media;
     }
 
     private static Feed extractFeedFromCursorRow(PodDBAdapter adapter,
@@ -364,26 +518,49 @@ public final class DBReader {
     }
 
 
-    private static FeedItem getMatchingItemForMedia(long itemId,
-                                                    List<FeedItem> items) {
-        for (FeedItem item : items) {
-            if (item.getId() == itemId) {
-                return item;
-            }
-        }
-        return null;
-    }
-
     static List<FeedItem> getQueue(Context context, PodDBAdapter adapter) {
         Log.d(TAG, "getQueue()");
 
-        Cursor itemlistCursor = adapter.getQueueCursor();
-        List<FeedItem> items = extractItemlistFromCursor(adapter,
-                itemlistCursor);
-        itemlistCursor.close();
-        loadFeedDataOfFeedItemlist(context, items);
+        LongList queueIds = getQueueIDList(adapter);
+        return getFeedItemsInOrder(context, adapter, queueIds.toArray());
+    }
 
-        return items;
+    /**
+     * Returns the FeedItems with the given IDs in the same order as the IDs. Only items that are not in the
+     * {@link FeedItemCache} are read from the database. Chapters are not loaded. IDs of items that don't
+     * exist are ignored.
+     */
+    private static List<FeedItem> getFeedItemsInOrder(final Context context, PodDBAdapter adapter,
+                                                      final long... itemIds) {
+        List<FeedItem> result = new ArrayList<FeedItem>(itemIds.length);
+        LongObjectMap<FeedItem> loadedItems = new LongObjectMap<FeedItem>(itemIds.length);
+        List<String> missingIds = new ArrayList<String>();
+        for (long itemId : itemIds) {
+            // keep the cached item, loading the missing items may evict it from the cache
+            FeedItem cached = FeedItemCache.get(itemId);
+            if (cached != null) {
+                loadedItems.put(itemId, cached);
+            } else {
+                missingIds.add(Long.toString(itemId));
+            }
+        }
+        for (int start = 0; start < missingIds.size(); start += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            int end = Math.min(missingIds.size(), start + PodDBAdapter.IN_OPERATOR_MAXIMUM);
+            List<String> ids = missingIds.subList(start, end);
+            Cursor itemCursor = adapter.getFeedItemCursor(ids.toArray(new String[ids.size()]));
+            for (FeedItem item : extractItemlistFromCursor(adapter, itemCursor, false)) {
+                loadedItems.put(item.getId(), item);
+            }
+            itemCursor.close();
+        }
+        for (long itemId : itemIds) {
+            FeedItem item = loadedItems.get(itemId);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        loadFeedDataOfFeedItemlist(context, result);
+        return result;
     }
 
     /**
@@ -552,6 +729,32 @@ public final class DBReader {
     }
 
 
+    /**
+     * Loads the IDs of the FeedItems that are candidates for an automatic download. A FeedItem is a candidate
+     * if its auto download flag is set, its media has not been downloaded yet and it is either in the queue
+     * or unplayed.
+     *
+     * @param context         A context that is used for opening a database connection.
+     * @param excludedMediaId The ID of a FeedMedia object whose item should not be returned, e.g. because it
+     *                        is currently playing.
+     * @return A list of IDs. Items in the queue come first (in queue order), followed by the remaining
+     * unplayed items sorted by their pubDate in descending order.
+     */
+    public static LongList getAutoDownloadCandidateIds(Context context, long excludedMediaId) {
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        Cursor cursor = adapter.getAutoDownloadCandidateIdsCursor(excludedMediaId);
+        LongList itemIds = new LongList(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            do {
+                itemIds.add(cursor.getLong(0));
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        adapter.close();
+        return itemIds;
+    }
+
     /**
      * Loads a list of FeedItems sorted by pubDate in descending order.
      *
@@ -586,25 +789,47 @@ public final class DBReader {
      * The size of the returned list is limited by {@link #PLAYBACK_HISTORY_SIZE}.
      */
     public static List<FeedItem> getPlaybackHistory(final Context context) {
+        return getPlaybackHistory(context, null, PLAYBACK_HISTORY_SIZE);
+    }
+
+    /**
+     * Loads a page of the playback history from the database. The pages are read with a keyset
+     * instead of an offset, so reading a page doesn't get slower the further the history is
+     * scrolled and no item is skipped if the history changes between two pages.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param after   The last item of the previous page or null if the first page should be loaded.
+     *                Its media must not have been modified since the previous page has been loaded.
+     * @param limit   The maximum number of items that are returned.
+     * @return The FeedItems that follow the given item, sorted by their media's playbackCompletionDate
+     * in descending order.
+     * @throws IllegalArgumentException if the media of the given item has no playback completion date.
+     */
+    public static List<FeedItem> getPlaybackHistory(final Context context, FeedItem after, int limit) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Loading playback history");
 
+        long completionDate = Long.MAX_VALUE;
+        long mediaId = Long.MAX_VALUE;
+        if (after != null) {
+            if (after.getMedia() == null || after.getMedia().getPlaybackCompletionDate() == null) {
+                throw new IllegalArgumentException("Item is not part of the playback history: " + after.getId());
+            }
+            completionDate = after.getMedia().getPlaybackCompletionDate().getTime();
+            mediaId = after.getMedia().getId();
+        }
+
         PodDBAdapter adapter = new PodDBAdapter(context);
         adapter.open();
 
-        Cursor mediaCursor = adapter.getCompletedMediaCursor(PLAYBACK_HISTORY_SIZE);
-        String[] itemIds = new String[mediaCursor.getCount()];
+        Cursor mediaCursor = adapter.getCompletedMediaCursor(completionDate, mediaId, limit);
+        long[] itemIds = new long[mediaCursor.getCount()];
         for (int i = 0; i < itemIds.length && mediaCursor.moveToPosition(i); i++) {
-            itemIds[i] = Long.toString(mediaCursor.getLong(PodDBAdapter.KEY_MEDIA_FEEDITEM_INDEX));
+            itemIds[i] = mediaCursor.getLong(PodDBAdapter.KEY_MEDIA_FEEDITEM_INDEX);
         }
         mediaCursor.close();
-        Cursor itemCursor = adapter.getFeedItemCursor(itemIds);
-        List<FeedItem> items = extractItemlistFromCursor(adapter, itemCursor);
-        loadFeedDataOfFeedItemlist(context, items);
-        itemCursor.close();
+        List<FeedItem> items = getFeedItemsInOrder(context, adapter, itemIds);
         adapter.close();
-
-        Collections.sort(items, new PlaybackCompletionDateComparator());
         return items;
     }
 
@@ -616,12 +841,32 @@ public final class DBReader {
      * The size of the returned list is limited by {@link #DOWNLOAD_LOG_SIZE}.
      */
     public static List<DownloadStatus> getDownloadLog(Context context) {
+        return getDownloadLog(context, null, DOWNLOAD_LOG_SIZE);
+    }
+
+    /**
+     * Loads a page of the download log from the database. The pages are read with a keyset
+     * instead of an offset, see {@link #getPlaybackHistory(android.content.Context, FeedItem, int)}.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param after   The last entry of the previous page or null if the first page should be loaded.
+     * @param limit   The maximum number of entries that are returned.
+     * @return A list with DownloadStatus objects that follow the given entry, newest events first.
+     */
+    public static List<DownloadStatus> getDownloadLog(Context context, DownloadStatus after, int limit) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Extracting DownloadLog");
 
+        long completionDate = Long.MAX_VALUE;
+        long id = Long.MAX_VALUE;
+        if (after != null) {
+            completionDate = after.getCompletionDate().getTime();
+            id = after.getId();
+        }
+
         PodDBAdapter adapter = new PodDBAdapter(context);
         adapter.open();
-        Cursor logCursor = adapter.getDownloadLogCursor(DOWNLOAD_LOG_SIZE);
+        Cursor logCursor = adapter.getDownloadLogCursor(completionDate, id, limit);
         List<DownloadStatus> downloadLog = new ArrayList<DownloadStatus>(
                 logCursor.getCount());
 
@@ -631,10 +876,31 @@ public final class DBReader {
             } while (logCursor.moveToNext());
         }
         logCursor.close();
-        Collections.sort(downloadLog, new DownloadStatusComparator());
+        adapter.close();
         return downloadLog;
     }
 
+    /**
+     * Loads the newest download log entry of a feed. This is faster than loading the
+     * whole log of the feed with {@link #getFeedDownloadLog(android.content.Context, Feed)}.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param feed    Feed for which the download log entry is loaded
+     * @return The newest DownloadStatus of the feed or null if the feed has never been downloaded.
+     */
+    public static DownloadStatus getLatestFeedDownloadStatus(Context context, Feed feed) {
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        Cursor cursor = adapter.getLatestDownloadStatusCursor(Feed.FEEDFILETYPE_FEED, feed.getId());
+        DownloadStatus status = null;
+        if (cursor.moveToFirst()) {
+            status = extractDownloadStatusFromCursorRow(cursor);
+        }
+        cursor.close();
+        adapter.close();
+        return status;
+    }
+
     /**
      * Loads the download log for a particular feed from the database.
      *
@@ -752,48 +1018,25 @@ public final class DBReader {
     static FeedItem getFeedItem(final Context context, final long itemId, PodDBAdapter adapter) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Loading feeditem with id " + itemId);
-        FeedItem item = null;
-
-        Cursor itemCursor = adapter.getFeedItemCursor(Long.toString(itemId));
-        if (itemCursor.moveToFirst()) {
-            List<FeedItem> list = extractItemlistFromCursor(adapter, itemCursor);
-            if (list.size() > 0) {
-                item = list.get(0);
-                loadFeedDataOfFeedItemlist(context, list);
-                if (item.hasChapters()) {
-                    loadChaptersOfFeedItem(adapter, item);
-                }
-            }
+        List<FeedItem> list = getFeedItemsInOrder(context, adapter, itemId);
+        if (list.isEmpty()) {
+            return null;
+        }
+        FeedItem item = list.get(0);
+        if (item.hasChapters() && item.getChapters() == null) {
+            loadChaptersOfFeedItem(adapter, item);
         }
-        itemCursor.close();
         return item;
     }
 
     static List<FeedItem> getFeedItems(final Context context, PodDBAdapter adapter,  final long... itemIds) {
-
-        String[] ids = new String[itemIds.length];
-        for(int i = 0; i < itemIds.length; i++) {
-            long itemId = itemIds[i];
-            ids[i] = Long.toString(itemId);
-        }
-
-        List<FeedItem> result;
-
-        Cursor itemCursor = adapter.getFeedItemCursor(ids);
-        if (itemCursor.moveToFirst()) {
-            result = extractItemlistFromCursor(adapter, itemCursor);
-            loadFeedDataOfFeedItemlist(context, result);
-            for(FeedItem item : result) {
-                if (item.hasChapters()) {
-                    loadChaptersOfFeedItem(adapter, item);
-                }
+        List<FeedItem> result = getFeedItemsInOrder(context, adapter, itemIds);
+        for(FeedItem item : result) {
+            if (item.hasChapters() && item.getChapters() == null) {
+                loadChaptersOfFeedItem(adapter, item);
             }
-        } else {
-            result = Collections.emptyList();
         }
-        itemCursor.close();
         return result;
-
     }
 
     /**
@@ -906,6 +1149,47 @@ public final class DBReader {
         return item;
     }
 
+    /**
+     * Loads the FeedItems that are referenced by a collection of (podcast URL, episode URL) pairs, e.g. by
+     * gpodder.net episode actions. The items are loaded in batches instead of one query per pair.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param urls    Pairs of the download URL of a feed and the identifier of an item.
+     * @return The FeedItems by their pair of URLs. Pairs without a matching FeedItem with media are not
+     * contained in the map. Only the IDs of the FeedItems and the IDs and durations of their FeedMedia are loaded.
+     */
+    public static Map<Pair<String, String>, FeedItem> getFeedItemsByUrls(final Context context,
+                                                                        final Collection<Pair<String, String>> urls) {
+        Map<Pair<String, String>, FeedItem> result = new HashMap<Pair<String, String>, FeedItem>(urls.size());
+        Set<Pair<String, String>> requested = new HashSet<Pair<String, String>>(urls);
+        Set<String> episodeUrls = new HashSet<String>(urls.size());
+        for (Pair<String, String> pair : requested) {
+            episodeUrls.add(pair.second);
+        }
+        String[] identifiers = episodeUrls.toArray(new String[episodeUrls.size()]);
+
+        PodDBAdapter adapter = new PodDBAdapter(context);
+        adapter.open();
+        for (int start = 0; start < identifiers.length; start += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            final int end = Math.min(identifiers.length, start + PodDBAdapter.IN_OPERATOR_MAXIMUM);
+            Cursor cursor = adapter.getFeedItemsByIdentifierCursor(Arrays.copyOfRange(identifiers, start, end));
+            while (cursor.moveToNext()) {
+                Pair<String, String> key = new Pair<String, String>(cursor.getString(2), cursor.getString(3));
+                if (requested.contains(key)) {
+                    FeedItem item = new FeedItem();
+                    item.setId(cursor.getLong(0));
+                    FeedMedia media = new FeedMedia(cursor.getLong(1), item, cursor.getInt(4), 0, 0,
+                            null, null, null, false, null, 0);
+                    item.setMedia(media);
+                    result.put(key, item);
+                }
+            }
+            cursor.close();
+        }
+        adapter.close();
+        return result;
+    }
+
     /**
      * Loads additional information about a FeedItem, e.g. shownotes
      *
@@ -1074,6 +1358,15 @@ public final class DBReader {
      * @return The found object
      */
     public static FeedMedia getFeedMedia(final Context context, final long mediaId) {
+        FeedItem cachedItem = FeedItemCache.getByMediaId(mediaId);
+        if (cachedItem != null && cachedItem.getMedia() != null) {
+            loadFeedDataOfFeedItemlist(context, Collections.singletonList(cachedItem));
+            if (cachedItem.hasChapters() && cachedItem.getChapters() == null) {
+                loadChaptersOfFeedItem(context, cachedItem);
+            }
+            return cachedItem.getMedia();
+        }
+
         PodDBAdapter adapter = new PodDBAdapter(context);
 
         adapter.open();
@@ -1084,7 +1377,10 @@ public final class DBReader {
             final long itemId = mediaCursor.getLong(PodDBAdapter.KEY_MEDIA_FEEDITEM_INDEX);
             media = extractFeedMediaFromCursorRow(mediaCursor);
             FeedItem item = getFeedItem(context, itemId);
-            if (media != null && item != null) {
+            if (item != null && item.getMedia() != null && item.getMedia().getId() == mediaId) {
+                // the item has been loaded with its media or has been cached
+                media = item.getMedia();
+            } else if (media != null && item != null) {
                 media.setItem(item);
                 item.setMedia(media);
             }
@@ -181,6 +181,7 @@ public final class DBTasks {
                         GpodnetSyncService.sendSyncIntent(context);
                     }
                     autodownloadUndownloadedItems(context);
+                    DBWriter.compactDownloadLog(context);
                 }
             }.start();
         } else {
@@ -191,7 +192,8 @@ public final class DBTasks {
     /**
      * Used by refreshExpiredFeeds to determine which feeds should be refreshed.
      * This method will use the value specified in the UserPreferences as the
-     * expiration time.
+     * shortest expiration time. Feeds that publish new episodes rarely expire later,
+     * see {@link FeedUpdateScheduler}.
      *
      * @param context Used for DB access.
      * @return A list of expired feeds. An empty list will be returned if there
@@ -201,13 +203,7 @@ public final class DBTasks {
         long millis = UserPreferences.getUpdateInterval();
 
         if (millis > 0) {
-
-            List<Feed> feedList = DBReader.getExpiredFeedsList(context,
-                    millis);
-            if (feedList.size() > 0) {
-                refreshFeeds(context, feedList);
-            }
-            return feedList;
+            return DBReader.getFeedsDueForUpdate(context, millis);
         } else {
             return new ArrayList<Feed>();
         }
@@ -528,6 +524,44 @@ public final class DBTasks {
         return null;
     }
 
+    /**
+     * Subscribes to a feed that has already been downloaded and parsed, e.g. for showing a preview, so that it
+     * doesn't have to be downloaded again. Like after a regular feed download, the images of the feed are
+     * downloaded and new episodes are downloaded automatically if enabled.
+     * <p/>
+     * This method should NOT be executed on the GUI thread.
+     *
+     * @param context Used for accessing the DB.
+     * @param feed    The parsed Feed object.
+     * @return The Feed object that has been saved.
+     */
+    public static Feed addParsedFeed(final Context context, final Feed feed) {
+        Feed savedFeed = updateFeed(context, feed)[0];
+        DownloadRequester requester = DownloadRequester.getInstance();
+        LongList newMediaFiles = new LongList();
+        try {
+            if (savedFeed.getImage() != null && !savedFeed.getImage().isDownloaded()) {
+                savedFeed.getImage().setOwner(savedFeed);
+                requester.downloadImage(context, savedFeed.getImage());
+            }
+            for (FeedItem item : savedFeed.getItems()) {
+                if (item.getImage() != null && !item.getImage().isDownloaded()) {
+                    item.getImage().setOwner(item);
+                    requester.downloadImage(context, item.getImage());
+                }
+                if (!item.isRead() && item.hasMedia() && !item.getMedia().isDownloaded()) {
+                    newMediaFiles.add(item.getMedia().getId());
+                }
+            }
+        } catch (DownloadRequestException e) {
+            e.printStackTrace();
+        }
+        if (newMediaFiles.size() > 0) {
+            autodownloadUndownloadedItems(context, newMediaFiles.toArray());
+        }
+        return savedFeed;
+    }
+
     /**
      * Adds new Feeds to the database or updates the old versions if they already exists. If another Feed with the same
      * identifying value already exists, this method will add new FeedItems from the new Feed to the existing Feed.
@@ -630,7 +664,11 @@ public final class DBTasks {
             e.printStackTrace();
         }
 
-        EventDistributor.getInstance().sendFeedUpdateBroadcast();
+        long[] feedIds = new long[resultFeeds.length];
+        for (int i = 0; i < resultFeeds.length; i++) {
+            feedIds[i] = (resultFeeds[i] != null) ? resultFeeds[i].getId() : 0;
+        }
+        EventDistributor.getInstance().sendFeedUpdateBroadcast(feedIds);
 
         return resultFeeds;
     }
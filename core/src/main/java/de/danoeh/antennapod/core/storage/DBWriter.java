@@ -13,12 +13,17 @@ import org.shredzone.flattr4j.model.Flattr;
 import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -41,6 +46,7 @@ import de.danoeh.antennapod.core.preferences.PlaybackPreferences;
 import de.danoeh.antennapod.core.preferences.UserPreferences;
 import de.danoeh.antennapod.core.service.download.DownloadStatus;
 import de.danoeh.antennapod.core.service.playback.PlaybackService;
+import de.danoeh.antennapod.core.util.LongIntMap;
 import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.core.util.flattr.FlattrStatus;
 import de.danoeh.antennapod.core.util.flattr.FlattrThing;
@@ -60,9 +66,23 @@ public class DBWriter {
 
     private static final ExecutorService dbExec;
 
+    /**
+     * Deletes the files of removed database entries, so that dbExec is not blocked by file I/O.
+     */
+    private static final ExecutorService fileExec;
+
     static {
         dbExec = Executors.newSingleThreadExecutor(new ThreadFactory() {
 
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+        fileExec = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
             @Override
             public Thread newThread(Runnable r) {
                 Thread t = new Thread(r);
@@ -75,6 +95,55 @@ public class DBWriter {
     private DBWriter() {
     }
 
+    /**
+     * Marks a list of FeedMedia objects as not downloaded after their files have been deleted by the caller.
+     * All FeedMedia are updated in a single transaction and listeners are notified only once.
+     * In contrast to {@link #deleteFeedMediaOfItem(Context, long)}, this method does not handle media that is
+     * currently playing, so the caller must not pass its ID.
+     *
+     * @param context  A context that is used for opening a database connection.
+     * @param mediaIds IDs of the FeedMedia objects whose files have been deleted.
+     * @param itemIds  IDs of the FeedItems of these FeedMedia objects.
+     */
+    public static Future<?> setFeedMediaDeleted(final Context context, final long[] mediaIds,
+                                                final long[] itemIds) {
+        return dbExec.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (mediaIds.length == 0) {
+                    return;
+                }
+                PodDBAdapter adapter = new PodDBAdapter(context);
+                adapter.open();
+                adapter.setFeedMediaDeleted(mediaIds);
+                adapter.close();
+                Log.i(TAG, "Marked " + mediaIds.length + " FeedMedia as deleted");
+
+                List<FeedItem> items = new ArrayList<FeedItem>(itemIds.length);
+                for (int start = 0; start < itemIds.length; start += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+                    int end = Math.min(itemIds.length, start + PodDBAdapter.IN_OPERATOR_MAXIMUM);
+                    items.addAll(DBReader.getFeedItems(context, Arrays.copyOfRange(itemIds, start, end)));
+                }
+                // Gpodder: queue delete actions for synchronization
+                if (GpodnetPreferences.loggedIn()) {
+                    for (FeedItem item : items) {
+                        GpodnetEpisodeAction action = new GpodnetEpisodeAction.Builder(item, GpodnetEpisodeAction.Action.DELETE)
+                                .currentDeviceId()
+                                .currentTimestamp()
+                                .build();
+                        GpodnetPreferences.enqueueEpisodeAction(action);
+                    }
+                }
+                EventBus.getDefault().post(new QueueEvent(QueueEvent.Action.DELETED_MEDIA, items));
+                long[] feedIds = new long[items.size()];
+                for (int i = 0; i < feedIds.length; i++) {
+                    feedIds[i] = items.get(i).getFeedId();
+                }
+                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast(feedIds, itemIds);
+            }
+        });
+    }
+
     /**
      * Deletes a downloaded FeedMedia file from the storage device.
      *
@@ -138,7 +207,8 @@ public class DBWriter {
                     }
                     Log.d(TAG, "Deleting File. Result: " + result);
                     EventBus.getDefault().post(new QueueEvent(QueueEvent.Action.DELETED_MEDIA, media.getItem()));
-                    EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast();
+                    EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast(
+                            new long[]{media.getItem().getFeedId()}, new long[]{media.getItem().getId()});
                 }
             }
         });
@@ -146,92 +216,107 @@ public class DBWriter {
 
     /**
      * Deletes a Feed and all downloaded files of its components like images and downloaded episodes.
+     * The database entries are removed in a single transaction, the files are deleted afterwards on
+     * a separate thread. The returned Future completes after the files have been deleted.
      *
      * @param context A context that is used for opening a database connection.
      * @param feedId  ID of the Feed that should be deleted.
      */
     public static Future<?> deleteFeed(final Context context, final long feedId) {
-        return dbExec.submit(new Runnable() {
+        final Future<FeedFiles> removal = dbExec.submit(new Callable<FeedFiles>() {
             @Override
-            public void run() {
-                DownloadRequester requester = DownloadRequester.getInstance();
-                SharedPreferences prefs = PreferenceManager
-                        .getDefaultSharedPreferences(context
-                                .getApplicationContext());
-                final Feed feed = DBReader.getFeed(context, feedId);
-                if (feed != null) {
-                    if (PlaybackPreferences.getCurrentlyPlayingMedia() == FeedMedia.PLAYABLE_TYPE_FEEDMEDIA
-                            && PlaybackPreferences.getLastPlayedFeedId() == feed
-                            .getId()) {
-                        context.sendBroadcast(new Intent(
-                                PlaybackService.ACTION_SHUTDOWN_PLAYBACK_SERVICE));
-                        SharedPreferences.Editor editor = prefs.edit();
-                        editor.putLong(
-                                PlaybackPreferences.PREF_CURRENTLY_PLAYING_FEED_ID,
-                                -1);
-                        editor.commit();
-                    }
+            public FeedFiles call() {
+                PodDBAdapter adapter = new PodDBAdapter(context);
+                adapter.open();
+                Cursor feedCursor = adapter.getFeedCursor(feedId);
+                if (!feedCursor.moveToFirst()) {
+                    Log.e(TAG, "deleteFeed could not find feed with id " + feedId);
+                    feedCursor.close();
+                    adapter.close();
+                    return null;
+                }
+                final String feedDownloadUrl = feedCursor.getString(PodDBAdapter.IDX_FEED_SEL_STD_DOWNLOAD_URL);
+                feedCursor.close();
+
+                if (PlaybackPreferences.getCurrentlyPlayingMedia() == FeedMedia.PLAYABLE_TYPE_FEEDMEDIA
+                        && PlaybackPreferences.getLastPlayedFeedId() == feedId) {
+                    context.sendBroadcast(new Intent(
+                            PlaybackService.ACTION_SHUTDOWN_PLAYBACK_SERVICE));
+                    SharedPreferences prefs = PreferenceManager
+                            .getDefaultSharedPreferences(context
+                                    .getApplicationContext());
+                    SharedPreferences.Editor editor = prefs.edit();
+                    editor.putLong(
+                            PlaybackPreferences.PREF_CURRENTLY_PLAYING_FEED_ID,
+                            -1);
+                    editor.commit();
+                }
 
-                    // delete image file
-                    if (feed.getImage() != null) {
-                        if (feed.getImage().isDownloaded()
-                                && feed.getImage().getFile_url() != null) {
-                            File imageFile = new File(feed.getImage()
-                                    .getFile_url());
-                            imageFile.delete();
-                        } else if (requester.isDownloadingFile(feed.getImage())) {
-                            requester.cancelDownload(context, feed.getImage());
-                        }
-                    }
-                    // delete stored media files and mark them as read
-                    List<FeedItem> queue = DBReader.getQueue(context);
-                    boolean queueWasModified = false;
-                    if (feed.getItems() == null) {
-                        DBReader.getFeedItemList(context, feed);
+                // the files have to be known before their database entries are removed
+                FeedFiles files = new FeedFiles();
+                Cursor fileCursor = adapter.getFilesOfFeedCursor(feedId);
+                while (fileCursor.moveToNext()) {
+                    String fileUrl = fileCursor.getString(0);
+                    String downloadUrl = fileCursor.getString(1);
+                    if (fileCursor.getInt(2) > 0 && fileUrl != null) {
+                        files.fileUrls.add(fileUrl);
+                    } else if (downloadUrl != null) {
+                        files.downloadUrls.add(downloadUrl);
                     }
+                }
+                fileCursor.close();
+                final int removedQueueItems = adapter.removeFeed(feedId);
+                adapter.close();
+                Log.d(TAG, "Removed feed " + feedId + " (" + removedQueueItems + " items were in the queue)");
 
-                    for (FeedItem item : feed.getItems()) {
-                        queueWasModified |= queue.remove(item);
-                        if (item.getMedia() != null
-                                && item.getMedia().isDownloaded()) {
-                            File mediaFile = new File(item.getMedia()
-                                    .getFile_url());
-                            mediaFile.delete();
-                        } else if (item.getMedia() != null
-                                && requester.isDownloadingFile(item.getMedia())) {
-                            requester.cancelDownload(context, item.getMedia());
-                        }
+                if (ClientConfig.gpodnetCallbacks.gpodnetEnabled()) {
+                    GpodnetPreferences.addRemovedFeed(feedDownloadUrl);
+                }
+                EventDistributor.getInstance().sendFeedUpdateBroadcast(feedId);
 
-                        if (item.hasItemImage()) {
-                            FeedImage image = item.getImage();
-                            if (image.isDownloaded() && image.getFile_url() != null) {
-                                File imgFile = new File(image.getFile_url());
-                                imgFile.delete();
-                            } else if (requester.isDownloadingFile(image)) {
-                                requester.cancelDownload(context, item.getImage());
-                            }
-                        }
-                    }
-                    PodDBAdapter adapter = new PodDBAdapter(context);
-                    adapter.open();
-                    if (queueWasModified) {
-                        adapter.setQueue(queue);
+                BackupManager backupManager = new BackupManager(context);
+                backupManager.dataChanged();
+                return files;
+            }
+        });
+        return fileExec.submit(new Runnable() {
+            @Override
+            public void run() {
+                FeedFiles files;
+                try {
+                    files = removal.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                if (files == null) {
+                    return;
+                }
+                DownloadRequester requester = DownloadRequester.getInstance();
+                for (String downloadUrl : files.downloadUrls) {
+                    if (requester.isDownloadingFile(downloadUrl)) {
+                        requester.cancelDownload(context, downloadUrl);
                     }
-                    adapter.removeFeed(feed);
-                    adapter.close();
-
-                    if (ClientConfig.gpodnetCallbacks.gpodnetEnabled()) {
-                        GpodnetPreferences.addRemovedFeed(feed.getDownload_url());
+                }
+                int deleted = 0;
+                for (String fileUrl : files.fileUrls) {
+                    if (new File(fileUrl).delete()) {
+                        deleted++;
                     }
-                    EventDistributor.getInstance().sendFeedUpdateBroadcast();
-
-                    BackupManager backupManager = new BackupManager(context);
-                    backupManager.dataChanged();
                 }
+                Log.d(TAG, "Deleted " + deleted + " of " + files.fileUrls.size() + " files of feed " + feedId);
             }
         });
     }
 
+    /**
+     * Files of a deleted feed that still have to be deleted or whose download has to be cancelled.
+     */
+    private static class FeedFiles {
+        final List<String> fileUrls = new ArrayList<String>();
+        final List<String> downloadUrls = new ArrayList<String>();
+    }
+
     /**
      * Deletes the entire playback history.
      *
@@ -301,13 +386,62 @@ public class DBWriter {
         });
     }
 
-    private static void cleanupDownloadLog(final PodDBAdapter adapter) {
-        final long logSize = adapter.getDownloadLogSize();
-        if (logSize > DBReader.DOWNLOAD_LOG_SIZE) {
-            if (BuildConfig.DEBUG)
-                Log.d(TAG, "Cleaning up download log");
-            adapter.removeDownloadLogItems(logSize - DBReader.DOWNLOAD_LOG_SIZE);
-        }
+    /**
+     * Updates the playback state of several episodes in a single transaction, e.g. after episode actions
+     * have been received from gpodder.net.
+     *
+     * @param context           A context that is used for opening a database connection.
+     * @param unplayedItemIds   IDs of FeedItems that should be marked as unplayed.
+     * @param playedItemIds     IDs of FeedItems that should be marked as played.
+     * @param positions         The new positions of FeedMedia by their ID.
+     * @param completedMediaIds IDs of FeedMedia that should be added to the playback history.
+     */
+    public static Future<?> setEpisodeStates(final Context context, final LongList unplayedItemIds,
+                                             final LongList playedItemIds, final LongIntMap positions,
+                                             final LongList completedMediaIds) {
+        return dbExec.submit(new Runnable() {
+            @Override
+            public void run() {
+                PodDBAdapter adapter = new PodDBAdapter(context);
+                adapter.open();
+                adapter.setEpisodeStates(unplayedItemIds, playedItemIds, positions, completedMediaIds,
+                        System.currentTimeMillis());
+                adapter.close();
+                Log.d(TAG, String.format("Updated episode states: %d unplayed, %d played, %d positions",
+                        unplayedItemIds.size(), playedItemIds.size(), positions.size()));
+
+                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast();
+                if (completedMediaIds.size() > 0) {
+                    EventDistributor.getInstance().sendPlaybackHistoryUpdateBroadcast();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the download log entries that are older than the retention period that has been
+     * set in the {@link UserPreferences}. The newest entry of every feed file is kept. If the log
+     * still contains more than {@link DBReader#DOWNLOAD_LOG_MAX_SIZE} entries, the oldest entries
+     * are removed.
+     *
+     * @param context A context that is used for opening a database connection.
+     */
+    public static Future<?> compactDownloadLog(final Context context) {
+        return dbExec.submit(new Runnable() {
+            @Override
+            public void run() {
+                long retention = UserPreferences.getDownloadLogRetention();
+                long minCompletionDate = (retention > 0) ? System.currentTimeMillis() - retention : 0;
+                PodDBAdapter adapter = new PodDBAdapter(context);
+                adapter.open();
+                int removed = adapter.compactDownloadLog(minCompletionDate, DBReader.DOWNLOAD_LOG_MAX_SIZE);
+                adapter.close();
+                Log.d(TAG, "Removed " + removed + " entries from the download log");
+                if (removed > 0) {
+                    EventDistributor.getInstance().sendDownloadLogUpdateBroadcast();
+                }
+            }
+        });
     }
 
     /**
@@ -664,7 +798,7 @@ public class DBWriter {
                 adapter.setFeedItemRead(true, itemIds);
                 adapter.close();
 
-                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast();
+                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast(new long[]{feedId}, itemIds);
             }
         });
 
@@ -726,11 +860,16 @@ public class DBWriter {
 
             @Override
             public void run() {
+                final long changeCount = PodDBAdapter.getSubscriptionChangeCount(context);
                 PodDBAdapter adapter = new PodDBAdapter(context);
                 adapter.open();
                 adapter.setCompleteFeed(feeds);
                 adapter.close();
 
+                if (PodDBAdapter.getSubscriptionChangeCount(context) != changeCount) {
+                    BackupManager backupManager = new BackupManager(context);
+                    backupManager.dataChanged();
+                }
             }
         });
 
@@ -775,6 +914,24 @@ public class DBWriter {
         });
     }
 
+    /**
+     * Saves the result of the last search for chapters in the media file or stream of a FeedMedia object.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param media   The FeedMedia object.
+     */
+    public static Future<?> setFeedMediaChapterScanState(final Context context, final FeedMedia media) {
+        return dbExec.submit(new Runnable() {
+            @Override
+            public void run() {
+                PodDBAdapter adapter = new PodDBAdapter(context);
+                adapter.open();
+                adapter.setFeedMediaChapterScanState(media);
+                adapter.close();
+            }
+        });
+    }
+
     /**
      * Saves a FeedItem object in the database. This method will save all attributes of the FeedItem object including
      * the content of FeedComponent-attributes.
@@ -834,6 +991,9 @@ public class DBWriter {
                     adapter.setFeedDownloadUrl(key, urls.get(key));
                 }
                 adapter.close();
+
+                BackupManager backupManager = new BackupManager(context);
+                backupManager.dataChanged();
             }
         });
     }
@@ -852,7 +1012,7 @@ public class DBWriter {
                 adapter.open();
                 adapter.setFeedPreferences(preferences);
                 adapter.close();
-                EventDistributor.getInstance().sendFeedUpdateBroadcast();
+                EventDistributor.getInstance().sendFeedUpdateBroadcast(preferences.getFeedID());
             }
         });
     }
@@ -990,18 +1150,38 @@ public class DBWriter {
      */
     public static Future<?> setFlattredStatus(final Context context, final List<Flattr> flattrList) {
         Log.d(TAG, "setFlattredStatus to status retrieved from flattr api running with " + flattrList.size() + " items");
-        // clear flattr status in db
-        clearAllFlattrStatus(context);
+        return dbExec.submit(new Runnable() {
+            @Override
+            public void run() {
+                // normalize the URLs of the flattred things, the status of the last flattr of a thing wins
+                Map<String, FlattrStatus> statusByUrl = new HashMap<String, FlattrStatus>(flattrList.size());
+                for (Flattr flattr : flattrList) {
+                    statusByUrl.put(formatURIForQuery(flattr.getThing().getUrl()),
+                            new FlattrStatus(flattr.getCreated().getTime()));
+                }
 
-        // submit list with flattred things having normalized URLs to db
+                PodDBAdapter adapter = new PodDBAdapter(context);
+                adapter.open();
+                adapter.setFlattrStatusByUrl(statusByUrl);
+                adapter.close();
+            }
+        });
+    }
+
+    /**
+     * Saves the flattr status of several feeds and feed items in a single transaction. SimpleFlattrThings are
+     * ignored because they are not stored in the database.
+     *
+     * @param context A context that is used for opening a database connection.
+     * @param things  The things whose flattr status should be saved.
+     */
+    public static Future<?> setFlattrThingsStatus(final Context context, final List<FlattrThing> things) {
         return dbExec.submit(new Runnable() {
             @Override
             public void run() {
                 PodDBAdapter adapter = new PodDBAdapter(context);
                 adapter.open();
-                for (Flattr flattr : flattrList) {
-                    adapter.setItemFlattrStatus(formatURIForQuery(flattr.getThing().getUrl()), new FlattrStatus(flattr.getCreated().getTime()));
-                }
+                adapter.setFlattrStatus(things);
                 adapter.close();
             }
         });
@@ -1055,7 +1235,8 @@ public class DBWriter {
                 adapter.setFeedItemAutoDownload(feedItem, autoDownload);
                 adapter.close();
 
-                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast();
+                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast(
+                        new long[]{feedItem.getFeedId()}, new long[]{feedItem.getId()});
             }
         });
 
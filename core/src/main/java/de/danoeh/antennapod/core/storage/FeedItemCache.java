@@ -0,0 +1,234 @@
+package de.danoeh.antennapod.core.storage;
+
+import android.support.v4.util.LruCache;
+
+import java.util.Collection;
+
+import de.danoeh.antennapod.core.feed.FeedItem;
+import de.danoeh.antennapod.core.feed.FeedMedia;
+import de.danoeh.antennapod.core.util.LongLongMap;
+
+/**
+ * Identity map for FeedItems and their FeedMedia. DBReader returns the cached FeedItem object
+ * for an ID if there is one, so that an episode that is shown in several places, e.g. in the
+ * queue and in the player, is represented by the same object and can be loaded again without
+ * accessing the database. The number of cached items is limited, the least recently used items
+ * are evicted first.
+ * <p/>
+ * PodDBAdapter keeps the cached objects consistent with the database: Simple changes like the
+ * played state or the playback position are applied to the cached objects, after all other
+ * changes the affected items are evicted. Items are only stored if nothing has changed since
+ * the caller has started reading them from the database, see {@link #getGeneration()}.
+ */
+public class FeedItemCache {
+
+    /**
+     * Maximum number of cached FeedItems.
+     */
+    static final int MAX_SIZE = 500;
+
+    private static final LruCache<Long, FeedItem> items = new LruCache<Long, FeedItem>(MAX_SIZE) {
+        @Override
+        protected void entryRemoved(boolean evicted, Long key, FeedItem oldValue, FeedItem newValue) {
+            FeedMedia media = oldValue.getMedia();
+            if (media != null) {
+                itemIdsByMediaId.remove(media.getId());
+            }
+        }
+    };
+
+    // guarded by FeedItemCache.class, like items. Item IDs are never 0, so 0 means "not cached"
+    private static final LongLongMap itemIdsByMediaId = new LongLongMap(MAX_SIZE);
+    private static long generation;
+    private static long hitCount;
+    private static long missCount;
+
+    private FeedItemCache() {
+    }
+
+    /**
+     * Returns the cached FeedItem with the given ID or null if it is not cached.
+     */
+    static synchronized FeedItem get(long itemId) {
+        FeedItem item = items.get(itemId);
+        if (item != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return item;
+    }
+
+    /**
+     * Returns the cached FeedItem whose FeedMedia has the given ID or null if it is not cached.
+     */
+    static synchronized FeedItem getByMediaId(long mediaId) {
+        long itemId = itemIdsByMediaId.get(mediaId);
+        if (itemId != 0) {
+            return get(itemId);
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Returns a value that changes whenever items are changed in the database. Must
+     * be called before the items that are passed to {@link #putAll(Collection, long)} are read
+     * from the database.
+     */
+    static synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores the given items unless an item has been changed since getGeneration has returned
+     * the given value. Items that are already cached are not replaced.
+     */
+    static synchronized void putAll(Collection<FeedItem> loadedItems, long loadedGeneration) {
+        if (loadedGeneration != generation) {
+            return;
+        }
+        for (FeedItem item : loadedItems) {
+            if (item.getId() != 0 && items.get(item.getId()) == null) {
+                items.put(item.getId(), item);
+                if (item.getMedia() != null) {
+                    itemIdsByMediaId.put(item.getMedia().getId(), item.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Called after the given item has been written to the database. If a different object is
+     * cached for the same ID, it is evicted.
+     */
+    static synchronized void updated(FeedItem item) {
+        generation++;
+        FeedItem cached = items.get(item.getId());
+        if (cached != null && cached != item) {
+            items.remove(item.getId());
+        }
+    }
+
+    /**
+     * Called after the given media has been written to the database. If the cached item of the
+     * media doesn't contain the same object, it is evicted.
+     */
+    static synchronized void mediaUpdated(FeedMedia media) {
+        generation++;
+        long itemId = itemIdsByMediaId.get(media.getId());
+        if (itemId == 0 && media.getItem() != null) {
+            itemId = media.getItem().getId();
+        }
+        if (itemId != 0) {
+            FeedItem cached = items.get(itemId);
+            if (cached != null && cached.getMedia() != media) {
+                items.remove(itemId);
+            }
+        }
+    }
+
+    static synchronized void evict(long itemId) {
+        generation++;
+        items.remove(itemId);
+    }
+
+    static synchronized void evictMedia(long mediaId) {
+        generation++;
+        long itemId = itemIdsByMediaId.get(mediaId);
+        if (itemId != 0) {
+            items.remove(itemId);
+        }
+    }
+
+    /**
+     * Evicts all items of the feed with the given ID.
+     */
+    static synchronized void evictFeed(long feedId) {
+        generation++;
+        for (FeedItem item : items.snapshot().values()) {
+            if (item.getFeedId() == feedId) {
+                items.remove(item.getId());
+            }
+        }
+    }
+
+    static synchronized void evictAll() {
+        generation++;
+        items.evictAll();
+    }
+
+    /**
+     * Applies a new played state to the cached items with the given IDs.
+     */
+    static synchronized void setRead(boolean read, long... itemIds) {
+        generation++;
+        for (long itemId : itemIds) {
+            FeedItem item = items.get(itemId);
+            if (item != null) {
+                item.setRead(read);
+            }
+        }
+    }
+
+    /**
+     * Applies a new playback position to the cached media with the given ID.
+     */
+    static synchronized void setPosition(long mediaId, int position) {
+        generation++;
+        FeedMedia media = getCachedMedia(mediaId);
+        if (media != null) {
+            media.setPosition(position);
+        }
+    }
+
+    /**
+     * Applies the playback information of the given FeedMedia object to the cached media with the
+     * same ID, if it is a different object.
+     */
+    static synchronized void setPlaybackInformation(FeedMedia media) {
+        generation++;
+        FeedMedia cached = getCachedMedia(media.getId());
+        if (cached != null && cached != media) {
+            cached.setPosition(media.getPosition());
+            cached.setDuration(media.getDuration());
+            cached.setPlayedDuration(media.getPlayedDuration());
+        }
+    }
+
+    private static FeedMedia getCachedMedia(long mediaId) {
+        long itemId = itemIdsByMediaId.get(mediaId);
+        if (itemId == 0) {
+            return null;
+        }
+        FeedItem item = items.get(itemId);
+        return (item != null) ? item.getMedia() : null;
+    }
+
+    /**
+     * Returns how often an item has been found in the cache since the statistics have been reset.
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns how often an item has not been found in the cache since the statistics have been reset.
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the ratio of lookups that have been answered from the cache, or 0 if there haven't been any lookups.
+     */
+    public static synchronized float getHitRate() {
+        long lookups = hitCount + missCount;
+        return (lookups > 0) ? (float) hitCount / lookups : 0f;
+    }
+
+    public static synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+    }
+}
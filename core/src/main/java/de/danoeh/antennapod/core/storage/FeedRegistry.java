@@ -0,0 +1,69 @@
+package de.danoeh.antennapod.core.storage;
+
+import java.util.Collection;
+
+import de.danoeh.antennapod.core.feed.Feed;
+import de.danoeh.antennapod.core.util.LongObjectMap;
+
+/**
+ * Keeps Feed objects in memory so that the feeds of FeedItems can be looked up by their ID
+ * without reading the feed list from the database. The Feed objects contain their image and
+ * their preferences, but not their items. They are shared by all FeedItems that are loaded
+ * through {@link DBReader#loadFeedDataOfFeedItemlist(android.content.Context, java.util.List)}.
+ * <p/>
+ * PodDBAdapter invalidates an entry whenever it changes the corresponding feed. Entries are
+ * only stored if no feed has been invalidated since the caller has started reading them from
+ * the database, see {@link #getGeneration()}.
+ */
+class FeedRegistry {
+
+    private static final LongObjectMap<Feed> feeds = new LongObjectMap<Feed>();
+    private static long generation;
+
+    private FeedRegistry() {
+    }
+
+    /**
+     * Returns the Feed with the given ID or null if it is not in the registry.
+     */
+    static synchronized Feed get(long feedId) {
+        return feeds.get(feedId);
+    }
+
+    /**
+     * Returns a value that changes whenever an entry is invalidated. Must be called before the
+     * feeds that are passed to {@link #putAll(Collection, long)} are read from the database.
+     */
+    static synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Stores the given feeds unless an entry has been invalidated since getGeneration has
+     * returned the given value.
+     */
+    static synchronized void putAll(Collection<Feed> loadedFeeds, long loadedGeneration) {
+        if (loadedGeneration != generation) {
+            return;
+        }
+        for (Feed feed : loadedFeeds) {
+            feeds.put(feed.getId(), feed);
+        }
+    }
+
+    /**
+     * Removes the feed with the given ID.
+     */
+    static synchronized void invalidate(long feedId) {
+        generation++;
+        feeds.remove(feedId);
+    }
+
+    /**
+     * Removes all feeds.
+     */
+    static synchronized void invalidateAll() {
+        generation++;
+        feeds.clear();
+    }
+}
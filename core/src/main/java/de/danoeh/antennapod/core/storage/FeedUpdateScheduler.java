@@ -0,0 +1,84 @@
+package de.danoeh.antennapod.core.storage;
+
+/**
+ * Decides when a feed should be checked for new episodes.
+ * <p/>
+ * The update interval selected by the user is the shortest interval in which a feed is checked.
+ * How often a feed publishes new episodes is estimated from the publication dates of its recent
+ * episodes: Once the next episode of a feed is expected, the feed is checked in every update
+ * interval. Between two episodes and for feeds that haven't published anything recently, the
+ * feed is checked less often, at most every {@link #MAX_INTERVAL} milliseconds. These longer
+ * intervals are stretched by a feed-specific amount, so that feeds that have been added at the
+ * same time are not always refreshed together.
+ */
+public class FeedUpdateScheduler {
+
+    /**
+     * Only episodes that have been published in this time span are used to estimate the cadence of a feed.
+     */
+    static final long CADENCE_WINDOW = 90L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Minimum number of episodes in the cadence window that are needed to estimate the cadence.
+     */
+    static final int MIN_EPISODES = 3;
+
+    /**
+     * Longest time in milliseconds between two checks of a feed.
+     */
+    static final long MAX_INTERVAL = 24L * 60 * 60 * 1000;
+
+    /**
+     * A feed that would be due shortly after a wakeup is already refreshed in this wakeup. The
+     * tolerance is the update interval divided by this value.
+     */
+    private static final int DUE_TOLERANCE_DIVISOR = 10;
+
+    private FeedUpdateScheduler() {
+    }
+
+    /**
+     * Returns the time at which a feed should be checked for new episodes next time.
+     *
+     * @param feedId             ID of the feed.
+     * @param lastCheck          Time of the last refresh of the feed, including refreshes that failed or
+     *                           that the server answered with 'not modified'.
+     * @param updateInterval     Update interval selected by the user.
+     * @param recentEpisodes     Number of episodes that have been published in the last CADENCE_WINDOW milliseconds.
+     * @param firstRecentPubDate Publication date of the oldest of these episodes.
+     * @param lastPubDate        Publication date of the newest episode of the feed or 0 if the feed has no episodes.
+     * @param lastUpdateFailed   True if the last refresh of the feed has failed.
+     */
+    public static long getNextUpdate(long feedId, long lastCheck, long updateInterval, int recentEpisodes,
+                                     long firstRecentPubDate, long lastPubDate, boolean lastUpdateFailed) {
+        final long regularUpdate = lastCheck + updateInterval;
+        if (lastUpdateFailed || lastPubDate <= 0) {
+            return regularUpdate;
+        }
+        long interval;
+        long expected = Long.MAX_VALUE;
+        if (recentEpisodes < MIN_EPISODES) {
+            // feed doesn't publish regularly (anymore)
+            interval = MAX_INTERVAL;
+        } else {
+            long cadence = (lastPubDate - firstRecentPubDate) / (recentEpisodes - 1);
+            interval = cadence / 4;
+            // the next episode is expected from this point in time on
+            expected = lastPubDate + cadence - cadence / 4;
+        }
+        interval = Math.min(interval, MAX_INTERVAL);
+        interval += (Math.abs(feedId) % 8) * interval / 64;
+        return Math.max(regularUpdate, Math.min(lastCheck + interval, expected));
+    }
+
+    /**
+     * Returns true if a feed should be refreshed now.
+     *
+     * @param nextUpdate     Value returned by getNextUpdate.
+     * @param updateInterval Update interval selected by the user.
+     * @param now            Current time.
+     */
+    public static boolean isDue(long nextUpdate, long updateInterval, long now) {
+        return nextUpdate <= now + updateInterval / DUE_TOLERANCE_DIVISOR;
+    }
+}
@@ -0,0 +1,220 @@
+package de.danoeh.antennapod.core.storage;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.danoeh.antennapod.core.asynctask.ThumbnailCache;
+import de.danoeh.antennapod.core.feed.EventDistributor;
+import de.danoeh.antennapod.core.feed.FeedMedia;
+import de.danoeh.antennapod.core.util.ChapterUtils;
+
+/**
+ * Reads the metadata of downloaded media files that is too expensive to read on demand: the
+ * duration and whether the file contains a picture. Both are read with a single
+ * MediaMetadataRetriever and stored in the database. A thumbnail of the picture is stored in the
+ * {@link de.danoeh.antennapod.core.asynctask.ThumbnailCache}, so that lists can show the picture
+ * without opening the media file.
+ * <p/>
+ * Files that have not been searched for chapters yet are searched as well and the result is
+ * stored, so that no file is searched more than once.
+ * <p/>
+ * The DownloadService indexes media files right after they have been downloaded. Files whose
+ * metadata hasn't been indexed yet, e.g. because they have been downloaded by an older version,
+ * are indexed by {@link #indexAsync(android.content.Context)} on a low priority thread.
+ */
+public class MediaMetadataIndexer {
+    private static final String TAG = "MediaMetadataIndexer";
+
+    /**
+     * Number of media files that are read from the database at once.
+     */
+    private static final int BATCH_SIZE = 20;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, TAG);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private static final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private MediaMetadataIndexer() {
+    }
+
+    /**
+     * Reads the metadata of the downloaded file of the given FeedMedia and sets its duration and
+     * whether it has an embedded picture. The changes are not written to the database.
+     * <p/>
+     * This method accesses the disk and must not be called on the GUI thread.
+     */
+    public static void readMetadata(Context context, FeedMedia media) {
+        Metadata metadata = read(context, media.getFile_url());
+        if (metadata.duration > 0) {
+            media.setDuration(metadata.duration);
+            Log.d(TAG, "Duration of file is " + media.getDuration());
+        }
+        media.setHasEmbeddedPicture(metadata.hasEmbeddedPicture);
+    }
+
+    /**
+     * Indexes all downloaded media files whose metadata hasn't been read yet. If indexing is
+     * already in progress, the files are indexed after it has finished.
+     */
+    public static void indexAsync(final Context context) {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                scheduled.set(false);
+                index(appContext);
+            }
+        });
+    }
+
+    private static void index(Context context) {
+        long[] mediaIds = new long[BATCH_SIZE];
+        int[] durations = new int[BATCH_SIZE];
+        String[] fileUrls = new String[BATCH_SIZE];
+        long[] itemIds = new long[BATCH_SIZE];
+        long[] feedIds = new long[BATCH_SIZE];
+        boolean[] needsMetadata = new boolean[BATCH_SIZE];
+        boolean[] needsChapters = new boolean[BATCH_SIZE];
+        Metadata[] results = new Metadata[BATCH_SIZE];
+        FeedMedia[] scannedMedia = new FeedMedia[BATCH_SIZE];
+        long lastId = 0;
+        int total = 0;
+
+        while (true) {
+            PodDBAdapter adapter = new PodDBAdapter(context);
+            adapter.open();
+            Cursor cursor = adapter.getUnindexedMediaCursor(lastId, BATCH_SIZE);
+            int count = 0;
+            while (cursor.moveToNext() && count < BATCH_SIZE) {
+                mediaIds[count] = cursor.getLong(0);
+                durations[count] = cursor.getInt(1);
+                fileUrls[count] = cursor.getString(2);
+                itemIds[count] = cursor.getLong(3);
+                feedIds[count] = cursor.getLong(4);
+                needsMetadata[count] = cursor.getInt(5) == -1;
+                needsChapters[count] = cursor.getInt(6) == FeedMedia.CHAPTER_SCAN_NOT_SCANNED
+                        && cursor.getInt(7) == 0;
+                count++;
+            }
+            cursor.close();
+            adapter.close();
+            if (count == 0) {
+                break;
+            }
+            lastId = mediaIds[count - 1];
+
+            // don't keep the database open while the files are being read
+            int pictures = 0;
+            for (int i = 0; i < count; i++) {
+                results[i] = null;
+                scannedMedia[i] = null;
+                if (needsMetadata[i]) {
+                    results[i] = read(context, fileUrls[i]);
+                    if (results[i].hasEmbeddedPicture) {
+                        pictures++;
+                    }
+                }
+                if (needsChapters[i]) {
+                    FeedMedia media = DBReader.getFeedMedia(context, mediaIds[i]);
+                    if (media != null && media.getItem() != null && media.getChapters() == null) {
+                        media.setChapterScanResult(ChapterUtils.loadChaptersFromFileUrl(media));
+                        scannedMedia[i] = media;
+                    }
+                }
+            }
+
+            adapter.open();
+            for (int i = 0; i < count; i++) {
+                FeedMedia media = scannedMedia[i];
+                if (media != null) {
+                    if (media.getChapters() != null) {
+                        adapter.setSingleFeedItem(media.getItem());
+                    } else {
+                        adapter.setFeedMediaChapterScanState(media);
+                    }
+                }
+                // written last, setSingleFeedItem might have written an outdated picture flag
+                if (results[i] != null) {
+                    int duration = (durations[i] > 0) ? 0 : results[i].duration;
+                    adapter.setFeedMediaMetadata(mediaIds[i], duration, results[i].hasEmbeddedPicture);
+                }
+            }
+            adapter.close();
+            total += count;
+
+            if (pictures > 0) {
+                long[] changedItemIds = new long[pictures];
+                long[] changedFeedIds = new long[pictures];
+                for (int i = 0, j = 0; i < count; i++) {
+                    if (results[i] != null && results[i].hasEmbeddedPicture) {
+                        changedItemIds[j] = itemIds[i];
+                        changedFeedIds[j] = feedIds[i];
+                        j++;
+                    }
+                }
+                EventDistributor.getInstance().sendUnreadItemsUpdateBroadcast(changedFeedIds, changedItemIds);
+            }
+        }
+        if (total > 0) {
+            Log.d(TAG, "Indexed " + total + " media files");
+        }
+    }
+
+    private static Metadata read(Context context, String fileUrl) {
+        Metadata metadata = new Metadata();
+        if (fileUrl == null) {
+            return metadata;
+        }
+        File file = new File(fileUrl);
+        if (!file.exists()) {
+            return metadata;
+        }
+        byte[] picture = null;
+        MediaMetadataRetriever mmr = null;
+        try {
+            mmr = new MediaMetadataRetriever();
+            mmr.setDataSource(fileUrl);
+            String duration = mmr.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (duration != null) {
+                metadata.duration = Integer.parseInt(duration);
+            }
+            picture = mmr.getEmbeddedPicture();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not read metadata of " + fileUrl, e);
+        } finally {
+            if (mmr != null) {
+                mmr.release();
+            }
+        }
+        if (picture != null) {
+            metadata.hasEmbeddedPicture = true;
+            if (ThumbnailCache.createEmbeddedPictureThumbnail(context, file, picture) == null) {
+                Log.w(TAG, "Could not create thumbnail of embedded picture of " + fileUrl);
+            }
+        }
+        return metadata;
+    }
+
+    private static class Metadata {
+        int duration;
+        boolean hasEmbeddedPicture;
+    }
+}
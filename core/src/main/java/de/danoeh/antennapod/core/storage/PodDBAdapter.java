@@ -2,6 +2,7 @@ package de.danoeh.antennapod.core.storage;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.MergeCursor;
@@ -9,13 +10,19 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import de.danoeh.antennapod.core.BuildConfig;
 import de.danoeh.antennapod.core.ClientConfig;
@@ -30,7 +37,9 @@ import de.danoeh.antennapod.core.feed.FeedMedia;
 import de.danoeh.antennapod.core.feed.FeedPreferences;
 import de.danoeh.antennapod.core.service.download.DownloadStatus;
 import de.danoeh.antennapod.core.util.LongIntMap;
+import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.core.util.flattr.FlattrStatus;
+import de.danoeh.antennapod.core.util.flattr.FlattrThing;
 import de.greenrobot.event.EventBus;
 
 ;
@@ -54,6 +63,11 @@ public class PodDBAdapter {
      */
     public static final int SEARCH_LIMIT = 30;
 
+    /**
+     * Preference key of the subscription change count, see {@link #getSubscriptionChangeCount(Context)}.
+     */
+    private static final String PREF_SUBSCRIPTION_CHANGE_COUNT = "de.danoeh.antennapod.core.storage.subscriptionChangeCount";
+
     // ----------- Column indices
     // ----------- General indices
     public static final int KEY_ID_INDEX = 0;
@@ -158,7 +172,11 @@ public class PodDBAdapter {
     public static final String KEY_NEXT_PAGE_LINK = "next_page_link";
     public static final String KEY_HIDE = "hide";
     public static final String KEY_LAST_UPDATE_FAILED = "last_update_failed";
+    public static final String KEY_LAST_CHECK = "last_check";
     public static final String KEY_HAS_EMBEDDED_PICTURE = "has_embedded_picture";
+    public static final String KEY_CHAPTER_SCAN_STATE = "chapter_scan_state";
+    public static final String KEY_CHAPTER_SCAN_SIZE = "chapter_scan_size";
+    public static final String KEY_CHAPTER_SCAN_MODIFIED = "chapter_scan_modified";
 
 
     // Table names
@@ -188,7 +206,8 @@ public class PodDBAdapter {
             + KEY_IS_PAGED + " INTEGER DEFAULT 0,"
             + KEY_NEXT_PAGE_LINK + " TEXT,"
             + KEY_HIDE + " TEXT,"
-            + KEY_LAST_UPDATE_FAILED + " INTEGER DEFAULT 0)";
+            + KEY_LAST_UPDATE_FAILED + " INTEGER DEFAULT 0,"
+            + KEY_LAST_CHECK + " INTEGER DEFAULT 0)";
 
     public static final String CREATE_TABLE_FEED_ITEMS = "CREATE TABLE "
             + TABLE_NAME_FEED_ITEMS + " (" + TABLE_PRIMARY_KEY + KEY_TITLE
@@ -214,7 +233,10 @@ public class PodDBAdapter {
             + KEY_PLAYBACK_COMPLETION_DATE + " INTEGER,"
             + KEY_FEEDITEM + " INTEGER,"
             + KEY_PLAYED_DURATION + " INTEGER,"
-            + KEY_HAS_EMBEDDED_PICTURE + " INTEGER)";
+            + KEY_HAS_EMBEDDED_PICTURE + " INTEGER,"
+            + KEY_CHAPTER_SCAN_STATE + " INTEGER DEFAULT 0,"
+            + KEY_CHAPTER_SCAN_SIZE + " INTEGER DEFAULT 0,"
+            + KEY_CHAPTER_SCAN_MODIFIED + " INTEGER DEFAULT 0)";
 
     public static final String CREATE_TABLE_DOWNLOAD_LOG = "CREATE TABLE "
             + TABLE_NAME_DOWNLOAD_LOG + " (" + TABLE_PRIMARY_KEY + KEY_FEEDFILE
@@ -253,6 +275,22 @@ public class PodDBAdapter {
             + TABLE_NAME_SIMPLECHAPTERS + "_" + KEY_FEEDITEM + " ON " + TABLE_NAME_SIMPLECHAPTERS + " ("
             + KEY_FEEDITEM + ")";
 
+    public static final String CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER = "CREATE INDEX "
+            + TABLE_NAME_FEED_ITEMS + "_" + KEY_ITEM_IDENTIFIER + " ON " + TABLE_NAME_FEED_ITEMS + " ("
+            + KEY_ITEM_IDENTIFIER + ")";
+
+    public static final String CREATE_INDEX_DOWNLOAD_LOG_FEEDFILE = "CREATE INDEX "
+            + TABLE_NAME_DOWNLOAD_LOG + "_" + KEY_FEEDFILE + " ON " + TABLE_NAME_DOWNLOAD_LOG + " ("
+            + KEY_FEEDFILE + "," + KEY_FEEDFILETYPE + ")";
+
+    public static final String CREATE_INDEX_DOWNLOAD_LOG_COMPLETION_DATE = "CREATE INDEX "
+            + TABLE_NAME_DOWNLOAD_LOG + "_" + KEY_COMPLETION_DATE + " ON " + TABLE_NAME_DOWNLOAD_LOG + " ("
+            + KEY_COMPLETION_DATE + ")";
+
+    public static final String CREATE_INDEX_FEEDMEDIA_PLAYBACK_COMPLETION_DATE = "CREATE INDEX "
+            + TABLE_NAME_FEED_MEDIA + "_" + KEY_PLAYBACK_COMPLETION_DATE + " ON " + TABLE_NAME_FEED_MEDIA + " ("
+            + KEY_PLAYBACK_COMPLETION_DATE + ")";
+
 
     private SQLiteDatabase db;
     private final Context context;
@@ -308,6 +346,12 @@ public class PodDBAdapter {
     public static final int IDX_FEED_SEL_PREFERENCES_USERNAME = 18;
     public static final int IDX_FEED_SEL_PREFERENCES_PASSWORD = 19;
 
+    // additional column indices of getFeedUpdateStatisticsCursor
+    public static final int IDX_FEED_UPDATE_RECENT_ITEMS = FEED_SEL_STD.length;
+    public static final int IDX_FEED_UPDATE_FIRST_RECENT_PUBDATE = FEED_SEL_STD.length + 1;
+    public static final int IDX_FEED_UPDATE_LAST_PUBDATE = FEED_SEL_STD.length + 2;
+    public static final int IDX_FEED_UPDATE_LAST_CHECK = FEED_SEL_STD.length + 3;
+
     /**
      * Select all columns from the feeditems-table except description and
      * content-encoded.
@@ -404,6 +448,8 @@ public class PodDBAdapter {
         Log.w(TAG, "Deleting database");
         dbHelperSingleton.close();
         dbHelperSingleton = null;
+        FeedRegistry.invalidateAll();
+        FeedItemCache.evictAll();
         return context.deleteDatabase(DATABASE_NAME);
     }
 
@@ -449,14 +495,64 @@ public class PodDBAdapter {
             // Create new entry
             Log.d(this.toString(), "Inserting new Feed into db");
             feed.setId(db.insert(TABLE_NAME_FEEDS, null, values));
+            subscriptionsChanged();
         } else {
             Log.d(this.toString(), "Updating existing Feed in db");
+            if (hasSubscriptionOutlineChanged(feed)) {
+                subscriptionsChanged();
+            }
             db.update(TABLE_NAME_FEEDS, values, KEY_ID + "=?",
                     new String[]{String.valueOf(feed.getId())});
         }
+        FeedRegistry.invalidate(feed.getId());
         return feed.getId();
     }
 
+    /**
+     * Returns true if one of the attributes of a stored feed that are part of its OPML outline differs from the
+     * given feed. Null values are treated like empty strings because they can't be bound as arguments.
+     */
+    private boolean hasSubscriptionOutlineChanged(Feed feed) {
+        final String sql = "SELECT COUNT(*) FROM " + TABLE_NAME_FEEDS
+                + " WHERE " + KEY_ID + "=?"
+                + " AND IFNULL(" + KEY_TITLE + ",'')=?"
+                + " AND IFNULL(" + KEY_LINK + ",'')=?"
+                + " AND IFNULL(" + KEY_DOWNLOAD_URL + ",'')=?"
+                + " AND IFNULL(" + KEY_TYPE + ",'')=?";
+        return DatabaseUtils.longForQuery(db, sql, new String[]{
+                String.valueOf(feed.getId()),
+                StringUtils.defaultString(feed.getTitle()),
+                StringUtils.defaultString(feed.getLink()),
+                StringUtils.defaultString(feed.getDownload_url()),
+                StringUtils.defaultString(feed.getType())}) == 0;
+    }
+
+    /**
+     * Returns a number that changes whenever a feed is added or removed, or one of the attributes that
+     * are exported to OPML changes. It is stored in the preferences and starts at the current time, so that it
+     * doesn't repeat values it had before the app data was cleared.
+     */
+    public static long getSubscriptionChangeCount(Context context) {
+        synchronized (PodDBAdapter.class) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+            long count = prefs.getLong(PREF_SUBSCRIPTION_CHANGE_COUNT, 0);
+            if (count == 0) {
+                count = System.currentTimeMillis();
+                prefs.edit().putLong(PREF_SUBSCRIPTION_CHANGE_COUNT, count).commit();
+            }
+            return count;
+        }
+    }
+
+    private void subscriptionsChanged() {
+        synchronized (PodDBAdapter.class) {
+            long count = getSubscriptionChangeCount(context);
+            PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext()).edit()
+                    .putLong(PREF_SUBSCRIPTION_CHANGE_COUNT, count + 1)
+                    .commit();
+        }
+    }
+
     public void setFeedPreferences(FeedPreferences prefs) {
         if (prefs.getFeedID() == 0) {
             throw new IllegalArgumentException("Feed ID of preference must not be null");
@@ -466,6 +562,7 @@ public class PodDBAdapter {
         values.put(KEY_USERNAME, prefs.getUsername());
         values.put(KEY_PASSWORD, prefs.getPassword());
         db.update(TABLE_NAME_FEEDS, values, KEY_ID + "=?", new String[]{String.valueOf(prefs.getFeedID())});
+        FeedRegistry.invalidate(prefs.getFeedID());
     }
 
     public void setFeedItemFilter(long feedId, List<String> filterValues) {
@@ -473,6 +570,7 @@ public class PodDBAdapter {
         values.put(KEY_HIDE, TextUtils.join(",", filterValues));
         Log.d(TAG, TextUtils.join(",", filterValues));
         db.update(TABLE_NAME_FEEDS, values, KEY_ID + "=?", new String[]{String.valueOf(feedId)});
+        FeedRegistry.invalidate(feedId);
     }
 
     /**
@@ -504,6 +602,7 @@ public class PodDBAdapter {
         }
         db.setTransactionSuccessful();
         db.endTransaction();
+        invalidateFeedOfImage(image);
         return image.getId();
     }
 
@@ -521,7 +620,16 @@ public class PodDBAdapter {
         values.put(KEY_DOWNLOAD_URL, media.getDownload_url());
         values.put(KEY_DOWNLOADED, media.isDownloaded());
         values.put(KEY_FILE_URL, media.getFile_url());
-        values.put(KEY_HAS_EMBEDDED_PICTURE, media.hasEmbeddedPicture());
+        if (media.isMetadataIndexed()) {
+            values.put(KEY_HAS_EMBEDDED_PICTURE, media.hasEmbeddedPicture());
+        } else {
+            values.put(KEY_HAS_EMBEDDED_PICTURE, -1);
+        }
+        if (media.getChapterScanState() != FeedMedia.CHAPTER_SCAN_NOT_SCANNED) {
+            values.put(KEY_CHAPTER_SCAN_STATE, media.getChapterScanState());
+            values.put(KEY_CHAPTER_SCAN_SIZE, media.getChapterScanFileSize());
+            values.put(KEY_CHAPTER_SCAN_MODIFIED, media.getChapterScanFileModified());
+        }
 
         if (media.getPlaybackCompletionDate() != null) {
             values.put(KEY_PLAYBACK_COMPLETION_DATE, media
@@ -538,6 +646,7 @@ public class PodDBAdapter {
             db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
                     new String[]{String.valueOf(media.getId())});
         }
+        FeedItemCache.mediaUpdated(media);
         return media.getId();
     }
 
@@ -549,11 +658,26 @@ public class PodDBAdapter {
             values.put(KEY_PLAYED_DURATION, media.getPlayedDuration());
             db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
                     new String[]{String.valueOf(media.getId())});
+            FeedItemCache.setPlaybackInformation(media);
         } else {
             Log.e(TAG, "setFeedMediaPlaybackInformation: ID of media was 0");
         }
     }
 
+    public void setFeedMediaChapterScanState(FeedMedia media) {
+        if (media.getId() != 0) {
+            ContentValues values = new ContentValues();
+            values.put(KEY_CHAPTER_SCAN_STATE, media.getChapterScanState());
+            values.put(KEY_CHAPTER_SCAN_SIZE, media.getChapterScanFileSize());
+            values.put(KEY_CHAPTER_SCAN_MODIFIED, media.getChapterScanFileModified());
+            db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(media.getId())});
+            FeedItemCache.mediaUpdated(media);
+        } else {
+            Log.e(TAG, "setFeedMediaChapterScanState: ID of media was 0");
+        }
+    }
+
     public void setFeedMediaPlaybackCompletionDate(FeedMedia media) {
         if (media.getId() != 0) {
             ContentValues values = new ContentValues();
@@ -561,6 +685,7 @@ public class PodDBAdapter {
             values.put(KEY_PLAYED_DURATION, media.getPlayedDuration());
             db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
                     new String[]{String.valueOf(media.getId())});
+            FeedItemCache.mediaUpdated(media);
         } else {
             Log.e(TAG, "setFeedMediaPlaybackCompletionDate: ID of media was 0");
         }
@@ -594,6 +719,7 @@ public class PodDBAdapter {
         ContentValues values = new ContentValues();
         values.put(KEY_FLATTR_STATUS, feed.getFlattrStatus().toLong());
         db.update(TABLE_NAME_FEEDS, values, KEY_ID + "=?", new String[]{String.valueOf(feed.getId())});
+        FeedRegistry.invalidate(feed.getId());
     }
 
     /**
@@ -643,7 +769,10 @@ public class PodDBAdapter {
     public void setFeedDownloadUrl(String original, String updated) {
         ContentValues values = new ContentValues();
         values.put(KEY_DOWNLOAD_URL, updated);
-        db.update(TABLE_NAME_FEEDS, values, KEY_DOWNLOAD_URL + "=?", new String[]{original});
+        if (db.update(TABLE_NAME_FEEDS, values, KEY_DOWNLOAD_URL + "=?", new String[]{original}) > 0) {
+            subscriptionsChanged();
+        }
+        FeedRegistry.invalidateAll();
     }
 
     public void setFeedItemlist(List<FeedItem> items) {
@@ -670,42 +799,85 @@ public class PodDBAdapter {
         ContentValues values = new ContentValues();
         values.put(KEY_FLATTR_STATUS, feedItem.getFlattrStatus().toLong());
         db.update(TABLE_NAME_FEED_ITEMS, values, KEY_ID + "=?", new String[]{String.valueOf(feedItem.getId())});
+        FeedItemCache.updated(feedItem);
     }
 
     /**
-     * Update the flattr status of a feed or feed item specified by its payment link
-     * and the new flattr status to use
+     * Saves the flattr status of several feeds and feed items in a single transaction. Things that are neither a
+     * Feed nor a FeedItem are ignored.
      */
-    public void setItemFlattrStatus(String url, FlattrStatus status) {
-        //Log.d(TAG, "setItemFlattrStatus(" + url + ") = " + status.toString());
+    public void setFlattrStatus(List<FlattrThing> things) {
+        db.beginTransaction();
+        for (FlattrThing thing : things) {
+            if (thing instanceof FeedItem) {
+                setFeedItemFlattrStatus((FeedItem) thing);
+            } else if (thing instanceof Feed) {
+                setFeedFlattrStatus((Feed) thing);
+            }
+        }
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    /**
+     * Resets the flattr status of all feeds and feed items and then sets the status of the feeds and feed items
+     * whose payment link has one of the given URLs as a parameter value. The payment links of each table are read
+     * in a single pass and every parameter value is looked up in the map, instead of matching every URL against
+     * every payment link. A URL that matches a feed is not applied to feed items.
+     *
+     * @param statusByUrl The new flattr status by the percent-encoded URL of the flattrd thing, without a trailing slash
+     */
+    public void setFlattrStatusByUrl(Map<String, FlattrStatus> statusByUrl) {
+        db.beginTransaction();
+        clearAllFlattrStatus();
+        Map<String, FlattrStatus> remaining = new HashMap<String, FlattrStatus>(statusByUrl);
+        remaining.keySet().removeAll(setFlattrStatusByPaymentLink(TABLE_NAME_FEEDS, statusByUrl));
+        if (!remaining.isEmpty()) {
+            setFlattrStatusByPaymentLink(TABLE_NAME_FEED_ITEMS, remaining);
+        }
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        FeedRegistry.invalidateAll();
+        FeedItemCache.evictAll();
+    }
+
+    /**
+     * Sets the flattr status of the rows of a table whose payment link contains one of the given URLs.
+     *
+     * @return The URLs that have been found
+     */
+    private Set<String> setFlattrStatusByPaymentLink(String table, Map<String, FlattrStatus> statusByUrl) {
+        Set<String> found = new HashSet<String>();
         ContentValues values = new ContentValues();
-        values.put(KEY_FLATTR_STATUS, status.toLong());
-
-        // regexps in sqlite would be neat!
-        String[] query_urls = new String[]{
-                "*" + url + "&*",
-                "*" + url + "%2F&*",
-                "*" + url + "",
-                "*" + url + "%2F"
-        };
-
-        if (db.update(TABLE_NAME_FEEDS, values,
-                KEY_PAYMENT_LINK + " GLOB ?"
-                        + " OR " + KEY_PAYMENT_LINK + " GLOB ?"
-                        + " OR " + KEY_PAYMENT_LINK + " GLOB ?"
-                        + " OR " + KEY_PAYMENT_LINK + " GLOB ?", query_urls
-        ) > 0) {
-            Log.i(TAG, "setItemFlattrStatus found match for " + url + " = " + status.toLong() + " in Feeds table");
-            return;
-        }
-        if (db.update(TABLE_NAME_FEED_ITEMS, values,
-                KEY_PAYMENT_LINK + " GLOB ?"
-                        + " OR " + KEY_PAYMENT_LINK + " GLOB ?"
-                        + " OR " + KEY_PAYMENT_LINK + " GLOB ?"
-                        + " OR " + KEY_PAYMENT_LINK + " GLOB ?", query_urls
-        ) > 0) {
-            Log.i(TAG, "setItemFlattrStatus found match for " + url + " = " + status.toLong() + " in FeedsItems table");
+        Cursor cursor = db.query(table, new String[]{KEY_ID, KEY_PAYMENT_LINK}, KEY_PAYMENT_LINK + " IS NOT NULL",
+                null, null, null, null);
+        while (cursor.moveToNext()) {
+            String url = findUrlInPaymentLink(cursor.getString(1), statusByUrl);
+            if (url != null) {
+                values.put(KEY_FLATTR_STATUS, statusByUrl.get(url).toLong());
+                db.update(table, values, KEY_ID + "=?", new String[]{cursor.getString(0)});
+                found.add(url);
+            }
         }
+        cursor.close();
+        return found;
+    }
+
+    /**
+     * Returns the parameter value of a payment link that is a key of the given map, ignoring an encoded
+     * trailing slash, or null if there is none.
+     */
+    private static String findUrlInPaymentLink(String paymentLink, Map<String, ?> urls) {
+        for (String parameter : StringUtils.split(paymentLink, '&')) {
+            String value = parameter.substring(parameter.indexOf('=') + 1);
+            if (value.endsWith("%2F")) {
+                value = value.substring(0, value.length() - 3);
+            }
+            if (urls.containsKey(value)) {
+                return value;
+            }
+        }
+        return null;
     }
 
     /**
@@ -716,6 +888,8 @@ public class PodDBAdapter {
         values.put(KEY_FLATTR_STATUS, 0);
         db.update(TABLE_NAME_FEEDS, values, null, null);
         db.update(TABLE_NAME_FEED_ITEMS, values, null, null);
+        FeedRegistry.invalidateAll();
+        FeedItemCache.evictAll();
     }
 
     /**
@@ -766,6 +940,7 @@ public class PodDBAdapter {
         if (item.getChapters() != null) {
             setChapters(item);
         }
+        FeedItemCache.updated(item);
         return item.getId();
     }
 
@@ -785,6 +960,10 @@ public class PodDBAdapter {
 
         db.setTransactionSuccessful();
         db.endTransaction();
+        FeedItemCache.setRead(read, itemId);
+        if (resetMediaPosition) {
+            FeedItemCache.setPosition(mediaId, 0);
+        }
     }
 
     public void setFeedItemRead(boolean read, long... itemIds) {
@@ -797,6 +976,57 @@ public class PodDBAdapter {
         }
         db.setTransactionSuccessful();
         db.endTransaction();
+        FeedItemCache.setRead(read, itemIds);
+    }
+
+    /**
+     * Updates the playback state of several episodes in a single transaction, e.g. after episode actions
+     * have been received from gpodder.net.
+     *
+     * @param unplayedItemIds   IDs of FeedItems that should be marked as unplayed.
+     * @param playedItemIds     IDs of FeedItems that should be marked as played. Applied after unplayedItemIds.
+     * @param positions         The new positions of FeedMedia by their ID.
+     * @param completedMediaIds IDs of FeedMedia that should be added to the playback history.
+     * @param completionDate    The playback completion date of completedMediaIds.
+     */
+    public void setEpisodeStates(LongList unplayedItemIds, LongList playedItemIds, LongIntMap positions,
+                                 LongList completedMediaIds, long completionDate) {
+        db.beginTransaction();
+        ContentValues values = new ContentValues();
+        values.put(KEY_READ, false);
+        for (int i = 0; i < unplayedItemIds.size(); i++) {
+            db.update(TABLE_NAME_FEED_ITEMS, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(unplayedItemIds.get(i))});
+        }
+        values.clear();
+        values.put(KEY_READ, true);
+        for (int i = 0; i < playedItemIds.size(); i++) {
+            db.update(TABLE_NAME_FEED_ITEMS, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(playedItemIds.get(i))});
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            values.clear();
+            values.put(KEY_POSITION, positions.valueAt(i));
+            db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(positions.keyAt(i))});
+        }
+        values.clear();
+        values.put(KEY_PLAYBACK_COMPLETION_DATE, completionDate);
+        values.put(KEY_PLAYED_DURATION, 0);
+        for (int i = 0; i < completedMediaIds.size(); i++) {
+            db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
+                    new String[]{String.valueOf(completedMediaIds.get(i))});
+        }
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        FeedItemCache.setRead(false, unplayedItemIds.toArray());
+        FeedItemCache.setRead(true, playedItemIds.toArray());
+        for (int i = 0; i < positions.size(); i++) {
+            FeedItemCache.setPosition(positions.keyAt(i), positions.valueAt(i));
+        }
+        for (int i = 0; i < completedMediaIds.size(); i++) {
+            FeedItemCache.evictMedia(completedMediaIds.get(i));
+        }
     }
 
     public void setChapters(FeedItem item) {
@@ -815,13 +1045,21 @@ public class PodDBAdapter {
                         new String[]{String.valueOf(chapter.getId())});
             }
         }
+        FeedItemCache.updated(item);
     }
 
+    /**
+     * Saves the result of a refresh of a feed that didn't change the feed's content, i.e. a failed
+     * refresh or one that the server answered with 'not modified'. The time of the last check is
+     * set to the current time.
+     */
     public void setFeedLastUpdateFailed(long feedId, boolean failed) {
         final String sql = "UPDATE " + TABLE_NAME_FEEDS
                 + " SET " + KEY_LAST_UPDATE_FAILED+ "=" + (failed ? "1" : "0")
+                + ", " + KEY_LAST_CHECK + "=" + System.currentTimeMillis()
                 + " WHERE " + KEY_ID + "="+ feedId;
         db.execSQL(sql);
+        FeedRegistry.invalidate(feedId);
     }
 
     /**
@@ -850,6 +1088,7 @@ public class PodDBAdapter {
         values.put(KEY_AUTO_DOWNLOAD, autoDownload);
         db.update(TABLE_NAME_FEED_ITEMS, values, KEY_ID + "=?",
                 new String[]{String.valueOf(feedItem.getId())});
+        FeedItemCache.evict(feedItem.getId());
     }
 
     public long getDownloadLogSize() {
@@ -863,12 +1102,30 @@ public class PodDBAdapter {
         return count;
     }
 
-    public void removeDownloadLogItems(long count) {
-        if (count > 0) {
-            final String sql = String.format("DELETE FROM %s WHERE %s in (SELECT %s from %s ORDER BY %s ASC LIMIT %d)",
-                    TABLE_NAME_DOWNLOAD_LOG, KEY_ID, KEY_ID, TABLE_NAME_DOWNLOAD_LOG, KEY_COMPLETION_DATE, count);
-            db.execSQL(sql, null);
-        }
+    /**
+     * Removes old entries from the download log. The newest entry of every feed file is kept, so
+     * that {@link #getLatestDownloadStatusCursor(int, long)} still finds it.
+     *
+     * @param minCompletionDate Entries that have been completed before this date are removed.
+     * @param maxSize           Maximum number of entries. If the log is still larger, the oldest entries
+     *                          are removed regardless of their feed file.
+     * @return The number of removed entries.
+     */
+    public int compactDownloadLog(long minCompletionDate, int maxSize) {
+        Validate.isTrue(maxSize >= 0, "Max size must be >= 0");
+        db.beginTransaction();
+        // the newest entry of a feed file is the one with the highest ID, see setDownloadStatus
+        int removed = db.delete(TABLE_NAME_DOWNLOAD_LOG, KEY_COMPLETION_DATE + "<? AND " + KEY_ID + " NOT IN"
+                        + " (SELECT MAX(" + KEY_ID + ") FROM " + TABLE_NAME_DOWNLOAD_LOG
+                        + " GROUP BY " + KEY_FEEDFILE + "," + KEY_FEEDFILETYPE + ")",
+                new String[]{String.valueOf(minCompletionDate)});
+        // LIMIT -1 OFFSET n skips the n newest entries, the index on the completion date avoids sorting
+        removed += db.delete(TABLE_NAME_DOWNLOAD_LOG, KEY_ID + " IN (SELECT " + KEY_ID
+                + " FROM " + TABLE_NAME_DOWNLOAD_LOG + " ORDER BY " + KEY_COMPLETION_DATE + " DESC"
+                + " LIMIT -1 OFFSET " + maxSize + ")", null);
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        return removed;
     }
 
     public void setQueue(List<FeedItem> queue) {
@@ -894,6 +1151,7 @@ public class PodDBAdapter {
     public void removeFeedMedia(FeedMedia media) {
         db.delete(TABLE_NAME_FEED_MEDIA, KEY_ID + "=?",
                 new String[]{String.valueOf(media.getId())});
+        FeedItemCache.evictMedia(media.getId());
     }
 
     public void removeChaptersOfItem(FeedItem item) {
@@ -904,6 +1162,22 @@ public class PodDBAdapter {
     public void removeFeedImage(FeedImage image) {
         db.delete(TABLE_NAME_FEED_IMAGES, KEY_ID + "=?",
                 new String[]{String.valueOf(image.getId())});
+        invalidateFeedOfImage(image);
+    }
+
+    /**
+     * Removes the feed or item that owns the given image from the FeedRegistry or the FeedItemCache.
+     */
+    private void invalidateFeedOfImage(FeedImage image) {
+        final FeedComponent owner = image.getOwner();
+        if (owner instanceof Feed && owner.getId() != 0) {
+            FeedRegistry.invalidate(owner.getId());
+        } else if (owner instanceof FeedItem) {
+            FeedItemCache.evict(owner.getId());
+        } else {
+            FeedRegistry.invalidateAll();
+            FeedItemCache.evictAll();
+        }
     }
 
     /**
@@ -921,26 +1195,62 @@ public class PodDBAdapter {
         }
         db.delete(TABLE_NAME_FEED_ITEMS, KEY_ID + "=?",
                 new String[]{String.valueOf(item.getId())});
+        FeedItemCache.evict(item.getId());
     }
 
     /**
      * Remove a feed with all its FeedItems and Media entries.
      */
     public void removeFeed(Feed feed) {
-        db.beginTransaction();
-        if (feed.getImage() != null) {
-            removeFeedImage(feed.getImage());
-        }
-        if (feed.getItems() != null) {
-            for (FeedItem item : feed.getItems()) {
-                removeFeedItem(item);
-            }
-        }
+        removeFeed(feed.getId());
+    }
 
-        db.delete(TABLE_NAME_FEEDS, KEY_ID + "=?",
-                new String[]{String.valueOf(feed.getId())});
+    /**
+     * Removes a feed with all its FeedItems, FeedMedia, chapters, images and queue entries in a single
+     * transaction. The rows are deleted by feed ID, so the feed doesn't have to be loaded. Downloaded
+     * files are not deleted, see {@link #getFilesOfFeedCursor(long)}.
+     *
+     * @return The number of items that have been removed from the queue.
+     */
+    public int removeFeed(long feedId) {
+        final String feed = String.valueOf(feedId);
+        final String itemsOfFeed = "SELECT " + KEY_ID + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_FEED + "=" + feed;
+        final String imagesOfFeed = "SELECT " + KEY_IMAGE + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_FEED + "=" + feed
+                + " UNION SELECT " + KEY_IMAGE + " FROM " + TABLE_NAME_FEEDS
+                + " WHERE " + KEY_ID + "=" + feed;
+        db.beginTransaction();
+        db.delete(TABLE_NAME_SIMPLECHAPTERS, KEY_FEEDITEM + " IN (" + itemsOfFeed + ")", null);
+        db.delete(TABLE_NAME_FEED_MEDIA, KEY_FEEDITEM + " IN (" + itemsOfFeed + ")", null);
+        db.delete(TABLE_NAME_FEED_IMAGES, KEY_ID + " IN (" + imagesOfFeed + ")", null);
+        final int queueItems = db.delete(TABLE_NAME_QUEUE, KEY_FEEDITEM + " IN (" + itemsOfFeed + ")", null);
+        db.delete(TABLE_NAME_FEED_ITEMS, KEY_FEED + "=" + feed, null);
+        db.delete(TABLE_NAME_FEEDS, KEY_ID + "=" + feed, null);
         db.setTransactionSuccessful();
         db.endTransaction();
+        FeedRegistry.invalidate(feedId);
+        FeedItemCache.evictFeed(feedId);
+        subscriptionsChanged();
+        return queueItems;
+    }
+
+    /**
+     * Returns a cursor with the file URL, the download URL and the 'downloaded'-attribute of all media files
+     * and images of a feed, including the image of the feed itself.
+     */
+    public final Cursor getFilesOfFeedCursor(long feedId) {
+        final String feed = String.valueOf(feedId);
+        final String columns = KEY_FILE_URL + ", " + KEY_DOWNLOAD_URL + ", " + KEY_DOWNLOADED;
+        final String query = "SELECT " + columns + " FROM " + TABLE_NAME_FEED_MEDIA
+                + " WHERE " + KEY_FEEDITEM + " IN (SELECT " + KEY_ID + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_FEED + "=" + feed + ")"
+                + " UNION ALL SELECT " + columns + " FROM " + TABLE_NAME_FEED_IMAGES
+                + " WHERE " + KEY_ID + " IN (SELECT " + KEY_IMAGE + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_FEED + "=" + feed
+                + " UNION SELECT " + KEY_IMAGE + " FROM " + TABLE_NAME_FEEDS
+                + " WHERE " + KEY_ID + "=" + feed + ")";
+        return db.rawQuery(query, null);
     }
 
     public void removeDownloadStatus(DownloadStatus remove) {
@@ -952,6 +1262,7 @@ public class PodDBAdapter {
         ContentValues values = new ContentValues();
         values.put(KEY_PLAYBACK_COMPLETION_DATE, 0);
         db.update(TABLE_NAME_FEED_MEDIA, values, null, null);
+        FeedItemCache.evictAll();
     }
 
     public void clearDownloadLog() {
@@ -969,6 +1280,15 @@ public class PodDBAdapter {
         return c;
     }
 
+    /**
+     * Returns a cursor with the title, the type, the download URL and the link of all feeds, in the same order as
+     * {@link #getAllFeedsCursor()}. These are the attributes of the outlines of an OPML export.
+     */
+    public final Cursor getSubscriptionOutlinesCursor() {
+        return db.query(TABLE_NAME_FEEDS, new String[]{KEY_TITLE, KEY_TYPE, KEY_DOWNLOAD_URL, KEY_LINK},
+                null, null, null, null, KEY_TITLE + " COLLATE NOCASE ASC");
+    }
+
     public final Cursor getFeedCursorDownloadUrls() {
         return db.query(TABLE_NAME_FEEDS, new String[]{KEY_ID, KEY_DOWNLOAD_URL}, null, null, null, null, null);
     }
@@ -980,6 +1300,30 @@ public class PodDBAdapter {
         return c;
     }
 
+    /**
+     * Returns a cursor with all feeds and the publication dates of their items, which are needed to
+     * estimate how often a feed publishes new episodes. Uses FEED_SEL_STD and the additional columns
+     * IDX_FEED_UPDATE_RECENT_ITEMS (number of items published after the given time),
+     * IDX_FEED_UPDATE_FIRST_RECENT_PUBDATE (publication date of the oldest of these items),
+     * IDX_FEED_UPDATE_LAST_PUBDATE (publication date of the newest item) and
+     * IDX_FEED_UPDATE_LAST_CHECK (time of the last refresh that didn't change the feed).
+     *
+     * @param recentSince Items that have been published after this time are considered recent.
+     */
+    public final Cursor getFeedUpdateStatisticsCursor(long recentSince) {
+        final String recentItems = " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + ">" + recentSince;
+        final String query = "SELECT " + TextUtils.join(", ", FEED_SEL_STD) + ", "
+                + "(SELECT COUNT(*)" + recentItems + "), "
+                + "(SELECT MIN(" + KEY_PUBDATE + ")" + recentItems + "), "
+                + "(SELECT MAX(" + KEY_PUBDATE + ") FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID + "), "
+                + TABLE_NAME_FEEDS + "." + KEY_LAST_CHECK
+                + " FROM " + TABLE_NAME_FEEDS;
+        return db.rawQuery(query, null);
+    }
+
     /**
      * Returns a cursor with all FeedItems of a Feed. Uses FEEDITEM_SEL_FI_SMALL
      *
@@ -1050,10 +1394,35 @@ public class PodDBAdapter {
         return c;
     }
 
-    public final Cursor getDownloadLogCursor(final int limit) {
-        Cursor c = db.query(TABLE_NAME_DOWNLOAD_LOG, null, null, null, null,
-                null, KEY_COMPLETION_DATE + " DESC LIMIT " + limit);
-        return c;
+    /**
+     * Returns a cursor with the download log entries that come after the given entry when the log
+     * is sorted by completion date in descending order. Entries with the same completion date are
+     * sorted by their ID, so that no entry is skipped or returned twice when the log is read page
+     * by page.
+     *
+     * @param completionDate Completion date of the last entry of the previous page.
+     * @param id             ID of the last entry of the previous page.
+     * @param limit          The maximum row count of the returned cursor. Must be an integer >= 0.
+     */
+    public final Cursor getDownloadLogCursor(long completionDate, long id, int limit) {
+        Validate.isTrue(limit >= 0, "Limit must be >= 0");
+        String completion = String.valueOf(completionDate);
+        return db.query(TABLE_NAME_DOWNLOAD_LOG, null,
+                // the first condition allows a range search on the index
+                KEY_COMPLETION_DATE + "<=? AND (" + KEY_COMPLETION_DATE + "<? OR " + KEY_ID + "<?)",
+                new String[]{completion, completion, String.valueOf(id)}, null, null,
+                KEY_COMPLETION_DATE + " DESC, " + KEY_ID + " DESC LIMIT " + limit);
+    }
+
+    /**
+     * Returns a cursor that contains the newest download log entry of the given feed file or
+     * no rows if there is none.
+     */
+    public final Cursor getLatestDownloadStatusCursor(final int feedFileType, final long feedFileId) {
+        return db.query(TABLE_NAME_DOWNLOAD_LOG, null,
+                KEY_FEEDFILE + "=? AND " + KEY_FEEDFILETYPE + "=?",
+                new String[]{String.valueOf(feedFileId), String.valueOf(feedFileType)}, null, null,
+                KEY_ID + " DESC LIMIT 1");
     }
 
     /**
@@ -1133,6 +1502,150 @@ public class PodDBAdapter {
         return c;
     }
 
+    /**
+     * Returns a cursor with the IDs of all feed items that are candidates for an automatic download,
+     * i.e. items whose auto download flag is set and whose media has not been downloaded yet and that
+     * are either in the queue or unplayed. Items in the queue come first (in queue order), followed
+     * by the remaining unplayed items, newest first.
+     *
+     * @param excludedMediaId ID of a FeedMedia whose item should not be returned, e.g. because it is
+     *                        currently playing.
+     */
+    public final Cursor getAutoDownloadCandidateIdsCursor(long excludedMediaId) {
+        final String query = "SELECT " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID
+                + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " INNER JOIN " + TABLE_NAME_FEED_MEDIA + " ON "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "="
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM
+                + " LEFT OUTER JOIN " + TABLE_NAME_QUEUE + " ON "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "="
+                + TABLE_NAME_QUEUE + "." + KEY_FEEDITEM
+                + " WHERE "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_AUTO_DOWNLOAD + " > 0 AND "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOADED + " = 0 AND "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + " != " + excludedMediaId + " AND ("
+                + TABLE_NAME_QUEUE + "." + KEY_ID + " IS NOT NULL OR " // in queue
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + " = 0)" // or unplayed
+                + " ORDER BY " + TABLE_NAME_QUEUE + "." + KEY_ID + " IS NULL, "
+                + TABLE_NAME_QUEUE + "." + KEY_ID + " ASC, "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + " DESC";
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns a cursor with the ID, the item ID, the file URL and the size of all downloaded FeedMedia
+     * that can be deleted by the episode cache cleanup, i.e. whose items have been played and are not in the queue.
+     * Media that have been completed first are returned first, media without a completion date last. Media
+     * with the same completion date are ordered by descending size.
+     *
+     * @param excludedMediaId ID of a FeedMedia that must not be returned, e.g. because it is currently playing.
+     */
+    public final Cursor getEpisodeCleanupCandidatesCursor(long excludedMediaId) {
+        final String query = "SELECT " + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_FILE_URL + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_SIZE
+                + " FROM " + TABLE_NAME_FEED_MEDIA
+                + " INNER JOIN " + TABLE_NAME_FEED_ITEMS + " ON "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM + "="
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID
+                + " LEFT OUTER JOIN " + TABLE_NAME_QUEUE + " ON "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "="
+                + TABLE_NAME_QUEUE + "." + KEY_FEEDITEM
+                + " WHERE "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOADED + " > 0 AND "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + " > 0 AND "
+                + TABLE_NAME_QUEUE + "." + KEY_ID + " IS NULL AND "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + " != " + excludedMediaId
+                + " ORDER BY IFNULL(" + TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYBACK_COMPLETION_DATE + ", 0) <= 0, "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYBACK_COMPLETION_DATE + " ASC, "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_SIZE + " DESC";
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns the sum of the sizes of all downloaded FeedMedia in bytes.
+     */
+    public final long getDownloadedEpisodesSize() {
+        final String query = "SELECT SUM(" + KEY_SIZE + ") FROM " + TABLE_NAME_FEED_MEDIA
+                + " WHERE " + KEY_DOWNLOADED + " > 0";
+        Cursor c = db.rawQuery(query, null);
+        long result = 0;
+        if (c.moveToFirst()) {
+            result = c.getLong(0);
+        }
+        c.close();
+        return result;
+    }
+
+    /**
+     * Marks the given FeedMedia as not downloaded in a single transaction. The files
+     * have to be deleted by the caller.
+     */
+    public void setFeedMediaDeleted(long... mediaIds) {
+        db.beginTransaction();
+        ContentValues values = new ContentValues();
+        values.put(KEY_DOWNLOADED, false);
+        values.putNull(KEY_FILE_URL);
+        values.put(KEY_HAS_EMBEDDED_PICTURE, false);
+        for (long id : mediaIds) {
+            db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?", new String[]{String.valueOf(id)});
+        }
+        db.setTransactionSuccessful();
+        db.endTransaction();
+        for (long id : mediaIds) {
+            FeedItemCache.evictMedia(id);
+        }
+    }
+
+    /**
+     * Returns a cursor with the ID, the duration, the file URL, the item ID, the feed ID, the
+     * embedded picture flag, the chapter scan state and the chapters flag of the item of
+     * downloaded FeedMedia whose metadata hasn't been indexed yet or which haven't been searched
+     * for chapters yet, ordered by ID.
+     *
+     * @param minId Only FeedMedia with a larger ID are returned.
+     * @param limit The maximum number of rows.
+     */
+    public final Cursor getUnindexedMediaCursor(long minId, int limit) {
+        final String query = "SELECT " + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_DURATION + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_FILE_URL + ", "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + ", "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_HAS_EMBEDDED_PICTURE + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_CHAPTER_SCAN_STATE + ", "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_HAS_CHAPTERS
+                + " FROM " + TABLE_NAME_FEED_MEDIA
+                + " INNER JOIN " + TABLE_NAME_FEED_ITEMS + " ON "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM + "="
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID
+                + " WHERE "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + " > " + minId + " AND "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOADED + " > 0 AND ("
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_HAS_EMBEDDED_PICTURE + " = -1 OR ("
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_CHAPTER_SCAN_STATE + " = " + FeedMedia.CHAPTER_SCAN_NOT_SCANNED
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_HAS_CHAPTERS + " = 0))"
+                + " ORDER BY " + TABLE_NAME_FEED_MEDIA + "." + KEY_ID
+                + " LIMIT " + limit;
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Stores the metadata that has been read from the file of a FeedMedia.
+     *
+     * @param duration The duration in milliseconds or 0 if the duration should not be changed.
+     */
+    public void setFeedMediaMetadata(long mediaId, int duration, boolean hasEmbeddedPicture) {
+        ContentValues values = new ContentValues();
+        if (duration > 0) {
+            values.put(KEY_DURATION, duration);
+        }
+        values.put(KEY_HAS_EMBEDDED_PICTURE, hasEmbeddedPicture);
+        db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?", new String[]{String.valueOf(mediaId)});
+        FeedItemCache.evictMedia(mediaId);
+    }
+
     public final Cursor getRecentlyPublishedItemsCursor(int limit) {
         Cursor c = db.query(TABLE_NAME_FEED_ITEMS, FEEDITEM_SEL_FI_SMALL, null, null, null, null, KEY_PUBDATE + " DESC LIMIT " + limit);
         return c;
@@ -1149,20 +1662,22 @@ public class PodDBAdapter {
     }
 
     /**
-     * Returns a cursor which contains feed media objects with a playback
-     * completion date in ascending order.
+     * Returns a cursor which contains the feed media objects that come after the given media when
+     * the playback history is sorted by playback completion date in descending order.
      *
-     * @param limit The maximum row count of the returned cursor. Must be an
-     *              integer >= 0.
+     * @param completionDate Playback completion date of the last media of the previous page.
+     * @param mediaId        ID of the last media of the previous page.
+     * @param limit          The maximum row count of the returned cursor. Must be an integer >= 0.
      * @throws IllegalArgumentException if limit < 0
      */
-    public final Cursor getCompletedMediaCursor(int limit) {
+    public final Cursor getCompletedMediaCursor(long completionDate, long mediaId, int limit) {
         Validate.isTrue(limit >= 0, "Limit must be >= 0");
-
-        Cursor c = db.query(TABLE_NAME_FEED_MEDIA, null,
-                KEY_PLAYBACK_COMPLETION_DATE + " > 0", null, null,
-                null, String.format("%s DESC LIMIT %d", KEY_PLAYBACK_COMPLETION_DATE, limit));
-        return c;
+        String completion = String.valueOf(completionDate);
+        return db.query(TABLE_NAME_FEED_MEDIA, null,
+                KEY_PLAYBACK_COMPLETION_DATE + " > 0 AND " + KEY_PLAYBACK_COMPLETION_DATE + "<=? AND ("
+                        + KEY_PLAYBACK_COMPLETION_DATE + "<? OR " + KEY_ID + "<?)",
+                new String[]{completion, completion, String.valueOf(mediaId)}, null, null,
+                KEY_PLAYBACK_COMPLETION_DATE + " DESC, " + KEY_ID + " DESC LIMIT " + limit);
     }
 
     public final Cursor getSingleFeedMediaCursor(long id) {
@@ -1225,6 +1740,25 @@ public class PodDBAdapter {
         return c;
     }
 
+    /**
+     * Returns a cursor with the feeds with the given IDs. The number of IDs must not be larger than
+     * IN_OPERATOR_MAXIMUM.
+     */
+    public final Cursor getFeedsCursor(final long... ids) {
+        if (ids.length > IN_OPERATOR_MAXIMUM) {
+            throw new IllegalArgumentException(
+                    "number of IDs must not be larger than "
+                            + IN_OPERATOR_MAXIMUM
+            );
+        }
+        String[] args = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            args[i] = String.valueOf(ids[i]);
+        }
+        return db.query(TABLE_NAME_FEEDS, FEED_SEL_STD, KEY_ID + " IN "
+                + buildInOperator(ids.length), args, null, null, null);
+    }
+
     public final Cursor getFeedItemCursor(final String id) {
         return getFeedItemCursor(new String[]{id});
     }
@@ -1242,6 +1776,36 @@ public class PodDBAdapter {
 
     }
 
+    /**
+     * Returns a cursor with the item ID, the media ID, the download URL of the feed, the item identifier and
+     * the duration of the media of all FeedItems with media whose identifier is in the given list.
+     * The caller has to check if the download URL of the feed matches.
+     *
+     * @param itemIdentifiers The item identifiers. The number of identifiers must not be larger than
+     *                        IN_OPERATOR_MAXIMUM.
+     */
+    public final Cursor getFeedItemsByIdentifierCursor(final String[] itemIdentifiers) {
+        if (itemIdentifiers.length > IN_OPERATOR_MAXIMUM) {
+            throw new IllegalArgumentException(
+                    "number of IDs must not be larger than "
+                            + IN_OPERATOR_MAXIMUM
+            );
+        }
+        final String query = "SELECT " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + ", "
+                + TABLE_NAME_FEEDS + "." + KEY_DOWNLOAD_URL + ", "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ITEM_IDENTIFIER + ", "
+                + TABLE_NAME_FEED_MEDIA + "." + KEY_DURATION
+                + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " INNER JOIN " + TABLE_NAME_FEEDS + " ON "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + " INNER JOIN " + TABLE_NAME_FEED_MEDIA + " ON "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "=" + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_ITEM_IDENTIFIER + " IN "
+                + buildInOperator(itemIdentifiers.length);
+        return db.rawQuery(query, itemIdentifiers);
+    }
+
     public final Cursor getFeedItemCursor(final String podcastUrl, final String episodeUrl) {
         final String query = "SELECT " + SEL_FI_SMALL_STR + " FROM " + TABLE_NAME_FEED_ITEMS
                 + " INNER JOIN " +
@@ -1501,6 +2065,10 @@ public class PodDBAdapter {
             db.execSQL(CREATE_INDEX_FEEDMEDIA_FEEDITEM);
             db.execSQL(CREATE_INDEX_QUEUE_FEEDITEM);
             db.execSQL(CREATE_INDEX_SIMPLECHAPTERS_FEEDITEM);
+            db.execSQL(CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER);
+            db.execSQL(CREATE_INDEX_DOWNLOAD_LOG_FEEDFILE);
+            db.execSQL(CREATE_INDEX_DOWNLOAD_LOG_COMPLETION_DATE);
+            db.execSQL(CREATE_INDEX_FEEDMEDIA_PLAYBACK_COMPLETION_DATE);
 
         }
 
@@ -1,19 +1,43 @@
 package de.danoeh.antennapod.core.syndication.handler;
 
 import de.danoeh.antennapod.core.feed.Feed;
+import de.danoeh.antennapod.core.feed.FeedItem;
 import org.apache.commons.io.input.XmlStreamReader;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.util.List;
 
 public class FeedHandler {
 
+	/**
+	 * Number of bytes at the beginning of a stream that may be read for
+	 * determining the type of the feed.
+	 */
+	private static final int TYPE_DETECTION_LIMIT = 64 * 1024;
+
+	/**
+	 * Is notified while a feed is being parsed.
+	 */
+	public interface ItemListener {
+		/**
+		 * Called on the parsing thread after an item has been parsed. The attributes
+		 * of the feed itself, e.g. its title, are usually parsed before the first
+		 * item. The list is a copy that contains only completely parsed items, the
+		 * parser doesn't modify it or its items anymore.
+		 */
+		void onItemParsed(Feed feed, List<FeedItem> items);
+	}
+
 	public FeedHandlerResult parseFeed(Feed feed) throws SAXException, IOException,
 			ParserConfigurationException, UnsupportedFeedtypeException {
 		TypeGetter tg = new TypeGetter();
@@ -31,4 +55,35 @@ public class FeedHandler {
 		inputStreamReader.close();
 		return new FeedHandlerResult(handler.state.feed, handler.state.alternateUrls);
 	}
+
+	/**
+	 * Parses a feed from a stream, e.g. while it is still being downloaded.
+	 * Unlike parseFeed(Feed), this method doesn't check whether the document
+	 * is an HTML page.
+	 *
+	 * @param listener Notified after every parsed item, may be null.
+	 */
+	public FeedHandlerResult parseFeed(Feed feed, InputStream in, ItemListener listener)
+			throws SAXException, IOException, ParserConfigurationException,
+			UnsupportedFeedtypeException {
+		BufferedInputStream input = new BufferedInputStream(in);
+		input.mark(TYPE_DETECTION_LIMIT);
+		TypeGetter.Type type;
+		try {
+			type = new TypeGetter().getType(feed, new XmlStreamReader(input));
+		} catch (XmlPullParserException e) {
+			throw new UnsupportedFeedtypeException(TypeGetter.Type.INVALID);
+		}
+		input.reset();
+
+		SyndHandler handler = new SyndHandler(feed, type);
+		handler.setItemListener(listener);
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		SAXParser saxParser = factory.newSAXParser();
+		Reader inputStreamReader = new XmlStreamReader(input);
+		saxParser.parse(new InputSource(inputStreamReader), handler);
+		inputStreamReader.close();
+		return new FeedHandlerResult(handler.state.feed, handler.state.alternateUrls);
+	}
 }
@@ -6,8 +6,11 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.util.ArrayList;
+
 import de.danoeh.antennapod.core.BuildConfig;
 import de.danoeh.antennapod.core.feed.Feed;
+import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.syndication.namespace.NSContent;
 import de.danoeh.antennapod.core.syndication.namespace.NSDublinCore;
 import de.danoeh.antennapod.core.syndication.namespace.NSITunes;
@@ -24,6 +27,9 @@ public class SyndHandler extends DefaultHandler {
 	private static final String DEFAULT_PREFIX = "";
 	protected HandlerState state;
 
+	private FeedHandler.ItemListener itemListener;
+	private int notifiedItems;
+
 	public SyndHandler(Feed feed, TypeGetter.Type type) {
 		state = new HandlerState(feed);
 		if (type == TypeGetter.Type.RSS20 || type == TypeGetter.Type.RSS091) {
@@ -66,6 +72,14 @@ public class SyndHandler extends DefaultHandler {
 
 		}
 		state.contentBuf = null;
+		// items are added to the list when their start tag is parsed, so only
+		// notify the listener when the end tag of an item has been parsed
+		if (itemListener != null && state.getCurrentItem() == null
+				&& state.getItems().size() > notifiedItems) {
+			notifiedItems = state.getItems().size();
+			itemListener.onItemParsed(state.getFeed(),
+					new ArrayList<FeedItem>(state.getItems()));
+		}
 
 	}
 
@@ -133,6 +147,13 @@ public class SyndHandler extends DefaultHandler {
 		state.getFeed().setItems(state.getItems());
 	}
 
+	/**
+	 * Sets a listener that is notified whenever an item has been parsed completely.
+	 */
+	public void setItemListener(FeedHandler.ItemListener itemListener) {
+		this.itemListener = itemListener;
+	}
+
 	public HandlerState getState() {
 		return state;
 	}
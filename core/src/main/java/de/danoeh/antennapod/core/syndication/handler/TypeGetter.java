@@ -26,52 +26,9 @@ public class TypeGetter {
 	private static final String RSS_ROOT = "rss";
 
 	public Type getType(Feed feed) throws UnsupportedFeedtypeException {
-		XmlPullParserFactory factory;
 		if (feed.getFile_url() != null) {
 			try {
-				factory = XmlPullParserFactory.newInstance();
-				factory.setNamespaceAware(true);
-				XmlPullParser xpp = factory.newPullParser();
-				xpp.setInput(createReader(feed));
-				int eventType = xpp.getEventType();
-
-				while (eventType != XmlPullParser.END_DOCUMENT) {
-					if (eventType == XmlPullParser.START_TAG) {
-						String tag = xpp.getName();
-						if (tag.equals(ATOM_ROOT)) {
-							feed.setType(Feed.TYPE_ATOM1);
-							if (BuildConfig.DEBUG)
-								Log.d(TAG, "Recognized type Atom");
-							return Type.ATOM;
-						} else if (tag.equals(RSS_ROOT)) {
-							String strVersion = xpp.getAttributeValue(null,
-									"version");
-							if (strVersion != null) {
-
-								if (strVersion.equals("2.0")) {
-									feed.setType(Feed.TYPE_RSS2);
-									if (BuildConfig.DEBUG)
-										Log.d(TAG, "Recognized type RSS 2.0");
-									return Type.RSS20;
-								} else if (strVersion.equals("0.91")
-										|| strVersion.equals("0.92")) {
-									if (BuildConfig.DEBUG)
-										Log.d(TAG,
-												"Recognized type RSS 0.91/0.92");
-									return Type.RSS091;
-								}
-							}
-							throw new UnsupportedFeedtypeException(Type.INVALID);
-						} else {
-							if (BuildConfig.DEBUG)
-								Log.d(TAG, "Type is invalid");
-							throw new UnsupportedFeedtypeException(Type.INVALID, tag);
-						}
-					} else {
-						eventType = xpp.next();
-					}
-				}
-
+				return getType(feed, createReader(feed));
 			} catch (XmlPullParserException e) {
 				e.printStackTrace();
                 // XML document might actually be a HTML document -> try to parse as HTML
@@ -95,6 +52,59 @@ public class TypeGetter {
 		throw new UnsupportedFeedtypeException(Type.INVALID);
 	}
 
+	/**
+	 * Reads the type of a feed from the beginning of a document. Only the root
+	 * element is read, the rest of the document is not consumed.
+	 */
+	public Type getType(Feed feed, Reader reader) throws UnsupportedFeedtypeException,
+			XmlPullParserException, IOException {
+		XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		XmlPullParser xpp = factory.newPullParser();
+		xpp.setInput(reader);
+		int eventType = xpp.getEventType();
+
+		while (eventType != XmlPullParser.END_DOCUMENT) {
+			if (eventType == XmlPullParser.START_TAG) {
+				String tag = xpp.getName();
+				if (tag.equals(ATOM_ROOT)) {
+					feed.setType(Feed.TYPE_ATOM1);
+					if (BuildConfig.DEBUG)
+						Log.d(TAG, "Recognized type Atom");
+					return Type.ATOM;
+				} else if (tag.equals(RSS_ROOT)) {
+					String strVersion = xpp.getAttributeValue(null,
+							"version");
+					if (strVersion != null) {
+
+						if (strVersion.equals("2.0")) {
+							feed.setType(Feed.TYPE_RSS2);
+							if (BuildConfig.DEBUG)
+								Log.d(TAG, "Recognized type RSS 2.0");
+							return Type.RSS20;
+						} else if (strVersion.equals("0.91")
+								|| strVersion.equals("0.92")) {
+							if (BuildConfig.DEBUG)
+								Log.d(TAG,
+										"Recognized type RSS 0.91/0.92");
+							return Type.RSS091;
+						}
+					}
+					throw new UnsupportedFeedtypeException(Type.INVALID);
+				} else {
+					if (BuildConfig.DEBUG)
+						Log.d(TAG, "Type is invalid");
+					throw new UnsupportedFeedtypeException(Type.INVALID, tag);
+				}
+			} else {
+				eventType = xpp.next();
+			}
+		}
+		if (BuildConfig.DEBUG)
+			Log.d(TAG, "Type is invalid");
+		throw new UnsupportedFeedtypeException(Type.INVALID);
+	}
+
 	private Reader createReader(Feed feed) {
 		Reader reader;
 		try {
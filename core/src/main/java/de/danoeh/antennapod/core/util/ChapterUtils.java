@@ -36,8 +36,11 @@ public class ChapterUtils {
     /**
      * Uses the download URL of a media object of a feeditem to read its ID3
      * chapters.
+     *
+     * @return false if the stream could not be read.
      */
-    public static void readID3ChaptersFromPlayableStreamUrl(Playable p) {
+    public static boolean readID3ChaptersFromPlayableStreamUrl(Playable p) {
+        boolean success = false;
         if (p != null && p.getStreamUrl() != null) {
             if (BuildConfig.DEBUG)
                 Log.d(TAG, "Reading id3 chapters from item " + p.getEpisodeTitle());
@@ -63,12 +66,14 @@ public class ChapterUtils {
                 } else {
                     Log.i(TAG, "ChapterReader could not find any ID3 chapters");
                 }
+                success = true;
             } catch (MalformedURLException e) {
                 e.printStackTrace();
             } catch (IOException e) {
                 e.printStackTrace();
             } catch (ID3ReaderException e) {
                 e.printStackTrace();
+                success = true;
             } finally {
                 if (in != null) {
                     try {
@@ -82,13 +87,17 @@ public class ChapterUtils {
             Log.e(TAG,
                     "Unable to read ID3 chapters: media or download URL was null");
         }
+        return success;
     }
 
     /**
      * Uses the file URL of a media object of a feeditem to read its ID3
      * chapters.
+     *
+     * @return false if the file could not be read.
      */
-    public static void readID3ChaptersFromPlayableFileUrl(Playable p) {
+    public static boolean readID3ChaptersFromPlayableFileUrl(Playable p) {
+        boolean success = false;
         if (p != null && p.localFileAvailable() && p.getLocalMediaUrl() != null) {
             if (BuildConfig.DEBUG)
                 Log.d(TAG, "Reading id3 chapters from item " + p.getEpisodeTitle());
@@ -116,10 +125,12 @@ public class ChapterUtils {
                         Log.i(TAG,
                                 "ChapterReader could not find any ID3 chapters");
                     }
+                    success = true;
                 } catch (IOException e) {
                     e.printStackTrace();
                 } catch (ID3ReaderException e) {
                     e.printStackTrace();
+                    success = true;
                 } finally {
                     if (in != null) {
                         try {
@@ -133,9 +144,14 @@ public class ChapterUtils {
                 Log.e(TAG, "Unable to read id3 chapters: Source doesn't exist");
             }
         }
+        return success;
     }
 
-    public static void readOggChaptersFromPlayableStreamUrl(Playable media) {
+    /**
+     * @return false if the stream could not be read.
+     */
+    public static boolean readOggChaptersFromPlayableStreamUrl(Playable media) {
+        boolean success = false;
         if (media != null && media.streamAvailable()) {
             InputStream input = null;
             try {
@@ -143,6 +159,7 @@ public class ChapterUtils {
                 input = url.openStream();
                 if (input != null) {
                     readOggChaptersFromInputStream(media, input);
+                    success = true;
                 }
             } catch (MalformedURLException e) {
                 e.printStackTrace();
@@ -152,9 +169,14 @@ public class ChapterUtils {
                 IOUtils.closeQuietly(input);
             }
         }
+        return success;
     }
 
-    public static void readOggChaptersFromPlayableFileUrl(Playable media) {
+    /**
+     * @return false if the file could not be read.
+     */
+    public static boolean readOggChaptersFromPlayableFileUrl(Playable media) {
+        boolean success = false;
         if (media != null && media.getLocalMediaUrl() != null) {
             File source = new File(media.getLocalMediaUrl());
             if (source.exists()) {
@@ -162,6 +184,7 @@ public class ChapterUtils {
                 try {
                     input = new BufferedInputStream(new FileInputStream(source));
                     readOggChaptersFromInputStream(media, input);
+                    success = true;
                 } catch (FileNotFoundException e) {
                     e.printStackTrace();
                 } finally {
@@ -169,6 +192,7 @@ public class ChapterUtils {
                 }
             }
         }
+        return success;
     }
 
     private static void readOggChaptersFromInputStream(Playable p,
@@ -249,26 +273,39 @@ public class ChapterUtils {
         }
     }
 
-    public static void loadChaptersFromStreamUrl(Playable media) {
+    /**
+     * Reads the ID3 or Ogg chapters of the stream of the given media.
+     *
+     * @return false if the stream could not be read.
+     */
+    public static boolean loadChaptersFromStreamUrl(Playable media) {
         if (BuildConfig.DEBUG)
             Log.d(TAG, "Starting chapterLoader thread");
-        ChapterUtils.readID3ChaptersFromPlayableStreamUrl(media);
+        boolean success = ChapterUtils.readID3ChaptersFromPlayableStreamUrl(media);
         if (media.getChapters() == null) {
-            ChapterUtils.readOggChaptersFromPlayableStreamUrl(media);
+            success = ChapterUtils.readOggChaptersFromPlayableStreamUrl(media) && success;
         }
 
         if (BuildConfig.DEBUG)
             Log.d(TAG, "ChapterLoaderThread has finished");
+        return success;
     }
 
-    public static void loadChaptersFromFileUrl(Playable media) {
+    /**
+     * Reads the ID3 or Ogg chapters of the downloaded file of the given media.
+     *
+     * @return false if the file could not be read.
+     */
+    public static boolean loadChaptersFromFileUrl(Playable media) {
         if (media.localFileAvailable()) {
-            ChapterUtils.readID3ChaptersFromPlayableFileUrl(media);
+            boolean success = ChapterUtils.readID3ChaptersFromPlayableFileUrl(media);
             if (media.getChapters() == null) {
-                ChapterUtils.readOggChaptersFromPlayableFileUrl(media);
+                success = ChapterUtils.readOggChaptersFromPlayableFileUrl(media) && success;
             }
+            return success;
         } else {
             Log.e(TAG, "Could not load chapters from file url: local file not available");
+            return false;
         }
     }
 }
@@ -0,0 +1,137 @@
+package de.danoeh.antennapod.core.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.danoeh.antennapod.core.feed.FeedItem;
+import de.danoeh.antennapod.core.feed.FeedMedia;
+
+/**
+ * Compares a freshly loaded list of FeedItems with a snapshot of the list that is currently
+ * displayed, so that only the rows of items that have actually changed need to be updated.
+ * <p/>
+ * The comparison should be done on a background thread, e.g. in the same AsyncTask that loads
+ * the list. The resulting snapshot has to be kept by the caller for the next comparison.
+ */
+public final class FeedItemListDiff {
+
+    /**
+     * Contains the IDs and a signature of the displayed state of every item of a list.
+     */
+    public static final class Snapshot {
+        private final long[] ids;
+        private final int[] signatures;
+
+        private Snapshot(long[] ids, int[] signatures) {
+            this.ids = ids;
+            this.signatures = signatures;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    private final Snapshot previous;
+    private final Snapshot snapshot;
+    private final boolean structureChanged;
+    private final IntList changedPositions;
+
+    private FeedItemListDiff(Snapshot previous, Snapshot snapshot, boolean structureChanged,
+                             IntList changedPositions) {
+        this.previous = previous;
+        this.snapshot = snapshot;
+        this.structureChanged = structureChanged;
+        this.changedPositions = changedPositions;
+    }
+
+    /**
+     * Compares a list of FeedItems with the snapshot of the previous version of the list.
+     *
+     * @param previous The snapshot of the list that is currently displayed or null if no list is displayed.
+     * @param items    The new list.
+     * @param itemSets Optional lists of item IDs that have an influence on how an item is displayed,
+     *                 e.g. the IDs of the items in the queue. An item is also considered changed if it
+     *                 has been added to or removed from one of these lists.
+     */
+    public static FeedItemListDiff calculate(Snapshot previous, List<FeedItem> items, LongList... itemSets) {
+        final int size = items.size();
+        long[] ids = new long[size];
+        int[] signatures = new int[size];
+        for (int i = 0; i < size; i++) {
+            FeedItem item = items.get(i);
+            ids[i] = item.getId();
+            signatures[i] = getSignature(item, itemSets);
+        }
+        Snapshot snapshot = new Snapshot(ids, signatures);
+
+        IntList changedPositions = new IntList();
+        boolean structureChanged = previous == null || !Arrays.equals(previous.ids, ids);
+        if (!structureChanged) {
+            for (int i = 0; i < size; i++) {
+                if (previous.signatures[i] != signatures[i]) {
+                    changedPositions.add(i);
+                }
+            }
+        }
+        return new FeedItemListDiff(previous, snapshot, structureChanged, changedPositions);
+    }
+
+    /**
+     * Returns a value that changes whenever a property of the item changes that is shown in a list.
+     */
+    private static int getSignature(FeedItem item, LongList... itemSets) {
+        FeedMedia media = item.getMedia();
+        Object[] values = new Object[]{
+                item.getTitle(),
+                item.getPubDate(),
+                item.isRead(),
+                item.getState(),
+                item.hasItemImage(),
+                (media != null) ? media.getId() : null,
+                (media != null) ? media.isDownloaded() : null,
+                (media != null) ? media.getFile_url() : null,
+                (media != null) ? media.getPosition() : null,
+                (media != null) ? media.getDuration() : null,
+                (media != null) ? media.getSize() : null,
+                (media != null) ? media.getPlaybackCompletionDate() : null,
+        };
+        int signature = Arrays.hashCode(values);
+        for (LongList itemSet : itemSets) {
+            boolean contained = itemSet != null && itemSet.contains(item.getId());
+            signature = 31 * signature + (contained ? 1 : 0);
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the snapshot of the new list that should be used for the next comparison.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns true if this diff was calculated against the given snapshot. If the displayed list has changed
+     * in the meantime, the diff can't be applied.
+     */
+    public boolean isBasedOn(Snapshot displayed) {
+        return previous != null && previous == displayed;
+    }
+
+    /**
+     * Returns true if items have been added, removed or moved. In this case, the whole list has
+     * to be updated.
+     */
+    public boolean isStructureChanged() {
+        return structureChanged;
+    }
+
+    /**
+     * Returns the positions of the items whose content has changed. Only valid if
+     * {@link #isStructureChanged()} returns false.
+     */
+    public IntList getChangedPositions() {
+        return changedPositions;
+    }
+}
@@ -2,7 +2,8 @@ package de.danoeh.antennapod.core.util;
 
 
 /**
- * Fast and memory efficient long to long map
+ * Fast and memory efficient long to int map. The keys are kept in ascending order,
+ * so lookups use a binary search.
  */
 public class LongIntMap {
 
@@ -103,9 +104,12 @@ public class LongIntMap {
         if (index >= 0) {
             values[index] = value;
         } else {
+            index = ~index;
             growIfNeeded();
-            keys[size] = key;
-            values[size] = value;
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            keys[index] = key;
+            values[index] = value;
             size++;
         }
     }
@@ -163,12 +167,20 @@ public class LongIntMap {
      * key is not mapped.
      */
     public int indexOfKey(long key) {
-        for(int i=0; i < size; i++) {
-            if(keys[i] == key) {
-                return i;
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midKey = keys[mid];
+            if (midKey < key) {
+                lo = mid + 1;
+            } else if (midKey > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
             }
         }
-        return -1;
+        return ~lo;
     }
 
     /**
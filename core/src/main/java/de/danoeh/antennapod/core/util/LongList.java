@@ -134,7 +134,7 @@ public final class LongList {
      * @param n {@code >= 0, <=size();} index of where to insert
      * @param value value to insert
      */
-    public void insert(int n, int value) {
+    public void insert(int n, long value) {
         if (n > size) {
             throw new IndexOutOfBoundsException("n > size()");
         } else if(n < 0) {
@@ -209,6 +209,25 @@ public final class LongList {
         return -1;
     }
 
+    /**
+     * Sorts the values of this list in ascending order.
+     */
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Searches the given value in this list, which must have been sorted
+     * with {@link #sort()} before.
+     *
+     * @param value value to find
+     * @return index of value, or {@code -(insertion point) - 1} if the value
+     * does not appear in the list
+     */
+    public int binarySearch(long value) {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+
     /**
      * Removes all values from this list.
      */
@@ -0,0 +1,246 @@
+package de.danoeh.antennapod.core.util;
+
+/**
+ * Fast and memory efficient long to long map. Keys are stored in a hash table with open
+ * addressing, so lookups, insertions and deletions take constant time and no objects are
+ * allocated for the entries.
+ */
+public final class LongLongMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    private int shift;
+
+    // the key 0 marks free slots, so its value is stored separately
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * Creates a new LongLongMap containing no mappings.
+     */
+    public LongLongMap() {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    /**
+     * Creates a new LongLongMap containing no mappings that will not require any
+     * additional memory allocation to store the specified number of mappings.
+     */
+    public LongLongMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expected size must be 0 or higher");
+        }
+        int capacity = PrimitiveHashing.tableSize(expectedSize);
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = PrimitiveHashing.shift(capacity);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the value mapped from the specified key, or <code>0</code>
+     * if no such mapping has been made.
+     */
+    public long get(long key) {
+        return get(key, 0);
+    }
+
+    /**
+     * Gets the value mapped from the specified key, or the specified value
+     * if no such mapping has been made.
+     */
+    public long get(long key, long valueIfKeyNotFound) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : valueIfKeyNotFound;
+        }
+        int slot = PrimitiveHashing.slot(key, shift);
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return valueIfKeyNotFound;
+    }
+
+    /**
+     * Returns true if a mapping from the specified key has been made.
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Adds a mapping from the specified key to the specified value,
+     * replacing the previous mapping from the specified key if there
+     * was one.
+     */
+    public void put(long key, long value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = PrimitiveHashing.slot(key, shift);
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (PrimitiveHashing.needsResize(size, keys.length)) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes the mapping from the specified key, if there was any.
+     *
+     * @return true if a mapping has been removed.
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return true;
+        }
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all key-value mappings from this map.
+     */
+    public void clear() {
+        keys = new long[DEFAULT_CAPACITY];
+        values = new long[DEFAULT_CAPACITY];
+        mask = DEFAULT_CAPACITY - 1;
+        shift = PrimitiveHashing.shift(DEFAULT_CAPACITY);
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns an array with a copy of the keys of this map, in no particular order.
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(long key) {
+        int slot = PrimitiveHashing.slot(key, shift);
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties the given slot and moves following entries of the same probe sequence into the gap.
+     */
+    private void removeSlot(int slot) {
+        int gap = slot;
+        int i = (slot + 1) & mask;
+        long k;
+        while ((k = keys[i]) != 0) {
+            int ideal = PrimitiveHashing.slot(k, shift);
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = PrimitiveHashing.shift(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = PrimitiveHashing.slot(key, shift);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * 28 + 13);
+        sb.append("LongLongMap{");
+        boolean first = true;
+        if (hasZeroKey) {
+            sb.append("0=").append(zeroValue);
+            first = false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append('=').append(values[i]);
+                first = false;
+            }
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
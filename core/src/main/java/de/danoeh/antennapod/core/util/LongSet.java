@@ -0,0 +1,217 @@
+package de.danoeh.antennapod.core.util;
+
+/**
+ * Fast and memory efficient set of longs. Elements are stored in a hash table with open
+ * addressing, so membership tests take constant time and no Long objects are allocated.
+ */
+public final class LongSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] elements;
+    private int size;
+    private int mask;
+    private int shift;
+
+    // the element 0 marks free slots, so it is stored separately
+    private boolean hasZero;
+
+    /**
+     * Constructs an empty instance with the default capacity.
+     */
+    public LongSet() {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    /**
+     * Constructs an empty instance that will not require any additional memory
+     * allocation to store the specified number of elements.
+     */
+    public LongSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expected size must be 0 or higher");
+        }
+        int capacity = PrimitiveHashing.tableSize(expectedSize);
+        elements = new long[capacity];
+        mask = capacity - 1;
+        shift = PrimitiveHashing.shift(capacity);
+    }
+
+    /**
+     * Constructs an instance that contains the given elements.
+     */
+    public static LongSet of(long... values) {
+        LongSet result = new LongSet(values.length);
+        for (long value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if this set contains no elements.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns true if the given value is contained in this set.
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Adds an element to this set.
+     *
+     * @return true if the set did not contain the element before
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = PrimitiveHashing.slot(value, shift);
+        long e;
+        while ((e = elements[slot]) != 0) {
+            if (e == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        elements[slot] = value;
+        size++;
+        if (PrimitiveHashing.needsResize(size, elements.length)) {
+            rehash(elements.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an element from this set.
+     *
+     * @return true if the element was contained in this set
+     */
+    public boolean remove(long value) {
+        if (value == 0) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int slot = indexOf(value);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all elements from this set.
+     */
+    public void clear() {
+        elements = new long[DEFAULT_CAPACITY];
+        mask = DEFAULT_CAPACITY - 1;
+        shift = PrimitiveHashing.shift(DEFAULT_CAPACITY);
+        hasZero = false;
+        size = 0;
+    }
+
+    /**
+     * Returns an array with a copy of the elements of this set, in no particular order.
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int i = 0;
+        if (hasZero) {
+            result[i++] = 0;
+        }
+        for (long e : elements) {
+            if (e != 0) {
+                result[i++] = e;
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(long value) {
+        int slot = PrimitiveHashing.slot(value, shift);
+        long e;
+        while ((e = elements[slot]) != 0) {
+            if (e == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties the given slot and moves following elements of the same probe sequence into the gap.
+     */
+    private void removeSlot(int slot) {
+        int gap = slot;
+        int i = (slot + 1) & mask;
+        long e;
+        while ((e = elements[i]) != 0) {
+            int ideal = PrimitiveHashing.slot(e, shift);
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                elements[gap] = e;
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        elements[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = elements;
+        elements = new long[capacity];
+        mask = capacity - 1;
+        shift = PrimitiveHashing.shift(capacity);
+        for (long e : old) {
+            if (e != 0) {
+                int slot = PrimitiveHashing.slot(e, shift);
+                while (elements[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                elements[slot] = e;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * 20 + 9);
+        sb.append("LongSet{");
+        boolean first = true;
+        for (long e : toArray()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(e);
+            first = false;
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
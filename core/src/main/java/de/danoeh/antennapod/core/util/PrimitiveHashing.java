@@ -0,0 +1,49 @@
+package de.danoeh.antennapod.core.util;
+
+/**
+ * Hashing helpers for the open addressing hash tables of {@link LongLongMap},
+ * {@link LongObjectMap} and {@link LongSet}.
+ */
+final class PrimitiveHashing {
+
+    /**
+     * Maximum ratio of used slots. Tables with linear probing get slow if they become full.
+     */
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private PrimitiveHashing() {
+    }
+
+    /**
+     * Returns the preferred slot of a key (Fibonacci hashing). Uses the high bits of the product,
+     * they spread sequential keys like database IDs evenly over the table.
+     */
+    static int slot(long key, int shift) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Returns the shift for {@link #slot(long, int)} in a table of the given power of two size.
+     */
+    static int shift(int capacity) {
+        return Long.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /**
+     * Returns the smallest power of two that can hold the given number of entries.
+     */
+    static int tableSize(int expectedSize) {
+        long required = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        int capacity = 2;
+        while (capacity < required && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static boolean needsResize(int size, int capacity) {
+        return size > capacity * LOAD_FACTOR && capacity < MAX_CAPACITY;
+    }
+}
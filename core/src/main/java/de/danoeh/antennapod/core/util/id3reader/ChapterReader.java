@@ -8,8 +8,8 @@ import de.danoeh.antennapod.core.util.id3reader.model.FrameHeader;
 import de.danoeh.antennapod.core.util.id3reader.model.TagHeader;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,65 +20,57 @@ public class ChapterReader extends ID3Reader {
 	private static final String FRAME_ID_TITLE = "TIT2";
     private static final String FRAME_ID_LINK = "WXXX";
 
+	/** Length of the start time, end time, start offset and end offset of a CHAP frame. */
+	private static final int CHAPTER_TIMES_LENGTH = 16;
+
 	private List<Chapter> chapters;
 	private ID3Chapter currentChapter;
 
 	@Override
 	public int onStartTagHeader(TagHeader header) {
 		chapters = new ArrayList<Chapter>();
-		System.out.println(header.toString());
+		if (BuildConfig.DEBUG) Log.d(TAG, header.toString());
 		return ID3Reader.ACTION_DONT_SKIP;
 	}
 
 	@Override
-	public int onStartFrameHeader(FrameHeader header, InputStream input)
+	public void onStartFrameHeader(FrameHeader header, ByteBuffer frame)
 			throws IOException, ID3ReaderException {
-		System.out.println(header.toString());
 		if (header.getId().equals(FRAME_ID_CHAPTER)) {
-			if (currentChapter != null) {
-				if (!hasId3Chapter(currentChapter)) {
-					chapters.add(currentChapter);
-                    if (BuildConfig.DEBUG) Log.d(TAG, "Found chapter: " + currentChapter);
-					currentChapter = null;
-				}
+			String elementId = readISOString(frame);
+			if (frame.remaining() < CHAPTER_TIMES_LENGTH) {
+				Log.w(TAG, "Ignoring invalid chapter frame " + elementId);
+				return;
 			}
-            StringBuffer elementId = new StringBuffer();
-			readISOString(elementId, input, Integer.MAX_VALUE);
-			char[] startTimeSource = readBytes(input, 4);
-			long startTime = ((int) startTimeSource[0] << 24)
-					| ((int) startTimeSource[1] << 16)
-					| ((int) startTimeSource[2] << 8) | startTimeSource[3];
-			currentChapter = new ID3Chapter(elementId.toString(), startTime);
-			skipBytes(input, 12);
-			return ID3Reader.ACTION_DONT_SKIP;
-		} else if (header.getId().equals(FRAME_ID_TITLE)) {
-			if (currentChapter != null && currentChapter.getTitle() == null) {
-                StringBuffer title = new StringBuffer();
-                readString(title, input, header.getSize());
-				currentChapter
-						.setTitle(title.toString());
-				if (BuildConfig.DEBUG) Log.d(TAG, "Found title: " + currentChapter.getTitle());
-
-				return ID3Reader.ACTION_DONT_SKIP;
+			long startTime = frame.getInt() & 0xFFFFFFFFL;
+			frame.position(frame.position() + CHAPTER_TIMES_LENGTH - 4);
+			ID3Chapter chapter = new ID3Chapter(elementId, startTime);
+
+			// title and link are stored in frames that are embedded in the chapter frame
+			currentChapter = chapter;
+			readFrames(frame);
+			currentChapter = null;
+
+			if (!hasId3Chapter(chapter)) {
+				chapters.add(chapter);
+				if (BuildConfig.DEBUG) Log.d(TAG, "Found chapter: " + chapter);
 			}
-		} else if (header.getId().equals(FRAME_ID_LINK)) {
-            if (currentChapter != null) {
-                // skip description
-                int descriptionLength = readString(null, input, header.getSize());
-                StringBuffer link = new StringBuffer();
-                readISOString(link, input, header.getSize() - descriptionLength);
-                String decodedLink = URLDecoder.decode(link.toString(), "UTF-8");
-
-                currentChapter.setLink(decodedLink);
-
-                if (BuildConfig.DEBUG) Log.d(TAG, "Found link: " + currentChapter.getLink());
-                return ID3Reader.ACTION_DONT_SKIP;
-            }
-        } else if (header.getId().equals("APIC")) {
-            Log.d(TAG, header.toString());
-        }
-
-		return super.onStartFrameHeader(header, input);
+		} else if (currentChapter != null) {
+			if (header.getId().equals(FRAME_ID_TITLE)) {
+				if (currentChapter.getTitle() == null) {
+					currentChapter.setTitle(readString(frame));
+				}
+			} else if (header.getId().equals(FRAME_ID_LINK)) {
+				// skip description
+				readString(frame);
+				String link = readISOString(frame);
+				try {
+					currentChapter.setLink(URLDecoder.decode(link, "UTF-8"));
+				} catch (IllegalArgumentException e) {
+					currentChapter.setLink(link);
+				}
+			}
+		}
 	}
 
 	private boolean hasId3Chapter(ID3Chapter chapter) {
@@ -92,22 +84,12 @@ public class ChapterReader extends ID3Reader {
 
 	@Override
 	public void onEndTag() {
-		if (currentChapter != null) {
-			if (!hasId3Chapter(currentChapter)) {
-				chapters.add(currentChapter);
-			}
-		}
-		System.out.println("Reached end of tag");
-		if (chapters != null) {
-			for (Chapter c : chapters) {
-				System.out.println(c.toString());
-			}
-		}
+		if (BuildConfig.DEBUG) Log.d(TAG, "Reached end of tag, found " + chapters.size() + " chapters");
 	}
 
 	@Override
 	public void onNoTagHeaderFound() {
-		System.out.println("No tag header found");
+		if (BuildConfig.DEBUG) Log.d(TAG, "No tag header found");
 		super.onNoTagHeaderFound();
 	}
 
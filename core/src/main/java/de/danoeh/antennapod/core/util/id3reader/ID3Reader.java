@@ -4,29 +4,67 @@ import de.danoeh.antennapod.core.util.id3reader.model.FrameHeader;
 import de.danoeh.antennapod.core.util.id3reader.model.TagHeader;
 import org.apache.commons.io.IOUtils;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Reads the ID3 Tag of a given file. In order to use this class, you should
  * create a subclass of it and overwrite the onStart* - or onEnd* - methods.
+ * <p/>
+ * The size of the tag is known from its header, so the whole tag is read from
+ * the input stream into one buffer. Frames are passed to the subclass as
+ * slices of this buffer, which means that they are not copied and that frames
+ * the subclass is not interested in cost nothing. ID3v2.3 and ID3v2.4 tags are
+ * supported, including sync-safe sizes and unsynchronisation.
+ * <p/>
+ * The buffer only grows with the data that is actually read, so a corrupt size
+ * in the header of a short stream doesn't allocate more memory than the stream
+ * contains. Tags that are larger than {@link #MAX_TAG_SIZE} are skipped.
  */
 public class ID3Reader {
 	private static final int HEADER_LENGTH = 10;
 	private static final int ID3_LENGTH = 3;
 	private static final int FRAME_ID_LENGTH = 4;
 
+	/**
+	 * Maximum size of a tag that is read.
+	 */
+	static final int MAX_TAG_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Size of the buffer that is used for reading the first bytes of a tag.
+	 */
+	private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+
 	protected static final int ACTION_SKIP = 1;
 	protected static final int ACTION_DONT_SKIP = 2;
 
-	protected int readerPosition;
-
 	private static final byte ENCODING_UTF16_WITH_BOM = 1;
     private static final byte ENCODING_UTF16_WITHOUT_BOM = 2;
     private static final byte ENCODING_UTF8 = 3;
 
+    private static final Charset CHARSET_ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset CHARSET_UTF16 = Charset.forName("UTF-16");
+    private static final Charset CHARSET_UTF16BE = Charset.forName("UTF-16BE");
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+    private static final int TAG_FLAG_UNSYNCHRONISATION = 0x80;
+    private static final int TAG_FLAG_EXTENDED_HEADER = 0x40;
+
+    private static final int V23_FRAME_FLAG_COMPRESSION = 0x0080;
+    private static final int V23_FRAME_FLAG_ENCRYPTION = 0x0040;
+    private static final int V23_FRAME_FLAG_GROUPING = 0x0020;
+
+    private static final int V24_FRAME_FLAG_GROUPING = 0x0040;
+    private static final int V24_FRAME_FLAG_COMPRESSION = 0x0008;
+    private static final int V24_FRAME_FLAG_ENCRYPTION = 0x0004;
+    private static final int V24_FRAME_FLAG_UNSYNCHRONISATION = 0x0002;
+    private static final int V24_FRAME_FLAG_DATA_LENGTH = 0x0001;
+
     private TagHeader tagHeader;
 
 	public ID3Reader() {
@@ -34,129 +72,216 @@ public class ID3Reader {
 
 	public final void readInputStream(InputStream input) throws IOException,
 			ID3ReaderException {
-		int rc;
-		readerPosition = 0;
-		char[] tagHeaderSource = readBytes(input, HEADER_LENGTH);
+		byte[] tagHeaderSource = new byte[HEADER_LENGTH];
+		readFully(input, tagHeaderSource);
 		tagHeader = createTagHeader(tagHeaderSource);
 		if (tagHeader == null) {
 			onNoTagHeaderFound();
-		} else {
-			rc = onStartTagHeader(tagHeader);
-			if (rc == ACTION_SKIP) {
-				onEndTag();
-			} else {
-				while (readerPosition < tagHeader.getSize()) {
-					FrameHeader frameHeader = createFrameHeader(readBytes(
-							input, HEADER_LENGTH));
-					if (checkForNullString(frameHeader.getId())) {
-						break;
-					} else {
-						rc = onStartFrameHeader(frameHeader, input);
-						if (rc == ACTION_SKIP) {
-
-							if (frameHeader.getSize() + readerPosition > tagHeader
-									.getSize()) {
-								break;
-							} else {
-								skipBytes(input, frameHeader.getSize());
-							}
-						}
-					}
-				}
-				onEndTag();
-			}
+			return;
+		}
+		if (onStartTagHeader(tagHeader) == ACTION_SKIP
+				|| tagHeader.getSize() > MAX_TAG_SIZE) {
+			onEndTag();
+			return;
+		}
+
+		byte[] tag = readTag(input, tagHeader.getSize());
+		ByteBuffer buffer = ByteBuffer.wrap(tag);
+		int majorVersion = getMajorVersion();
+		if (majorVersion < 4 && (tagHeader.getFlags() & TAG_FLAG_UNSYNCHRONISATION) != 0) {
+			// ID3v2.4 applies unsynchronisation to each frame individually
+			buffer.limit(resynchronise(tag, 0, tag.length));
 		}
+		if ((tagHeader.getFlags() & TAG_FLAG_EXTENDED_HEADER) != 0) {
+			skipExtendedHeader(buffer, majorVersion);
+		}
+		if (majorVersion >= 3) {
+			readFrames(buffer);
+		}
+		onEndTag();
 	}
 
-	/** Returns true if string only contains null-bytes. */
-	private boolean checkForNullString(String s) {
-		if (!s.isEmpty()) {
-			int i = 0;
-			if (s.charAt(i) == 0) {
-				for (i = 1; i < s.length(); i++) {
-					if (s.charAt(i) != 0) {
-						return false;
-					}
-				}
-				return true;
+	/**
+	 * Reads the frames between the position and the limit of the given
+	 * buffer and calls onStartFrameHeader for each of them. The position of
+	 * the buffer is moved past the last frame. This method can be used by
+	 * subclasses to read frames that are embedded in other frames.
+	 */
+	protected final void readFrames(ByteBuffer buffer) throws IOException,
+			ID3ReaderException {
+		while (buffer.remaining() >= HEADER_LENGTH) {
+			FrameHeader frameHeader = createFrameHeader(buffer);
+			if (frameHeader == null) {
+				// padding
+				break;
+			}
+			int size = frameHeader.getSize();
+			if (size < 0 || size > buffer.remaining()) {
+				break;
+			}
+			ByteBuffer frame = getFrameData(buffer, frameHeader);
+			buffer.position(buffer.position() + size);
+			if (frame != null) {
+				onStartFrameHeader(frameHeader, frame);
 			}
-			return false;
-		} else {
-			return true;
 		}
+	}
 
+	private int getMajorVersion() {
+		return tagHeader.getVersion() >> 8;
 	}
 
 	/**
-	 * Read a certain number of bytes from the given input stream. This method
-	 * changes the readerPosition-attribute.
+	 * Reads a tag of the given size. The buffer is enlarged while the tag is
+	 * read, up to the size of the tag.
 	 */
-	protected char[] readBytes(InputStream input, int number)
+	private static byte[] readTag(InputStream input, int size)
 			throws IOException, ID3ReaderException {
-		char[] header = new char[number];
-		for (int i = 0; i < number; i++) {
-			int b = input.read();
-			readerPosition++;
-			if (b != -1) {
-				header[i] = (char) b;
-			} else {
+		byte[] tag = new byte[Math.min(size, INITIAL_BUFFER_SIZE)];
+		int length = 0;
+		while (length < size) {
+			if (length == tag.length) {
+				tag = Arrays.copyOf(tag, (int) Math.min(size, 2L * tag.length));
+			}
+			int read = input.read(tag, length, tag.length - length);
+			if (read < 0) {
 				throw new ID3ReaderException("Unexpected end of stream");
 			}
+			length += read;
 		}
-		return header;
+		return tag;
 	}
 
-	/**
-	 * Skip a certain number of bytes on the given input stream. This method
-	 * changes the readerPosition-attribute.
-	 */
-	protected void skipBytes(InputStream input, int number) throws IOException {
-		if (number <= 0) {
-			number = 1;
+	private static void readFully(InputStream input, byte[] buffer)
+			throws IOException, ID3ReaderException {
+		try {
+			IOUtils.readFully(input, buffer);
+		} catch (EOFException e) {
+			throw new ID3ReaderException("Unexpected end of stream");
 		}
-		IOUtils.skipFully(input, number);
-
-		readerPosition += number;
 	}
 
-	private TagHeader createTagHeader(char[] source) throws ID3ReaderException {
+	private TagHeader createTagHeader(byte[] source) throws ID3ReaderException {
 		boolean hasTag = (source[0] == 0x49) && (source[1] == 0x44)
 				&& (source[2] == 0x33);
-		if (source.length != HEADER_LENGTH) {
-			throw new ID3ReaderException("Length of header must be "
-					+ HEADER_LENGTH);
-		}
-		if (hasTag) {
-			String id = new String(source, 0, ID3_LENGTH);
-			char version = (char) ((source[3] << 8) | source[4]);
-			byte flags = (byte) source[5];
-			int size = (source[6] << 24) | (source[7] << 16) | (source[8] << 8)
-					| source[9];
-            size = unsynchsafe(size);
-			return new TagHeader(id, size, version, flags);
-		} else {
+		if (!hasTag) {
 			return null;
 		}
+		if ((source[6] | source[7] | source[8] | source[9]) < 0) {
+			// the size of a tag is always sync-safe
+			return null;
+		}
+		String id = new String(source, 0, ID3_LENGTH, CHARSET_ISO_8859_1);
+		char version = (char) (((source[3] & 0xFF) << 8) | (source[4] & 0xFF));
+		byte flags = source[5];
+		int size = ((source[6] & 0xFF) << 24) | ((source[7] & 0xFF) << 16)
+				| ((source[8] & 0xFF) << 8) | (source[9] & 0xFF);
+		size = unsynchsafe(size);
+		return new TagHeader(id, size, version, flags);
 	}
 
-	private FrameHeader createFrameHeader(char[] source)
+	private void skipExtendedHeader(ByteBuffer buffer, int majorVersion)
 			throws ID3ReaderException {
-		if (source.length != HEADER_LENGTH) {
-			throw new ID3ReaderException("Length of header must be "
-					+ HEADER_LENGTH);
+		if (buffer.remaining() < 4) {
+			throw new ID3ReaderException("Extended header is too short");
+		}
+		int size = buffer.getInt();
+		if (majorVersion >= 4) {
+			// the size includes the size field
+			size = unsynchsafe(size) - 4;
+		}
+		if (size < 0 || size > buffer.remaining()) {
+			throw new ID3ReaderException("Invalid size of extended header");
 		}
-		String id = new String(source, 0, FRAME_ID_LENGTH);
+		buffer.position(buffer.position() + size);
+	}
 
-        int size = (((int) source[4]) << 24) | (((int) source[5]) << 16)
-                    | (((int) source[6]) << 8) | source[7];
-        if (tagHeader != null && tagHeader.getVersion() >= 0x0400) {
-            size = unsynchsafe(size);
-        }
-		char flags = (char) ((source[8] << 8) | source[9]);
+	/**
+	 * Reads a frame header at the position of the given buffer.
+	 *
+	 * @return The header or null if there are no more frames.
+	 */
+	private FrameHeader createFrameHeader(ByteBuffer buffer) {
+		int start = buffer.position();
+		for (int i = 0; i < FRAME_ID_LENGTH; i++) {
+			byte b = buffer.get(start + i);
+			if (!(b >= 'A' && b <= 'Z') && !(b >= '0' && b <= '9')) {
+				return null;
+			}
+		}
+		String id = decode(buffer, start, FRAME_ID_LENGTH, CHARSET_ISO_8859_1);
+		buffer.position(start + FRAME_ID_LENGTH);
+		int size = buffer.getInt();
+		if (getMajorVersion() >= 4) {
+			size = unsynchsafe(size);
+		}
+		char flags = buffer.getChar();
 		return new FrameHeader(id, size, flags);
 	}
 
-    private int unsynchsafe(int in) {
+	/**
+	 * Returns a slice of the given buffer that contains the data of the frame
+	 * at its position, without the additional information that the frame
+	 * flags announce.
+	 *
+	 * @return The data or null if the frame is compressed or encrypted.
+	 */
+	private ByteBuffer getFrameData(ByteBuffer buffer, FrameHeader header) {
+		int flags = header.getFlags();
+		int skip = 0;
+		boolean unsynchronised = false;
+		if (getMajorVersion() >= 4) {
+			if ((flags & (V24_FRAME_FLAG_COMPRESSION | V24_FRAME_FLAG_ENCRYPTION)) != 0) {
+				return null;
+			}
+			if ((flags & V24_FRAME_FLAG_GROUPING) != 0) {
+				skip += 1;
+			}
+			if ((flags & V24_FRAME_FLAG_DATA_LENGTH) != 0) {
+				skip += 4;
+			}
+			unsynchronised = (flags & V24_FRAME_FLAG_UNSYNCHRONISATION) != 0
+					|| (tagHeader.getFlags() & TAG_FLAG_UNSYNCHRONISATION) != 0;
+		} else {
+			if ((flags & (V23_FRAME_FLAG_COMPRESSION | V23_FRAME_FLAG_ENCRYPTION)) != 0) {
+				return null;
+			}
+			if ((flags & V23_FRAME_FLAG_GROUPING) != 0) {
+				skip += 1;
+			}
+		}
+		if (skip > header.getSize()) {
+			return null;
+		}
+		ByteBuffer frame = buffer.duplicate();
+		frame.limit(buffer.position() + header.getSize());
+		frame.position(buffer.position() + skip);
+		frame = frame.slice();
+		if (unsynchronised && frame.hasArray()) {
+			frame.limit(resynchronise(frame.array(), frame.arrayOffset(), frame.limit()));
+		}
+		return frame;
+	}
+
+	/**
+	 * Reverses the unsynchronisation scheme in place, i.e. removes every zero
+	 * byte that follows a 0xFF byte.
+	 *
+	 * @return The length of the resynchronised data.
+	 */
+	private static int resynchronise(byte[] data, int offset, int length) {
+		int end = offset + length;
+		int out = offset;
+		for (int in = offset; in < end; in++) {
+			data[out++] = data[in];
+			if (data[in] == (byte) 0xFF && in + 1 < end && data[in + 1] == 0) {
+				in++;
+			}
+		}
+		return out - offset;
+	}
+
+    private static int unsynchsafe(int in) {
         int out = 0;
         int mask = 0x7F000000;
 
@@ -169,74 +294,84 @@ public class ID3Reader {
         return out;
     }
 
-	protected int readString(StringBuffer buffer, InputStream input, int max) throws IOException,
-			ID3ReaderException {
-		if (max > 0) {
-			char[] encoding = readBytes(input, 1);
-			max--;
-			
-			if (encoding[0] == ENCODING_UTF16_WITH_BOM || encoding[0] == ENCODING_UTF16_WITHOUT_BOM) {
-                return readUnicodeString(buffer, input, max, Charset.forName("UTF-16")) + 1; // take encoding byte into account
-			} else if (encoding[0] == ENCODING_UTF8) {
-                return readUnicodeString(buffer, input, max, Charset.forName("UTF-8")) + 1; // take encoding byte into account
-            } else {
-				return readISOString(buffer, input, max) + 1; // take encoding byte into account
-			}
+	/**
+	 * Reads a string that is preceded by its encoding byte, up to and including
+	 * its termination character or the limit of the buffer.
+	 */
+	protected static String readString(ByteBuffer buffer) {
+		if (!buffer.hasRemaining()) {
+			return "";
+		}
+		byte encoding = buffer.get();
+		if (encoding == ENCODING_UTF16_WITH_BOM) {
+			return readUnicodeString(buffer, CHARSET_UTF16);
+		} else if (encoding == ENCODING_UTF16_WITHOUT_BOM) {
+			return readUnicodeString(buffer, CHARSET_UTF16BE);
+		} else if (encoding == ENCODING_UTF8) {
+			return readTerminatedString(buffer, CHARSET_UTF8);
 		} else {
-            if (buffer != null) {
-                buffer.append("");
-            }
-			return 0;
+			return readTerminatedString(buffer, CHARSET_ISO_8859_1);
 		}
 	}
 
-	protected int readISOString(StringBuffer buffer, InputStream input, int max)
-			throws IOException, ID3ReaderException {
+	/**
+	 * Reads an ISO-8859-1 string up to and including its termination character
+	 * or the limit of the buffer.
+	 */
+	protected static String readISOString(ByteBuffer buffer) {
+		return readTerminatedString(buffer, CHARSET_ISO_8859_1);
+	}
 
-		int bytesRead = 0;
-		char c;
-		while (++bytesRead <= max && (c = (char) input.read()) > 0) {
-            if (buffer != null) {
-			    buffer.append(c);
-            }
+	private static String readTerminatedString(ByteBuffer buffer, Charset charset) {
+		int start = buffer.position();
+		int end = start;
+		while (end < buffer.limit() && buffer.get(end) != 0) {
+			end++;
 		}
-		return bytesRead;
+		buffer.position(Math.min(end + 1, buffer.limit()));
+		return decode(buffer, start, end - start, charset);
 	}
 
-	private int readUnicodeString(StringBuffer strBuffer, InputStream input, int max, Charset charset)
-			throws IOException, ID3ReaderException {
-		byte[] buffer = new byte[max];
-        int c, cZero = -1;
-        int i = 0;
-        for (; i < max; i++) {
-            c = input.read();
-            if (c == -1) {
-                break;
-            } else if (c == 0) {
-                if (cZero == 0) {
-                    // termination character found
-                    break;
-                } else {
-                    cZero = 0;
-                }
-            } else {
-                buffer[i] = (byte) c;
-                cZero = -1;
-            }
-        }
-        if (strBuffer != null) {
-		    strBuffer.append(charset.newDecoder().decode(ByteBuffer.wrap(buffer)).toString());
-        }
-        return i;
+	private static String readUnicodeString(ByteBuffer buffer, Charset charset) {
+		int start = buffer.position();
+		int end = start;
+		while (end + 1 < buffer.limit()
+				&& (buffer.get(end) != 0 || buffer.get(end + 1) != 0)) {
+			end += 2;
+		}
+		if (end + 1 >= buffer.limit()) {
+			// no termination character, ignore a trailing odd byte
+			end = start + ((buffer.limit() - start) & ~1);
+			buffer.position(buffer.limit());
+		} else {
+			buffer.position(end + 2);
+		}
+		return decode(buffer, start, end - start, charset);
+	}
+
+	private static String decode(ByteBuffer buffer, int start, int length, Charset charset) {
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, length, charset);
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, charset);
 	}
 
 	public int onStartTagHeader(TagHeader header) {
 		return ACTION_SKIP;
 	}
 
-	public int onStartFrameHeader(FrameHeader header, InputStream input)
+	/**
+	 * Called for every frame of the tag.
+	 *
+	 * @param frame The data of the frame. Its position and limit are the beginning and the end
+	 *              of the data, it is only valid until this method returns.
+	 */
+	public void onStartFrameHeader(FrameHeader header, ByteBuffer frame)
 			throws IOException, ID3ReaderException {
-		return ACTION_SKIP;
 	}
 
 	public void onEndTag() {
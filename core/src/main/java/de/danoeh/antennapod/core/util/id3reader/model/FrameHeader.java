@@ -9,6 +9,10 @@ public class FrameHeader extends Header {
 		this.flags = flags;
 	}
 
+	public char getFlags() {
+		return flags;
+	}
+
 	@Override
 	public String toString() {
         return String.format("FrameHeader [flags=%s, id=%s, size=%s]", Integer.toBinaryString(flags), id, Integer.toBinaryString(size));
@@ -21,6 +21,10 @@ public class TagHeader extends Header {
 		return version;
 	}
 
+	public byte getFlags() {
+		return flags;
+	}
+
 	
 
 }
@@ -25,18 +25,12 @@ import android.widget.TextView;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
 import de.danoeh.antennapod.core.R;
 import de.danoeh.antennapod.core.feed.Chapter;
 import de.danoeh.antennapod.core.feed.FeedMedia;
 import de.danoeh.antennapod.core.feed.MediaType;
 import de.danoeh.antennapod.core.preferences.PlaybackPreferences;
+import de.danoeh.antennapod.core.service.playback.PlaybackPositionClock;
 import de.danoeh.antennapod.core.service.playback.PlaybackService;
 import de.danoeh.antennapod.core.service.playback.PlaybackServiceMediaPlayer;
 import de.danoeh.antennapod.core.service.playback.PlayerStatus;
@@ -59,11 +53,7 @@ public abstract class PlaybackController {
     private Playable media;
     private PlayerStatus status;
 
-    private ScheduledThreadPoolExecutor schedExecutor;
-    private static final int SCHED_EX_POOLSIZE = 1;
-
     protected MediaPositionObserver positionObserver;
-    protected ScheduledFuture positionObserverFuture;
 
     private boolean mediaInfoLoaded = false;
     private boolean released = false;
@@ -79,25 +69,7 @@ public abstract class PlaybackController {
 
         this.activity = activity;
         this.reinitOnPause = reinitOnPause;
-        schedExecutor = new ScheduledThreadPoolExecutor(SCHED_EX_POOLSIZE,
-                new ThreadFactory() {
-
-                    @Override
-                    public Thread newThread(Runnable r) {
-                        Thread t = new Thread(r);
-                        t.setPriority(Thread.MIN_PRIORITY);
-                        return t;
-                    }
-                }, new RejectedExecutionHandler() {
-
-            @Override
-            public void rejectedExecution(Runnable r,
-                                          ThreadPoolExecutor executor) {
-                Log.w(TAG,
-                        "Rejected execution of runnable in schedExecutor");
-            }
-        }
-        );
+        this.positionObserver = new MediaPositionObserver();
     }
 
     /**
@@ -153,7 +125,6 @@ public abstract class PlaybackController {
             // ignore
         }
         cancelPositionObserver();
-        schedExecutor.shutdownNow();
         media = null;
         released = true;
 
@@ -243,25 +214,16 @@ public abstract class PlaybackController {
     public abstract void setupGUI();
 
     private void setupPositionObserver() {
-        if ((positionObserverFuture != null && positionObserverFuture
-                .isCancelled())
-                || (positionObserverFuture != null && positionObserverFuture
-                .isDone()) || positionObserverFuture == null) {
-
+        if (!PlaybackPositionClock.getInstance().hasListener(positionObserver)) {
             Log.d(TAG, "Setting up position observer");
-            positionObserver = new MediaPositionObserver();
-            positionObserverFuture = schedExecutor.scheduleWithFixedDelay(
-                    positionObserver, MediaPositionObserver.WAITING_INTERVALL,
-                    MediaPositionObserver.WAITING_INTERVALL,
-                    TimeUnit.MILLISECONDS);
+            PlaybackPositionClock.getInstance().addListener(positionObserver,
+                    MediaPositionObserver.WAITING_INTERVALL);
         }
     }
 
     private void cancelPositionObserver() {
-        if (positionObserverFuture != null) {
-            boolean result = positionObserverFuture.cancel(true);
-            Log.d(TAG, "PositionObserver cancelled. Result: " + result);
-        }
+        PlaybackPositionClock.getInstance().removeListener(positionObserver);
+        Log.d(TAG, "PositionObserver cancelled");
     }
 
     public abstract void onPositionObserverUpdate();
@@ -612,6 +574,10 @@ public abstract class PlaybackController {
 
     public int getPosition() {
         if (playbackService != null) {
+            final PlaybackPositionClock clock = PlaybackPositionClock.getInstance();
+            if (clock.isRunning()) {
+                return clock.getPosition();
+            }
             return playbackService.getCurrentPosition();
         } else {
             return PlaybackService.INVALID_TIME;
@@ -742,22 +708,17 @@ public abstract class PlaybackController {
     }
 
     /**
-     * Refreshes the current position of the media file that is playing.
+     * Refreshes the current position of the media file that is playing. Updates are delivered
+     * on the main thread by the {@link PlaybackPositionClock}.
      */
-    public class MediaPositionObserver implements Runnable {
+    public class MediaPositionObserver implements PlaybackPositionClock.Listener {
 
         public static final int WAITING_INTERVALL = 1000;
 
         @Override
-        public void run() {
+        public void onPositionUpdate(int position) {
             if (playbackService != null && playbackService.getStatus() == PlayerStatus.PLAYING) {
-                activity.runOnUiThread(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        onPositionObserverUpdate();
-                    }
-                });
+                onPositionObserverUpdate();
             }
         }
     }
@@ -0,0 +1,181 @@
+package de.danoeh.antennapod.core.util.playback;
+
+import android.content.Context;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Two-level cache (memory and disk) for shownotes that have already been processed by
+ * {@link de.danoeh.antennapod.core.util.playback.Timeline}.
+ * <p/>
+ * Entries are identified by a key that is derived from the item, the raw shownotes and all
+ * parameters that influence the result of the processing (style, timecodes). Changed shownotes
+ * or a different theme therefore result in a different key, old entries are never updated but
+ * evicted when the size limits are reached.
+ */
+public class ShownotesCache {
+    private static final String TAG = "ShownotesCache";
+
+    private static final String DIRECTORY = "shownotes";
+    private static final String FILE_EXTENSION = ".html";
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Maximum number of characters that are kept in memory.
+     */
+    private static final int MEMORY_CACHE_SIZE = 512 * 1024;
+
+    /**
+     * Maximum size of the disk cache in bytes.
+     */
+    private static final long DISK_CACHE_SIZE = 5 * 1024 * 1024;
+
+    private static ShownotesCache instance;
+
+    public static synchronized ShownotesCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ShownotesCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private final LruCache<String, String> memoryCache;
+    private final File directory;
+
+    private ShownotesCache(Context context) {
+        memoryCache = new LruCache<String, String>(MEMORY_CACHE_SIZE) {
+            @Override
+            protected int sizeOf(String key, String value) {
+                return value.length();
+            }
+        };
+        directory = new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    /**
+     * Creates a key for the given values. The key can be used as a file name.
+     *
+     * @param values All values that have an influence on the processed shownotes. Null values are allowed.
+     */
+    public static String createKey(Object... values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (Object value : values) {
+                digest.update(String.valueOf(value).getBytes(ENCODING));
+                digest.update((byte) 0);
+            }
+            byte[] hash = digest.digest();
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the processed shownotes for the given key or null if no entry exists. Might access
+     * the disk and should therefore not be called on the GUI thread.
+     */
+    public String get(String key) {
+        String result = memoryCache.get(key);
+        if (result != null) {
+            return result;
+        }
+        File file = getFile(key);
+        synchronized (this) {
+            if (!file.exists()) {
+                return null;
+            }
+            try {
+                result = FileUtils.readFileToString(file, ENCODING);
+                // mark entry as recently used
+                file.setLastModified(System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read cache entry " + key, e);
+                FileUtils.deleteQuietly(file);
+                return null;
+            }
+        }
+        memoryCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Stores processed shownotes. Accesses the disk and should therefore not be called on the GUI thread.
+     */
+    public void put(String key, String shownotes) {
+        memoryCache.put(key, shownotes);
+        synchronized (this) {
+            File file = getFile(key);
+            File tmp = new File(directory, key + ".tmp");
+            try {
+                FileUtils.writeStringToFile(tmp, shownotes, ENCODING);
+                if (!tmp.renameTo(file)) {
+                    FileUtils.deleteQuietly(tmp);
+                    return;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not write cache entry " + key, e);
+                FileUtils.deleteQuietly(tmp);
+                return;
+            }
+            trimToSize();
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void clear() {
+        memoryCache.evictAll();
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + FILE_EXTENSION);
+    }
+
+    /**
+     * Deletes the least recently used files until the size of the disk cache is within its limit.
+     */
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= DISK_CACHE_SIZE) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return (l < r) ? -1 : ((l == r) ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > DISK_CACHE_SIZE; i++) {
+            size -= files[i].length();
+            FileUtils.deleteQuietly(files[i]);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package de.danoeh.antennapod.core.util.playback;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Changes the speed of 16 bit PCM audio without changing its pitch, using the pitch synchronous
+ * overlap-add approach of the Sonic library. The pitch period of the input is determined with the
+ * average magnitude difference function; whole pitch periods are then removed from (speed > 1)
+ * or inserted into (speed < 1) the signal, blending the seams with a linear cross-fade.
+ * <p/>
+ * Samples are interleaved frames of numChannels values. The buffers of a Sonic object only grow
+ * while it is being filled for the first time, processing a stream doesn't allocate any memory
+ * afterwards. Sonic objects are not thread-safe.
+ */
+public class Sonic {
+
+    /**
+     * Lowest pitch that is detected, in Hz.
+     */
+    private static final int MIN_PITCH = 65;
+
+    /**
+     * Highest pitch that is detected, in Hz.
+     */
+    private static final int MAX_PITCH = 400;
+
+    /**
+     * The pitch period is searched in a signal that has been downsampled to this frequency,
+     * and only refined at the full sample rate.
+     */
+    private static final int AMDF_FREQUENCY = 4000;
+
+    private final int sampleRate;
+    private final int numChannels;
+    private final int minPeriod;
+    private final int maxPeriod;
+    private final int maxRequired;
+
+    private short[] inputBuffer;
+    private short[] outputBuffer;
+    private final short[] downSampleBuffer;
+    private int numInputSamples;
+    private int numOutputSamples;
+    private int remainingInputToCopy;
+    private float speed;
+
+    /**
+     * Creates a new Sonic object with a speed of 1.
+     *
+     * @param sampleRate  Sample rate of the audio in Hz
+     * @param numChannels Number of interleaved channels
+     */
+    public Sonic(int sampleRate, int numChannels) {
+        Validate.isTrue(sampleRate > 0, "sampleRate must be positive");
+        Validate.isTrue(numChannels > 0, "numChannels must be positive");
+        this.sampleRate = sampleRate;
+        this.numChannels = numChannels;
+        this.minPeriod = sampleRate / MAX_PITCH;
+        this.maxPeriod = sampleRate / MIN_PITCH;
+        this.maxRequired = 2 * maxPeriod;
+        this.inputBuffer = new short[maxRequired * numChannels];
+        this.outputBuffer = new short[maxRequired * numChannels];
+        this.downSampleBuffer = new short[maxRequired];
+        this.speed = 1.0f;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getNumChannels() {
+        return numChannels;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Sets the speed. A speed of 2 halves the duration of the audio. The new speed applies to all
+     * samples that haven't been processed yet.
+     */
+    public void setSpeed(float speed) {
+        Validate.isTrue(speed > 0, "speed must be positive");
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the number of input frames that have been written, but not processed yet.
+     */
+    public int getBufferedInputFrames() {
+        return numInputSamples;
+    }
+
+    /**
+     * Returns the number of frames that can be read from the stream.
+     */
+    public int samplesAvailable() {
+        return numOutputSamples;
+    }
+
+    /**
+     * Adds the given number of frames of the given buffer to the stream and processes as many of
+     * them as possible.
+     */
+    public void writeShortToStream(short[] samples, int numFrames) {
+        enlargeInputBufferIfNeeded(numFrames);
+        System.arraycopy(samples, 0, inputBuffer, numInputSamples * numChannels, numFrames * numChannels);
+        numInputSamples += numFrames;
+        processStreamInput();
+    }
+
+    /**
+     * Reads up to maxFrames processed frames into the given buffer.
+     *
+     * @return The number of frames that have been read.
+     */
+    public int readShortFromStream(short[] samples, int maxFrames) {
+        int numFrames = Math.min(numOutputSamples, maxFrames);
+        if (numFrames == 0) {
+            return 0;
+        }
+        System.arraycopy(outputBuffer, 0, samples, 0, numFrames * numChannels);
+        System.arraycopy(outputBuffer, numFrames * numChannels, outputBuffer, 0,
+                (numOutputSamples - numFrames) * numChannels);
+        numOutputSamples -= numFrames;
+        return numFrames;
+    }
+
+    /**
+     * Processes the remaining input at the end of the stream. Afterwards, the output of the whole
+     * stream can be read.
+     */
+    public void flushStream() {
+        int remainingFrames = numInputSamples;
+        int expectedOutput = numOutputSamples + (int) (remainingFrames / speed + 0.5f);
+
+        // pad with silence so that the remaining input gets processed
+        enlargeInputBufferIfNeeded(remainingFrames + 2 * maxRequired);
+        int start = numInputSamples * numChannels;
+        int end = (numInputSamples + 2 * maxRequired) * numChannels;
+        for (int i = start; i < end; i++) {
+            inputBuffer[i] = 0;
+        }
+        numInputSamples += 2 * maxRequired;
+        processStreamInput();
+
+        if (numOutputSamples > expectedOutput) {
+            numOutputSamples = expectedOutput;
+        }
+        numInputSamples = 0;
+        remainingInputToCopy = 0;
+    }
+
+    /**
+     * Discards all buffered input and output, e.g. after a seek.
+     */
+    public void clear() {
+        numInputSamples = 0;
+        numOutputSamples = 0;
+        remainingInputToCopy = 0;
+    }
+
+    private void enlargeInputBufferIfNeeded(int numFrames) {
+        int required = (numInputSamples + numFrames) * numChannels;
+        if (required > inputBuffer.length) {
+            short[] buffer = new short[Math.max(required, inputBuffer.length * 2)];
+            System.arraycopy(inputBuffer, 0, buffer, 0, numInputSamples * numChannels);
+            inputBuffer = buffer;
+        }
+    }
+
+    private void enlargeOutputBufferIfNeeded(int numFrames) {
+        int required = (numOutputSamples + numFrames) * numChannels;
+        if (required > outputBuffer.length) {
+            short[] buffer = new short[Math.max(required, outputBuffer.length * 2)];
+            System.arraycopy(outputBuffer, 0, buffer, 0, numOutputSamples * numChannels);
+            outputBuffer = buffer;
+        }
+    }
+
+    private void processStreamInput() {
+        if (speed > 0.99999f && speed < 1.00001f) {
+            copyToOutput(inputBuffer, 0, numInputSamples);
+            numInputSamples = 0;
+            remainingInputToCopy = 0;
+            return;
+        }
+        if (numInputSamples < maxRequired) {
+            return;
+        }
+        int position = 0;
+        do {
+            if (remainingInputToCopy > 0) {
+                int numFrames = Math.min(maxRequired, remainingInputToCopy);
+                copyToOutput(inputBuffer, position, numFrames);
+                remainingInputToCopy -= numFrames;
+                position += numFrames;
+            } else {
+                int period = findPitchPeriod(position);
+                if (speed > 1.0f) {
+                    position += period + skipPitchPeriod(position, period);
+                } else {
+                    position += insertPitchPeriod(position, period);
+                }
+            }
+        } while (position + maxRequired <= numInputSamples);
+        removeInputSamples(position);
+    }
+
+    private void copyToOutput(short[] samples, int position, int numFrames) {
+        enlargeOutputBufferIfNeeded(numFrames);
+        System.arraycopy(samples, position * numChannels, outputBuffer, numOutputSamples * numChannels,
+                numFrames * numChannels);
+        numOutputSamples += numFrames;
+    }
+
+    private void removeInputSamples(int position) {
+        int remaining = numInputSamples - position;
+        System.arraycopy(inputBuffer, position * numChannels, inputBuffer, 0, remaining * numChannels);
+        numInputSamples = remaining;
+    }
+
+    /**
+     * Blends one pitch period starting at position with the following one and writes the result to
+     * the output, so that period frames of the input are skipped.
+     *
+     * @return The number of frames that have been written to the output.
+     */
+    private int skipPitchPeriod(int position, int period) {
+        int newSamples;
+        if (speed >= 2.0f) {
+            newSamples = (int) (period / (speed - 1.0f));
+        } else {
+            newSamples = period;
+            remainingInputToCopy = (int) (period * (2.0f - speed) / (speed - 1.0f));
+        }
+        enlargeOutputBufferIfNeeded(newSamples);
+        overlapAdd(newSamples, numOutputSamples, position, position + period);
+        numOutputSamples += newSamples;
+        return newSamples;
+    }
+
+    /**
+     * Copies one pitch period starting at position to the output, followed by a blend of the next
+     * period with a repetition of the first one.
+     *
+     * @return The number of input frames that have been consumed.
+     */
+    private int insertPitchPeriod(int position, int period) {
+        int newSamples;
+        if (speed < 0.5f) {
+            newSamples = (int) (period * speed / (1.0f - speed));
+        } else {
+            newSamples = period;
+            remainingInputToCopy = (int) (period * (2.0f * speed - 1.0f) / (1.0f - speed));
+        }
+        enlargeOutputBufferIfNeeded(period + newSamples);
+        System.arraycopy(inputBuffer, position * numChannels, outputBuffer, numOutputSamples * numChannels,
+                period * numChannels);
+        overlapAdd(newSamples, numOutputSamples + period, position + period, position);
+        numOutputSamples += period + newSamples;
+        return newSamples;
+    }
+
+    /**
+     * Writes numFrames frames to the output that fade from the input at rampDown to the input at
+     * rampUp.
+     */
+    private void overlapAdd(int numFrames, int outPosition, int rampDown, int rampUp) {
+        for (int channel = 0; channel < numChannels; channel++) {
+            int o = outPosition * numChannels + channel;
+            int d = rampDown * numChannels + channel;
+            int u = rampUp * numChannels + channel;
+            for (int t = 0; t < numFrames; t++) {
+                outputBuffer[o] = (short) ((inputBuffer[d] * (numFrames - t) + inputBuffer[u] * t) / numFrames);
+                o += numChannels;
+                d += numChannels;
+                u += numChannels;
+            }
+        }
+    }
+
+    private int findPitchPeriod(int position) {
+        int skip = (sampleRate > AMDF_FREQUENCY) ? sampleRate / AMDF_FREQUENCY : 1;
+        if (numChannels == 1 && skip == 1) {
+            return findPitchPeriodInRange(inputBuffer, position, minPeriod, maxPeriod);
+        }
+        downSample(position, skip);
+        int period = findPitchPeriodInRange(downSampleBuffer, 0, minPeriod / skip, maxPeriod / skip);
+        if (skip != 1) {
+            period *= skip;
+            int min = Math.max(period - (skip << 2), minPeriod);
+            int max = Math.min(period + (skip << 2), maxPeriod);
+            if (numChannels == 1) {
+                period = findPitchPeriodInRange(inputBuffer, position, min, max);
+            } else {
+                downSample(position, 1);
+                period = findPitchPeriodInRange(downSampleBuffer, 0, min, max);
+            }
+        }
+        return period;
+    }
+
+    /**
+     * Mixes maxRequired frames starting at position down to mono, averaging skip frames per value.
+     */
+    private void downSample(int position, int skip) {
+        int numValues = maxRequired / skip;
+        int samplesPerValue = numChannels * skip;
+        int i = position * numChannels;
+        for (int value = 0; value < numValues; value++) {
+            int sum = 0;
+            for (int j = 0; j < samplesPerValue; j++) {
+                sum += inputBuffer[i++];
+            }
+            downSampleBuffer[value] = (short) (sum / samplesPerValue);
+        }
+    }
+
+    /**
+     * Returns the period in the given range that minimizes the average magnitude difference between
+     * the mono signal starting at position and the signal shifted by the period.
+     */
+    private static int findPitchPeriodInRange(short[] samples, int position, int minPeriod, int maxPeriod) {
+        int bestPeriod = 0;
+        long minDiff = 1;
+        for (int period = minPeriod; period <= maxPeriod; period++) {
+            long diff = 0;
+            int s = position;
+            int p = position + period;
+            for (int i = 0; i < period; i++) {
+                diff += Math.abs(samples[s++] - samples[p++]);
+            }
+            // diff / period < minDiff / bestPeriod
+            if (diff * bestPeriod < minDiff * period) {
+                minDiff = diff;
+                bestPeriod = period;
+            }
+        }
+        return bestPeriod;
+    }
+}
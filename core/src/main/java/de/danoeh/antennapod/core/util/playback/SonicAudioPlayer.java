@@ -0,0 +1,768 @@
+package de.danoeh.antennapod.core.util.playback;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.SurfaceHolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Audio player that supports variable playback speed without relying on an external service.
+ * <p/>
+ * The media file is decoded with MediaExtractor and MediaCodec, the decoded PCM data is
+ * time-stretched by {@link de.danoeh.antennapod.core.util.playback.Sonic} and written to an
+ * AudioTrack. Decoding and time-stretching happen on a playback thread that is started by
+ * {@link #start()} and stopped by {@link #pause()}; the buffers it uses are allocated when the
+ * player is prepared. The playback thread keeps track of the current position, so querying the
+ * position doesn't involve the decoder or any other process.
+ * <p/>
+ * This class requires Android 4.1 (API level 16), see {@link #isSupported()}.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class SonicAudioPlayer implements IPlayer {
+    private static final String TAG = "SonicAudioPlayer";
+
+    public static final float MIN_SPEED_MULTIPLIER = 0.5f;
+    public static final float MAX_SPEED_MULTIPLIER = 3.0f;
+
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+
+    /**
+     * Number of frames that are written to the AudioTrack at once. Smaller chunks make pause()
+     * return faster.
+     */
+    private static final int CHUNK_FRAMES = 2048;
+
+    /**
+     * Minimum time between two buffering updates in milliseconds.
+     */
+    private static final long BUFFERING_UPDATE_INTERVAL = 1000;
+
+    /**
+     * Returns true if this player can be used on the current device.
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    public interface OnPreparedListener {
+        void onPrepared(SonicAudioPlayer mp);
+    }
+
+    public interface OnCompletionListener {
+        void onCompletion(SonicAudioPlayer mp);
+    }
+
+    public interface OnSeekCompleteListener {
+        void onSeekComplete(SonicAudioPlayer mp);
+    }
+
+    public interface OnBufferingUpdateListener {
+        void onBufferingUpdate(SonicAudioPlayer mp, int percent);
+    }
+
+    public interface OnErrorListener {
+        boolean onError(SonicAudioPlayer mp, int what, int extra);
+    }
+
+    private enum State {
+        IDLE, INITIALIZED, PREPARING, PREPARED, STARTED, PAUSED, STOPPED, PLAYBACK_COMPLETED, ERROR, END
+    }
+
+    private volatile State state = State.IDLE;
+    private String dataSource;
+    private int streamType = AudioManager.STREAM_MUSIC;
+    private float leftVolume = 1.0f;
+    private float rightVolume = 1.0f;
+    private volatile boolean looping;
+    private volatile float speed = 1.0f;
+    private PowerManager.WakeLock wakeLock;
+
+    private volatile OnPreparedListener onPreparedListener;
+    private volatile OnCompletionListener onCompletionListener;
+    private volatile OnSeekCompleteListener onSeekCompleteListener;
+    private volatile OnBufferingUpdateListener onBufferingUpdateListener;
+    private volatile OnErrorListener onErrorListener;
+
+    /**
+     * Position in milliseconds, updated by the playback thread.
+     */
+    private volatile int position;
+    private volatile int duration;
+
+    private Thread playbackThread;
+    private volatile boolean running;
+
+    // The following fields are only accessed by the playback thread while it is running and by the
+    // methods of this class while it isn't.
+    private MediaExtractor extractor;
+    private MediaCodec codec;
+    private ByteBuffer[] codecInputBuffers;
+    private ByteBuffer[] codecOutputBuffers;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private AudioTrack track;
+    private Sonic sonic;
+    private int sampleRate;
+    private int numChannels;
+    private byte[] pcmBytes;
+    private short[] pcm;
+    private short[] chunk;
+    private boolean inputDone;
+    private boolean stream;
+    private long lastBufferingUpdate;
+
+    /**
+     * Frames before this point in time are dropped after a seek, in microseconds.
+     */
+    private long seekTargetUs;
+    /**
+     * False until the first decoded buffer after a seek has been written to the time-stretcher.
+     */
+    private boolean mediaPositionKnown;
+    /**
+     * Media time of the end of the input of the time-stretcher, in frames.
+     */
+    private long fedMediaFrames;
+    private long trackFramesWritten;
+
+    public void setOnPreparedListener(OnPreparedListener listener) {
+        this.onPreparedListener = listener;
+    }
+
+    public void setOnCompletionListener(OnCompletionListener listener) {
+        this.onCompletionListener = listener;
+    }
+
+    public void setOnSeekCompleteListener(OnSeekCompleteListener listener) {
+        this.onSeekCompleteListener = listener;
+    }
+
+    public void setOnBufferingUpdateListener(OnBufferingUpdateListener listener) {
+        this.onBufferingUpdateListener = listener;
+    }
+
+    public void setOnErrorListener(OnErrorListener listener) {
+        this.onErrorListener = listener;
+    }
+
+    @Override
+    public boolean canSetPitch() {
+        return false;
+    }
+
+    @Override
+    public boolean canSetSpeed() {
+        return true;
+    }
+
+    @Override
+    public float getCurrentPitchStepsAdjustment() {
+        return 0;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return position;
+    }
+
+    @Override
+    public float getCurrentSpeedMultiplier() {
+        return speed;
+    }
+
+    @Override
+    public int getDuration() {
+        return duration;
+    }
+
+    @Override
+    public float getMaxSpeedMultiplier() {
+        return MAX_SPEED_MULTIPLIER;
+    }
+
+    @Override
+    public float getMinSpeedMultiplier() {
+        return MIN_SPEED_MULTIPLIER;
+    }
+
+    @Override
+    public boolean isLooping() {
+        return looping;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return state == State.STARTED;
+    }
+
+    @Override
+    public synchronized void pause() {
+        if (state != State.STARTED) {
+            Log.d(TAG, "Ignoring call to pause in state " + state);
+            return;
+        }
+        stopPlaybackThread();
+        track.pause();
+        state = State.PAUSED;
+        releaseWakeLock();
+    }
+
+    @Override
+    public synchronized void prepare() throws IllegalStateException, IOException {
+        if (state != State.INITIALIZED && state != State.STOPPED) {
+            throw new IllegalStateException("Cannot prepare player in state " + state);
+        }
+        state = State.PREPARING;
+        try {
+            extractor = new MediaExtractor();
+            extractor.setDataSource(dataSource);
+            MediaFormat format = null;
+            String mime = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                String trackMime = trackFormat.getString(MediaFormat.KEY_MIME);
+                if (trackMime != null && trackMime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = trackFormat;
+                    mime = trackMime;
+                    break;
+                }
+            }
+            if (format == null) {
+                throw new IOException("No audio track found in " + dataSource);
+            }
+            duration = format.containsKey(MediaFormat.KEY_DURATION) ?
+                    (int) (format.getLong(MediaFormat.KEY_DURATION) / 1000) : 0;
+
+            codec = MediaCodec.createDecoderByType(mime);
+            codec.configure(format, null, null, 0);
+            codec.start();
+            codecInputBuffers = codec.getInputBuffers();
+            codecOutputBuffers = codec.getOutputBuffers();
+            createTrack(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                    format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+        } catch (IOException e) {
+            releaseResources();
+            state = State.ERROR;
+            throw e;
+        } catch (RuntimeException e) {
+            releaseResources();
+            state = State.ERROR;
+            throw new IOException(e);
+        }
+        inputDone = false;
+        seekTargetUs = 0;
+        mediaPositionKnown = false;
+        trackFramesWritten = 0;
+        position = 0;
+        state = State.PREPARED;
+    }
+
+    @Override
+    public void prepareAsync() {
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    prepare();
+                } catch (IOException | IllegalStateException e) {
+                    Log.e(TAG, "Could not prepare player", e);
+                    notifyError();
+                    return;
+                }
+                OnPreparedListener listener = onPreparedListener;
+                if (listener != null) {
+                    listener.onPrepared(SonicAudioPlayer.this);
+                }
+            }
+        }.start();
+    }
+
+    @Override
+    public synchronized void release() {
+        stopPlaybackThread();
+        releaseResources();
+        releaseWakeLock();
+        state = State.END;
+    }
+
+    @Override
+    public synchronized void reset() {
+        stopPlaybackThread();
+        releaseResources();
+        releaseWakeLock();
+        dataSource = null;
+        position = 0;
+        duration = 0;
+        state = State.IDLE;
+    }
+
+    @Override
+    public synchronized void seekTo(int msec) {
+        if (state != State.PREPARED && state != State.STARTED && state != State.PAUSED
+                && state != State.PLAYBACK_COMPLETED) {
+            throw new IllegalStateException("Cannot seek in state " + state);
+        }
+        boolean playing = state == State.STARTED;
+        stopPlaybackThread();
+        if (msec < 0) {
+            msec = 0;
+        } else if (duration > 0 && msec > duration) {
+            msec = duration;
+        }
+        seekInternal(msec * 1000L);
+        if (playing) {
+            startPlaybackThread();
+        } else if (state == State.PLAYBACK_COMPLETED) {
+            state = State.PAUSED;
+        }
+        OnSeekCompleteListener listener = onSeekCompleteListener;
+        if (listener != null) {
+            listener.onSeekComplete(this);
+        }
+    }
+
+    @Override
+    public synchronized void setAudioStreamType(int streamtype) {
+        this.streamType = streamtype;
+    }
+
+    @Override
+    public void setScreenOnWhilePlaying(boolean screenOn) {
+        Log.e(TAG, "Setting screen on while playing not supported in Sonic Audio Player");
+        throw new UnsupportedOperationException("Setting screen on while playing not supported in Sonic Audio Player");
+    }
+
+    @Override
+    public synchronized void setDataSource(String path) throws IllegalStateException, IOException,
+            IllegalArgumentException, SecurityException {
+        if (state != State.IDLE) {
+            throw new IllegalStateException("Cannot set data source in state " + state);
+        }
+        this.dataSource = path;
+        this.stream = path.startsWith("http://") || path.startsWith("https://");
+        state = State.INITIALIZED;
+    }
+
+    @Override
+    public void setDisplay(SurfaceHolder sh) {
+        if (sh != null) {
+            Log.e(TAG, "Setting display not supported in Sonic Audio Player");
+            throw new UnsupportedOperationException("Setting display not supported in Sonic Audio Player");
+        }
+    }
+
+    @Override
+    public void setEnableSpeedAdjustment(boolean enableSpeedAdjustment) {
+        // speed adjustment is always available
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    @Override
+    public void setPitchStepsAdjustment(float pitchSteps) {
+        Log.e(TAG, "Setting pitch steps adjustment unsupported in Sonic Audio Player");
+        throw new UnsupportedOperationException("Setting pitch steps adjustment unsupported in Sonic Audio Player");
+    }
+
+    @Override
+    public void setPlaybackPitch(float f) {
+        Log.e(TAG, "Setting playback pitch unsupported in Sonic Audio Player");
+        throw new UnsupportedOperationException("Setting playback pitch unsupported in Sonic Audio Player");
+    }
+
+    /**
+     * Sets the playback speed. The value is clamped to the range between the minimum and the
+     * maximum speed multiplier and takes effect with the next decoded buffer.
+     */
+    @Override
+    public void setPlaybackSpeed(float f) {
+        speed = Math.max(MIN_SPEED_MULTIPLIER, Math.min(MAX_SPEED_MULTIPLIER, f));
+    }
+
+    @Override
+    public synchronized void setVolume(float left, float right) {
+        this.leftVolume = left;
+        this.rightVolume = right;
+        if (track != null) {
+            track.setStereoVolume(left, right);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (state == State.STARTED) {
+            return;
+        }
+        if (state != State.PREPARED && state != State.PAUSED && state != State.PLAYBACK_COMPLETED) {
+            throw new IllegalStateException("Cannot start player in state " + state);
+        }
+        if (state == State.PLAYBACK_COMPLETED) {
+            seekInternal(0);
+        }
+        track.play();
+        state = State.STARTED;
+        acquireWakeLock();
+        startPlaybackThread();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (state != State.PREPARED && state != State.STARTED && state != State.PAUSED
+                && state != State.PLAYBACK_COMPLETED) {
+            Log.d(TAG, "Ignoring call to stop in state " + state);
+            return;
+        }
+        stopPlaybackThread();
+        releaseResources();
+        releaseWakeLock();
+        state = State.STOPPED;
+    }
+
+    @Override
+    public void setVideoScalingMode(int mode) {
+        throw new UnsupportedOperationException("Setting scaling mode is not supported in Sonic Audio Player");
+    }
+
+    @Override
+    public synchronized void setWakeMode(Context context, int mode) {
+        boolean held = wakeLock != null && wakeLock.isHeld();
+        releaseWakeLock();
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        wakeLock = pm.newWakeLock(mode | PowerManager.ON_AFTER_RELEASE, TAG);
+        wakeLock.setReferenceCounted(false);
+        if (held) {
+            wakeLock.acquire();
+        }
+    }
+
+    private void acquireWakeLock() {
+        if (wakeLock != null) {
+            wakeLock.acquire();
+        }
+    }
+
+    private void releaseWakeLock() {
+        if (wakeLock != null && wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+    }
+
+    private void createTrack(int sampleRate, int numChannels) throws IOException {
+        int channelConfig;
+        if (numChannels == 1) {
+            channelConfig = AudioFormat.CHANNEL_OUT_MONO;
+        } else if (numChannels == 2) {
+            channelConfig = AudioFormat.CHANNEL_OUT_STEREO;
+        } else {
+            throw new IOException("Unsupported number of channels: " + numChannels);
+        }
+        int bufferSize = 2 * AudioTrack.getMinBufferSize(sampleRate, channelConfig, AudioFormat.ENCODING_PCM_16BIT);
+        track = new AudioTrack(streamType, sampleRate, channelConfig, AudioFormat.ENCODING_PCM_16BIT,
+                bufferSize, AudioTrack.MODE_STREAM);
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            track.release();
+            track = null;
+            throw new IOException("Could not initialize AudioTrack");
+        }
+        track.setStereoVolume(leftVolume, rightVolume);
+        sonic = new Sonic(sampleRate, numChannels);
+        sonic.setSpeed(speed);
+        this.sampleRate = sampleRate;
+        this.numChannels = numChannels;
+        if (chunk == null || chunk.length < CHUNK_FRAMES * numChannels) {
+            chunk = new short[CHUNK_FRAMES * numChannels];
+        }
+    }
+
+    private void releaseResources() {
+        if (codec != null) {
+            try {
+                codec.stop();
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Codec was not started");
+            }
+            codec.release();
+            codec = null;
+        }
+        if (extractor != null) {
+            extractor.release();
+            extractor = null;
+        }
+        if (track != null) {
+            track.release();
+            track = null;
+        }
+        codecInputBuffers = null;
+        codecOutputBuffers = null;
+        sonic = null;
+    }
+
+    private void seekInternal(long timeUs) {
+        extractor.seekTo(timeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        codec.flush();
+        sonic.clear();
+        boolean playing = track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+        track.pause();
+        track.flush();
+        if (playing) {
+            track.play();
+        }
+        trackFramesWritten = 0;
+        inputDone = false;
+        seekTargetUs = timeUs;
+        mediaPositionKnown = false;
+        position = (int) (timeUs / 1000);
+    }
+
+    private void startPlaybackThread() {
+        running = true;
+        playbackThread = new Thread(playbackLoop, TAG);
+        playbackThread.setPriority(Thread.MAX_PRIORITY);
+        playbackThread.start();
+    }
+
+    /**
+     * Stops the playback thread and waits until it has terminated.
+     */
+    private void stopPlaybackThread() {
+        Thread thread = playbackThread;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        playbackThread = null;
+        if (thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted while waiting for playback thread");
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final Runnable playbackLoop = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    if (!inputDone) {
+                        queueInput();
+                    }
+                    int index = codec.dequeueOutputBuffer(bufferInfo, DEQUEUE_TIMEOUT_US);
+                    if (index >= 0) {
+                        boolean endOfStream = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                        if (bufferInfo.size > 0) {
+                            processOutput(codecOutputBuffers[index]);
+                        }
+                        codec.releaseOutputBuffer(index, false);
+                        if (endOfStream && onEndOfStream()) {
+                            return;
+                        }
+                    } else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                        codecOutputBuffers = codec.getOutputBuffers();
+                    } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                        onOutputFormatChanged(codec.getOutputFormat());
+                    }
+                    if (stream) {
+                        updateBuffering();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Playback failed", e);
+                running = false;
+                notifyError();
+            }
+        }
+    };
+
+    private void queueInput() {
+        int index = codec.dequeueInputBuffer(0);
+        if (index < 0) {
+            return;
+        }
+        int size = extractor.readSampleData(codecInputBuffers[index], 0);
+        if (size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputDone = true;
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+        }
+    }
+
+    private void processOutput(ByteBuffer buffer) {
+        int frameSize = 2 * numChannels;
+        int numFrames = bufferInfo.size / frameSize;
+        int skipFrames = 0;
+        if (!mediaPositionKnown) {
+            long startFrame = bufferInfo.presentationTimeUs * sampleRate / 1000000;
+            long targetFrame = seekTargetUs * sampleRate / 1000000;
+            if (targetFrame - startFrame >= numFrames) {
+                // the whole buffer is before the seek target
+                return;
+            }
+            skipFrames = (int) Math.max(0, targetFrame - startFrame);
+            fedMediaFrames = startFrame + skipFrames;
+            mediaPositionKnown = true;
+        }
+        numFrames -= skipFrames;
+        int numBytes = numFrames * frameSize;
+        if (pcmBytes == null || pcmBytes.length < numBytes) {
+            pcmBytes = new byte[numBytes];
+            pcm = new short[numBytes / 2];
+        }
+        buffer.limit(bufferInfo.offset + bufferInfo.size);
+        buffer.position(bufferInfo.offset + skipFrames * frameSize);
+        buffer.get(pcmBytes, 0, numBytes);
+        buffer.clear();
+        // MediaCodec outputs little endian PCM
+        for (int i = 0, j = 0; j < numBytes; i++, j += 2) {
+            pcm[i] = (short) ((pcmBytes[j] & 0xff) | (pcmBytes[j + 1] << 8));
+        }
+
+        if (sonic.getSpeed() != speed) {
+            sonic.setSpeed(speed);
+        }
+        sonic.writeShortToStream(pcm, numFrames);
+        fedMediaFrames += numFrames;
+        drainSonic();
+    }
+
+    private void drainSonic() {
+        int numFrames;
+        while (running && (numFrames = sonic.readShortFromStream(chunk, CHUNK_FRAMES)) > 0) {
+            int numSamples = numFrames * numChannels;
+            int offset = 0;
+            while (offset < numSamples) {
+                int written = track.write(chunk, offset, numSamples - offset);
+                if (written <= 0) {
+                    throw new IllegalStateException("AudioTrack.write returned " + written);
+                }
+                offset += written;
+            }
+            trackFramesWritten += numFrames;
+            updatePosition();
+        }
+    }
+
+    private void updatePosition() {
+        long pendingFrames = trackFramesWritten - (track.getPlaybackHeadPosition() & 0xffffffffL);
+        float currentSpeed = sonic.getSpeed();
+        double mediaFrames = fedMediaFrames - sonic.getBufferedInputFrames()
+                - (sonic.samplesAvailable() + pendingFrames) * currentSpeed;
+        int newPosition = (int) (mediaFrames * 1000 / sampleRate);
+        if (newPosition < 0) {
+            newPosition = 0;
+        } else if (duration > 0 && newPosition > duration) {
+            newPosition = duration;
+        }
+        position = newPosition;
+    }
+
+    /**
+     * Plays the remaining audio after the decoder has reached the end of the stream.
+     *
+     * @return true if the playback thread should terminate.
+     */
+    private boolean onEndOfStream() {
+        sonic.flushStream();
+        drainSonic();
+        if (!running) {
+            return true;
+        }
+        if (looping) {
+            seekInternal(0);
+            return false;
+        }
+        track.stop();
+        long lastHead = -1;
+        long lastProgress = SystemClock.elapsedRealtime();
+        while (running) {
+            long head = track.getPlaybackHeadPosition() & 0xffffffffL;
+            if (head >= trackFramesWritten) {
+                break;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (head != lastHead) {
+                lastHead = head;
+                lastProgress = now;
+            } else if (now - lastProgress > 1000) {
+                break;
+            }
+            updatePosition();
+            SystemClock.sleep(20);
+        }
+        if (!running) {
+            return true;
+        }
+        running = false;
+        position = (duration > 0) ? duration : position;
+        state = State.PLAYBACK_COMPLETED;
+        releaseWakeLock();
+        OnCompletionListener listener = onCompletionListener;
+        if (listener != null) {
+            listener.onCompletion(this);
+        }
+        return true;
+    }
+
+    private void onOutputFormatChanged(MediaFormat format) throws IOException {
+        int newSampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int newNumChannels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        if (newSampleRate == sampleRate && newNumChannels == numChannels) {
+            return;
+        }
+        Log.d(TAG, "Output format changed to " + newSampleRate + " Hz, " + newNumChannels + " channels");
+        track.release();
+        track = null;
+        createTrack(newSampleRate, newNumChannels);
+        track.play();
+        trackFramesWritten = 0;
+        seekTargetUs = position * 1000L;
+        mediaPositionKnown = false;
+    }
+
+    private void updateBuffering() {
+        OnBufferingUpdateListener listener = onBufferingUpdateListener;
+        long now = SystemClock.elapsedRealtime();
+        if (listener == null || duration <= 0 || now - lastBufferingUpdate < BUFFERING_UPDATE_INTERVAL) {
+            return;
+        }
+        lastBufferingUpdate = now;
+        long cachedMs = extractor.getCachedDuration() / 1000;
+        int percent;
+        if (extractor.hasCacheReachedEndOfStream()) {
+            percent = 100;
+        } else if (cachedMs >= 0) {
+            percent = (int) Math.min(100, (position + cachedMs) * 100 / duration);
+        } else {
+            return;
+        }
+        listener.onBufferingUpdate(this, percent);
+    }
+
+    private void notifyError() {
+        state = State.ERROR;
+        releaseWakeLock();
+        OnErrorListener listener = onErrorListener;
+        if (listener != null) {
+            listener.onError(this, android.media.MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import de.danoeh.antennapod.core.BuildConfig;
+import de.danoeh.antennapod.core.feed.FeedItem;
 import de.danoeh.antennapod.core.util.Converter;
 import de.danoeh.antennapod.core.util.ShownotesProvider;
 
@@ -33,6 +34,7 @@ public class Timeline {
 
     private ShownotesProvider shownotesProvider;
 
+    private final ShownotesCache cache;
 
     private final String colorString;
     private final int pageMargin;
@@ -40,6 +42,7 @@ public class Timeline {
     public Timeline(Context context, ShownotesProvider shownotesProvider) {
         if (shownotesProvider == null) throw new IllegalArgumentException("shownotesProvider = null");
         this.shownotesProvider = shownotesProvider;
+        this.cache = ShownotesCache.getInstance(context);
 
         TypedArray res = context
                 .getTheme()
@@ -65,6 +68,9 @@ public class Timeline {
      * <p/>
      * This method does NOT change the original shownotes string of the shownotesProvider object and it should
      * also not be changed by the caller.
+     * <p/>
+     * Processed shownotes are stored in the {@link ShownotesCache}, so that the shownotes of an item only
+     * have to be processed again if they or the style have changed. This method should not be called on the GUI thread.
      *
      * @param addTimecodes True if this method should add timecode links
      * @return The processed HTML string.
@@ -87,11 +93,19 @@ public class Timeline {
             return "";
         }
 
-        Document document = Jsoup.parse(shownotes);
-
         // apply style
         String styleStr = String.format(WEBVIEW_STYLE, colorString, "100%", pageMargin,
                 pageMargin, pageMargin, pageMargin);
+
+        final String cacheKey = ShownotesCache.createKey(getProviderKey(), styleStr, addTimecodes,
+                (addTimecodes && playable != null) ? playable.getDuration() : 0, shownotes);
+        String result = cache.get(cacheKey);
+        if (result != null) {
+            Log.d(TAG, "Returning processed shownotes from cache");
+            return result;
+        }
+
+        Document document = Jsoup.parse(shownotes);
         document.head().appendElement("style").attr("type", "text/css").text(styleStr);
 
         // apply timecode links
@@ -122,8 +136,25 @@ public class Timeline {
             }
         }
 
-        Log.i(TAG, "Out: " + document.toString());
-        return document.toString();
+        result = document.toString();
+        if (BuildConfig.DEBUG)
+            Log.d(TAG, "Processed shownotes, length: " + result.length());
+        cache.put(cacheKey, result);
+        return result;
+    }
+
+    /**
+     * Returns a value that identifies the item whose shownotes are processed.
+     */
+    private Object getProviderKey() {
+        if (shownotesProvider instanceof FeedItem) {
+            return "FeedItem:" + ((FeedItem) shownotesProvider).getId();
+        } else if (shownotesProvider instanceof Playable) {
+            return shownotesProvider.getClass().getSimpleName() + ":"
+                    + ((Playable) shownotesProvider).getIdentifier();
+        } else {
+            return shownotesProvider.getClass().getSimpleName();
+        }
     }
 
 